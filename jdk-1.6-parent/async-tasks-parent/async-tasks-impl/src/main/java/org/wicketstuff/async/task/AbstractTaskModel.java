@@ -61,6 +61,17 @@ public abstract class AbstractTaskModel extends LoadableDetachableModel<ITaskMan
         return getFuture().isCancelled();
     }
 
+    /**
+     * Returns {@code true} if the task was not accepted by the task manager, for example since too many tasks are
+     * queued already. A rejected task is also considered as failed, its execution error is the
+     * {@link RejectedExecutionException}. The task can be submitted again later.
+     *
+     * @return {@code true} if the task was rejected.
+     */
+    public boolean isRejected() {
+        return getFuture() instanceof RejectedFuture;
+    }
+
     public Throwable getExecutionError() {
         return evaluateExecutionError();
     }
@@ -1,6 +1,7 @@
 package org.wicketstuff.async.task;
 
 import com.google.common.collect.MapMaker;
+import org.apache.wicket.Session;
 
 import java.util.UUID;
 import java.util.concurrent.*;
@@ -30,7 +31,7 @@ public abstract class DefaultTaskManager implements ITaskManager {
         return INSTANCE;
     }
 
-    private final ExecutorService executorService;
+    private final TaskExecutor taskExecutor;
 
     private final ConcurrentMap<String, ITaskManagerHook> taskManagerHooks;
 
@@ -38,7 +39,11 @@ public abstract class DefaultTaskManager implements ITaskManager {
     private final ConcurrentMap<ITaskManagerHook, Long> taskManagerRemovalBackRegister;
 
     public DefaultTaskManager() {
-        this.executorService = Executors.newCachedThreadPool();
+        this(new TaskExecutor());
+    }
+
+    public DefaultTaskManager(TaskExecutor taskExecutor) {
+        this.taskExecutor = taskExecutor;
         this.taskManagerHooks = new MapMaker().weakValues().makeMap();
         this.taskManagerRemovalRegister = new ConcurrentSkipListMap<Long, ITaskManagerHook>();
         this.taskManagerRemovalBackRegister = new MapMaker().weakKeys().makeMap();
@@ -93,8 +98,49 @@ public abstract class DefaultTaskManager implements ITaskManager {
         return taskManagerHooks.get(id);
     }
 
+    /**
+     * Returns the executor running the submitted tasks. It can be used to configure limits and to read metrics.
+     *
+     * @return The task executor of this manager.
+     */
+    public TaskExecutor getTaskExecutor() {
+        return taskExecutor;
+    }
+
+    /**
+     * Submits a task to the task executor. The task type, owner and priority are taken from the runnable if it is an
+     * {@link ISchedulableRunnable}.
+     *
+     * @param runnable The task to execute.
+     * @return The future of the task.
+     * @throws RejectedExecutionException If the task executor does not accept further tasks.
+     */
     protected Future<?> submit(Runnable runnable) {
-        return executorService.submit(runnable);
+        String taskType = null;
+        String owner = null;
+        int priority = TaskExecutor.DEFAULT_PRIORITY;
+        if (runnable instanceof ISchedulableRunnable) {
+            ISchedulableRunnable schedulableRunnable = (ISchedulableRunnable) runnable;
+            taskType = schedulableRunnable.getTaskType();
+            owner = schedulableRunnable.getOwner();
+            priority = schedulableRunnable.getPriority();
+        }
+        if (taskType == null) {
+            taskType = runnable.getClass().getName();
+        }
+        if (owner == null) {
+            owner = findCurrentOwner();
+        }
+        return taskExecutor.submit(runnable, taskType, owner, priority);
+    }
+
+    /**
+     * Determines the owner of tasks which do not name an owner themselves.
+     *
+     * @return The id of the current session or {@code null} if there is none.
+     */
+    protected String findCurrentOwner() {
+        return Session.exists() ? Session.get().getId() : null;
     }
 
     protected abstract AbstractTaskModel makeTaskModel(String id);
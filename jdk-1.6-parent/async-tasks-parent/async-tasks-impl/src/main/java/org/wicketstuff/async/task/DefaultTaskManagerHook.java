@@ -1,6 +1,7 @@
 package org.wicketstuff.async.task;
 
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 public class DefaultTaskManagerHook implements ITaskManagerHook {
 
@@ -34,6 +35,10 @@ public class DefaultTaskManagerHook implements ITaskManagerHook {
             future.cancel(true);
         }
         this.runnable = runnable;
-        this.future = DefaultTaskManager.getInstance().submit(runnable);
+        try {
+            this.future = DefaultTaskManager.getInstance().submit(runnable);
+        } catch (RejectedExecutionException e) {
+            this.future = new RejectedFuture(e);
+        }
     }
 }
@@ -0,0 +1,30 @@
+package org.wicketstuff.async.task;
+
+/**
+ * A runnable implementing this interface tells the {@link TaskExecutor} how to schedule it. Runnables not implementing
+ * this interface are scheduled by their class name, with the default priority and the current session as their owner.
+ */
+public interface ISchedulableRunnable extends Runnable {
+
+    /**
+     * Returns the type of this task. Concurrency limits and metrics are maintained per task type.
+     *
+     * @return The task type or {@code null} to use the class name of the runnable.
+     */
+    String getTaskType();
+
+    /**
+     * Returns the owner of this task, typically a user. The number of concurrently running tasks per owner can be
+     * limited.
+     *
+     * @return The owner or {@code null} to use the id of the current session, if any.
+     */
+    String getOwner();
+
+    /**
+     * Returns the priority of this task. Queued tasks with a higher priority are started first.
+     *
+     * @return The priority, {@link TaskExecutor#DEFAULT_PRIORITY} for regular tasks.
+     */
+    int getPriority();
+}
@@ -0,0 +1,45 @@
+package org.wicketstuff.async.task;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The future of a task that was not accepted by the {@link TaskExecutor}. The task is done and failed with the
+ * {@link RejectedExecutionException}.
+ */
+class RejectedFuture implements Future<Void> {
+
+    private final RejectedExecutionException cause;
+
+    RejectedFuture(RejectedExecutionException cause) {
+        this.cause = cause;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return true;
+    }
+
+    @Override
+    public Void get() throws InterruptedException, ExecutionException {
+        throw new ExecutionException(cause);
+    }
+
+    @Override
+    public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        throw new ExecutionException(cause);
+    }
+}
@@ -0,0 +1,411 @@
+package org.wicketstuff.async.task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded executor for the tasks of a {@link DefaultTaskManager}. At most a fixed number of tasks run at the same
+ * time. Further tasks are queued and started by priority, tasks with the same priority in the order of their
+ * submission. When the queue is full, new tasks are rejected with a {@link RejectedExecutionException}.
+ * <p/>
+ * Optionally, the number of concurrently running tasks can be limited per task type and per owner. A task that would
+ * exceed such a limit stays queued without occupying a thread, while other tasks are started. Queued tasks with a low
+ * priority may therefore wait as long as tasks with a higher priority are submitted.
+ * <p/>
+ * Metrics are collected per task type, see {@link TaskTypeMetrics}.
+ */
+public class TaskExecutor {
+
+    /**
+     * The priority of tasks which do not specify a priority.
+     */
+    public static final int DEFAULT_PRIORITY = 0;
+
+    /**
+     * The default maximum number of queued tasks.
+     */
+    public static final int DEFAULT_MAX_QUEUED_TASKS = 1000;
+
+    private static final Comparator<QueuedTask> PRIORITY_ORDER = new Comparator<QueuedTask>() {
+        @Override
+        public int compare(QueuedTask task1, QueuedTask task2) {
+            if (task1.priority != task2.priority) {
+                return task1.priority > task2.priority ? -1 : 1;
+            }
+            return task1.sequence < task2.sequence ? -1 : (task1.sequence == task2.sequence ? 0 : 1);
+        }
+    };
+
+    private final ThreadPoolExecutor threadPool;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final ConcurrentMap<String, TaskTypeMetrics> metrics = new ConcurrentHashMap<String, TaskTypeMetrics>();
+    private final ConcurrentMap<String, Integer> maxTasksPerType = new ConcurrentHashMap<String, Integer>();
+
+    /* All fields below are guarded by the lock */
+    private final Object lock = new Object();
+    private final TreeSet<QueuedTask> queue = new TreeSet<QueuedTask>(PRIORITY_ORDER);
+    private final Map<String, Integer> runningPerType = new HashMap<String, Integer>();
+    private final Map<String, Integer> runningPerOwner = new HashMap<String, Integer>();
+    private int runningCount;
+    private int maxThreads;
+    private int maxQueuedTasks;
+    private int maxTasksPerOwner = Integer.MAX_VALUE;
+
+    /**
+     * Creates an executor running up to twice as many tasks as processors are available, but at least four, and
+     * queuing up to {@link #DEFAULT_MAX_QUEUED_TASKS} tasks.
+     */
+    public TaskExecutor() {
+        this(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()), DEFAULT_MAX_QUEUED_TASKS);
+    }
+
+    public TaskExecutor(int maxThreads, int maxQueuedTasks) {
+        this(maxThreads, maxQueuedTasks, new TaskThreadFactory());
+    }
+
+    public TaskExecutor(int maxThreads, int maxQueuedTasks, ThreadFactory threadFactory) {
+        checkPositive(maxThreads, "maxThreads");
+        checkNotNegative(maxQueuedTasks, "maxQueuedTasks");
+        this.maxThreads = maxThreads;
+        this.maxQueuedTasks = maxQueuedTasks;
+        this.threadPool = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), threadFactory);
+        this.threadPool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Submits a task for execution.
+     *
+     * @param runnable The task to execute.
+     * @param taskType The type of the task.
+     * @param owner    The owner of the task or {@code null} if the task should not count against the limit per owner.
+     * @param priority The priority of the task.
+     * @return The future of the task.
+     * @throws RejectedExecutionException If the queue is full or this executor was shut down.
+     */
+    public Future<?> submit(Runnable runnable, String taskType, String owner, int priority) {
+        if (runnable == null || taskType == null) {
+            throw new NullPointerException();
+        }
+        TaskTypeMetrics typeMetrics = getOrCreateMetrics(taskType);
+        QueuedTask task = new QueuedTask(runnable, taskType, owner, priority, typeMetrics);
+        synchronized (lock) {
+            if (threadPool.isShutdown()) {
+                typeMetrics.onReject();
+                throw new RejectedExecutionException("The task executor was shut down");
+            }
+            if (canStart(task)) {
+                // No queued task can start either, otherwise it would have been started already
+                typeMetrics.onSubmit();
+                typeMetrics.onDequeue();
+                start(task);
+            } else if (queue.size() < maxQueuedTasks) {
+                typeMetrics.onSubmit();
+                queue.add(task);
+            } else {
+                typeMetrics.onReject();
+                throw new RejectedExecutionException(String.format(
+                        "Task of type %s rejected, %d tasks are queued already", taskType, queue.size()));
+            }
+        }
+        return task;
+    }
+
+    private boolean canStart(QueuedTask task) {
+        return runningCount < maxThreads
+                && count(runningPerType, task.taskType) < getMaxTasksPerType(task.taskType)
+                && (task.owner == null || count(runningPerOwner, task.owner) < maxTasksPerOwner);
+    }
+
+    private void start(final QueuedTask task) {
+        runningCount++;
+        increment(runningPerType, task.taskType);
+        if (task.owner != null) {
+            increment(runningPerOwner, task.owner);
+        }
+        threadPool.execute(new Runnable() {
+            @Override
+            public void run() {
+                long startTime = System.nanoTime();
+                task.metrics.onStart(startTime - task.queuedAt);
+                try {
+                    task.run();
+                } finally {
+                    task.metrics.onFinish(System.nanoTime() - startTime);
+                    onFinish(task);
+                }
+            }
+        });
+    }
+
+    private void onFinish(QueuedTask task) {
+        synchronized (lock) {
+            runningCount--;
+            decrement(runningPerType, task.taskType);
+            if (task.owner != null) {
+                decrement(runningPerOwner, task.owner);
+            }
+            startQueuedTasks();
+        }
+    }
+
+    /**
+     * Starts the queued tasks that are within the limits, by priority. Must be called holding the lock.
+     */
+    private void startQueuedTasks() {
+        Iterator<QueuedTask> iterator = queue.iterator();
+        while (runningCount < maxThreads && iterator.hasNext()) {
+            QueuedTask task = iterator.next();
+            if (canStart(task)) {
+                iterator.remove();
+                task.metrics.onDequeue();
+                start(task);
+            }
+        }
+    }
+
+    private void onCancel(QueuedTask task) {
+        synchronized (lock) {
+            if (queue.remove(task)) {
+                task.metrics.onDequeue();
+            }
+        }
+    }
+
+    private static int count(Map<String, Integer> counts, String key) {
+        Integer count = counts.get(key);
+        return count == null ? 0 : count;
+    }
+
+    private static void increment(Map<String, Integer> counts, String key) {
+        counts.put(key, count(counts, key) + 1);
+    }
+
+    private static void decrement(Map<String, Integer> counts, String key) {
+        int count = count(counts, key) - 1;
+        if (count > 0) {
+            counts.put(key, count);
+        } else {
+            counts.remove(key);
+        }
+    }
+
+    private TaskTypeMetrics getOrCreateMetrics(String taskType) {
+        TaskTypeMetrics typeMetrics = metrics.get(taskType);
+        if (typeMetrics == null) {
+            TaskTypeMetrics newMetrics = new TaskTypeMetrics(taskType);
+            typeMetrics = metrics.putIfAbsent(taskType, newMetrics);
+            if (typeMetrics == null) {
+                typeMetrics = newMetrics;
+            }
+        }
+        return typeMetrics;
+    }
+
+    /**
+     * Cancels all queued tasks and stops accepting new ones. Running tasks are completed.
+     */
+    public void shutdown() {
+        List<QueuedTask> queuedTasks;
+        synchronized (lock) {
+            threadPool.shutdown();
+            queuedTasks = new ArrayList<QueuedTask>(queue);
+            // Empty the queue before releasing the lock so that a finishing task cannot start a
+            // queued one on the stopped pool
+            queue.clear();
+            for (QueuedTask task : queuedTasks) {
+                task.metrics.onDequeue();
+            }
+        }
+        for (QueuedTask task : queuedTasks) {
+            task.cancel(false);
+        }
+    }
+
+    public boolean isShutdown() {
+        return threadPool.isShutdown();
+    }
+
+    public int getMaxThreads() {
+        synchronized (lock) {
+            return maxThreads;
+        }
+    }
+
+    /**
+     * Sets the maximum number of concurrently running tasks.
+     *
+     * @param maxThreads The maximum number of threads.
+     */
+    public void setMaxThreads(int maxThreads) {
+        checkPositive(maxThreads, "maxThreads");
+        synchronized (lock) {
+            if (maxThreads > threadPool.getMaximumPoolSize()) {
+                threadPool.setMaximumPoolSize(maxThreads);
+                threadPool.setCorePoolSize(maxThreads);
+            } else {
+                threadPool.setCorePoolSize(maxThreads);
+                threadPool.setMaximumPoolSize(maxThreads);
+            }
+            this.maxThreads = maxThreads;
+            startQueuedTasks();
+        }
+    }
+
+    public int getMaxQueuedTasks() {
+        synchronized (lock) {
+            return maxQueuedTasks;
+        }
+    }
+
+    /**
+     * Sets the maximum number of tasks waiting to be started. Already queued tasks are not affected.
+     *
+     * @param maxQueuedTasks The maximum number of queued tasks.
+     */
+    public void setMaxQueuedTasks(int maxQueuedTasks) {
+        checkNotNegative(maxQueuedTasks, "maxQueuedTasks");
+        synchronized (lock) {
+            this.maxQueuedTasks = maxQueuedTasks;
+        }
+    }
+
+    public int getMaxTasksPerOwner() {
+        synchronized (lock) {
+            return maxTasksPerOwner;
+        }
+    }
+
+    /**
+     * Limits the number of concurrently running tasks of each owner. Unlimited by default.
+     *
+     * @param maxTasksPerOwner The maximum number of running tasks per owner.
+     */
+    public void setMaxTasksPerOwner(int maxTasksPerOwner) {
+        checkPositive(maxTasksPerOwner, "maxTasksPerOwner");
+        synchronized (lock) {
+            this.maxTasksPerOwner = maxTasksPerOwner;
+            startQueuedTasks();
+        }
+    }
+
+    /**
+     * @param taskType The task type.
+     * @return The maximum number of concurrently running tasks of the type, {@link Integer#MAX_VALUE} if unlimited.
+     */
+    public int getMaxTasksPerType(String taskType) {
+        Integer max = maxTasksPerType.get(taskType);
+        return max == null ? Integer.MAX_VALUE : max;
+    }
+
+    /**
+     * Limits the number of concurrently running tasks of a type. Unlimited by default.
+     *
+     * @param taskType The task type.
+     * @param maxTasks The maximum number of running tasks of the type.
+     */
+    public void setMaxTasksPerType(String taskType, int maxTasks) {
+        checkPositive(maxTasks, "maxTasks");
+        synchronized (lock) {
+            maxTasksPerType.put(taskType, maxTasks);
+            startQueuedTasks();
+        }
+    }
+
+    /**
+     * @return The number of tasks waiting to be started.
+     */
+    public int getQueueLength() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * @return The number of running tasks.
+     */
+    public int getRunningCount() {
+        synchronized (lock) {
+            return runningCount;
+        }
+    }
+
+    /**
+     * @param taskType The task type.
+     * @return The metrics of the task type or {@code null} if no task of this type was submitted.
+     */
+    public TaskTypeMetrics getMetrics(String taskType) {
+        return metrics.get(taskType);
+    }
+
+    /**
+     * @return The metrics of all submitted task types, by task type.
+     */
+    public Map<String, TaskTypeMetrics> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    private static void checkPositive(int value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(String.format("%s must be positive: %d", name, value));
+        }
+    }
+
+    private static void checkNotNegative(int value, String name) {
+        if (value < 0) {
+            throw new IllegalArgumentException(String.format("%s must not be negative: %d", name, value));
+        }
+    }
+
+    private class QueuedTask extends FutureTask<Void> {
+
+        private final String taskType;
+        private final String owner;
+        private final int priority;
+        private final TaskTypeMetrics metrics;
+        private final long sequence;
+        private final long queuedAt;
+
+        private QueuedTask(Runnable runnable, String taskType, String owner, int priority, TaskTypeMetrics metrics) {
+            super(runnable, null);
+            this.taskType = taskType;
+            this.owner = owner;
+            this.priority = priority;
+            this.metrics = metrics;
+            this.sequence = TaskExecutor.this.sequence.getAndIncrement();
+            this.queuedAt = System.nanoTime();
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                // Free the slot of a task that was cancelled before it was started
+                onCancel(this);
+            }
+        }
+    }
+
+    private static class TaskThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "async-task-" + threadNumber.getAndIncrement());
+            thread.setDaemon(false);
+            thread.setPriority(Thread.NORM_PRIORITY);
+            return thread;
+        }
+    }
+}
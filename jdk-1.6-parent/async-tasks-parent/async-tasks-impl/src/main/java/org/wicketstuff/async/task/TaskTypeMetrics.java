@@ -0,0 +1,151 @@
+package org.wicketstuff.async.task;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the tasks of one type executed by a {@link TaskExecutor}.
+ */
+public class TaskTypeMetrics {
+
+    private final String taskType;
+
+    private final AtomicInteger queueLength = new AtomicInteger();
+    private final AtomicInteger runningCount = new AtomicInteger();
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong startedCount = new AtomicLong();
+    private final AtomicLong finishedCount = new AtomicLong();
+
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+
+    TaskTypeMetrics(String taskType) {
+        this.taskType = taskType;
+    }
+
+    void onSubmit() {
+        submittedCount.incrementAndGet();
+        queueLength.incrementAndGet();
+    }
+
+    void onReject() {
+        rejectedCount.incrementAndGet();
+    }
+
+    void onDequeue() {
+        queueLength.decrementAndGet();
+    }
+
+    void onStart(long waitNanos) {
+        runningCount.incrementAndGet();
+        startedCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        updateMax(maxWaitNanos, waitNanos);
+    }
+
+    void onFinish(long runNanos) {
+        runningCount.decrementAndGet();
+        finishedCount.incrementAndGet();
+        totalRunNanos.addAndGet(runNanos);
+        updateMax(maxRunNanos, runNanos);
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        do {
+            current = max.get();
+        } while (value > current && !max.compareAndSet(current, value));
+    }
+
+    public String getTaskType() {
+        return taskType;
+    }
+
+    /**
+     * @return The number of tasks waiting to be started.
+     */
+    public int getQueueLength() {
+        return queueLength.get();
+    }
+
+    /**
+     * @return The number of tasks currently running.
+     */
+    public int getRunningCount() {
+        return runningCount.get();
+    }
+
+    /**
+     * @return The number of accepted tasks.
+     */
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    /**
+     * @return The number of tasks that were rejected since the queue was full.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return The number of tasks that ran to an end, successfully or not.
+     */
+    public long getFinishedCount() {
+        return finishedCount.get();
+    }
+
+    /**
+     * @param unit The unit of the returned time.
+     * @return The average time a task waited in the queue before it was started.
+     */
+    public long getAverageWaitTime(TimeUnit unit) {
+        long started = startedCount.get();
+        return started == 0 ? 0L : unit.convert(totalWaitNanos.get() / started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param unit The unit of the returned time.
+     * @return The longest time a task waited in the queue before it was started.
+     */
+    public long getMaxWaitTime(TimeUnit unit) {
+        return unit.convert(maxWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param unit The unit of the returned time.
+     * @return The average time a task ran.
+     */
+    public long getAverageRunTime(TimeUnit unit) {
+        long finished = finishedCount.get();
+        return finished == 0 ? 0L : unit.convert(totalRunNanos.get() / finished, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param unit The unit of the returned time.
+     * @return The longest time a task ran.
+     */
+    public long getMaxRunTime(TimeUnit unit) {
+        return unit.convert(maxRunNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "TaskTypeMetrics{" +
+                "taskType='" + taskType + '\'' +
+                ", queueLength=" + getQueueLength() +
+                ", runningCount=" + getRunningCount() +
+                ", submittedCount=" + getSubmittedCount() +
+                ", rejectedCount=" + getRejectedCount() +
+                ", finishedCount=" + getFinishedCount() +
+                ", averageWaitTime=" + getAverageWaitTime(TimeUnit.MILLISECONDS) + "ms" +
+                ", averageRunTime=" + getAverageRunTime(TimeUnit.MILLISECONDS) + "ms" +
+                '}';
+    }
+}
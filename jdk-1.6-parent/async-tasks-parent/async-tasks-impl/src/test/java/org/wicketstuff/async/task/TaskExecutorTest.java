@@ -0,0 +1,167 @@
+package org.wicketstuff.async.task;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TaskExecutorTest {
+
+    private TaskExecutor taskExecutor;
+
+    private CountDownLatch release;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        taskExecutor = new TaskExecutor(1, 2);
+        release = new CountDownLatch(1);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        release.countDown();
+        taskExecutor.shutdown();
+    }
+
+    @Test
+    public void testQueueLimit() throws Exception {
+
+        Future<?> blocking = taskExecutor.submit(new BlockingRunnable(), "test", null, TaskExecutor.DEFAULT_PRIORITY);
+        taskExecutor.submit(new BlockingRunnable(), "test", null, TaskExecutor.DEFAULT_PRIORITY);
+        taskExecutor.submit(new BlockingRunnable(), "test", null, TaskExecutor.DEFAULT_PRIORITY);
+
+        try {
+            taskExecutor.submit(new BlockingRunnable(), "test", null, TaskExecutor.DEFAULT_PRIORITY);
+            throw new AssertionError("The task should have been rejected");
+        } catch (RejectedExecutionException e) {
+            /* expected */
+        }
+
+        assertEquals(taskExecutor.getQueueLength(), 2);
+        assertEquals(taskExecutor.getMetrics("test").getQueueLength(), 2);
+        assertEquals(taskExecutor.getMetrics("test").getSubmittedCount(), 3L);
+        assertEquals(taskExecutor.getMetrics("test").getRejectedCount(), 1L);
+
+        release.countDown();
+        blocking.get(1L, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testPriority() throws Exception {
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        Future<?> blocking = taskExecutor.submit(new BlockingRunnable(), "test", null, TaskExecutor.DEFAULT_PRIORITY);
+        Future<?> low = taskExecutor.submit(new RecordingRunnable(order, "low"), "test", null, -1);
+        Future<?> high = taskExecutor.submit(new RecordingRunnable(order, "high"), "test", null, 1);
+
+        release.countDown();
+        blocking.get(1L, TimeUnit.SECONDS);
+        low.get(1L, TimeUnit.SECONDS);
+        high.get(1L, TimeUnit.SECONDS);
+
+        assertEquals(order, Arrays.asList("high", "low"));
+    }
+
+    @Test
+    public void testLimitPerType() throws Exception {
+
+        taskExecutor.setMaxThreads(2);
+        taskExecutor.setMaxTasksPerType("report", 1);
+
+        taskExecutor.submit(new BlockingRunnable(), "report", null, TaskExecutor.DEFAULT_PRIORITY);
+        Future<?> report = taskExecutor.submit(new BlockingRunnable(), "report", null, TaskExecutor.DEFAULT_PRIORITY);
+        Future<?> other = taskExecutor.submit(new BlockingRunnable(), "other", null, TaskExecutor.DEFAULT_PRIORITY);
+
+        // The second report waits while the other task was started on the free thread
+        assertEquals(taskExecutor.getRunningCount(), 2);
+        assertEquals(taskExecutor.getMetrics("report").getQueueLength(), 1);
+
+        release.countDown();
+        report.get(1L, TimeUnit.SECONDS);
+        other.get(1L, TimeUnit.SECONDS);
+
+        assertEquals(taskExecutor.getMetrics("report").getSubmittedCount(), 2L);
+        assertEquals(taskExecutor.getMetrics("other").getSubmittedCount(), 1L);
+    }
+
+    @Test
+    public void testLimitPerOwner() throws Exception {
+
+        taskExecutor.setMaxThreads(2);
+        taskExecutor.setMaxTasksPerOwner(1);
+
+        taskExecutor.submit(new BlockingRunnable(), "test", "user1", TaskExecutor.DEFAULT_PRIORITY);
+        taskExecutor.submit(new BlockingRunnable(), "test", "user1", TaskExecutor.DEFAULT_PRIORITY);
+        taskExecutor.submit(new BlockingRunnable(), "test", "user2", TaskExecutor.DEFAULT_PRIORITY);
+
+        assertEquals(taskExecutor.getRunningCount(), 2);
+        assertEquals(taskExecutor.getQueueLength(), 1);
+    }
+
+    @Test
+    public void testCancelQueued() throws Exception {
+
+        taskExecutor.submit(new BlockingRunnable(), "test", null, TaskExecutor.DEFAULT_PRIORITY);
+        Future<?> queued = taskExecutor.submit(new BlockingRunnable(), "test", null, TaskExecutor.DEFAULT_PRIORITY);
+
+        assertTrue(queued.cancel(false));
+        assertEquals(taskExecutor.getQueueLength(), 0);
+        assertEquals(taskExecutor.getMetrics("test").getQueueLength(), 0);
+    }
+
+    @Test
+    public void testShutdownCancelsQueued() throws Exception {
+
+        Future<?> blocking = taskExecutor.submit(new BlockingRunnable(), "test", null, TaskExecutor.DEFAULT_PRIORITY);
+        Future<?> queued = taskExecutor.submit(new BlockingRunnable(), "test", null, TaskExecutor.DEFAULT_PRIORITY);
+
+        taskExecutor.shutdown();
+
+        assertTrue(queued.isCancelled());
+        assertEquals(taskExecutor.getQueueLength(), 0);
+        assertEquals(taskExecutor.getMetrics("test").getQueueLength(), 0);
+
+        // The running task completes without starting the cancelled one on the stopped pool
+        release.countDown();
+        blocking.get(1L, TimeUnit.SECONDS);
+    }
+
+    private class BlockingRunnable implements Runnable {
+        @Override
+        public void run() {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class RecordingRunnable implements Runnable {
+
+        private final List<String> order;
+        private final String name;
+
+        private RecordingRunnable(List<String> order, String name) {
+            this.order = order;
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            order.add(name);
+        }
+    }
+}
@@ -0,0 +1,566 @@
+/*
+ * 
+ * ==============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.wicketstuff.datatable_autocomplete.trie;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A radix trie that can be changed while it is being searched.
+ * 
+ * The nodes reachable from the root are never changed. A change copies the nodes on the
+ * path to the changed word and then publishes the new root, so a search sees either the
+ * trie before or after a change but never a partial one and needs no locking. Changes are
+ * serialized with each other.
+ * 
+ * {@link #update(Collection, Collection)} applies a batch of removals and additions (e.g.
+ * from a change feed) as a single change. Within a batch the copied nodes are changed in
+ * place so each node is copied at most once per batch.
+ * 
+ * Unlike the PatriciaTrie there is no need for postIndexing() as the trie is always kept
+ * compressed.
+ */
+public class ConcurrentTrie<C> implements IVersionedTrie<C>
+{
+
+	private static final long serialVersionUID = -1875232211283609826L;
+
+	private static final char[] EMPTY_EDGE = new char[0];
+
+	private static final Object[] EMPTY_VALUES = new Object[0];
+
+	private static final Node[] EMPTY_CHILDREN = new Node[0];
+
+	private final ITrieConfiguration<C> configuration;
+
+	private volatile Node root = new Node(EMPTY_EDGE, EMPTY_CHILDREN, EMPTY_VALUES, 0, null);
+
+	private volatile long version = 0;
+
+	/**
+	 * @param configuration
+	 */
+	public ConcurrentTrie(ITrieConfiguration<C> configuration)
+	{
+
+		this.configuration = configuration;
+		this.configuration.setTrie(this);
+	}
+
+	/**
+	 * Adds the value, visible to searches once this method returns.
+	 */
+	public synchronized void index(C value)
+	{
+		Object batch = new Object();
+
+		publish(insert(root, wordOf(value), 0, value, batch));
+	}
+
+	/**
+	 * @param value
+	 * @return true if the value was indexed and has been removed.
+	 */
+	public synchronized boolean remove(C value)
+	{
+		Object batch = new Object();
+
+		Node newRoot = remove(root, wordOf(value), value, batch);
+
+		if (newRoot == null)
+			return false;
+
+		publish(newRoot);
+
+		return true;
+	}
+
+	/**
+	 * Applies the removals and then the additions as a single change, i.e. a search sees all of
+	 * them or none of them.
+	 * 
+	 * An updated element is passed as both removed (with its old word) and added.
+	 * 
+	 * @param removed
+	 *            elements to remove, elements that are not indexed are ignored.
+	 * @param added
+	 *            elements to add.
+	 */
+	public synchronized void update(Collection<? extends C> removed, Collection<? extends C> added)
+	{
+		Object batch = new Object();
+
+		Node newRoot = root;
+
+		for (C value : removed)
+		{
+			Node changed = remove(newRoot, wordOf(value), value, batch);
+
+			if (changed != null)
+				newRoot = changed;
+		}
+
+		for (C value : added)
+		{
+			newRoot = insert(newRoot, wordOf(value), 0, value, batch);
+		}
+
+		publish(newRoot);
+	}
+
+	/**
+	 * Removes all elements.
+	 */
+	public synchronized void clear()
+	{
+		publish(new Node(EMPTY_EDGE, EMPTY_CHILDREN, EMPTY_VALUES, 0, null));
+	}
+
+	private void publish(Node newRoot)
+	{
+		root = newRoot;
+		version++;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.wicketstuff.datatable_autocomplete.trie.IVersionedTrie#getVersion()
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+
+	private String wordOf(C value)
+	{
+		return normalize(configuration.getWord(value));
+	}
+
+	private String normalize(String word)
+	{
+		if (!configuration.isIndexCaseSensitive())
+			return word.toLowerCase();
+
+		return word;
+	}
+
+	/**
+	 * @return a node that may be changed within the batch.
+	 */
+	private static Node editable(Node node, Object batch)
+	{
+		if (node.batch == batch)
+			return node;
+
+		return new Node(node.edge, node.children.clone(), node.values.clone(), node.size, batch);
+	}
+
+	private static Node insert(Node node, String word, int position, Object value, Object batch)
+	{
+
+		Node n = editable(node, batch);
+
+		n.size++;
+
+		char[] edge = n.edge;
+
+		int common = 0;
+
+		while (common < edge.length && position + common < word.length() &&
+			edge[common] == word.charAt(position + common))
+		{
+			common++;
+		}
+
+		if (common < edge.length)
+		{
+			// split the edge, the current node keeps the common part.
+			char[] childEdge = new char[edge.length - common];
+			System.arraycopy(edge, common, childEdge, 0, childEdge.length);
+
+			Node child = new Node(childEdge, n.children, n.values, n.size - 1, batch);
+
+			char[] parentEdge = new char[common];
+			System.arraycopy(edge, 0, parentEdge, 0, common);
+
+			n.edge = parentEdge;
+			n.children = new Node[] { child };
+			n.values = EMPTY_VALUES;
+		}
+
+		position += common;
+
+		if (position == word.length())
+		{
+			Object[] values = new Object[n.values.length + 1];
+			System.arraycopy(n.values, 0, values, 0, n.values.length);
+			values[n.values.length] = value;
+
+			n.values = values;
+
+			return n;
+		}
+
+		int index = indexOfChild(n.children, word.charAt(position));
+
+		if (index >= 0)
+		{
+			n.children[index] = insert(n.children[index], word, position, value, batch);
+		}
+		else
+		{
+			int insertionPoint = -index - 1;
+
+			Node leaf = new Node(word.substring(position).toCharArray(), EMPTY_CHILDREN,
+				new Object[] { value }, 1, batch);
+
+			Node[] children = new Node[n.children.length + 1];
+			System.arraycopy(n.children, 0, children, 0, insertionPoint);
+			children[insertionPoint] = leaf;
+			System.arraycopy(n.children, insertionPoint, children, insertionPoint + 1,
+				n.children.length - insertionPoint);
+
+			n.children = children;
+		}
+
+		return n;
+	}
+
+	/**
+	 * @return the new root or null if the value is not indexed.
+	 */
+	private static Node remove(Node root, String word, Object value, Object batch)
+	{
+
+		if (!contains(root, word, value))
+			return null;
+
+		return remove(root, true, word, 0, value, batch);
+	}
+
+	/**
+	 * The value must be indexed below this node.
+	 * 
+	 * @return the changed node or null if the node is empty, the root is never removed or merged.
+	 */
+	private static Node remove(Node node, boolean root, String word, int position, Object value,
+		Object batch)
+	{
+
+		Node n = editable(node, batch);
+
+		n.size--;
+
+		position += n.edge.length;
+
+		if (position == word.length())
+		{
+			int index = indexOfValue(n.values, value);
+
+			Object[] values = new Object[n.values.length - 1];
+			System.arraycopy(n.values, 0, values, 0, index);
+			System.arraycopy(n.values, index + 1, values, index, values.length - index);
+
+			n.values = values;
+		}
+		else
+		{
+			int index = indexOfChild(n.children, word.charAt(position));
+
+			Node child = remove(n.children[index], false, word, position, value, batch);
+
+			if (child != null)
+			{
+				n.children[index] = child;
+			}
+			else
+			{
+				Node[] children = new Node[n.children.length - 1];
+				System.arraycopy(n.children, 0, children, 0, index);
+				System.arraycopy(n.children, index + 1, children, index, children.length - index);
+
+				n.children = children;
+			}
+		}
+
+		if (root)
+			return n;
+
+		if (n.size == 0)
+			return null;
+
+		if (n.values.length == 0 && n.children.length == 1)
+		{
+			// merge with the only child
+			Node child = n.children[0];
+
+			char[] edge = new char[n.edge.length + child.edge.length];
+			System.arraycopy(n.edge, 0, edge, 0, n.edge.length);
+			System.arraycopy(child.edge, 0, edge, n.edge.length, child.edge.length);
+
+			return new Node(edge, child.children, child.values, child.size, child.batch);
+		}
+
+		return n;
+	}
+
+	private static boolean contains(Node root, String word, Object value)
+	{
+
+		Node node = root;
+		int position = 0;
+
+		while (true)
+		{
+			char[] edge = node.edge;
+
+			if (word.length() - position < edge.length)
+				return false;
+
+			for (int i = 0; i < edge.length; i++)
+			{
+				if (edge[i] != word.charAt(position + i))
+					return false;
+			}
+
+			position += edge.length;
+
+			if (position == word.length())
+				return indexOfValue(node.values, value) >= 0;
+
+			int index = indexOfChild(node.children, word.charAt(position));
+
+			if (index < 0)
+				return false;
+
+			node = node.children[index];
+		}
+	}
+
+	private static int indexOfValue(Object[] values, Object value)
+	{
+		for (int i = 0; i < values.length; i++)
+		{
+			if (values[i] == null ? value == null : values[i].equals(value))
+				return i;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @return the index of the child whose edge starts with the character or (-(insertion point)
+	 *         - 1)
+	 */
+	private static int indexOfChild(Node[] children, char c)
+	{
+
+		int low = 0;
+		int high = children.length - 1;
+
+		while (low <= high)
+		{
+			int middle = (low + high) >>> 1;
+
+			char middleCharacter = children[middle].edge[0];
+
+			if (middleCharacter < c)
+				low = middle + 1;
+			else if (middleCharacter > c)
+				high = middle - 1;
+			else
+				return middle;
+		}
+
+		return -(low + 1);
+	}
+
+	/**
+	 * @return the node whose subtree holds all the words starting with the prefix or null.
+	 */
+	private static Node find(Node root, String prefix)
+	{
+
+		Node node = root;
+		int position = 0;
+
+		while (true)
+		{
+			char[] edge = node.edge;
+
+			int length = Math.min(edge.length, prefix.length() - position);
+
+			for (int i = 0; i < length; i++)
+			{
+				if (edge[i] != prefix.charAt(position + i))
+					return null;
+			}
+
+			position += length;
+
+			if (position == prefix.length())
+				return node;
+
+			int index = indexOfChild(node.children, prefix.charAt(position));
+
+			if (index < 0)
+				return null;
+
+			node = node.children[index];
+		}
+	}
+
+	public List<C> getWordList(String prefix)
+	{
+		return getWordList(prefix, null, -1);
+	}
+
+	public List<C> getWordList(String prefix, ITrieFilter<C> filter)
+	{
+		return getWordList(prefix, filter, -1);
+	}
+
+	public List<C> getWordList(String prefix, int limit)
+	{
+		return getWordList(prefix, null, limit);
+	}
+
+	public List<C> getWordList(String prefix, ITrieFilter<C> filter, int limit)
+	{
+
+		Node node = find(root, normalize(prefix));
+
+		if (node == null)
+			return new ArrayList<C>(0);
+
+		if (filter == null)
+			filter = configuration.getDefaultFilter();
+
+		List<C> wordList = new ArrayList<C>(limit > 0 ? Math.min(limit, node.size) : node.size);
+
+		buildWordList(node, wordList, filter, limit);
+
+		return wordList;
+	}
+
+	/**
+	 * @return false once the limit has been reached.
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean buildWordList(Node node, List<C> wordList, ITrieFilter<C> filter, int limit)
+	{
+
+		for (Object value : node.values)
+		{
+			if (filter.isVisible((C)value))
+			{
+				wordList.add((C)value);
+
+				if (wordList.size() == limit)
+					return false;
+			}
+		}
+
+		for (Node child : node.children)
+		{
+			if (!buildWordList(child, wordList, filter, limit))
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Return the size of the subtree for the prefix given.
+	 * 
+	 * @param prefix
+	 * @param filter
+	 *            if null the count is known without visiting the subtree.
+	 * @return the number of visible elements in the subtree corresponding to the prefix given.
+	 */
+	public int getPrefixMatchedElementCount(String prefix, ITrieFilter<C> filter)
+	{
+
+		Node node = find(root, normalize(prefix));
+
+		if (node == null)
+			return 0;
+
+		if (filter == null)
+			return node.size;
+
+		List<C> wordList = new ArrayList<C>(node.size);
+
+		buildWordList(node, wordList, filter, -1);
+
+		return wordList.size();
+	}
+
+	/**
+	 * @return the total number of elements indexed by this trie.
+	 */
+	public int size()
+	{
+		return root.size;
+	}
+
+	/**
+	 * Does nothing, the trie can be searched while it is indexed.
+	 */
+	public void preIndexing()
+	{
+
+	}
+
+	/**
+	 * Does nothing, the trie is kept compressed while indexing.
+	 */
+	public void postIndexing()
+	{
+
+	}
+
+	private static final class Node implements Serializable
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		private char[] edge;
+
+		// ordered by the first character of their edge
+		private Node[] children;
+
+		private Object[] values;
+
+		// the number of values in this subtree
+		private int size;
+
+		// the batch which created this node, only that batch may change the node.
+		private transient Object batch;
+
+		private Node(char[] edge, Node[] children, Object[] values, int size, Object batch)
+		{
+			this.edge = edge;
+			this.children = children;
+			this.values = values;
+			this.size = size;
+			this.batch = batch;
+		}
+	}
+}
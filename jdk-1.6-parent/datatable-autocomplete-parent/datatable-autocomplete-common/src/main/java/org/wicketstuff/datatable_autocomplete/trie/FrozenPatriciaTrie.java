@@ -0,0 +1,354 @@
+/*
+ * 
+ * ==============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.wicketstuff.datatable_autocomplete.trie;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only, array backed copy of a {@link PatriciaTrie}.
+ * 
+ * The node objects of the PatriciaTrie each carry a couple of maps and lists which for
+ * large indexes costs far more memory than the indexed words themselves. Once the trie has
+ * been built and simplified it can be frozen into this form where the whole structure is
+ * held in a handful of arrays:
+ * 
+ * <ul>
+ * <li>the node edges as offsets into a single char[]</li>
+ * <li>the children of each node as a slice of an int[] that is ordered by the first edge
+ * character so it can be binary searched</li>
+ * <li>the indexed values in a single array in word list order so that the values beneath
+ * any node are a contiguous range.</li>
+ * </ul>
+ * 
+ * The word list for a prefix is then just a scan of the range of the matched node and the
+ * unfiltered element count is a subtraction.
+ * 
+ * @see PatriciaTrie#freeze()
+ */
+public class FrozenPatriciaTrie<C> implements IReadOnlyTrie<C>
+{
+
+	private static final long serialVersionUID = 4658542375298413290L;
+
+	private static final Comparator<TrieNode<?>> firstCharacterComparator = new Comparator<TrieNode<?>>()
+	{
+
+		public int compare(TrieNode<?> o1, TrieNode<?> o2)
+		{
+			return o1.getCharacter().charAt(0) - o2.getCharacter().charAt(0);
+		}
+	};
+
+	private final ITrieConfiguration<C> configuration;
+
+	// node n has the edge edges[edgeOffset[n]] to edges[edgeOffset[n+1]]
+	private final char[] edges;
+	private final int[] edgeOffset;
+
+	// node n has the children children[childOffset[n]] to children[childOffset[n+1]]
+	// childCharacters holds the first edge character of each child for the binary search.
+	private final char[] childCharacters;
+	private final int[] children;
+	private final int[] childOffset;
+
+	// the subtree of node n matches values[valueStart[n]] to values[valueEnd[n]]
+	private final Object[] values;
+	private final int[] valueStart;
+	private final int[] valueEnd;
+
+	/**
+	 * Freeze the trie below the root given. The trie should have been simplified first (see
+	 * {@link PatriciaTrie#postIndexing()}) otherwise each character will become a node.
+	 * 
+	 * @param configuration
+	 * @param root
+	 */
+	FrozenPatriciaTrie(ITrieConfiguration<C> configuration, TrieNode<C> root)
+	{
+
+		this.configuration = configuration;
+
+		/*
+		 * number the nodes in the order that the word list is built.
+		 */
+		final List<TrieNode<C>> nodeList = new ArrayList<TrieNode<C>>();
+		final Map<TrieNode<C>, Integer> nodeIds = new IdentityHashMap<TrieNode<C>, Integer>();
+
+		int edgeLength = 0;
+		int valueCount = 0;
+
+		root.visit(new ITrieNodeVisitor<C>()
+		{
+
+			public void visit(TrieNode<C> node)
+			{
+				nodeIds.put(node, nodeList.size());
+				nodeList.add(node);
+			}
+		});
+
+		for (TrieNode<C> node : nodeList)
+		{
+			edgeLength += node.getCharacter().length();
+			valueCount += node.getOrderedMatchList().size();
+		}
+
+		int nodes = nodeList.size();
+
+		this.edges = new char[edgeLength];
+		this.edgeOffset = new int[nodes + 1];
+		this.childCharacters = new char[nodes - 1];
+		this.children = new int[nodes - 1];
+		this.childOffset = new int[nodes + 1];
+		this.values = new Object[valueCount];
+		this.valueStart = new int[nodes];
+		this.valueEnd = new int[nodes];
+
+		int edgeCursor = 0;
+		int childCursor = 0;
+		int valueCursor = 0;
+
+		for (int n = 0; n < nodes; n++)
+		{
+			TrieNode<C> node = nodeList.get(n);
+
+			String character = node.getCharacter();
+			character.getChars(0, character.length(), this.edges, edgeCursor);
+			this.edgeOffset[n] = edgeCursor;
+			edgeCursor += character.length();
+
+			this.childOffset[n] = childCursor;
+
+			List<TrieNode<C>> childList = new ArrayList<TrieNode<C>>(node.getOrderedNodeList());
+
+			// simplify() already sorts but an unsimplified trie is in insertion order.
+			Collections.sort(childList, firstCharacterComparator);
+
+			for (TrieNode<C> child : childList)
+			{
+				this.childCharacters[childCursor] = child.getCharacter().charAt(0);
+				this.children[childCursor] = nodeIds.get(child);
+				childCursor++;
+			}
+
+			this.valueStart[n] = valueCursor;
+
+			for (C value : node.getOrderedMatchList())
+			{
+				this.values[valueCursor++] = value;
+			}
+		}
+
+		this.edgeOffset[nodes] = edgeCursor;
+		this.childOffset[nodes] = childCursor;
+
+		/*
+		 * the nodes are numbered depth first so the subtree of a node ends where the subtree of
+		 * its last child ends. Work backwards so the children are done before their parent.
+		 */
+		for (int n = nodes - 1; n >= 0; n--)
+		{
+			int lastChild = -1;
+
+			for (int i = this.childOffset[n]; i < this.childOffset[n + 1]; i++)
+			{
+				lastChild = Math.max(lastChild, this.children[i]);
+			}
+
+			if (lastChild == -1)
+				this.valueEnd[n] = (n + 1 < nodes) ? this.valueStart[n + 1] : valueCount;
+			else
+				this.valueEnd[n] = this.valueEnd[lastChild];
+		}
+
+	}
+
+	/**
+	 * @param prefix
+	 * @return the id of the node whose subtree contains all the words starting with the prefix or
+	 *         -1 if there is no such word.
+	 */
+	private int find(String prefix)
+	{
+
+		if (!configuration.isIndexCaseSensitive())
+			prefix = prefix.toLowerCase();
+
+		int prefixLength = prefix.length();
+
+		int node = 0;
+		int matched = 0;
+
+		while (true)
+		{
+			int start = this.edgeOffset[node];
+			int length = Math.min(this.edgeOffset[node + 1] - start, prefixLength - matched);
+
+			for (int i = 0; i < length; i++)
+			{
+				if (this.edges[start + i] != prefix.charAt(matched + i))
+					return -1;
+			}
+
+			matched += length;
+
+			if (matched == prefixLength)
+				return node;
+
+			node = findChild(node, prefix.charAt(matched));
+
+			if (node == -1)
+				return -1;
+		}
+	}
+
+	private int findChild(int node, char c)
+	{
+
+		int low = this.childOffset[node];
+		int high = this.childOffset[node + 1] - 1;
+
+		while (low <= high)
+		{
+			int middle = (low + high) >>> 1;
+
+			char middleCharacter = this.childCharacters[middle];
+
+			if (middleCharacter < c)
+				low = middle + 1;
+			else if (middleCharacter > c)
+				high = middle - 1;
+			else
+				return this.children[middle];
+		}
+
+		return -1;
+	}
+
+	private ITrieFilter<C> filterOrDefault(ITrieFilter<C> filter)
+	{
+		if (filter == null)
+			return configuration.getDefaultFilter();
+
+		return filter;
+	}
+
+	public List<C> getWordList(String prefix)
+	{
+		return getWordList(prefix, configuration.getDefaultFilter(), -1);
+	}
+
+	public List<C> getWordList(String prefix, ITrieFilter<C> filter)
+	{
+		return getWordList(prefix, filter, -1);
+	}
+
+	public List<C> getWordList(String prefix, int limit)
+	{
+		return getWordList(prefix, null, limit);
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<C> getWordList(String prefix, ITrieFilter<C> filter, int limit)
+	{
+
+		int node = find(prefix);
+
+		if (node == -1)
+			return new ArrayList<C>(0);
+
+		filter = filterOrDefault(filter);
+
+		int start = this.valueStart[node];
+		int end = this.valueEnd[node];
+
+		int size = end - start;
+
+		if (limit > 0 && limit < size)
+			size = limit;
+
+		List<C> wordList = new ArrayList<C>(size);
+
+		for (int i = start; i < end; i++)
+		{
+			C value = (C)this.values[i];
+
+			if (filter.isVisible(value))
+			{
+				wordList.add(value);
+
+				if (wordList.size() == limit)
+					break;
+			}
+		}
+
+		return wordList;
+	}
+
+	/**
+	 * Return the size of the subtree for the prefix given.
+	 * 
+	 * @param prefix
+	 * @param filter
+	 *            if null every element is counted without having to look at them.
+	 * @return the number of visible elements in the subtree corresponding to the prefix given.
+	 */
+	@SuppressWarnings("unchecked")
+	public int getPrefixMatchedElementCount(String prefix, ITrieFilter<C> filter)
+	{
+
+		int node = find(prefix);
+
+		if (node == -1)
+			return 0;
+
+		if (filter == null)
+			return this.valueEnd[node] - this.valueStart[node];
+
+		int counter = 0;
+
+		for (int i = this.valueStart[node]; i < this.valueEnd[node]; i++)
+		{
+			if (filter.isVisible((C)this.values[i]))
+				counter++;
+		}
+
+		return counter;
+	}
+
+	/**
+	 * 
+	 * @return the total number of elements indexed by this trie.
+	 */
+	public int size()
+	{
+		return this.values.length;
+	}
+
+	/**
+	 * @return the number of nodes in this trie.
+	 */
+	public int getNodeCount()
+	{
+		return this.valueStart.length;
+	}
+
+}
@@ -0,0 +1,47 @@
+/*
+ * 
+ * ==============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.wicketstuff.datatable_autocomplete.trie;
+
+import java.util.List;
+
+import org.apache.wicket.IClusterable;
+
+/**
+ * The search side of a Trie<C>.
+ * 
+ * Tries that are complete once built, like the {@link FrozenPatriciaTrie}, only implement this
+ * interface. Tries that can be indexed implement {@link Trie}.
+ */
+public interface IReadOnlyTrie<C> extends IClusterable
+{
+
+	/**
+	 * Get the list of strings that are reachable from the prefix given.
+	 * 
+	 * i.e. the ordered traversal of the subtree for the prefix given.
+	 * 
+	 * @param prefix
+	 * @return reachable list of strings.
+	 */
+	public abstract List<C> getWordList(String prefix);
+
+	public abstract List<C> getWordList(String prefix, ITrieFilter<C> filter);
+
+	public abstract List<C> getWordList(String prefix, ITrieFilter<C> filter, int limit);
+
+	public abstract List<C> getWordList(String prefix, int limit);
+
+}
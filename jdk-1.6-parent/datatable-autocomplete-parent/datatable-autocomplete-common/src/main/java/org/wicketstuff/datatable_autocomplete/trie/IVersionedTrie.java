@@ -0,0 +1,33 @@
+/*
+ * 
+ * ==============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.wicketstuff.datatable_autocomplete.trie;
+
+/**
+ * A Trie<C> whose content can change after it has been built.
+ * 
+ * Tries that don't implement this interface are expected to be left unchanged once
+ * postIndexing() has been called.
+ */
+public interface IVersionedTrie<C> extends Trie<C>
+{
+
+	/**
+	 * 
+	 * @return a number that changes each time the content of the trie changes.
+	 */
+	public long getVersion();
+
+}
@@ -47,7 +47,7 @@ import org.apache.wicket.IClusterable;
  *      using the ITrieNodeConfiguration.getWord (C c) method.
  * 
  */
-public class PatriciaTrie<C> implements IClusterable, Trie<C>
+public class PatriciaTrie<C> implements IClusterable, IVersionedTrie<C>
 {
 
 	/**
@@ -59,6 +59,8 @@ public class PatriciaTrie<C> implements IClusterable, Trie<C>
 
 	private ITrieConfiguration<C> configuration = null;
 
+	private volatile long version = 0;
+
 	/**
 	 * 
 	 */
@@ -123,6 +125,9 @@ public class PatriciaTrie<C> implements IClusterable, Trie<C>
 
 		}
 
+		// after the change so that a result cached while indexing is invalidated.
+		this.version++;
+
 
 	}
 
@@ -374,10 +379,33 @@ public class PatriciaTrie<C> implements IClusterable, Trie<C>
 	}
 
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.wicketstuff.datatable_autocomplete.trie.IVersionedTrie#getVersion()
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+
+
 	public TrieNode<C> getRoot()
 	{
 		return root;
 	}
 
+	/**
+	 * Compiles this trie into a compact read-only form. This should be called after
+	 * {@link #postIndexing()} and the returned trie used in place of this one so that the nodes can
+	 * be garbage collected.
+	 *
+	 * @return a frozen copy of this trie.
+	 */
+	public FrozenPatriciaTrie<C> freeze()
+	{
+		return new FrozenPatriciaTrie<C>(configuration, root);
+	}
+
 
 }
@@ -0,0 +1,585 @@
+/*
+ * 
+ * ==============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.wicketstuff.datatable_autocomplete.trie;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A match anywhere in the string index built on a suffix array.
+ * 
+ * Indexing every suffix of every word into a PatriciaTrie (see
+ * {@link ITrieConfiguration#isSuffixTree()}) creates a node for each distinct substring
+ * which is a lot of memory, and finding all the nodes containing a string needs to walk most
+ * of the trie.
+ * 
+ * Here the words are concatenated into a single char[] (each terminated by a '\0') and the
+ * start positions of the suffixes are sorted in an int[]. All the occurrences of a string
+ * are then a contiguous range of the suffix array that is found with two binary searches.
+ * 
+ * The words for a non empty string are returned in the order of the matched suffix, i.e.
+ * alphabetically by the text following the start of the match. Each element is returned
+ * only once even if the string occurs more than once in its word. The empty string returns
+ * all the elements in the order they were indexed.
+ * 
+ * The index is built by {@link #postIndexing()}; words indexed after that are only visible
+ * once postIndexing() is called again, which merges them into the existing index.
+ */
+public class SuffixArrayTrie<C> implements IVersionedTrie<C>
+{
+
+	private static final long serialVersionUID = 2795132574616457307L;
+
+	private static final char TERMINATOR = '\0';
+
+	// below this size a range is sorted using an insertion sort
+	private static final int INSERTION_SORT_THRESHOLD = 10;
+
+	private final ITrieConfiguration<C> configuration;
+
+	// elements indexed since the last postIndexing()
+	private List<C> indexedList = new ArrayList<C>();
+
+	// replaced as a whole by postIndexing() so a search always sees a consistent index.
+	private volatile Index index = new Index(new Object[0], new int[0], new char[0], new int[0]);
+
+	private volatile long version = 0;
+
+	/**
+	 * @param configuration
+	 */
+	public SuffixArrayTrie(ITrieConfiguration<C> configuration)
+	{
+
+		this.configuration = configuration;
+		this.configuration.setTrie(this);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.wicketstuff.datatable_autocomplete.trie.Trie#index(java.lang.Object)
+	 */
+	public synchronized void index(C value)
+	{
+		this.indexedList.add(value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.wicketstuff.datatable_autocomplete.trie.Trie#preIndexing()
+	 */
+	public void preIndexing()
+	{
+
+	}
+
+	/**
+	 * Adds the elements indexed since the last call to the suffix array.
+	 * 
+	 * Only the suffixes of the new words are sorted, they are then merged with the already sorted
+	 * suffixes. Nothing is done if no element has been indexed.
+	 */
+	public synchronized void postIndexing()
+	{
+
+		if (this.indexedList.isEmpty())
+			return;
+
+		Index index = this.index;
+
+		Object[] values = index.values;
+		int[] wordStart = index.wordStart;
+		char[] text = index.text;
+		int[] suffixes = index.suffixes;
+
+		int elements = values.length + this.indexedList.size();
+
+		Object[] newValues = Arrays.copyOf(values, elements);
+		int[] newWordStart = Arrays.copyOf(wordStart, elements);
+
+		StringBuilder buffer = new StringBuilder();
+
+		for (int i = values.length; i < elements; i++)
+		{
+			C value = this.indexedList.get(i - values.length);
+
+			newValues[i] = value;
+			newWordStart[i] = text.length + buffer.length();
+
+			buffer.append(normalize(configuration.getWord(value)));
+			buffer.append(TERMINATOR);
+		}
+
+		// the new words are appended so the existing suffixes keep their positions.
+		char[] newText = Arrays.copyOf(text, text.length + buffer.length());
+		buffer.getChars(0, buffer.length(), newText, text.length);
+
+		int[] addedSuffixes = new int[buffer.length()];
+		int suffixCount = 0;
+
+		for (int i = text.length; i < newText.length; i++)
+		{
+			if (newText[i] != TERMINATOR)
+				addedSuffixes[suffixCount++] = i;
+		}
+
+		sort(newText, addedSuffixes, 0, suffixCount, 0);
+
+		int[] newSuffixes = merge(newText, suffixes, addedSuffixes, suffixCount);
+
+		this.index = new Index(newValues, newWordStart, newText, newSuffixes);
+		this.indexedList = new ArrayList<C>();
+
+		this.version++;
+	}
+
+	/**
+	 * @return the suffixes and the first count added suffixes merged in sorted order.
+	 */
+	private static int[] merge(char[] text, int[] suffixes, int[] added, int count)
+	{
+
+		int[] merged = new int[suffixes.length + count];
+
+		int i = 0;
+		int j = 0;
+		int k = 0;
+
+		while (i < suffixes.length && j < count)
+		{
+			if (compareSuffixes(text, suffixes[i], added[j], 0) <= 0)
+				merged[k++] = suffixes[i++];
+			else
+				merged[k++] = added[j++];
+		}
+
+		while (i < suffixes.length)
+			merged[k++] = suffixes[i++];
+
+		while (j < count)
+			merged[k++] = added[j++];
+
+		return merged;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.wicketstuff.datatable_autocomplete.trie.IVersionedTrie#getVersion()
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+
+	private String normalize(String word)
+	{
+		if (!configuration.isIndexCaseSensitive())
+			return word.toLowerCase();
+
+		return word;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.wicketstuff.datatable_autocomplete.trie.Trie#getWordList(java.lang.String)
+	 */
+	public List<C> getWordList(String prefix)
+	{
+		return getWordList(prefix, null, -1);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.wicketstuff.datatable_autocomplete.trie.Trie#getWordList(java.lang.String,
+	 * org.wicketstuff.datatable_autocomplete.trie.ITrieFilter)
+	 */
+	public List<C> getWordList(String prefix, ITrieFilter<C> filter)
+	{
+		return getWordList(prefix, filter, -1);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.wicketstuff.datatable_autocomplete.trie.Trie#getWordList(java.lang.String, int)
+	 */
+	public List<C> getWordList(String prefix, int limit)
+	{
+		return getWordList(prefix, null, limit);
+	}
+
+	/**
+	 * @param substring
+	 *            the string to find anywhere in the indexed words.
+	 * @param filter
+	 *            the default filter is used if null.
+	 * @param limit
+	 *            -1 for no limit
+	 * @return the elements whose word contains the substring.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<C> getWordList(String substring, ITrieFilter<C> filter, int limit)
+	{
+
+		if (filter == null)
+			filter = configuration.getDefaultFilter();
+
+		Index index = this.index;
+
+		Object[] values = index.values;
+		int[] wordStart = index.wordStart;
+		char[] text = index.text;
+		int[] suffixes = index.suffixes;
+
+		List<C> wordList = new ArrayList<C>(limit > 0 ? Math.min(limit, values.length)
+			: Math.min(16, values.length));
+
+		if (substring.length() == 0)
+		{
+			for (Object value : values)
+			{
+				if (filter.isVisible((C)value))
+				{
+					wordList.add((C)value);
+
+					if (wordList.size() == limit)
+						break;
+				}
+			}
+
+			return wordList;
+		}
+
+		String key = normalize(substring);
+
+		int start = lowerBound(text, suffixes, key);
+		int end = upperBound(text, suffixes, key, start);
+
+		ElementMarker marker = index.takeMarker();
+
+		try
+		{
+			for (int i = start; i < end; i++)
+			{
+				int element = elementOf(wordStart, suffixes[i]);
+
+				if (marker.mark(element) && filter.isVisible((C)values[element]))
+				{
+					wordList.add((C)values[element]);
+
+					if (wordList.size() == limit)
+						break;
+				}
+			}
+		}
+		finally
+		{
+			index.releaseMarker(marker);
+		}
+
+		return wordList;
+	}
+
+	/**
+	 * @param substring
+	 * @return the number of occurrences of the substring across all the indexed words.
+	 */
+	public int getOccurrenceCount(String substring)
+	{
+
+		Index index = this.index;
+
+		char[] text = index.text;
+		int[] suffixes = index.suffixes;
+
+		if (substring.length() == 0)
+			return suffixes.length;
+
+		String key = normalize(substring);
+
+		int start = lowerBound(text, suffixes, key);
+
+		return upperBound(text, suffixes, key, start) - start;
+	}
+
+	/**
+	 * @return the number of elements in the index.
+	 */
+	public int size()
+	{
+		return this.index.values.length;
+	}
+
+	private static int elementOf(int[] wordStart, int position)
+	{
+		int index = Arrays.binarySearch(wordStart, position);
+
+		if (index >= 0)
+			return index;
+
+		// the insertion point is the following word
+		return -index - 2;
+	}
+
+	/**
+	 * @return the first suffix that is not less than the key.
+	 */
+	private static int lowerBound(char[] text, int[] suffixes, String key)
+	{
+
+		int low = 0;
+		int high = suffixes.length;
+
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (compare(text, suffixes[middle], key) < 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+
+		return low;
+	}
+
+	/**
+	 * @return the first suffix after low that does not start with the key.
+	 */
+	private static int upperBound(char[] text, int[] suffixes, String key, int low)
+	{
+
+		int high = suffixes.length;
+
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (compare(text, suffixes[middle], key) <= 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+
+		return low;
+	}
+
+	/**
+	 * @return 0 if the suffix starts with the key otherwise the order of the suffix relative to
+	 *         the key.
+	 */
+	private static int compare(char[] text, int suffix, String key)
+	{
+
+		int length = key.length();
+
+		for (int i = 0; i < length; i++)
+		{
+			char c = text[suffix + i];
+			char k = key.charAt(i);
+
+			// the end of the word sorts before any character
+			if (c == TERMINATOR)
+				return -1;
+
+			if (c != k)
+				return c - k;
+		}
+
+		return 0;
+	}
+
+	/**
+	 * A three way radix quicksort of the suffixes in the range [low, high) which all share the
+	 * first depth characters.
+	 */
+	private static void sort(char[] text, int[] suffixes, int low, int high, int depth)
+	{
+
+		while (high - low > INSERTION_SORT_THRESHOLD)
+		{
+
+			swap(suffixes, low, (low + high) >>> 1);
+
+			char pivot = text[suffixes[low] + depth];
+
+			int lessThan = low;
+			int greaterThan = high - 1;
+			int i = low + 1;
+
+			while (i <= greaterThan)
+			{
+				char c = text[suffixes[i] + depth];
+
+				if (c < pivot)
+					swap(suffixes, lessThan++, i++);
+				else if (c > pivot)
+					swap(suffixes, i, greaterThan--);
+				else
+					i++;
+			}
+
+			sort(text, suffixes, low, lessThan, depth);
+
+			// suffixes that reached the terminator together are equal.
+			if (pivot != TERMINATOR)
+				sort(text, suffixes, lessThan, greaterThan + 1, depth + 1);
+
+			low = greaterThan + 1;
+		}
+
+		for (int i = low + 1; i < high; i++)
+		{
+			for (int j = i; j > low; j--)
+			{
+				if (compareSuffixes(text, suffixes[j - 1], suffixes[j], depth) <= 0)
+					break;
+
+				swap(suffixes, j - 1, j);
+			}
+		}
+	}
+
+	private static int compareSuffixes(char[] text, int first, int second, int depth)
+	{
+
+		while (true)
+		{
+			char c1 = text[first + depth];
+			char c2 = text[second + depth];
+
+			if (c1 != c2)
+				return c1 - c2;
+
+			if (c1 == TERMINATOR)
+				return 0;
+
+			depth++;
+		}
+	}
+
+	private static void swap(int[] array, int i, int j)
+	{
+		int temp = array[i];
+		array[i] = array[j];
+		array[j] = temp;
+	}
+
+	/**
+	 * An element is marked if its entry equals the current mark, so starting a new search only
+	 * needs the mark to be incremented instead of a new set of the elements found.
+	 */
+	private static final class ElementMarker
+	{
+
+		private final int[] marks;
+
+		private int mark = 0;
+
+		private ElementMarker(int elements)
+		{
+			marks = new int[elements];
+		}
+
+		private void reset()
+		{
+			mark++;
+
+			if (mark == 0)
+			{
+				// wrapped around, clear the old marks
+				Arrays.fill(marks, 0);
+				mark = 1;
+			}
+		}
+
+		/**
+		 * @return true if the element was not marked yet.
+		 */
+		private boolean mark(int element)
+		{
+			if (marks[element] == mark)
+				return false;
+
+			marks[element] = mark;
+
+			return true;
+		}
+	}
+
+	private static final class Index implements Serializable
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		private final Object[] values;
+
+		// the word of values[i] starts at text[wordStart[i]]
+		private final int[] wordStart;
+
+		private final char[] text;
+
+		private final int[] suffixes;
+
+		// reused by the searches of this index, so it is released together with the index
+		private transient ElementMarker spareMarker;
+
+		private Index(Object[] values, int[] wordStart, char[] text, int[] suffixes)
+		{
+			this.values = values;
+			this.wordStart = wordStart;
+			this.text = text;
+			this.suffixes = suffixes;
+		}
+
+		/**
+		 * @return the spare marker or a new one if it is used by a concurrent search.
+		 */
+		private ElementMarker takeMarker()
+		{
+			ElementMarker marker;
+
+			synchronized (this)
+			{
+				marker = spareMarker;
+				spareMarker = null;
+			}
+
+			if (marker == null)
+				marker = new ElementMarker(values.length);
+
+			marker.reset();
+
+			return marker;
+		}
+
+		private void releaseMarker(ElementMarker marker)
+		{
+			synchronized (this)
+			{
+				spareMarker = marker;
+			}
+		}
+	}
+
+}
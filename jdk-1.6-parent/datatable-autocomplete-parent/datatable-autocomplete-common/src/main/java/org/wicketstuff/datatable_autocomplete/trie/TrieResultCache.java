@@ -0,0 +1,329 @@
+/*
+ * 
+ * ==============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.wicketstuff.datatable_autocomplete.trie;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of Trie<C> search results that is meant to be shared by all users of a
+ * trie, i.e. held in an application scoped or static context like the trie itself.
+ * 
+ * Results are keyed by (trie, trie version, prefix, filter, limit) and evicted least
+ * recently used first once either the number of cached results or the number of cached
+ * elements exceeds its maximum. Tries are compared by identity so several tries can share
+ * one cache. When an {@link IVersionedTrie} reports a new version the results of that trie
+ * are removed, the results of the other tries are kept.
+ * 
+ * Filters are compared with equals() so a filter that is created per user (e.g. an
+ * anonymous class) never shares results. For the users to share results the filter needs
+ * to be an immutable value that implements equals() and hashCode(), or null for the default
+ * filter of the trie.
+ * 
+ * The returned lists are shared and unmodifiable.
+ */
+public class TrieResultCache<C>
+{
+
+	private final int maxResults;
+
+	private final int maxElements;
+
+	private final LinkedHashMap<Key, List<C>> results;
+
+	// guarded by results
+	private int elements = 0;
+
+	// the last seen version of each trie, guarded by results. Weak so that a trie that is no
+	// longer used is released once its results have been evicted.
+	private final Map<IReadOnlyTrie<C>, Long> versions = new WeakHashMap<IReadOnlyTrie<C>, Long>(
+		4);
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * @param maxResults
+	 *            the maximum number of cached results.
+	 * @param maxElements
+	 *            the maximum number of elements over all cached results, bigger results are not
+	 *            cached.
+	 */
+	public TrieResultCache(int maxResults, int maxElements)
+	{
+
+		if (maxResults < 1)
+			throw new IllegalArgumentException("maxResults must be at least 1");
+
+		if (maxElements < 1)
+			throw new IllegalArgumentException("maxElements must be at least 1");
+
+		this.maxResults = maxResults;
+		this.maxElements = maxElements;
+
+		this.results = new LinkedHashMap<Key, List<C>>(16, 0.75f, true);
+	}
+
+	/**
+	 * Returns the cached result or searches the trie and caches the result.
+	 * 
+	 * @param trie
+	 * @param prefix
+	 * @param filter
+	 * @param limit
+	 *            -1 if no limit.
+	 * @return the unmodifiable list of matching elements.
+	 */
+	public List<C> getWordList(IReadOnlyTrie<C> trie, String prefix, ITrieFilter<C> filter,
+		int limit)
+	{
+
+		long trieVersion = versionOf(trie);
+
+		Key key = new Key(trie, trieVersion, prefix, filter, limit);
+
+		synchronized (results)
+		{
+			Long version = versions.get(trie);
+
+			if (version == null || version.longValue() != trieVersion)
+			{
+				if (version != null)
+				{
+					removeResults(trie);
+					invalidations.incrementAndGet();
+				}
+
+				versions.put(trie, trieVersion);
+			}
+
+			List<C> wordList = results.get(key);
+
+			if (wordList != null)
+			{
+				hits.incrementAndGet();
+				return wordList;
+			}
+		}
+
+		misses.incrementAndGet();
+
+		// searched without holding the lock, concurrent misses for the same key both search.
+		List<C> wordList = Collections.unmodifiableList(new ArrayList<C>(trie.getWordList(
+			prefix, filter, limit)));
+
+		if (wordList.size() > maxElements)
+			return wordList;
+
+		synchronized (results)
+		{
+			// the trie may have changed while searching
+			Long version = versions.get(trie);
+
+			if (version != null && version.longValue() == trieVersion)
+			{
+				List<C> previous = results.put(key, wordList);
+
+				if (previous != null)
+					elements -= previous.size();
+
+				elements += wordList.size();
+
+				evict();
+			}
+		}
+
+		return wordList;
+	}
+
+	private static long versionOf(IReadOnlyTrie<?> trie)
+	{
+		if (trie instanceof IVersionedTrie<?>)
+			return ((IVersionedTrie<?>)trie).getVersion();
+
+		return 0;
+	}
+
+	private void evict()
+	{
+
+		Iterator<List<C>> iterator = results.values().iterator();
+
+		while ((results.size() > maxResults || elements > maxElements) && iterator.hasNext())
+		{
+			List<C> eldest = iterator.next();
+
+			iterator.remove();
+
+			elements -= eldest.size();
+
+			evictions.incrementAndGet();
+		}
+	}
+
+	private void removeResults(IReadOnlyTrie<C> trie)
+	{
+
+		Iterator<Map.Entry<Key, List<C>>> iterator = results.entrySet().iterator();
+
+		while (iterator.hasNext())
+		{
+			Map.Entry<Key, List<C>> entry = iterator.next();
+
+			if (entry.getKey().trie == trie)
+			{
+				iterator.remove();
+
+				elements -= entry.getValue().size();
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached results.
+	 */
+	public void clear()
+	{
+		synchronized (results)
+		{
+			results.clear();
+			versions.clear();
+			elements = 0;
+			invalidations.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return the number of cached results.
+	 */
+	public int getSize()
+	{
+		synchronized (results)
+		{
+			return results.size();
+		}
+	}
+
+	/**
+	 * @return the number of elements over all cached results.
+	 */
+	public int getElements()
+	{
+		synchronized (results)
+		{
+			return elements;
+		}
+	}
+
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	public long getEvictions()
+	{
+		return evictions.get();
+	}
+
+	public long getInvalidations()
+	{
+		return invalidations.get();
+	}
+
+	/**
+	 * @return hits / (hits + misses) or 0 if there was no lookup.
+	 */
+	public double getHitRate()
+	{
+
+		long h = hits.get();
+		long total = h + misses.get();
+
+		if (total == 0)
+			return 0;
+
+		return (double)h / total;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "TrieResultCache [size=" + getSize() + ", elements=" + getElements() + ", hits=" +
+			getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() +
+			", invalidations=" + getInvalidations() + "]";
+	}
+
+	private static final class Key
+	{
+
+		private final IReadOnlyTrie<?> trie;
+		private final long version;
+		private final String prefix;
+		private final ITrieFilter<?> filter;
+		private final int limit;
+
+		private Key(IReadOnlyTrie<?> trie, long version, String prefix, ITrieFilter<?> filter,
+			int limit)
+		{
+			this.trie = trie;
+			this.version = version;
+			this.prefix = prefix;
+			this.filter = filter;
+			this.limit = limit;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int result = System.identityHashCode(trie);
+			result = 31 * result + (int)(version ^ (version >>> 32));
+			result = 31 * result + prefix.hashCode();
+			result = 31 * result + (filter == null ? 0 : filter.hashCode());
+			result = 31 * result + limit;
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+
+			if (!(obj instanceof Key))
+				return false;
+
+			Key other = (Key)obj;
+
+			return trie == other.trie && version == other.version && limit == other.limit &&
+				prefix.equals(other.prefix) &&
+				(filter == null ? other.filter == null : filter.equals(other.filter));
+		}
+	}
+
+}
@@ -0,0 +1,166 @@
+/*
+ * 
+ * ==============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.wicketstuff.datatable_autocomplete.trie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the incremental changes of the ConcurrentTrie.
+ */
+public class ConcurrentTrieTestCase extends TestCase
+{
+
+	private ConcurrentTrie<String> trie;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+
+		trie = new ConcurrentTrie<String>(new AbstractTrieConfiguration<String>()
+		{
+
+			private static final long serialVersionUID = 1L;
+
+			public String getWord(String ctx)
+			{
+				return ctx;
+			}
+
+			public boolean isIndexCaseSensitive()
+			{
+				return false;
+			}
+
+			public boolean isSuffixTree()
+			{
+				return false;
+			}
+
+		});
+	}
+
+	public void testIndexAndRemove()
+	{
+
+		trie.index("household");
+		trie.index("House");
+		trie.index("housing");
+		trie.index("person");
+		trie.index("house");
+
+		assertEquals(Arrays.asList("House", "house", "household", "housing"),
+			trie.getWordList("hou"));
+		assertEquals(4, trie.getPrefixMatchedElementCount("h", null));
+		assertEquals(1, trie.getWordList("", 1).size());
+
+		assertTrue(trie.remove("House"));
+		assertFalse(trie.remove("House"));
+		assertFalse(trie.remove("horse"));
+
+		assertEquals(Arrays.asList("house", "household", "housing"), trie.getWordList("HOUS"));
+
+		assertTrue(trie.remove("house"));
+		assertTrue(trie.remove("household"));
+
+		assertEquals(Arrays.asList("housing"), trie.getWordList("ho"));
+		assertEquals(1, trie.getWordList("hous", 10).size());
+		assertEquals(2, trie.size());
+
+		assertTrue(trie.remove("housing"));
+		assertTrue(trie.remove("person"));
+
+		assertEquals(0, trie.size());
+		assertEquals(0, trie.getWordList("").size());
+	}
+
+	public void testUpdate()
+	{
+
+		List<String> added = new ArrayList<String>();
+
+		for (int i = 1000; i < 2000; i++)
+		{
+			added.add(String.valueOf(i));
+		}
+
+		trie.update(Collections.<String> emptyList(), added);
+
+		assertEquals(added, trie.getWordList("1"));
+
+		trie.update(added.subList(0, 500), Arrays.asList("2000", "2001"));
+
+		assertEquals(502, trie.size());
+		assertEquals(0, trie.getWordList("10").size());
+		assertEquals(100, trie.getWordList("15").size());
+		assertEquals(2, trie.getWordList("200").size());
+	}
+
+	public void testConcurrentSearch() throws InterruptedException
+	{
+
+		final List<String> first = new ArrayList<String>();
+		final List<String> second = new ArrayList<String>();
+
+		for (int i = 0; i < 1000; i++)
+		{
+			first.add("k" + i);
+			second.add("k" + (i + 1000));
+		}
+
+		trie.update(Collections.<String> emptyList(), first);
+
+		final AtomicReference<String> failure = new AtomicReference<String>();
+
+		Thread reader = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				for (int i = 0; i < 2000 && failure.get() == null; i++)
+				{
+					int size = trie.getWordList("k").size();
+
+					// a batch is either completely visible or not at all
+					if (size != 1000)
+						failure.set("saw " + size + " elements");
+				}
+			}
+		};
+
+		reader.start();
+
+		for (int i = 0; i < 50; i++)
+		{
+			if (i % 2 == 0)
+				trie.update(first, second);
+			else
+				trie.update(second, first);
+		}
+
+		reader.join();
+
+		assertNull(failure.get());
+		assertEquals(1000, trie.size());
+	}
+
+}
@@ -0,0 +1,231 @@
+/*
+ * 
+ * ==============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.wicketstuff.datatable_autocomplete.trie;
+
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that a FrozenPatriciaTrie returns the same words as the PatriciaTrie it was
+ * created from.
+ */
+public class FrozenPatriciaTrieTestCase extends TestCase
+{
+
+	private PatriciaTrie<String> trie;
+	private FrozenPatriciaTrie<String> frozenTrie;
+
+	/**
+	 */
+	public FrozenPatriciaTrieTestCase()
+	{
+		init();
+	}
+
+	/**
+	 * @param name
+	 */
+	public FrozenPatriciaTrieTestCase(String name)
+	{
+		super(name);
+		init();
+	}
+
+	protected void init()
+	{
+
+		trie = new PatriciaTrie<String>(new AbstractTrieConfiguration<String>()
+		{
+
+			private static final long serialVersionUID = 1L;
+
+			public String getWord(String ctx)
+			{
+				return ctx;
+			}
+
+			public boolean isIndexCaseSensitive()
+			{
+				return false;
+			}
+
+			public boolean isSuffixTree()
+			{
+				return false;
+			}
+
+		});
+
+		for (int i = 1000; i < 9999; i++)
+		{
+			trie.index(String.valueOf(i));
+		}
+
+		trie.index("Household");
+		trie.index("housing");
+		trie.index("house");
+		trie.index("house");
+		trie.index("person");
+
+		trie.postIndexing();
+
+		frozenTrie = trie.freeze();
+	}
+
+	public void testSameWordLists()
+	{
+
+		assertEquals(trie.getWordList(""), frozenTrie.getWordList(""));
+
+		for (int i = 0; i < 1000; i++)
+		{
+			String prefix = String.valueOf(i);
+
+			assertEquals(prefix, trie.getWordList(prefix), frozenTrie.getWordList(prefix));
+		}
+
+		assertEquals(trie.getWordList("hou"), frozenTrie.getWordList("hou"));
+		assertEquals(trie.getWordList("house"), frozenTrie.getWordList("house"));
+	}
+
+	public void testPrefixInsideEdge()
+	{
+
+		List<String> wordList = frozenTrie.getWordList("HOU");
+
+		assertEquals(4, wordList.size());
+		assertTrue(wordList.contains("Household"));
+		assertTrue(wordList.contains("housing"));
+
+		assertEquals(1, frozenTrie.getWordList("housi").size());
+		assertEquals(0, frozenTrie.getWordList("housex").size());
+		assertEquals(0, frozenTrie.getWordList("z").size());
+	}
+
+	public void testLimitAndFilter()
+	{
+
+		assertEquals(10, frozenTrie.getWordList("1", 10).size());
+		assertEquals(trie.getWordList("1").subList(0, 10), frozenTrie.getWordList("1", 10));
+
+		ITrieFilter<String> evenFilter = new ITrieFilter<String>()
+		{
+
+			private static final long serialVersionUID = 1L;
+
+			public boolean isVisible(String word)
+			{
+				return word.length() == 4 && Integer.parseInt(word) % 2 == 0;
+			}
+		};
+
+		List<String> wordList = frozenTrie.getWordList("12", evenFilter, 3);
+
+		assertEquals(3, wordList.size());
+		assertEquals("1200", wordList.get(0));
+		assertEquals("1202", wordList.get(1));
+		assertEquals("1204", wordList.get(2));
+
+		assertEquals(50, frozenTrie.getPrefixMatchedElementCount("12", evenFilter));
+	}
+
+	public void testCounts()
+	{
+
+		assertEquals(trie.size(), frozenTrie.size());
+		assertEquals(8999 + 5, frozenTrie.size());
+
+		assertEquals(1000, frozenTrie.getPrefixMatchedElementCount("5", null));
+		assertEquals(3, frozenTrie.getPrefixMatchedElementCount("house", null));
+		assertEquals(0, frozenTrie.getPrefixMatchedElementCount("x", null));
+	}
+
+	public void testSameWordListsForRandomWords()
+	{
+
+		Random random = new Random(42);
+
+		ITrieConfiguration<String> configuration = new AbstractTrieConfiguration<String>()
+		{
+
+			private static final long serialVersionUID = 1L;
+
+			public String getWord(String ctx)
+			{
+				return ctx;
+			}
+
+			public boolean isIndexCaseSensitive()
+			{
+				return false;
+			}
+
+			public boolean isSuffixTree()
+			{
+				return false;
+			}
+
+		};
+
+		ITrieFilter<String> filter = configuration.getDefaultFilter();
+
+		PatriciaTrie<String> randomTrie = new PatriciaTrie<String>(configuration);
+
+		randomTrie.preIndexing();
+
+		for (int i = 0; i < 5000; i++)
+		{
+			randomTrie.index(randomWord(random));
+		}
+
+		randomTrie.postIndexing();
+
+		FrozenPatriciaTrie<String> randomFrozenTrie = randomTrie.freeze();
+
+		assertEquals(randomTrie.size(), randomFrozenTrie.size());
+
+		for (int i = 0; i < 500; i++)
+		{
+			String word = randomWord(random);
+			String prefix = word.substring(0, 1 + random.nextInt(4));
+
+			assertEquals(prefix, randomTrie.getWordList(prefix, filter, 20),
+				randomFrozenTrie.getWordList(prefix, filter, 20));
+			assertEquals(prefix, randomTrie.getWordList(prefix).size(),
+				randomFrozenTrie.getPrefixMatchedElementCount(prefix, null));
+		}
+	}
+
+	private static String randomWord(Random random)
+	{
+
+		int length = 4 + random.nextInt(12);
+
+		char[] word = new char[length];
+
+		for (int i = 0; i < length; i++)
+		{
+			// skew towards the start of the alphabet so that prefixes are shared
+			word[i] = (char)('a' + Math.min(random.nextInt(26), random.nextInt(26)));
+		}
+
+		return new String(word);
+	}
+
+}
@@ -0,0 +1,269 @@
+/*
+ * 
+ * ==============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.wicketstuff.datatable_autocomplete.trie;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the match anywhere results of the SuffixArrayTrie against a simple scan.
+ */
+public class SuffixArrayTrieTestCase extends TestCase
+{
+
+	private SuffixArrayTrie<String> trie;
+	private List<String> dataList;
+
+	/**
+	 */
+	public SuffixArrayTrieTestCase()
+	{
+		init();
+	}
+
+	/**
+	 * @param name
+	 */
+	public SuffixArrayTrieTestCase(String name)
+	{
+		super(name);
+		init();
+	}
+
+	protected void init()
+	{
+
+		trie = new SuffixArrayTrie<String>(new AbstractTrieConfiguration<String>()
+		{
+
+			private static final long serialVersionUID = 1L;
+
+			public String getWord(String ctx)
+			{
+				return ctx;
+			}
+
+			public boolean isIndexCaseSensitive()
+			{
+				return false;
+			}
+
+			public boolean isSuffixTree()
+			{
+				return false;
+			}
+
+		});
+
+		dataList = new ArrayList<String>();
+
+		for (int i = 1000; i < 9999; i++)
+		{
+			dataList.add(String.valueOf(i));
+		}
+
+		dataList.add("Banana");
+		dataList.add("bandana");
+		dataList.add("cabana");
+
+		trie.preIndexing();
+
+		for (String word : dataList)
+		{
+			trie.index(word);
+		}
+
+		trie.postIndexing();
+	}
+
+	private List<String> scan(String substring)
+	{
+
+		List<String> matchList = new ArrayList<String>();
+
+		for (String word : dataList)
+		{
+			if (word.toLowerCase().contains(substring.toLowerCase()))
+				matchList.add(word);
+		}
+
+		return matchList;
+	}
+
+	public void testSameAsScan()
+	{
+
+		Random random = new Random(1);
+
+		for (int i = 0; i < 500; i++)
+		{
+			String substring = String.valueOf(random.nextInt(i < 250 ? 100 : 10000));
+
+			List<String> wordList = trie.getWordList(substring);
+
+			List<String> matchList = scan(substring);
+
+			assertEquals(substring, matchList.size(), wordList.size());
+			assertTrue(substring, wordList.containsAll(matchList));
+		}
+
+		assertEquals(dataList, trie.getWordList(""));
+	}
+
+	public void testEachElementOnce()
+	{
+
+		List<String> wordList = trie.getWordList("AN");
+
+		assertEquals(3, wordList.size());
+
+		assertTrue(wordList.contains("Banana"));
+		assertTrue(wordList.contains("bandana"));
+		assertTrue(wordList.contains("cabana"));
+
+		assertEquals(5, trie.getOccurrenceCount("an"));
+		assertEquals(0, trie.getWordList("ananas").size());
+		assertEquals(0, trie.getWordList("x").size());
+	}
+
+	public void testLimitAndFilter()
+	{
+
+		assertEquals(5, trie.getWordList("00", 5).size());
+
+		ITrieFilter<String> filter = new ITrieFilter<String>()
+		{
+
+			private static final long serialVersionUID = 1L;
+
+			public boolean isVisible(String word)
+			{
+				return word.startsWith("9");
+			}
+		};
+
+		List<String> wordList = trie.getWordList("00", filter);
+
+		assertEquals(19, wordList.size());
+
+		for (String word : wordList)
+		{
+			assertTrue(word.startsWith("9"));
+		}
+	}
+
+	public void testIncrementalIndexing()
+	{
+
+		assertEquals(0, trie.getWordList("zebra").size());
+
+		trie.index("Zebra");
+
+		// not visible until the index is rebuilt.
+		assertEquals(0, trie.getWordList("ebr").size());
+
+		trie.postIndexing();
+
+		assertEquals(1, trie.getWordList("ebr").size());
+		assertEquals(dataList.size() + 1, trie.size());
+
+		long version = trie.getVersion();
+
+		// nothing new to merge
+		trie.postIndexing();
+
+		assertEquals(version, trie.getVersion());
+	}
+
+	public void testMergedSameAsScan()
+	{
+
+		dataList.add("Zebra");
+		dataList.add("ABBA");
+		dataList.add("12a34");
+
+		trie.index("Zebra");
+		trie.index("ABBA");
+		trie.postIndexing();
+
+		trie.index("12a34");
+		trie.postIndexing();
+
+		for (String substring : new String[] { "a", "b", "ba", "12", "234", "a3", "99" })
+		{
+			List<String> wordList = trie.getWordList(substring);
+
+			List<String> matchList = scan(substring);
+
+			assertEquals(substring, matchList.size(), wordList.size());
+			assertTrue(substring, wordList.containsAll(matchList));
+		}
+
+		assertEquals(dataList, trie.getWordList(""));
+	}
+
+	public void testConcurrentSearches() throws Exception
+	{
+
+		final List<Throwable> failures = new Vector<Throwable>();
+
+		Thread[] threads = new Thread[4];
+
+		for (int t = 0; t < threads.length; t++)
+		{
+			final int seed = t;
+
+			threads[t] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						Random random = new Random(seed);
+
+						for (int i = 0; i < 200; i++)
+						{
+							String substring = String.valueOf(random.nextInt(100));
+
+							// each search has to see its own marks, even if the marker is shared
+							assertEquals(substring, scan(substring).size(),
+								trie.getWordList(substring).size());
+						}
+					}
+					catch (Throwable e)
+					{
+						failures.add(e);
+					}
+				}
+			};
+			threads[t].start();
+		}
+
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		assertEquals(failures.toString(), 0, failures.size());
+	}
+
+}
@@ -0,0 +1,209 @@
+/*
+ * 
+ * ==============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.wicketstuff.datatable_autocomplete.trie;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the hits, eviction and invalidation of the TrieResultCache.
+ */
+public class TrieResultCacheTestCase extends TestCase
+{
+
+	private ConcurrentTrie<String> trie;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+
+		trie = new ConcurrentTrie<String>(new AbstractTrieConfiguration<String>()
+		{
+
+			private static final long serialVersionUID = 1L;
+
+			public String getWord(String ctx)
+			{
+				return ctx;
+			}
+
+			public boolean isIndexCaseSensitive()
+			{
+				return false;
+			}
+
+			public boolean isSuffixTree()
+			{
+				return false;
+			}
+
+		});
+
+		for (int i = 1000; i < 2000; i++)
+		{
+			trie.index(String.valueOf(i));
+		}
+	}
+
+	public void testHits()
+	{
+
+		TrieResultCache<String> cache = new TrieResultCache<String>(10, 10000);
+
+		assertEquals(100, cache.getWordList(trie, "10", null, -1).size());
+		assertEquals(100, cache.getWordList(trie, "10", null, -1).size());
+		assertEquals(10, cache.getWordList(trie, "10", null, 10).size());
+
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(2, cache.getSize());
+		assertEquals(110, cache.getElements());
+		assertEquals(1.0 / 3, cache.getHitRate(), 0.0001);
+	}
+
+	public void testEviction()
+	{
+
+		TrieResultCache<String> cache = new TrieResultCache<String>(3, 250);
+
+		cache.getWordList(trie, "10", null, -1);
+		cache.getWordList(trie, "11", null, -1);
+		// makes 10 the most recently used
+		cache.getWordList(trie, "10", null, -1);
+		cache.getWordList(trie, "12", null, -1);
+
+		// 11 was evicted to stay below 250 elements
+		assertEquals(2, cache.getSize());
+		assertEquals(1, cache.getEvictions());
+
+		cache.getWordList(trie, "10", null, -1);
+		assertEquals(2, cache.getHits());
+
+		// too big to be cached
+		assertEquals(1000, cache.getWordList(trie, "1", null, -1).size());
+		assertEquals(2, cache.getSize());
+	}
+
+	public void testInvalidation()
+	{
+
+		TrieResultCache<String> cache = new TrieResultCache<String>(10, 10000);
+
+		assertEquals(0, cache.getWordList(trie, "2", null, -1).size());
+
+		trie.update(Collections.<String> emptyList(), Arrays.asList("2000", "2001"));
+
+		assertEquals(2, cache.getWordList(trie, "2", null, -1).size());
+		assertEquals(1, cache.getInvalidations());
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getSize());
+	}
+
+	public void testTriesShareTheCache()
+	{
+
+		TrieResultCache<String> cache = new TrieResultCache<String>(10, 10000);
+
+		SuffixArrayTrie<String> otherTrie = new SuffixArrayTrie<String>(
+			new AbstractTrieConfiguration<String>()
+			{
+
+				private static final long serialVersionUID = 1L;
+
+				public String getWord(String ctx)
+				{
+					return ctx;
+				}
+
+				public boolean isIndexCaseSensitive()
+				{
+					return false;
+				}
+
+				public boolean isSuffixTree()
+				{
+					return false;
+				}
+
+			});
+
+		otherTrie.index("1000");
+		otherTrie.postIndexing();
+
+		assertEquals(100, cache.getWordList(trie, "10", null, -1).size());
+		assertEquals(1, cache.getWordList(otherTrie, "10", null, -1).size());
+
+		// searching the other trie kept the results of the first one
+		assertEquals(100, cache.getWordList(trie, "10", null, -1).size());
+		assertEquals(1, cache.getHits());
+		assertEquals(0, cache.getInvalidations());
+
+		// a change of one trie only removes its own results
+		otherTrie.index("1001");
+		otherTrie.postIndexing();
+
+		assertEquals(2, cache.getWordList(otherTrie, "10", null, -1).size());
+		assertEquals(1, cache.getInvalidations());
+		assertEquals(2, cache.getSize());
+	}
+
+	public void testPatriciaTrieInvalidation()
+	{
+
+		ITrieConfiguration<String> configuration = new AbstractTrieConfiguration<String>()
+		{
+
+			private static final long serialVersionUID = 1L;
+
+			public String getWord(String ctx)
+			{
+				return ctx;
+			}
+
+			public boolean isIndexCaseSensitive()
+			{
+				return false;
+			}
+
+			public boolean isSuffixTree()
+			{
+				return false;
+			}
+
+		};
+
+		PatriciaTrie<String> patriciaTrie = new PatriciaTrie<String>(configuration);
+
+		patriciaTrie.index("house");
+		patriciaTrie.postIndexing();
+
+		TrieResultCache<String> cache = new TrieResultCache<String>(10, 10000);
+
+		ITrieFilter<String> filter = configuration.getDefaultFilter();
+
+		assertEquals(1, cache.getWordList(patriciaTrie, "hou", filter, -1).size());
+
+		// indexed in place
+		patriciaTrie.index("housing");
+
+		assertEquals(2, cache.getWordList(patriciaTrie, "hou", filter, -1).size());
+		assertEquals(1, cache.getInvalidations());
+	}
+
+}
@@ -22,6 +22,7 @@ import org.apache.wicket.Page;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.wicketstuff.datatable_autocomplete.data.TrieBuilder;
 import org.wicketstuff.datatable_autocomplete.trie.PatriciaTrie;
+import org.wicketstuff.datatable_autocomplete.trie.TrieResultCache;
 import org.wicketstuff.datatable_autocomplete.web.page.HomePage;
 
 
@@ -41,6 +42,10 @@ public class WicketApplication extends WebApplication
 
 	private static PatriciaTrie<Method> trie;
 
+	// shared by the sessions like the trie
+	private static final TrieResultCache<Method> resultCache = new TrieResultCache<Method>(1000,
+		100000);
+
 	/**
 	 * 
 	 */
@@ -85,5 +90,11 @@ public class WicketApplication extends WebApplication
 		return trie;
 	}
 
+	public static TrieResultCache<Method> getResultCache()
+	{
+
+		return resultCache;
+	}
+
 
 }
@@ -42,11 +42,13 @@ import org.wicketstuff.datatable_autocomplete.panel.IAutocompleteControlPanelPro
 import org.wicketstuff.datatable_autocomplete.provider.IModelProvider;
 import org.wicketstuff.datatable_autocomplete.provider.IProviderSorter;
 import org.wicketstuff.datatable_autocomplete.provider.ITrieProvider;
+import org.wicketstuff.datatable_autocomplete.provider.ITrieResultCacheProvider;
 import org.wicketstuff.datatable_autocomplete.provider.TrieDataProvider;
 import org.wicketstuff.datatable_autocomplete.selection.ITableRowSelectionHandler;
 import org.wicketstuff.datatable_autocomplete.trie.ITrieFilter;
 import org.wicketstuff.datatable_autocomplete.trie.PatriciaTrie;
 import org.wicketstuff.datatable_autocomplete.trie.Trie;
+import org.wicketstuff.datatable_autocomplete.trie.TrieResultCache;
 import org.wicketstuff.datatable_autocomplete.web.model.LoadableDetachableMethodModel;
 import org.wicketstuff.datatable_autocomplete.web.panel.MatchControlPanel;
 import org.wicketstuff.datatable_autocomplete.web.table.column.MethodColumn;
@@ -67,6 +69,53 @@ public class HomePage extends WebPage
 	private LoadableDetachableMethodModel selectedMethodModel;
 	private Label selectedMethodField;
 
+	/**
+	 * Matches the methods whose declaring class name matches the input as a regular expression.
+	 * 
+	 * Equal for equal input so that a TrieResultCache can share the results.
+	 */
+	static final class ClassNameFilter implements ITrieFilter<Method>
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		private final String classNameFilter;
+
+		ClassNameFilter(String classNameFilter)
+		{
+			this.classNameFilter = classNameFilter == null ? "" : classNameFilter.trim();
+		}
+
+		public boolean isVisible(Method word)
+		{
+
+			if (classNameFilter.length() == 0)
+				return true;
+
+			String className = word.getDeclaringClass().getName();
+
+			return className.matches(".*" + classNameFilter + ".*");
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return classNameFilter.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+
+			if (!(obj instanceof ClassNameFilter))
+				return false;
+
+			return classNameFilter.equals(((ClassNameFilter)obj).classNameFilter);
+		}
+	}
+
 	@SuppressWarnings("serial")
 	class MethodNameComparator extends DTAComparator<Method>
 	{
@@ -161,45 +210,7 @@ public class HomePage extends WebPage
 					return WicketApplication.getTrie();
 				}
 
-			}, new ITrieFilter<Method>()
-			{
-
-				private static final long serialVersionUID = 1L;
-
-				/*
-				 * (non-Javadoc)
-				 * 
-				 * @see
-				 * org.wicketstuff.datatable_autocomplete.trie.TrieFilter#isVisible(java.lang.Object
-				 * )
-				 */
-				public boolean isVisible(Method word)
-				{
-
-					String classNameFilter = classNameFilterField.getModelObject();
-
-					if (classNameFilter == null || classNameFilter.trim().length() == 0)
-						return true;
-
-					if (classNameFilter != null && classNameFilter.trim().length() > 0)
-					{
-
-						String className = word.getDeclaringClass().getName();
-
-						word.getDeclaringClass().getName();
-
-						if (className.matches(".*" + classNameFilter + ".*"))
-							return true;
-					}
-
-					// all other cases
-					return false;
-
-				}
-
-			},
-
-			stringModel, new IProviderSorter<Method>()
+			}, null, stringModel, new IProviderSorter<Method>()
 			{
 
 				private static final long serialVersionUID = 1L;
@@ -238,7 +249,34 @@ public class HomePage extends WebPage
 					return new LoadableDetachableMethodModel(obj);
 				}
 
-			});
+			})
+		{
+
+			private static final long serialVersionUID = 1L;
+
+			/**
+			 * A new filter per request but equal for equal input so that the cached results are
+			 * shared between the sessions.
+			 */
+			@Override
+			protected ITrieFilter<Method> getResultFilter()
+			{
+				return new ClassNameFilter(classNameFilterField.getModelObject());
+			}
+
+		};
+
+		methodProvider.setResultCacheProvider(new ITrieResultCacheProvider<Method>()
+		{
+
+			private static final long serialVersionUID = 1L;
+
+			public TrieResultCache<Method> provideCache()
+			{
+				return WicketApplication.getResultCache();
+			}
+
+		});
 
 
 		field = new AutoCompletingTextField<Method>("field", stringModel, new IColumn[] {
@@ -17,7 +17,7 @@ package org.wicketstuff.datatable_autocomplete.provider;
 
 
 import org.apache.wicket.IClusterable;
-import org.wicketstuff.datatable_autocomplete.trie.Trie;
+import org.wicketstuff.datatable_autocomplete.trie.IReadOnlyTrie;
 
 
 /**
@@ -34,8 +34,8 @@ public interface ITrieProvider<C> extends IClusterable
 
 	/**
 	 * 
-	 * @return a Trie instance.
+	 * @return a Trie instance, a frozen read-only trie will do.
 	 */
-	public Trie<C> provideTrie();
+	public IReadOnlyTrie<C> provideTrie();
 
 }
@@ -0,0 +1,39 @@
+/*
+ * 
+ * ==============================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.wicketstuff.datatable_autocomplete.provider;
+
+
+import org.apache.wicket.IClusterable;
+import org.wicketstuff.datatable_autocomplete.trie.TrieResultCache;
+
+
+/**
+ * Supplies the TrieResultCache<C> shared by all the TrieDataProviders searching the same
+ * trie.
+ * 
+ * Like the Trie<C> the cache should live in a static or application scoped context so that
+ * it is shared between sessions and not serialized with the page.
+ */
+public interface ITrieResultCacheProvider<C> extends IClusterable
+{
+
+	/**
+	 * 
+	 * @return the cache or null to search the trie directly.
+	 */
+	public TrieResultCache<C> provideCache();
+
+}
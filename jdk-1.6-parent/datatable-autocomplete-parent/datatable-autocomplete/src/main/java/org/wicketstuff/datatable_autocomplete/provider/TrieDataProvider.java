@@ -15,6 +15,7 @@
  */
 package org.wicketstuff.datatable_autocomplete.provider;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -29,8 +30,9 @@ import org.apache.wicket.model.IModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wicketstuff.datatable_autocomplete.provider.utils.DataProviderUtils;
+import org.wicketstuff.datatable_autocomplete.trie.IReadOnlyTrie;
 import org.wicketstuff.datatable_autocomplete.trie.ITrieFilter;
-import org.wicketstuff.datatable_autocomplete.trie.Trie;
+import org.wicketstuff.datatable_autocomplete.trie.TrieResultCache;
 
 /**
  * @author mocleiri
@@ -67,6 +69,8 @@ public class TrieDataProvider<C> extends SortableDataProvider<C>
 
 	private Map<Integer, Integer> resultLimitMap = new LinkedHashMap<Integer, Integer>();
 
+	private ITrieResultCacheProvider<C> resultCacheProvider = null;
+
 	protected IModel<String> getInputModel()
 	{
 
@@ -166,7 +170,7 @@ public class TrieDataProvider<C> extends SortableDataProvider<C>
 			if (currentListData == null)
 			{
 
-				Trie<C> trie = trieProvider.provideTrie();
+				IReadOnlyTrie<C> trie = trieProvider.provideTrie();
 
 				if (trie == null)
 				{
@@ -180,16 +184,27 @@ public class TrieDataProvider<C> extends SortableDataProvider<C>
 
 				Integer limit = this.resultLimitMap.get(prefix.length());
 
-				if (limit == null)
+				TrieResultCache<C> cache = null;
+
+				if (resultCacheProvider != null)
+					cache = resultCacheProvider.provideCache();
+
+				if (cache != null)
+				{
+					// the cached list is shared so take a copy that can be sorted.
+					currentListData = new ArrayList<C>(cache.getWordList(trie, prefix,
+						getResultFilter(), limit == null ? -1 : limit));
+				}
+				else if (limit == null)
 				{
 					// no limit
-					currentListData = trie.getWordList(prefix, this.trieResultFilter);
+					currentListData = trie.getWordList(prefix, getResultFilter());
 
 				}
 
 				else
 				{
-					currentListData = trie.getWordList(prefix, this.trieResultFilter, limit);
+					currentListData = trie.getWordList(prefix, getResultFilter(), limit);
 
 				}
 
@@ -262,4 +277,31 @@ public class TrieDataProvider<C> extends SortableDataProvider<C>
 
 	}
 
+	/**
+	 * The filter the search results are filtered with. Override to build the filter from the
+	 * current state of the page; a filter that implements equals() and hashCode() lets a
+	 * {@link TrieResultCache} share the results between users (see
+	 * {@link #setResultCacheProvider(ITrieResultCacheProvider)}).
+	 * 
+	 * @return the filter given to the constructor.
+	 */
+	protected ITrieFilter<C> getResultFilter()
+	{
+		return trieResultFilter;
+	}
+
+	/**
+	 * Share the search results with the other users of the trie through the cache provided.
+	 * 
+	 * Results are only shared between providers whose {@link #getResultFilter()} filters are
+	 * equal, an anonymous filter created per page shares nothing.
+	 * 
+	 * @param resultCacheProvider
+	 *            null to search the trie on each request.
+	 */
+	public void setResultCacheProvider(ITrieResultCacheProvider<C> resultCacheProvider)
+	{
+		this.resultCacheProvider = resultCacheProvider;
+	}
+
 }
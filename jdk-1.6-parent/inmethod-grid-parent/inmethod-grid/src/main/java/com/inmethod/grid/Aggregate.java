@@ -0,0 +1,154 @@
+package com.inmethod.grid;
+
+import org.apache.wicket.util.io.IClusterable;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * Aggregate function applied to a property of all rows (or all rows of a group), e.g. the sum of
+ * the <code>price</code> property.
+ *
+ * @see IAggregatingDataSource
+ */
+public final class Aggregate implements IClusterable
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The aggregate functions.
+	 */
+	public enum Function
+	{
+		/**
+		 * Sum of the (numeric) values
+		 */
+		SUM,
+
+		/**
+		 * Average of the (numeric) values
+		 */
+		AVG,
+
+		/**
+		 * Smallest of the (comparable) values
+		 */
+		MIN,
+
+		/**
+		 * Biggest of the (comparable) values
+		 */
+		MAX,
+
+		/**
+		 * Count of the values that are not <code>null</code>
+		 */
+		COUNT;
+	}
+
+	private final Function function;
+
+	private final String property;
+
+	/**
+	 * Constructor
+	 *
+	 * @param function
+	 *            aggregate function
+	 * @param property
+	 *            property the function is applied to
+	 */
+	public Aggregate(Function function, String property)
+	{
+		Args.notNull(function, "function");
+		Args.notNull(property, "property");
+		this.function = function;
+		this.property = property;
+	}
+
+	/**
+	 * @param property
+	 * @return sum of the property
+	 */
+	public static Aggregate sum(String property)
+	{
+		return new Aggregate(Function.SUM, property);
+	}
+
+	/**
+	 * @param property
+	 * @return average of the property
+	 */
+	public static Aggregate avg(String property)
+	{
+		return new Aggregate(Function.AVG, property);
+	}
+
+	/**
+	 * @param property
+	 * @return minimum of the property
+	 */
+	public static Aggregate min(String property)
+	{
+		return new Aggregate(Function.MIN, property);
+	}
+
+	/**
+	 * @param property
+	 * @return maximum of the property
+	 */
+	public static Aggregate max(String property)
+	{
+		return new Aggregate(Function.MAX, property);
+	}
+
+	/**
+	 * @param property
+	 * @return count of the non null values of the property
+	 */
+	public static Aggregate count(String property)
+	{
+		return new Aggregate(Function.COUNT, property);
+	}
+
+	/**
+	 * @return the aggregate function
+	 */
+	public Function getFunction()
+	{
+		return function;
+	}
+
+	/**
+	 * @return the property the function is applied to
+	 */
+	public String getProperty()
+	{
+		return property;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (obj == this)
+		{
+			return true;
+		}
+		if (obj instanceof Aggregate == false)
+		{
+			return false;
+		}
+		Aggregate other = (Aggregate)obj;
+		return function == other.function && property.equals(other.property);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return function.hashCode() * 31 + property.hashCode();
+	}
+
+	@Override
+	public String toString()
+	{
+		return function + "(" + property + ")";
+	}
+}
@@ -0,0 +1,235 @@
+package com.inmethod.grid;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.core.util.lang.PropertyResolver;
+import org.apache.wicket.util.lang.Args;
+
+import com.inmethod.grid.IAggregatingDataSource.IAggregateQuery;
+import com.inmethod.grid.IAggregatingDataSource.IAggregateResult;
+
+/**
+ * Computes aggregates in memory for data sources that can't push them down. The rows are added one
+ * at a time (e.g. while they are being loaded anyway) so they don't need to be kept in memory. The
+ * properties are read with {@link PropertyResolver}.
+ * <p>
+ * Sums and averages are computed as {@link BigDecimal}, counts as {@link Long}. Aggregates of a
+ * property that has no non null values are <code>null</code>, except for the count which is 0, the
+ * same as in SQL. Numbers of different types (e.g. <code>Integer</code> and <code>Long</code>) are
+ * compared by their values for the minimum and maximum.
+ */
+public class AggregateCalculator
+{
+	private final List<Aggregate> aggregates;
+
+	private final String groupProperty;
+
+	private final Accumulator[] totals;
+
+	private final Map<Object, Accumulator[]> groups = new LinkedHashMap<Object, Accumulator[]>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param query
+	 *            query specifying the aggregates and the grouping
+	 */
+	public AggregateCalculator(IAggregateQuery query)
+	{
+		this(query.getAggregates(), query.getGroupProperty());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param aggregates
+	 *            aggregates to compute
+	 * @param groupProperty
+	 *            property to group the rows by or <code>null</code>
+	 */
+	public AggregateCalculator(List<Aggregate> aggregates, String groupProperty)
+	{
+		Args.notNull(aggregates, "aggregates");
+		this.aggregates = aggregates;
+		this.groupProperty = groupProperty;
+		totals = newAccumulators();
+	}
+
+	private Accumulator[] newAccumulators()
+	{
+		Accumulator[] accumulators = new Accumulator[aggregates.size()];
+		for (int i = 0; i < accumulators.length; ++i)
+		{
+			accumulators[i] = new Accumulator(aggregates.get(i).getFunction());
+		}
+		return accumulators;
+	}
+
+	/**
+	 * Adds a row to the aggregates.
+	 *
+	 * @param row
+	 */
+	public void add(Object row)
+	{
+		Accumulator[] groupAccumulators = null;
+		if (groupProperty != null)
+		{
+			Object group = PropertyResolver.getValue(groupProperty, row);
+			groupAccumulators = groups.get(group);
+			if (groupAccumulators == null)
+			{
+				groupAccumulators = newAccumulators();
+				groups.put(group, groupAccumulators);
+			}
+		}
+
+		for (int i = 0; i < totals.length; ++i)
+		{
+			Object value = PropertyResolver.getValue(aggregates.get(i).getProperty(), row);
+			totals[i].add(value);
+			if (groupAccumulators != null)
+			{
+				groupAccumulators[i].add(value);
+			}
+		}
+	}
+
+	/**
+	 * Adds all rows to the aggregates.
+	 *
+	 * @param rows
+	 */
+	public void addAll(Iterator<?> rows)
+	{
+		while (rows.hasNext())
+		{
+			add(rows.next());
+		}
+	}
+
+	/**
+	 * Passes the aggregates of the rows added so far to the result.
+	 *
+	 * @param result
+	 */
+	public void setResult(IAggregateResult result)
+	{
+		for (int i = 0; i < totals.length; ++i)
+		{
+			result.setValue(aggregates.get(i), totals[i].getValue());
+		}
+		for (Map.Entry<Object, Accumulator[]> group : groups.entrySet())
+		{
+			Accumulator[] accumulators = group.getValue();
+			for (int i = 0; i < accumulators.length; ++i)
+			{
+				result.setGroupValue(group.getKey(), aggregates.get(i), accumulators[i].getValue());
+			}
+		}
+	}
+
+	/**
+	 * State of a single aggregate function.
+	 */
+	private static class Accumulator
+	{
+		private final Aggregate.Function function;
+
+		private long count = 0;
+
+		private BigDecimal sum = BigDecimal.ZERO;
+
+		private Comparable<Object> extreme;
+
+		private Accumulator(Aggregate.Function function)
+		{
+			this.function = function;
+		}
+
+		@SuppressWarnings("unchecked")
+		private void add(Object value)
+		{
+			if (value == null)
+			{
+				return;
+			}
+			++count;
+			switch (function)
+			{
+				case SUM :
+				case AVG :
+					sum = sum.add(toBigDecimal(value));
+					break;
+				case MIN :
+					if (extreme == null || compare(extreme, value) > 0)
+					{
+						extreme = (Comparable<Object>)value;
+					}
+					break;
+				case MAX :
+					if (extreme == null || compare(extreme, value) < 0)
+					{
+						extreme = (Comparable<Object>)value;
+					}
+					break;
+				default :
+					break;
+			}
+		}
+
+		private Object getValue()
+		{
+			switch (function)
+			{
+				case COUNT :
+					return count;
+				case SUM :
+					return count > 0 ? sum : null;
+				case AVG :
+					return count > 0 ? sum.divide(BigDecimal.valueOf(count), MathContext.DECIMAL64)
+						: null;
+				default :
+					return extreme;
+			}
+		}
+
+		private static int compare(Comparable<Object> extreme, Object value)
+		{
+			// Integer can't be compared to Long etc.
+			if (extreme instanceof Number && value instanceof Number &&
+				extreme.getClass() != value.getClass())
+			{
+				return toBigDecimal(extreme).compareTo(toBigDecimal(value));
+			}
+			return extreme.compareTo(value);
+		}
+
+		private static BigDecimal toBigDecimal(Object value)
+		{
+			if (value instanceof BigDecimal)
+			{
+				return (BigDecimal)value;
+			}
+			else if (value instanceof BigInteger)
+			{
+				return new BigDecimal((BigInteger)value);
+			}
+			else if (value instanceof Double || value instanceof Float)
+			{
+				return BigDecimal.valueOf(((Number)value).doubleValue());
+			}
+			else if (value instanceof Number)
+			{
+				return BigDecimal.valueOf(((Number)value).longValue());
+			}
+			throw new IllegalArgumentException("Can't sum a value of type " + value.getClass());
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package com.inmethod.grid;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.wicket.util.io.IClusterable;
+
+import com.inmethod.grid.IAggregatingDataSource.IAggregateResult;
+
+/**
+ * Holds the aggregate values computed by an {@link IAggregatingDataSource}. The groups are kept in
+ * the order they were set in.
+ */
+public class AggregateResult implements IAggregateResult, IClusterable
+{
+	private static final long serialVersionUID = 1L;
+
+	private final Map<Aggregate, Object> values = new HashMap<Aggregate, Object>();
+
+	private final Map<Object, Map<Aggregate, Object>> groups = new LinkedHashMap<Object, Map<Aggregate, Object>>();
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setValue(Aggregate aggregate, Object value)
+	{
+		values.put(aggregate, value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setGroupValue(Object group, Aggregate aggregate, Object value)
+	{
+		Map<Aggregate, Object> groupValues = groups.get(group);
+		if (groupValues == null)
+		{
+			groupValues = new HashMap<Aggregate, Object>();
+			groups.put(group, groupValues);
+		}
+		groupValues.put(aggregate, value);
+	}
+
+	/**
+	 * Returns the value of an aggregate over all rows.
+	 *
+	 * @param aggregate
+	 * @return aggregate value or <code>null</code> if the value wasn't set
+	 */
+	public Object getValue(Aggregate aggregate)
+	{
+		return values.get(aggregate);
+	}
+
+	/**
+	 * Returns the groups for which values were set.
+	 *
+	 * @return values of the group property
+	 */
+	public Set<Object> getGroups()
+	{
+		return Collections.unmodifiableSet(groups.keySet());
+	}
+
+	/**
+	 * Returns the value of an aggregate over the rows of a group.
+	 *
+	 * @param group
+	 *            value of the group property
+	 * @param aggregate
+	 * @return aggregate value or <code>null</code> if the value wasn't set
+	 */
+	public Object getGroupValue(Object group, Aggregate aggregate)
+	{
+		Map<Aggregate, Object> groupValues = groups.get(group);
+		return groupValues != null ? groupValues.get(aggregate) : null;
+	}
+}
@@ -0,0 +1,84 @@
+package com.inmethod.grid;
+
+import java.util.List;
+
+/**
+ * Extends the {@link IDataSource} interface with aggregates (sum, average, minimum, maximum and
+ * count) over all rows, optionally grouped by a property. This allows totals to be shown without
+ * loading all rows through {@link IDataSource#query(IDataSource.IQuery, IDataSource.IQueryResult)}.
+ * <p>
+ * A data source backed by a database should compute the aggregates in the database, e.g.
+ *
+ * <pre>
+ * public void aggregate(IAggregateQuery query, IAggregateResult result) {
+ * 		// select sum(price), max(price) from product
+ * 		for (Aggregate aggregate : query.getAggregates()) {
+ * 			result.setValue(aggregate, dao.aggregate(aggregate.getFunction(), aggregate.getProperty()));
+ * 		}
+ * }
+ * </pre>
+ *
+ * Other data sources can compute them while iterating the rows with {@link AggregateCalculator}.
+ *
+ * @param <T>
+ *            row/item model object type
+ */
+public interface IAggregatingDataSource<T> extends IDataSource<T>
+{
+	/**
+	 * Computes the aggregates specified by the query over all rows and passes them to the result.
+	 *
+	 * @param query
+	 *            specifies the aggregates and the grouping
+	 * @param result
+	 *            receives the aggregate values
+	 */
+	public void aggregate(IAggregateQuery query, IAggregateResult result);
+
+	/**
+	 * Specifies the aggregates to compute. The aggregates cover all rows, {@link #getFrom()} is
+	 * always 0 and {@link #getCount()} is the total amount of rows if it is known.
+	 */
+	public interface IAggregateQuery extends IDataSource.IQuery
+	{
+		/**
+		 * Returns the aggregates to compute.
+		 *
+		 * @return list of aggregates
+		 */
+		public List<Aggregate> getAggregates();
+
+		/**
+		 * Returns the property by which the rows are grouped. If it isn't <code>null</code> the
+		 * aggregates should be computed for each group as well as for all the rows.
+		 *
+		 * @return group property or <code>null</code>
+		 */
+		public String getGroupProperty();
+	}
+
+	/**
+	 * Used to pass the computed aggregates to the caller of
+	 * {@link IAggregatingDataSource#aggregate(IAggregateQuery, IAggregateResult)}.
+	 */
+	public interface IAggregateResult
+	{
+		/**
+		 * Sets the value of an aggregate over all rows.
+		 *
+		 * @param aggregate
+		 * @param value
+		 */
+		public void setValue(Aggregate aggregate, Object value);
+
+		/**
+		 * Sets the value of an aggregate over the rows of a group.
+		 *
+		 * @param group
+		 *            value of the group property
+		 * @param aggregate
+		 * @param value
+		 */
+		public void setGroupValue(Object group, Aggregate aggregate, Object value);
+	}
+}
@@ -13,6 +13,7 @@ import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.request.Response;
 import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.response.StringResponse;
 
 import com.inmethod.grid.IGridColumn;
 import com.inmethod.grid.IGridSortState;
@@ -257,8 +258,56 @@ public abstract class AbstractGridRow<M, I, S> extends WebMarkupContainer
 	@Override
 	protected void onRender()
 	{
-		Response response = RequestCycle.get().getResponse();
+		renderCells(RequestCycle.get().getResponse());
+	}
+
+	/**
+	 * Returns whether all cells of this row are rendered by lightweight columns, i.e. the row has
+	 * no cell components.
+	 * 
+	 * @return <code>true</code> if the row is rendered only by {@link IRenderable} instances
+	 */
+	public boolean isLightWeight()
+	{
+		for (IGridColumn<M, I, S> column : getActiveColumns())
+		{
+			if (!column.isLightWeight(getDefaultRowModel()))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Renders the cells of a lightweight row outside of the regular component rendering, e.g. to
+	 * update the cells with javascript.
+	 * 
+	 * @see #isLightWeight()
+	 * @return markup of the cells
+	 */
+	public CharSequence renderLightWeightCells()
+	{
+		if (!isLightWeight())
+		{
+			throw new IllegalStateException("Only rows without cell components can be rendered");
+		}
+		RequestCycle requestCycle = RequestCycle.get();
+		StringResponse response = new StringResponse();
+		Response original = requestCycle.setResponse(response);
+		try
+		{
+			renderCells(response);
+		}
+		finally
+		{
+			requestCycle.setResponse(original);
+		}
+		return response.getBuffer();
+	}
 
+	private void renderCells(Response response)
+	{
 		Collection<IGridColumn<M, I, S>> columns = getActiveColumns();
 
 		int hide = 0;
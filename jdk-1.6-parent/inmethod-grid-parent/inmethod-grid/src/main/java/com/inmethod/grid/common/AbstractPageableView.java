@@ -1,16 +1,36 @@
 package com.inmethod.grid.common;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
-
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.IApplicationListener;
+import org.apache.wicket.MetaDataKey;
 import org.apache.wicket.markup.html.navigation.paging.IPageable;
 import org.apache.wicket.markup.repeater.RefreshingView;
 import org.apache.wicket.model.IModel;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Duration;
 
 import com.inmethod.grid.IDataSource;
 import com.inmethod.grid.IDataSource.IQuery;
 import com.inmethod.grid.IDataSource.IQueryResult;
 import com.inmethod.grid.IGridSortState;
+import com.inmethod.grid.IGridSortState.ISortStateColumn;
 
 /**
  * Wicket {@link org.apache.wicket.markup.repeater.AbstractPageableView} alternative that uses
@@ -160,12 +180,59 @@ public abstract class AbstractPageableView<T> extends RefreshingView<T>
 
 		long currentItem = getRowsPerPage() * page;
 
+		windowed = false;
 		setCurrentPageFirstItem(currentItem);
 
 		// todo: bump version (maybe)
 
 	}
 
+	/**
+	 * Sets the first item of the window of rows that should be rendered. Unlike
+	 * {@link #setCurrentPage(long)} the item doesn't need to be at a page boundary, the view then
+	 * renders {@link #getRowsPerPage()} items starting at the given item. This is used by grids
+	 * that only render the rows around the scrolled position. The alignment to pages is restored
+	 * by the next call to {@link #setCurrentPage(long)}.
+	 * 
+	 * @param firstItem
+	 *            index of the first item to render
+	 */
+	public void setCurrentWindowFirstItem(long firstItem)
+	{
+		if (firstItem < 0)
+		{
+			throw new IndexOutOfBoundsException("Argument firstItem is out of bounds");
+		}
+		if (!windowed)
+		{
+			windowed = true;
+			queryResult = null;
+		}
+		setCurrentPageFirstItem(firstItem);
+	}
+
+	/**
+	 * @return index of the first item that is or will be rendered
+	 */
+	public long getCurrentWindowFirstItem()
+	{
+		return getCurrentPageFirstItem();
+	}
+
+	/**
+	 * @return <code>true</code> if the rendered items were set by
+	 *         {@link #setCurrentWindowFirstItem(long)} instead of a page
+	 */
+	public boolean isWindowed()
+	{
+		return windowed;
+	}
+
+	/**
+	 * Whether the current first item is used as is instead of being aligned to a page
+	 */
+	private boolean windowed = false;
+
 	/**
 	 * We keep track of maximal first page item reached to be able to guess item count in case the
 	 * {@link IDataSource} can't provide the real count
@@ -199,7 +266,7 @@ public abstract class AbstractPageableView<T> extends RefreshingView<T>
 	private transient QueryResult queryResult;
 
   /** clears the queryResult so  the next use will be forced to re-initialize */
-  public void clearCache() { queryResult = null; }
+  public void clearCache() { queryResult = null; discardPrefetched(); }
 
 	/**
 	 * Allows to wrap created query.
@@ -227,21 +294,28 @@ public abstract class AbstractPageableView<T> extends RefreshingView<T>
 			long oldItemCount = realItemCount;
 
 			// query for items
-			dataSource.query(wrapQuery(query), queryResult);
+			load(query, queryResult);
 
 			// process the QueryResult
 			queryResult.process(dataSource);
 
+			if (realItemCount != oldItemCount)
+			{
+				// the data has changed, the prefetched pages are outdated
+				discardPrefetched();
+			}
+
 			// check for situation when we didn't get any items,
 			// but we know the real count
 			// this is not a case when there are no items at all,
 			// just the case when there are no items on current page
 			// but possible items on previous pages
 			if ( queryResult.itemCache.size() == 0 && realItemCount != UNKNOWN_COUNT 
-        && realItemCount != oldItemCount && realItemCount > 0 )
+        && (realItemCount != oldItemCount || getCurrentPageFirstItem() >= realItemCount)
+        && realItemCount > 0 )
 			{
-				// the data must have changed, the number of items has been reduced. 
-				// try move to the last page
+				// the data must have changed, the number of items has been reduced, or a window
+				// has been set past the last item. try move to the last page
 				long page = getPageCount() - 1;
 				if (page < 0)
 				{
@@ -266,6 +340,588 @@ public abstract class AbstractPageableView<T> extends RefreshingView<T>
 				setCurrentPage(0);
 				queryResult = tmp;
 			}
+
+			if (isPrefetch())
+			{
+				remember(query, queryResult);
+				prefetchAdjacentPages();
+			}
+		}
+	}
+
+	/**
+	 * Whether the pages before and after the current page are loaded in the background. The
+	 * {@link IDataSource} must then be able to run queries outside of the request thread.
+	 * <p>
+	 * The loaded items are kept in a small cache that is discarded by {@link #clearCache()}.
+	 * 
+	 * @return <code>true</code> to prefetch the adjacent pages, <code>false</code> by default
+	 */
+	protected boolean isPrefetch()
+	{
+		return false;
+	}
+
+	/**
+	 * Returns the state of the data source that changes the items it returns, usually its filter.
+	 * Prefetched pages are only used while the state is equal to the state they were loaded with,
+	 * so the returned object must implement <code>equals</code> and <code>hashCode</code> and must
+	 * not be changed afterwards. Only used when prefetching.
+	 * 
+	 * @return filter state, <code>null</code> by default
+	 */
+	protected Object getFilterState()
+	{
+		return null;
+	}
+
+	/**
+	 * Returns the executor that loads the prefetched pages, by default the executor of the
+	 * application (see {@link #getPrefetchExecutor(Application)}).
+	 * 
+	 * @return executor for the prefetch queries
+	 */
+	protected Executor getPrefetchExecutor()
+	{
+		return getPrefetchExecutor(getApplication());
+	}
+
+	/**
+	 * Returns how long a loaded page can be displayed instead of querying the data source again.
+	 * The pages are also discarded by {@link #discardPrefetched()}, e.g. when the items of a grid
+	 * are marked dirty. Only used when prefetching.
+	 * 
+	 * @return maximal age of a prefetched page, 30 seconds by default
+	 */
+	protected Duration getMaxPrefetchedPageAge()
+	{
+		return DEFAULT_MAX_PREFETCHED_PAGE_AGE;
+	}
+
+	private static final Duration DEFAULT_MAX_PREFETCHED_PAGE_AGE = Duration.seconds(30);
+
+	/**
+	 * Key of the executor that loads the prefetched pages of the views of an application
+	 */
+	private static final MetaDataKey<ExecutorService> PREFETCH_EXECUTOR = new MetaDataKey<ExecutorService>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	/**
+	 * Returns the executor that loads the prefetched pages of the views of the application. Unless
+	 * an executor has been set by {@link #setPrefetchExecutor(Application, ExecutorService)}, an
+	 * executor with two threads is created that rejects the prefetches it can't keep up with.
+	 * 
+	 * @param application
+	 * @return executor for the prefetch queries
+	 */
+	public static ExecutorService getPrefetchExecutor(Application application)
+	{
+		Args.notNull(application, "application");
+
+		synchronized (application)
+		{
+			ExecutorService executor = application.getMetaData(PREFETCH_EXECUTOR);
+			if (executor == null)
+			{
+				executor = newPrefetchExecutor();
+				installPrefetchExecutor(application, executor);
+			}
+			return executor;
+		}
+	}
+
+	/**
+	 * Sets the executor that loads the prefetched pages of the views of the application. The
+	 * executor is shut down when it is replaced or when the application is destroyed.
+	 * 
+	 * @param application
+	 * @param executor
+	 *            executor for the prefetch queries
+	 */
+	public static void setPrefetchExecutor(Application application, ExecutorService executor)
+	{
+		Args.notNull(application, "application");
+		Args.notNull(executor, "executor");
+
+		ExecutorService previous;
+		synchronized (application)
+		{
+			previous = application.getMetaData(PREFETCH_EXECUTOR);
+			installPrefetchExecutor(application, executor);
+		}
+		if (previous != null && previous != executor)
+		{
+			previous.shutdownNow();
+		}
+	}
+
+	private static void installPrefetchExecutor(Application application, ExecutorService executor)
+	{
+		if (application.getMetaData(PREFETCH_EXECUTOR) == null)
+		{
+			application.getApplicationListeners().add(PrefetchExecutorShutdown.INSTANCE);
+		}
+		application.setMetaData(PREFETCH_EXECUTOR, executor);
+	}
+
+	/**
+	 * How many pages (including the current one) are kept in {@link #prefetched}
+	 */
+	private static final int MAX_PREFETCHED_PAGES = 4;
+
+	/**
+	 * How long the request waits for a prefetch query before querying the data source itself
+	 */
+	private static final long MAX_PREFETCH_WAIT = 1000;
+
+	/**
+	 * Loaded and loading pages by data source, filter state, sort state, first item and count, see
+	 * {@link #prefetchKey(long)}
+	 */
+	private transient Map<List<Object>, Future<PrefetchedPage<T>>> prefetched;
+
+	/**
+	 * Key of the page that was loaded last
+	 */
+	private transient List<Object> lastLoadedKey;
+
+	private List<Object> prefetchKey(long from)
+	{
+		List<Object> key = new ArrayList<Object>();
+		key.add(getDataSource());
+		key.add(getFilterState());
+		IGridSortState<?> sortState = getSortState();
+		if (sortState != null)
+		{
+			for (IGridSortState.ISortStateColumn<?> column : sortState.getColumns())
+			{
+				key.add(column.getPropertyName());
+				key.add(column.getDirection());
+			}
+		}
+		key.add(from);
+		key.add(getRowsPerPage());
+		return key;
+	}
+
+	/**
+	 * Queries the data source unless the page has been prefetched.
+	 */
+	private void load(Query query, QueryResult result)
+	{
+		Future<PrefetchedPage<T>> future = null;
+		if (isPrefetch() && prefetched != null)
+		{
+			List<Object> key = prefetchKey(query.getFrom());
+			// the page is rendered again (e.g. after the data changed), it has to be current
+			if (!key.equals(lastLoadedKey))
+			{
+				future = prefetched.get(key);
+			}
+			lastLoadedKey = key;
+		}
+		if (future != null)
+		{
+			try
+			{
+				// usually done already, otherwise the query has been running for a while. It
+				// might also never run if a custom executor dropped it, so don't wait forever.
+				PrefetchedPage<T> page = future.get(MAX_PREFETCH_WAIT, TimeUnit.MILLISECONDS);
+				long age = System.currentTimeMillis() - page.loadTime;
+				if (age < getMaxPrefetchedPageAge().getMilliseconds())
+				{
+					result.setTotalCount(page.totalCount);
+					result.setItems(page.items.iterator());
+					result.prefetched = true;
+					return;
+				}
+			}
+			catch (Exception e)
+			{
+				// failed or still running, query the data source again
+				future.cancel(true);
+				prefetched.remove(lastLoadedKey);
+			}
+		}
+		getDataSource().query(wrapQuery(query), result);
+	}
+
+	/**
+	 * Keeps the items of the current page so that paging back doesn't need a query.
+	 */
+	private void remember(Query query, QueryResult result)
+	{
+		if (result.prefetched || result.loadedItems == null)
+		{
+			return;
+		}
+		PrefetchedPage<T> page = new PrefetchedPage<T>(result.totalCount, getRowsPerPage());
+		page.items.addAll(result.loadedItems);
+		page.loadTime = System.currentTimeMillis();
+		lastLoadedKey = prefetchKey(query.getFrom());
+		FutureTask<PrefetchedPage<T>> future = new FutureTask<PrefetchedPage<T>>(
+			new LoadedPage<T>(page));
+		future.run();
+		getPrefetched().put(prefetchKey(query.getFrom()), future);
+	}
+
+	/**
+	 * Cancels the prefetch queries and forgets the loaded pages, e.g. because the data has changed.
+	 * Unlike {@link #clearCache()} this doesn't reload the current page in the same request.
+	 */
+	public void discardPrefetched()
+	{
+		if (prefetched != null)
+		{
+			for (Future<PrefetchedPage<T>> future : prefetched.values())
+			{
+				future.cancel(true);
+			}
+			prefetched = null;
+		}
+	}
+
+	private Map<List<Object>, Future<PrefetchedPage<T>>> getPrefetched()
+	{
+		if (prefetched == null)
+		{
+			prefetched = new LinkedHashMap<List<Object>, Future<PrefetchedPage<T>>>(
+				MAX_PREFETCHED_PAGES, 0.75f, true)
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+					Map.Entry<List<Object>, Future<PrefetchedPage<T>>> eldest)
+				{
+					if (size() > MAX_PREFETCHED_PAGES)
+					{
+						eldest.getValue().cancel(true);
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+		return prefetched;
+	}
+
+	/**
+	 * Schedules loading of the next and the previous page unless they are already loaded.
+	 */
+	private void prefetchAdjacentPages()
+	{
+		long from = getCurrentPageFirstItem();
+		long rowsPerPage = getRowsPerPage();
+
+		long next = from + rowsPerPage;
+		if (realItemCount == UNKNOWN_COUNT || next < realItemCount)
+		{
+			prefetch(next);
+		}
+		long previous = from - rowsPerPage;
+		if (previous >= 0)
+		{
+			prefetch(previous);
+		}
+	}
+
+	private void prefetch(long from)
+	{
+		List<Object> key = prefetchKey(from);
+		Map<List<Object>, Future<PrefetchedPage<T>>> pages = getPrefetched();
+		if (pages.containsKey(key))
+		{
+			return;
+		}
+
+		PrefetchedPage<T> page = new PrefetchedPage<T>(realItemCount, getRowsPerPage());
+		// the sort state of the grid might change while the query is waiting to run
+		IGridSortState<?> sortState = SortStateSnapshot.of((IGridSortState<?>)getSortState());
+		IQuery query = wrapQuery(new PrefetchQuery(from, sortState, page));
+		FutureTask<PrefetchedPage<T>> future = new FutureTask<PrefetchedPage<T>>(
+			new PrefetchTask<T>(getDataSource(), query, page));
+		try
+		{
+			getPrefetchExecutor().execute(future);
+			pages.put(key, future);
+		}
+		catch (RuntimeException e)
+		{
+			// e.g. rejected, the page will be loaded when it's needed
+		}
+	}
+
+	/**
+	 * Copy of a sort state that doesn't change with the sort state of the grid.
+	 * 
+	 * @param <S>
+	 */
+	private static class SortStateSnapshot<S> implements IGridSortState<S>
+	{
+		private final AbstractGrid<?, ?, S> grid;
+
+		private final List<ISortStateColumn<S>> columns;
+
+		private SortStateSnapshot(AbstractGrid<?, ?, S> grid, List<ISortStateColumn<S>> columns)
+		{
+			this.grid = grid;
+			this.columns = columns;
+		}
+
+		private static <S> IGridSortState<S> of(IGridSortState<S> sortState)
+		{
+			if (sortState == null)
+			{
+				return null;
+			}
+			List<ISortStateColumn<S>> columns = new ArrayList<ISortStateColumn<S>>();
+			for (ISortStateColumn<S> column : sortState.getColumns())
+			{
+				columns.add(new SortStateColumn<S>(column.getPropertyName(),
+					column.getDirection()));
+			}
+			return new SortStateSnapshot<S>(sortState.getGrid(),
+				Collections.unmodifiableList(columns));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public AbstractGrid<?, ?, S> getGrid()
+		{
+			return grid;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public List<ISortStateColumn<S>> getColumns()
+		{
+			return columns;
+		}
+	}
+
+	private static class SortStateColumn<S> implements ISortStateColumn<S>
+	{
+		private final S propertyName;
+
+		private final IGridSortState.Direction direction;
+
+		private SortStateColumn(S propertyName, IGridSortState.Direction direction)
+		{
+			this.propertyName = propertyName;
+			this.direction = direction;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public S getPropertyName()
+		{
+			return propertyName;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public IGridSortState.Direction getDirection()
+		{
+			return direction;
+		}
+	}
+
+	/**
+	 * Items and total count loaded by a prefetch query.
+	 * 
+	 * @param <T>
+	 */
+	private static class PrefetchedPage<T> implements IQueryResult<T>
+	{
+		private long totalCount;
+
+		private final long max;
+
+		private final List<T> items = new ArrayList<T>();
+
+		private volatile long loadTime;
+
+		private PrefetchedPage(long totalCount, long max)
+		{
+			this.totalCount = totalCount;
+			this.max = max;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void setTotalCount(long count)
+		{
+			totalCount = count;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void setItems(Iterator<? extends T> items)
+		{
+			// the iterator might only be valid during the query
+			while (this.items.size() < max && items.hasNext())
+			{
+				this.items.add(items.next());
+			}
+		}
+	}
+
+	/**
+	 * Query for a page other than the current one. It doesn't access the view so that it can be
+	 * used outside of the request thread.
+	 */
+	private static class PrefetchQuery implements IQuery
+	{
+		private final long from;
+
+		private final IGridSortState<?> sortState;
+
+		private final PrefetchedPage<?> result;
+
+		private PrefetchQuery(long from, IGridSortState<?> sortState, PrefetchedPage<?> result)
+		{
+			this.from = from;
+			this.sortState = sortState;
+			this.result = result;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public long getFrom()
+		{
+			return from;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public long getCount()
+		{
+			long count = result.max;
+			if (result.totalCount >= 0)
+			{
+				count = Math.min(result.totalCount - from, count);
+			}
+			return count >= 0 ? count : 0;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public long getTotalCount()
+		{
+			return result.totalCount;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@SuppressWarnings("unchecked")
+		public <S> IGridSortState<S> getSortState()
+		{
+			return (IGridSortState<S>)sortState;
+		}
+	}
+
+	private static class PrefetchTask<T> implements Callable<PrefetchedPage<T>>
+	{
+		private final IDataSource<T> dataSource;
+
+		private final IQuery query;
+
+		private final PrefetchedPage<T> page;
+
+		private PrefetchTask(IDataSource<T> dataSource, IQuery query, PrefetchedPage<T> page)
+		{
+			this.dataSource = dataSource;
+			this.query = query;
+			this.page = page;
+		}
+
+		public PrefetchedPage<T> call()
+		{
+			dataSource.query(query, page);
+			page.loadTime = System.currentTimeMillis();
+			return page;
+		}
+	}
+
+	private static class LoadedPage<T> implements Callable<PrefetchedPage<T>>
+	{
+		private final PrefetchedPage<T> page;
+
+		private LoadedPage(PrefetchedPage<T> page)
+		{
+			this.page = page;
+		}
+
+		public PrefetchedPage<T> call()
+		{
+			return page;
+		}
+	}
+
+	private static ExecutorService newPrefetchExecutor()
+	{
+		ThreadFactory threadFactory = new ThreadFactory()
+		{
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "inmethod-grid-prefetch-" +
+					count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<Runnable>(32), threadFactory,
+			new ThreadPoolExecutor.AbortPolicy());
+		// don't keep idle threads around
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Shuts down the prefetch executor of an application that is destroyed
+	 */
+	private static class PrefetchExecutorShutdown implements IApplicationListener
+	{
+		private static final PrefetchExecutorShutdown INSTANCE = new PrefetchExecutorShutdown();
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void onAfterInitialized(Application application)
+		{
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void onBeforeDestroyed(Application application)
+		{
+			ExecutorService executor;
+			synchronized (application)
+			{
+				executor = application.getMetaData(PREFETCH_EXECUTOR);
+				application.setMetaData(PREFETCH_EXECUTOR, null);
+			}
+			if (executor != null)
+			{
+				executor.shutdownNow();
+			}
 		}
 	}
 
@@ -382,6 +1038,12 @@ public abstract class AbstractPageableView<T> extends RefreshingView<T>
 		// process will put the actual item model's here
 		private final ArrayList<IModel<T>> itemCache = new ArrayList<IModel<T>>();
 
+		// the loaded items when prefetching, so that they can be kept for later
+		private List<T> loadedItems;
+
+		// whether the items came from a prefetched page
+		private boolean prefetched = false;
+
 		/**
 		 * @see IQueryResult#setItems(Iterator)
 		 */
@@ -413,10 +1075,20 @@ public abstract class AbstractPageableView<T> extends RefreshingView<T>
 				max = Math.min(max, totalCount - getCurrentPageFirstItem());
 			}
 
+			if (isPrefetch())
+			{
+				loadedItems = new ArrayList<T>();
+			}
+
 			// wrap the loaded items as IModels and add them to itemCache
 			while (max > 0 && items.hasNext())
 			{
-				itemCache.add(source.model(items.next()));
+				T item = items.next();
+				itemCache.add(source.model(item));
+				if (loadedItems != null)
+				{
+					loadedItems.add(item);
+				}
 				--max;
 			}
 
@@ -500,6 +1172,10 @@ public abstract class AbstractPageableView<T> extends RefreshingView<T>
 
 	private long getCurrentPageFirstItem()
 	{
+		if (windowed)
+		{
+			return currentPageFirstItem;
+		}
 		long rowsPerPage = getRowsPerPage();
 		return currentPageFirstItem - currentPageFirstItem % rowsPerPage;
 	}
@@ -1472,6 +1472,162 @@ InMethod.XTable.prototype = {
 		this.initCells(rowElement);
 	},
 	
+	/**
+	 * Replaces the cells of changed rows. Each patch is an array of the row id, the selection 
+	 * state of the row and the markup of the cells.
+	 */
+	patchRows: function(patches) {
+		for (var i = 0; i < patches.length; ++i) {
+			var row = Wicket.$(patches[i][0]);
+			if (row == null) {
+				continue;
+			}
+			
+			// cells can't be parsed outside of a table row
+			var container = document.createElement("div");
+			container.innerHTML = "<table><tbody><tr>" + patches[i][2] + "</tr></tbody></table>";
+			var cells = getChildren(container.getElementsByTagName("tr")[0], "TD");
+			
+			// the last cell is the padding cell, which stays 
+			var oldCells = getChildren(row, "TD");
+			var padding = oldCells[oldCells.length - 1];
+			for (var j = 0; j < oldCells.length - 1; ++j) {
+				row.removeChild(oldCells[j]);
+			}
+			for (var j = 0; j < cells.length; ++j) {
+				row.insertBefore(cells[j], padding);
+			}
+			
+			if (patches[i][1] == true) {
+				addClass(row, "imxt-selected");
+			} else {
+				removeClass(row, "imxt-selected");
+			}
+			
+			this.rowUpdated(row);
+		}
+	},
+	
+	/**
+	 * Needs to be called after the body was rendered with virtual scrolling. first is the index
+	 * of the first rendered row, count the number of rendered rows and total the total number
+	 * of rows or -1 if it is not known. callback requests the rows around the given row.
+	 */
+	initVirtualScrolling: function(callback, first, count, total) {
+		var requested = this.virtualScrolling != null ? this.virtualScrolling.requested : null;
+		this.virtualScrolling = { callback: callback, first: first, count: count, total: total, 
+				requested: requested, requestTime: null };
+		
+		var bodyContainer = this.getElement("div", "imxt-body-container1");
+		if (bodyContainer.imxtVirtualAttached != true) {
+			addListener(bodyContainer, "scroll", this.onVirtualScroll, this, true);
+			bodyContainer.imxtVirtualAttached = true;
+		}
+		
+		// the body table has been replaced, the column widths need to be set again  
+		this.attachEventHandlers();
+		this.prevColumnWidths = null;
+		this.updateVirtualSpacers();		
+		this.updateScrollTop = this.lastScrollTop;
+		this.update();
+		this.updateSelectCheckBoxes();
+		this.initCells(this.getBodyTable());
+		
+		// the user might have scrolled further while the rows were loading
+		this.checkVirtualWindow();
+	},
+	
+	/**
+	 * Returns the (average) height of the rendered rows.
+	 */
+	getVirtualRowHeight: function() {
+		var rows = this.getElements("tr", "imxt-grid-row", this.getBodyTable());
+		if (rows.length > 0) {
+			var first = rows[0];
+			var last = rows[rows.length - 1];
+			var height = (last.offsetTop + last.offsetHeight - first.offsetTop) / rows.length;
+			if (height > 0) {
+				this.virtualRowHeight = height;
+			}
+		}
+		return this.virtualRowHeight > 0 ? this.virtualRowHeight : 20;
+	},
+	
+	/**
+	 * Sizes the spacer rows so that they take the place of the rows that are not rendered.
+	 */
+	updateVirtualSpacers: function() {
+		var v = this.virtualScrolling;
+		var rowHeight = this.getVirtualRowHeight();
+		var after;
+		if (v.total >= 0) {
+			after = Math.max(v.total - v.first - v.count, 0);
+		} else {
+			// unknown count, leave room to scroll to the next window 
+			after = v.count;
+		}
+		this.setSpacerHeight("imxt-virtual-spacer-top", v.first * rowHeight);
+		this.setSpacerHeight("imxt-virtual-spacer-bottom", after * rowHeight);
+	},
+	
+	setSpacerHeight: function(className, height) {
+		var cells = this.getElements("td", className, this.getBodyTable());
+		for (var i = 0; i < cells.length; ++i) {
+			cells[i].style.height = Math.round(height) + "px";
+		}
+	},
+	
+	/**
+	 * Calback invoked when the body is scrolled with virtual scrolling.
+	 */
+	onVirtualScroll: function(event) {
+		if (this.virtualScrollTimeout != null) {
+			window.clearTimeout(this.virtualScrollTimeout);
+		}
+		this.virtualScrollTimeout = window.setTimeout(Wicket.bind(this.checkVirtualWindow, this), 100);
+	},
+	
+	/**
+	 * Requests the rows around the visible ones unless they are already rendered or requested. 
+	 */
+	checkVirtualWindow: function() {
+		this.virtualScrollTimeout = null;
+		
+		var v = this.virtualScrolling;
+		var bodyContainer = this.getElement("div", "imxt-body-container1");
+		if (v == null || bodyContainer == null) {
+			return;
+		}
+		
+		var rowHeight = this.getVirtualRowHeight();
+		var visibleFirst = Math.floor(bodyContainer.scrollTop / rowHeight);
+		var visibleLast = Math.ceil((bodyContainer.scrollTop + bodyContainer.clientHeight) / rowHeight);
+		if (v.total >= 0) {
+			visibleLast = Math.min(visibleLast, v.total);
+			visibleFirst = Math.min(visibleFirst, Math.max(v.total - 1, 0));
+		}
+		
+		if (visibleFirst >= v.first && visibleLast <= v.first + v.count) {
+			// already rendered
+			return;
+		}
+		
+		var now = new Date().getTime();
+		if (v.requestTime != null && now - v.requestTime < 5000) {
+			// wait for the pending request, the window is checked again when it's rendered
+			return;
+		}
+		if (v.requested == visibleFirst) {
+			// the rows have been requested and this is what the server rendered 
+			return;
+		}
+		
+		v.requested = visibleFirst;
+		v.requestTime = now;		
+		this.lastScrollTop = bodyContainer.scrollTop;
+		v.callback(visibleFirst);
+	},
+	
 	getCellId: function(cell) {
 		if (typeof(cell.imxtId) != "string") {
 			var index = 0;
@@ -1583,6 +1739,20 @@ InMethod.XTableManager.prototype = {
 		if (table != null) {
 			table.rowUpdated(row);
 		}
+	},
+	
+	patchRows: function(id, patches) {
+		var table = this.current[id];
+		if (table != null) {
+			table.patchRows(patches);
+		}
+	},
+	
+	initVirtualScrolling: function(id, callback, first, count, total) {
+		var table = this.current[id];
+		if (table != null) {
+			table.initVirtualScrolling(callback, first, count, total);
+		}
 	}
 };
 
@@ -4,19 +4,26 @@ import java.util.*;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
 import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.attributes.CallbackParameter;
+import org.apache.wicket.ajax.json.JSONObject;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.html.navigation.paging.IPageable;
 import org.apache.wicket.markup.repeater.Item;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
 import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.util.lang.Args;
 
 import com.inmethod.grid.IAppendableDataSource;
 import com.inmethod.grid.IDataSource;
 import com.inmethod.grid.IGridColumn;
 import com.inmethod.grid.IGridSortState;
 import com.inmethod.grid.common.AbstractGrid;
+import com.inmethod.grid.common.AbstractGridRow;
 import com.inmethod.grid.common.AbstractPageableView;
 
 /**
@@ -90,9 +97,31 @@ public class DataGrid<D extends IDataSource<T>, T, S> extends AbstractGrid<D, T,
 		@Override
 		protected long getRowsPerPage()
 		{
+			if (isVirtualScrolling())
+			{
+				return getVirtualScrollingWindowSize();
+			}
 			return DataGrid.this.getRowsPerPage();
 		}
 
+		@Override
+		protected boolean isVirtualScrolling()
+		{
+			return DataGrid.this.isVirtualScrolling();
+		}
+
+		@Override
+		protected boolean isPrefetch()
+		{
+			return DataGrid.this.isPrefetch();
+		}
+
+		@Override
+		protected Object getFilterState()
+		{
+			return DataGrid.this.getFilterState();
+		}
+
 		@Override
 		protected IGridSortState<S> getSortState()
 		{
@@ -148,11 +177,193 @@ public class DataGrid<D extends IDataSource<T>, T, S> extends AbstractGrid<D, T,
 		return rowsPerPage;
 	}
 
+	private boolean prefetch = false;
+
+	/**
+	 * Sets whether the next and the previous page are loaded in the background after a page is
+	 * rendered, so that paging to them doesn't have to wait for the {@link IDataSource}. The data
+	 * source must be able to run queries outside of the request thread, i.e. it can't rely on the
+	 * request cycle or on resources bound to the request thread.
+	 * <p>
+	 * If the data source is filtered, {@link #getFilterState()} has to return the filter so that
+	 * pages prefetched for a different filter are not displayed. The prefetched pages are discarded
+	 * when the items are marked dirty or updated. The queries run on the executor of the
+	 * application, see {@link AbstractPageableView#getPrefetchExecutor(org.apache.wicket.Application)}.
+	 * 
+	 * @param prefetch
+	 *            whether to prefetch the adjacent pages
+	 * @return <code>this</code> (useful for method chaining)
+	 */
+	public DataGrid<D, T, S> setPrefetch(boolean prefetch)
+	{
+		this.prefetch = prefetch;
+		if (!prefetch)
+		{
+			getBody().clearCache();
+		}
+		return this;
+	}
+
+	/**
+	 * @return whether the pages adjacent to the current page are loaded in the background
+	 * @see #setPrefetch(boolean)
+	 */
+	public boolean isPrefetch()
+	{
+		return prefetch;
+	}
+
+	/**
+	 * Returns the state of the data source that changes the rows it returns, usually its filter.
+	 * Prefetched pages are only used while this state is equal to the state they were loaded with,
+	 * so a filtered data source has to override this when prefetching. The returned object must
+	 * implement <code>equals</code> and <code>hashCode</code> and must not be changed afterwards.
+	 * 
+	 * @return filter state, <code>null</code> by default
+	 * @see #setPrefetch(boolean)
+	 */
+	protected Object getFilterState()
+	{
+		return null;
+	}
+
+	private boolean virtualScrolling = false;
+
+	private int virtualScrollingOverscan = 10;
+
+	/**
+	 * Sets whether the grid renders only the rows around the scrolled position instead of a page.
+	 * The body is then scrollable over all the rows of the data source and the window of rows is
+	 * fetched from the {@link IDataSource} as the user scrolls. The rows per page are used as the
+	 * number of visible rows, so they should match the content height.
+	 * <p>
+	 * Virtual scrolling requires the content height to be set (see
+	 * {@link #setContentHeight(Integer, com.inmethod.grid.SizeUnit)}) and paging toolbars should
+	 * not be used with it.
+	 * 
+	 * @param virtualScrolling
+	 *            whether to scroll virtually
+	 * @return <code>this</code> (useful for method chaining)
+	 */
+	public DataGrid<D, T, S> setVirtualScrolling(boolean virtualScrolling)
+	{
+		if (this.virtualScrolling != virtualScrolling)
+		{
+			this.virtualScrolling = virtualScrolling;
+			if (virtualScrolling)
+			{
+				// start at the top
+				getBody().setCurrentWindowFirstItem(0);
+			}
+			else if (getBody().isWindowed())
+			{
+				// back to pages, this also ends the window
+				getBody().setCurrentPage(0);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * @return whether the grid renders only the rows around the scrolled position
+	 * @see #setVirtualScrolling(boolean)
+	 */
+	public boolean isVirtualScrolling()
+	{
+		return virtualScrolling;
+	}
+
+	/**
+	 * Sets how many rows are rendered above and below the visible rows when scrolling virtually.
+	 * Scrolling within these rows doesn't need a request.
+	 * 
+	 * @param virtualScrollingOverscan
+	 *            count of the extra rows on each side
+	 * @return <code>this</code> (useful for method chaining)
+	 */
+	public DataGrid<D, T, S> setVirtualScrollingOverscan(int virtualScrollingOverscan)
+	{
+		Args.withinRange(0, Integer.MAX_VALUE, virtualScrollingOverscan, "virtualScrollingOverscan");
+		this.virtualScrollingOverscan = virtualScrollingOverscan;
+		return this;
+	}
+
+	/**
+	 * @return count of the extra rows rendered on each side of the visible rows
+	 * @see #setVirtualScrollingOverscan(int)
+	 */
+	public int getVirtualScrollingOverscan()
+	{
+		return virtualScrollingOverscan;
+	}
+
+	/**
+	 * @return count of rows rendered at once when scrolling virtually
+	 */
+	private long getVirtualScrollingWindowSize()
+	{
+		return getRowsPerPage() + 2L * virtualScrollingOverscan;
+	}
+
 	private void init()
 	{
-		((WebMarkupContainer)get("form:bodyContainer")).add(new Body("body"));
+		WebMarkupContainer bodyContainer = (WebMarkupContainer)get("form:bodyContainer");
+		bodyContainer.add(new Body("body"));
+		// on the body container so that it is initialized each time the body is rendered
+		bodyContainer.add(new VirtualScrollingBehavior());
   }
 
+	/**
+	 * Ajax behavior that renders the window of rows around the row the user scrolled to.
+	 */
+	private class VirtualScrollingBehavior extends AbstractDefaultAjaxBehavior
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void respond(AjaxRequestTarget target)
+		{
+			long first = getRequest().getRequestParameters()
+				.getParameterValue("first").toLong(0);
+
+			// the parameter comes from the client
+			long total = getTotalRowCount();
+			if (total != AbstractPageableView.UNKNOWN_COUNT)
+			{
+				first = Math.min(first, total);
+			}
+
+			// center the visible rows in the window
+			long windowFirst = Math.max(first - virtualScrollingOverscan, 0);
+
+			if (windowFirst != getBody().getCurrentWindowFirstItem())
+			{
+				getBody().setCurrentWindowFirstItem(windowFirst);
+			}
+			target.add(get("form:bodyContainer"));
+		}
+
+		@Override
+		public void renderHead(Component component, IHeaderResponse response)
+		{
+			super.renderHead(component, response);
+
+			// the grid itself is registered by the parent, which renders its head first
+			String script = "InMethod.XTableManager.instance.initVirtualScrolling(\"" +
+				DataGrid.this.getMarkupId() + "\", " +
+				getCallbackFunction(CallbackParameter.explicit("first")) + ", " +
+				getBody().getCurrentWindowFirstItem() + ", " + getCurrentPageItemCount() + ", " +
+				getTotalRowCount() + ");";
+			response.render(OnDomReadyHeaderItem.forScript(script));
+		}
+
+		@Override
+		public boolean isEnabled(Component component)
+		{
+			return isVirtualScrolling();
+		}
+	}
+
 	private Body getBody()
 	{
 		return (Body)get("form:bodyContainer:body");
@@ -321,19 +532,7 @@ public class DataGrid<D extends IDataSource<T>, T, S> extends AbstractGrid<D, T,
 		{
 			throw new IllegalArgumentException("rowModel may not be null");
 		}
-		WebMarkupContainer body = (WebMarkupContainer)get("form:bodyContainer:body:row");
-		if (body != null)
-		{
-			for (Component component : body)
-			{
-				IModel<T> model = (IModel<T>)component.getDefaultModel();
-				if (rowModel.equals(model))
-				{
-					return (WebMarkupContainer)component;
-				}
-			}
-		}
-		return null;
+		return getBody().getRow(rowModel);
 	}
 
 	private transient Set<IModel<T>> dirtyItems = null;
@@ -343,6 +542,11 @@ public class DataGrid<D extends IDataSource<T>, T, S> extends AbstractGrid<D, T,
 	@Override
 	protected void onBeforeRender()
 	{
+		if (isVirtualScrolling() && getContentHeight() <= 0)
+		{
+			throw new IllegalStateException(
+				"Virtual scrolling requires the content height to be set.");
+		}
 		super.onBeforeRender();
 		dirtyItems = null;
 	}
@@ -374,6 +578,19 @@ public class DataGrid<D extends IDataSource<T>, T, S> extends AbstractGrid<D, T,
 	{
 		allDirty = true;
 		dirtyItems = null;
+		discardPrefetched();
+	}
+
+	/**
+	 * The prefetched pages might contain the changed items.
+	 */
+	private void discardPrefetched()
+	{
+		Body body = getBody();
+		if (body != null)
+		{
+			body.discardPrefetched();
+		}
 	}
 
 	/**
@@ -392,27 +609,77 @@ public class DataGrid<D extends IDataSource<T>, T, S> extends AbstractGrid<D, T,
 	public void update()
 	{
 		AjaxRequestTarget target = getRequestCycle().find(AjaxRequestTarget.class);
+		if (allDirty || dirtyItems != null)
+		{
+			discardPrefetched();
+		}
 		if (allDirty)
 		{
 			target.add(this);
 		}
 		else if (dirtyItems != null)
 		{
-			WebMarkupContainer body = (WebMarkupContainer)get("form:bodyContainer:body:row");
-			if (body != null)
+			StringBuilder patches = new StringBuilder();
+			for (IModel<T> model : dirtyItems)
 			{
-				for (Component component : body)
+				Item<T> row = getBody().getRow(model);
+				if (row == null)
+				{
+					// not on the current page
+					continue;
+				}
+				AbstractGridRow<?, ?, ?> cells = (AbstractGridRow<?, ?, ?>)row.get("item");
+				if (isRowPatching() && cells.isLightWeight())
 				{
-					IModel<T> model = (IModel<T>)component.getDefaultModel();
-					if (dirtyItems.contains(model))
+					if (patches.length() > 0)
 					{
-						target.add(component);
+						patches.append(",");
 					}
+					patches.append("[\"").append(row.getMarkupId()).append("\",");
+					patches.append(isItemSelected(model)).append(",");
+					patches.append(JSONObject.quote(cells.renderLightWeightCells().toString()));
+					patches.append("]");
+				}
+				else
+				{
+					target.add(row);
 				}
 			}
+			if (patches.length() > 0)
+			{
+				target.appendJavaScript("InMethod.XTableManager.instance.patchRows(\"" +
+					getMarkupId() + "\", [" + patches + "]);");
+			}
 		}
 		dirtyItems = null;
 	}
+
+	private boolean rowPatching = false;
+
+	/**
+	 * Sets whether {@link #update()} sends only the cells of the changed rows instead of
+	 * re-rendering the row components. The cells of all changed rows are sent in a single script
+	 * that replaces the cells in place. This only applies to rows where all columns are
+	 * lightweight, the other rows are still re-rendered as a whole.
+	 * 
+	 * @param rowPatching
+	 *            whether to patch the cells of the changed rows
+	 * @return <code>this</code> (useful for method chaining)
+	 */
+	public DataGrid<D, T, S> setRowPatching(boolean rowPatching)
+	{
+		this.rowPatching = rowPatching;
+		return this;
+	}
+
+	/**
+	 * @return whether {@link #update()} sends only the cells of the changed lightweight rows
+	 * @see #setRowPatching(boolean)
+	 */
+	public boolean isRowPatching()
+	{
+		return rowPatching;
+	}
 	
 	/**
   * Insert the rowData into the grid
@@ -1,7 +1,10 @@
 package com.inmethod.grid.datagrid;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.apache.wicket.Component;
 import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.html.navigation.paging.IPageable;
@@ -44,6 +47,8 @@ public abstract class DataGridBody<D extends IDataSource<T>, T, S> extends Panel
 		setRenderBodyOnly(true);
 
 		add(new Data("row"));
+		add(new Spacer("topSpacer"));
+		add(new Spacer("bottomSpacer"));
 	}
 
 	protected abstract D getDataSource();
@@ -58,6 +63,37 @@ public abstract class DataGridBody<D extends IDataSource<T>, T, S> extends Panel
 
 	protected abstract void rowPopulated(WebMarkupContainer rowItem);
 
+	/**
+	 * Returns whether only a window of rows is rendered with spacer rows standing in for the rows
+	 * before and after it.
+	 * 
+	 * @return <code>true</code> if the body is virtually scrolled
+	 */
+	protected boolean isVirtualScrolling()
+	{
+		return false;
+	}
+
+	/**
+	 * Returns whether the pages before and after the current page are loaded in the background.
+	 * 
+	 * @return <code>true</code> to prefetch the adjacent pages
+	 */
+	protected boolean isPrefetch()
+	{
+		return false;
+	}
+
+	/**
+	 * Returns the filter state of the data source the prefetched pages were loaded for.
+	 * 
+	 * @return filter state or <code>null</code>
+	 */
+	protected Object getFilterState()
+	{
+		return null;
+	}
+
 	private Data getData()
 	{
 		return (Data)get("row");
@@ -67,12 +103,25 @@ public abstract class DataGridBody<D extends IDataSource<T>, T, S> extends Panel
   {
 		Item<T> item = getData().createItem(getCurrentPageItemCount() + 1L, rowModel);
 		getData().add(item);
+		getData().rowIndex = null;
 		return item;
 	}
   
   protected Item<T> createItem(long index, final IModel<T> rowModel)
   { return getData().createItem(index, rowModel); }
 
+	/**
+	 * Returns the rendered row for the given model.
+	 * 
+	 * @param rowModel
+	 *            row model
+	 * @return row item or <code>null</code> if the row is not rendered
+	 */
+	Item<T> getRow(IModel<T> rowModel)
+	{
+		return getData().getRow(rowModel);
+	}
+
 	long getTotalRowCount()
 	{	
     return getData().getTotalRowCount(); 
@@ -83,11 +132,31 @@ public abstract class DataGridBody<D extends IDataSource<T>, T, S> extends Panel
     getData().clearCache(); 
   }
 
+	void discardPrefetched()
+	{
+		getData().discardPrefetched();
+	}
+
 	long getCurrentPageItemCount()
 	{
 		return getData().getCurrentPageItemCount();
 	}
 
+	long getCurrentWindowFirstItem()
+	{
+		return getData().getCurrentWindowFirstItem();
+	}
+
+	void setCurrentWindowFirstItem(long firstItem)
+	{
+		getData().setCurrentWindowFirstItem(firstItem);
+	}
+
+	boolean isWindowed()
+	{
+		return getData().isWindowed();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -112,16 +181,75 @@ public abstract class DataGridBody<D extends IDataSource<T>, T, S> extends Panel
 		getData().setCurrentPage(page);
 	}
 
+	/**
+	 * Empty row that takes the place of the rows outside of the rendered window. The height is set
+	 * by the javascript.
+	 */
+	private class Spacer extends WebMarkupContainer
+	{
+		private static final long serialVersionUID = 1L;
+
+		private Spacer(String id)
+		{
+			super(id);
+			add(new WebMarkupContainer("cell")
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void onComponentTag(ComponentTag tag)
+				{
+					super.onComponentTag(tag);
+					// the active columns and the padding column
+					tag.put("colspan", getActiveColumns().size() + 1);
+				}
+			});
+		}
+
+		@Override
+		public boolean isVisible()
+		{
+			return isVirtualScrolling();
+		}
+	}
+
 	class Data extends AbstractPageableView<T>
 	{
 		private static final long serialVersionUID = 1L;
 
+		/**
+		 * Rows by their model, built on first use after the rows were populated so that finding
+		 * a row doesn't need to compare it with every rendered row.
+		 */
+		private transient Map<IModel<T>, Item<T>> rowIndex;
+
 		private Data(String id)
 		{
 			super(id);
 			setItemReuseStrategy(ReuseIfModelsEqualStrategy.getInstance());
 		}
 
+		@Override
+		protected void onBeforeRender()
+		{
+			// the rows are populated again
+			rowIndex = null;
+			super.onBeforeRender();
+		}
+
+		private Item<T> getRow(IModel<T> rowModel)
+		{
+			if (rowIndex == null)
+			{
+				rowIndex = new HashMap<IModel<T>, Item<T>>(size() * 2);
+				for (Component component : this)
+				{
+					rowIndex.put((IModel<T>)component.getDefaultModel(), (Item<T>)component);
+				}
+			}
+			return rowIndex.get(rowModel);
+		}
+
 		@Override
 		protected D getDataSource()
 		{
@@ -140,6 +268,18 @@ public abstract class DataGridBody<D extends IDataSource<T>, T, S> extends Panel
 			return DataGridBody.this.getSortState();
 		}
 
+		@Override
+		protected boolean isPrefetch()
+		{
+			return DataGridBody.this.isPrefetch();
+		}
+
+		@Override
+		protected Object getFilterState()
+		{
+			return DataGridBody.this.getFilterState();
+		}
+
 		//TODO: Should wrapQuery be removed?
         @Override
 		protected IDataSource.IQuery wrapQuery(final IDataSource.IQuery original)
@@ -220,7 +360,14 @@ public abstract class DataGridBody<D extends IDataSource<T>, T, S> extends Panel
           klass = klass + " ";
         }
 
-				if (getIndex() % 2 == 0)
+				long index = getIndex();
+				if (isWindowed())
+				{
+					// keep the stripes stable while the window moves
+					index += getCurrentWindowFirstItem();
+				}
+
+				if (index % 2 == 0)
 				{
 					klass = klass + "imxt-even";
 				}
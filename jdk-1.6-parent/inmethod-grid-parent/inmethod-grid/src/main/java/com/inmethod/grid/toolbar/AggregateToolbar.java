@@ -0,0 +1,261 @@
+package com.inmethod.grid.toolbar;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.util.convert.IConverter;
+import org.apache.wicket.util.lang.Args;
+
+import com.inmethod.grid.Aggregate;
+import com.inmethod.grid.AggregateResult;
+import com.inmethod.grid.IAggregatingDataSource;
+import com.inmethod.grid.IGridColumn;
+import com.inmethod.grid.IGridSortState;
+import com.inmethod.grid.datagrid.DataGrid;
+
+/**
+ * Header toolbar that displays aggregates (e.g. totals) of the grid rows below the column names.
+ * The aggregates are computed by the {@link IAggregatingDataSource} so the rows don't have to be
+ * loaded to compute them.
+ * <p>
+ * The computed aggregates are cached for the state returned by {@link #getFilterState()}, which
+ * subclasses have to implement: it must change whenever the filter of the data source changes,
+ * otherwise stale aggregates are displayed. The sort state is not part of the cache key as it
+ * doesn't change the aggregates. Call {@link #invalidate()} when the data changes.
+ *
+ * <pre>
+ * AggregateToolbar&lt;...&gt; totals = new AggregateToolbar&lt;...&gt;(grid)
+ * {
+ * 	protected Object getFilterState()
+ * 	{
+ * 		return filterModel.getObject();
+ * 	}
+ * };
+ * totals.addAggregate(&quot;price&quot;, Aggregate.sum(&quot;price&quot;));
+ * grid.addHeaderToolbar(totals);
+ * </pre>
+ *
+ * @param <D>
+ *            datasource model object type = grid type
+ * @param <T>
+ *            row/item model object type
+ */
+public abstract class AggregateToolbar<D extends IAggregatingDataSource<T>, T, S> extends
+	AbstractHeaderToolbar<D, T, S>
+{
+	private static final long serialVersionUID = 1L;
+
+	// how many results (for different filter states) are kept
+	private static final int MAX_CACHED_RESULTS = 4;
+
+	private final Map<String, Aggregate> aggregates = new HashMap<String, Aggregate>();
+
+	private String groupProperty;
+
+	private final Map<Object, AggregateResult> cache = new LinkedHashMap<Object, AggregateResult>(
+		MAX_CACHED_RESULTS, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, AggregateResult> eldest)
+		{
+			return size() > MAX_CACHED_RESULTS;
+		}
+	};
+
+	/**
+	 * Constructor
+	 *
+	 * @param grid
+	 *            data grid this toolbar will be attached to
+	 */
+	public AggregateToolbar(final DataGrid<D, T, S> grid)
+	{
+		super(grid, null);
+
+		IModel<List<IGridColumn<D, T, S>>> columns = new LoadableDetachableModel<List<IGridColumn<D, T, S>>>()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected List<IGridColumn<D, T, S>> load()
+			{
+				return new ArrayList<IGridColumn<D, T, S>>(getActiveColumns());
+			}
+		};
+
+		add(new ListView<IGridColumn<D, T, S>>("cell", columns)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void populateItem(ListItem<IGridColumn<D, T, S>> item)
+			{
+				IGridColumn<D, T, S> column = item.getModelObject();
+				Aggregate aggregate = aggregates.get(column.getId());
+				String value = "";
+				if (aggregate != null)
+				{
+					value = format(column, aggregate, getAggregateResult().getValue(aggregate));
+				}
+				item.add(new Label("value", value));
+			}
+		});
+	}
+
+	/**
+	 * Returns the {@link DataGrid} instance this toolbar belongs to.
+	 *
+	 * @return {@link DataGrid} instance this toolbar belongs to.
+	 */
+	public DataGrid<D, T, S> getDataGrid()
+	{
+		return (DataGrid<D, T, S>)super.getGrid();
+	}
+
+	/**
+	 * Displays an aggregate in the cell of a column.
+	 *
+	 * @param columnId
+	 *            id of the column
+	 * @param aggregate
+	 *            aggregate to display
+	 * @return <code>this</code> (useful for method chaining)
+	 */
+	public AggregateToolbar<D, T, S> addAggregate(String columnId, Aggregate aggregate)
+	{
+		Args.notNull(columnId, "columnId");
+		Args.notNull(aggregate, "aggregate");
+		aggregates.put(columnId, aggregate);
+		invalidate();
+		return this;
+	}
+
+	/**
+	 * Sets the property by which the aggregates are grouped as well. The group values are not
+	 * displayed by the toolbar but are available from {@link #getAggregateResult()}.
+	 *
+	 * @param groupProperty
+	 *            property to group by or <code>null</code>
+	 * @return <code>this</code> (useful for method chaining)
+	 */
+	public AggregateToolbar<D, T, S> setGroupProperty(String groupProperty)
+	{
+		this.groupProperty = groupProperty;
+		invalidate();
+		return this;
+	}
+
+	/**
+	 * @return the property by which the aggregates are grouped or <code>null</code>
+	 */
+	public String getGroupProperty()
+	{
+		return groupProperty;
+	}
+
+	/**
+	 * Discards the cached aggregates. Needs to be called when the data changes.
+	 */
+	public void invalidate()
+	{
+		cache.clear();
+	}
+
+	/**
+	 * Returns the state that affects the aggregates, usually the filter of the data source. The
+	 * aggregates are cached separately for each filter state, so the returned object must
+	 * implement <code>equals</code> and <code>hashCode</code> and must not be changed afterwards
+	 * (return a copy of a mutable filter). A data source without a filter can return
+	 * <code>null</code>.
+	 *
+	 * @return filter state
+	 */
+	protected abstract Object getFilterState();
+
+	/**
+	 * Returns the aggregates for the current filter state, computing them if they aren't cached.
+	 *
+	 * @return aggregate result
+	 */
+	public AggregateResult getAggregateResult()
+	{
+		Object key = getFilterState();
+
+		AggregateResult result = cache.get(key);
+		if (result == null)
+		{
+			result = new AggregateResult();
+			getDataGrid().getDataSource().aggregate(new Query(), result);
+			cache.put(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Converts an aggregate value to the displayed string. By default the converter for the type of
+	 * the value is used.
+	 *
+	 * @param column
+	 * @param aggregate
+	 * @param value
+	 *            aggregate value, might be <code>null</code>
+	 * @return displayed string
+	 */
+	protected String format(IGridColumn<D, T, S> column, Aggregate aggregate, Object value)
+	{
+		if (value == null)
+		{
+			return "";
+		}
+		@SuppressWarnings("unchecked")
+		IConverter<Object> converter = (IConverter<Object>)getConverter(value.getClass());
+		return converter.convertToString(value, getLocale());
+	}
+
+	/**
+	 * Query for all the aggregates of this toolbar.
+	 */
+	private class Query implements IAggregatingDataSource.IAggregateQuery
+	{
+		public List<Aggregate> getAggregates()
+		{
+			return new ArrayList<Aggregate>(aggregates.values());
+		}
+
+		public String getGroupProperty()
+		{
+			return groupProperty;
+		}
+
+		public long getFrom()
+		{
+			return 0;
+		}
+
+		public long getCount()
+		{
+			return getTotalCount();
+		}
+
+		public long getTotalCount()
+		{
+			return getDataGrid().getTotalRowCount();
+		}
+
+		@SuppressWarnings("unchecked")
+		public IGridSortState<S> getSortState()
+		{
+			return getDataGrid().getSortState();
+		}
+	}
+}
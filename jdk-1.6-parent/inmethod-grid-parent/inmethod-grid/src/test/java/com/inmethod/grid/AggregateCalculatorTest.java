@@ -0,0 +1,192 @@
+package com.inmethod.grid;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the aggregates computed by {@link AggregateCalculator}.
+ */
+public class AggregateCalculatorTest extends Assert
+{
+	private static final Aggregate SUM = Aggregate.sum("value");
+
+	private static final Aggregate AVG = Aggregate.avg("value");
+
+	private static final Aggregate MIN = Aggregate.min("value");
+
+	private static final Aggregate MAX = Aggregate.max("value");
+
+	private static final Aggregate COUNT = Aggregate.count("value");
+
+	private static final List<Aggregate> ALL = Arrays.asList(SUM, AVG, MIN, MAX, COUNT);
+
+	private static AggregateResult calculate(List<Aggregate> aggregates, String groupProperty,
+		List<TestRow> rows)
+	{
+		AggregateCalculator calculator = new AggregateCalculator(aggregates, groupProperty);
+		calculator.addAll(rows.iterator());
+		AggregateResult result = new AggregateResult();
+		calculator.setResult(result);
+		return result;
+	}
+
+	private static List<TestRow> rows(Number... values)
+	{
+		List<TestRow> rows = new ArrayList<TestRow>();
+		for (int i = 0; i < values.length; i++)
+		{
+			rows.add(new TestRow(i, "row " + i, values[i], i % 2 == 0 ? "even" : "odd"));
+		}
+		return rows;
+	}
+
+	private static void assertDecimal(String expected, Object actual)
+	{
+		assertTrue(String.valueOf(actual), actual instanceof BigDecimal);
+		assertEquals(actual.toString(), 0, new BigDecimal(expected).compareTo((BigDecimal)actual));
+	}
+
+	@Test
+	public void totals()
+	{
+		AggregateResult result = calculate(ALL, null, new TestDataSource(10).getRows());
+
+		assertDecimal("45", result.getValue(SUM));
+		assertDecimal("4.5", result.getValue(AVG));
+		assertEquals(0, result.getValue(MIN));
+		assertEquals(9, result.getValue(MAX));
+		assertEquals(10L, result.getValue(COUNT));
+		assertTrue(result.getGroups().isEmpty());
+	}
+
+	@Test
+	public void noRows()
+	{
+		AggregateResult result = calculate(ALL, "group", new ArrayList<TestRow>());
+
+		assertNull(result.getValue(SUM));
+		assertNull(result.getValue(AVG));
+		assertNull(result.getValue(MIN));
+		assertNull(result.getValue(MAX));
+		assertEquals(0L, result.getValue(COUNT));
+		assertTrue(result.getGroups().isEmpty());
+	}
+
+	@Test
+	public void nullValuesAreSkipped()
+	{
+		AggregateResult result = calculate(ALL, null, rows(null, 4, null, 2));
+
+		assertDecimal("6", result.getValue(SUM));
+		assertDecimal("3", result.getValue(AVG));
+		assertEquals(2, result.getValue(MIN));
+		assertEquals(4, result.getValue(MAX));
+		assertEquals(2L, result.getValue(COUNT));
+	}
+
+	@Test
+	public void onlyNullValues()
+	{
+		AggregateResult result = calculate(ALL, null, rows(null, null));
+
+		assertNull(result.getValue(SUM));
+		assertNull(result.getValue(AVG));
+		assertNull(result.getValue(MIN));
+		assertNull(result.getValue(MAX));
+		assertEquals(0L, result.getValue(COUNT));
+	}
+
+	@Test
+	public void mixedNumberTypes()
+	{
+		AggregateResult result = calculate(ALL, null, rows(1, 2L, 0.5d, new BigDecimal("1.25"),
+			BigInteger.valueOf(3)));
+
+		assertDecimal("7.75", result.getValue(SUM));
+		assertDecimal("1.55", result.getValue(AVG));
+		assertEquals(0.5d, result.getValue(MIN));
+		assertEquals(BigInteger.valueOf(3), result.getValue(MAX));
+		assertEquals(5L, result.getValue(COUNT));
+	}
+
+	@Test
+	public void mixedNumberTypesWithEqualValues()
+	{
+		AggregateResult result = calculate(ALL, null, rows(2L, 2, 2.0f));
+
+		assertDecimal("6", result.getValue(SUM));
+		// the first of the equal values is kept
+		assertEquals(2L, result.getValue(MIN));
+		assertEquals(2L, result.getValue(MAX));
+	}
+
+	@Test
+	public void comparableValues()
+	{
+		Aggregate min = Aggregate.min("name");
+		Aggregate max = Aggregate.max("name");
+		Aggregate count = Aggregate.count("name");
+		List<TestRow> rows = rows(1, 2, 3);
+		rows.get(1).setName(null);
+
+		AggregateResult result = calculate(Arrays.asList(min, max, count), null, rows);
+
+		assertEquals("row 0", result.getValue(min));
+		assertEquals("row 2", result.getValue(max));
+		assertEquals(2L, result.getValue(count));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void sumOfNonNumericValues()
+	{
+		calculate(Arrays.asList(Aggregate.sum("name")), null, rows(1));
+	}
+
+	@Test
+	public void groups()
+	{
+		List<TestRow> rows = rows(5, 1, null, 3, 7);
+		rows.add(new TestRow(5, "row 5", 10, null));
+
+		AggregateResult result = calculate(ALL, "group", rows);
+
+		// the groups are in the order of their first rows, rows without a group are a group too
+		assertEquals(Arrays.asList("even", "odd", null), new ArrayList<Object>(result.getGroups()));
+
+		assertDecimal("12", result.getGroupValue("even", SUM));
+		assertDecimal("6", result.getGroupValue("even", AVG));
+		assertEquals(5, result.getGroupValue("even", MIN));
+		assertEquals(7, result.getGroupValue("even", MAX));
+		assertEquals(2L, result.getGroupValue("even", COUNT));
+
+		assertDecimal("4", result.getGroupValue("odd", SUM));
+		assertEquals(1, result.getGroupValue("odd", MIN));
+		assertEquals(3, result.getGroupValue("odd", MAX));
+		assertEquals(2L, result.getGroupValue("odd", COUNT));
+
+		assertDecimal("10", result.getGroupValue(null, SUM));
+		assertEquals(1L, result.getGroupValue(null, COUNT));
+
+		// the totals include all groups
+		assertDecimal("26", result.getValue(SUM));
+		assertEquals(5L, result.getValue(COUNT));
+	}
+
+	@Test
+	public void groupWithOnlyNullValues()
+	{
+		AggregateResult result = calculate(ALL, "group", rows(1, null));
+
+		assertNull(result.getGroupValue("odd", SUM));
+		assertNull(result.getGroupValue("odd", AVG));
+		assertNull(result.getGroupValue("odd", MIN));
+		assertEquals(0L, result.getGroupValue("odd", COUNT));
+		assertEquals(1, result.getGroupValue("even", MIN));
+	}
+}
@@ -0,0 +1,71 @@
+package com.inmethod.grid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+
+/**
+ * Data source with the rows of a list that can be changed by the tests.
+ */
+public class TestDataSource implements IAggregatingDataSource<TestRow>
+{
+	private static final long serialVersionUID = 1L;
+
+	private final List<TestRow> rows = new ArrayList<TestRow>();
+
+	private int aggregateCount;
+
+	/**
+	 * Creates a data source with the given number of rows, the rows have the ids and values from
+	 * 0.
+	 * 
+	 * @param count
+	 */
+	public TestDataSource(int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			rows.add(new TestRow(i, "row " + i, i, i % 2 == 0 ? "even" : "odd"));
+		}
+	}
+
+	public List<TestRow> getRows()
+	{
+		return rows;
+	}
+
+	public void query(IQuery query, IQueryResult<TestRow> result)
+	{
+		int from = (int)Math.min(query.getFrom(), rows.size());
+		int to = (int)Math.min(query.getFrom() + query.getCount(), rows.size());
+		result.setTotalCount(rows.size());
+		result.setItems(new ArrayList<TestRow>(rows.subList(from, to)).iterator());
+	}
+
+	public IModel<TestRow> model(TestRow object)
+	{
+		return Model.of(object);
+	}
+
+	public void aggregate(IAggregateQuery query, IAggregateResult result)
+	{
+		aggregateCount++;
+		AggregateCalculator calculator = new AggregateCalculator(query);
+		calculator.addAll(rows.iterator());
+		calculator.setResult(result);
+	}
+
+	/**
+	 * @return how many times the aggregates have been computed
+	 */
+	public int getAggregateCount()
+	{
+		return aggregateCount;
+	}
+
+	public void detach()
+	{
+	}
+}
@@ -0,0 +1,64 @@
+package com.inmethod.grid;
+
+import java.io.Serializable;
+
+/**
+ * Row of the {@link TestDataSource}.
+ */
+public class TestRow implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private final int id;
+
+	private String name;
+
+	private Number value;
+
+	private String group;
+
+	public TestRow(int id, String name, Number value, String group)
+	{
+		this.id = id;
+		this.name = name;
+		this.value = value;
+		this.group = group;
+	}
+
+	public int getId()
+	{
+		return id;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public void setName(String name)
+	{
+		this.name = name;
+	}
+
+	public Number getValue()
+	{
+		return value;
+	}
+
+	public String getGroup()
+	{
+		return group;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		return obj instanceof TestRow && ((TestRow)obj).id == id;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return id;
+	}
+}
@@ -0,0 +1,340 @@
+package com.inmethod.grid.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.wicket.markup.repeater.Item;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.util.tester.WicketTester;
+import org.apache.wicket.util.time.Duration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.inmethod.grid.IDataSource;
+import com.inmethod.grid.IGridSortState;
+
+/**
+ * Tests the prefetching of {@link AbstractPageableView}.
+ */
+public class AbstractPageableViewTest extends Assert
+{
+	/**
+	 * Data source with the numbers from zero that records the first item of every query.
+	 */
+	private static class NumberDataSource implements IDataSource<Integer>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int count;
+
+		private final List<Long> queries = Collections.synchronizedList(new ArrayList<Long>());
+
+		private NumberDataSource(int count)
+		{
+			this.count = count;
+		}
+
+		public void query(IQuery query, IQueryResult<Integer> result)
+		{
+			queries.add(query.getFrom());
+			List<Integer> items = new ArrayList<Integer>();
+			for (long i = query.getFrom(); i < query.getFrom() + query.getCount() && i < count; i++)
+			{
+				items.add((int)i);
+			}
+			result.setTotalCount(count);
+			result.setItems(items.iterator());
+		}
+
+		public IModel<Integer> model(Integer object)
+		{
+			return Model.of(object);
+		}
+
+		public void detach()
+		{
+		}
+
+		private int getQueryCount(long from)
+		{
+			return Collections.frequency(queries, from);
+		}
+	}
+
+	private static class TestView extends AbstractPageableView<Integer>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private NumberDataSource dataSource;
+
+		private Object filterState;
+
+		private Duration maxPrefetchedPageAge = Duration.minutes(1);
+
+		private TestView(NumberDataSource dataSource)
+		{
+			super("view");
+			this.dataSource = dataSource;
+		}
+
+		@Override
+		protected boolean isPrefetch()
+		{
+			return true;
+		}
+
+		@Override
+		protected Executor getPrefetchExecutor()
+		{
+			// run the prefetch queries right away
+			return new Executor()
+			{
+				public void execute(Runnable command)
+				{
+					command.run();
+				}
+			};
+		}
+
+		@Override
+		protected Duration getMaxPrefetchedPageAge()
+		{
+			return maxPrefetchedPageAge;
+		}
+
+		@Override
+		protected Object getFilterState()
+		{
+			return filterState;
+		}
+
+		@Override
+		protected IGridSortState getSortState()
+		{
+			return null;
+		}
+
+		@Override
+		protected IDataSource<Integer> getDataSource()
+		{
+			return dataSource;
+		}
+
+		@Override
+		protected long getRowsPerPage()
+		{
+			return 10;
+		}
+
+		@Override
+		protected void populateItem(Item<Integer> item)
+		{
+		}
+
+		/**
+		 * @return the first item of the current page
+		 */
+		private Integer getFirstItem()
+		{
+			Iterator<IModel<Integer>> models = getItemModels();
+			return models.hasNext() ? models.next().getObject() : null;
+		}
+	}
+
+	private WicketTester tester;
+
+	private NumberDataSource dataSource;
+
+	private TestView view;
+
+	@Before
+	public void setUp()
+	{
+		tester = new WicketTester();
+		dataSource = new NumberDataSource(100);
+		view = new TestView(dataSource);
+	}
+
+	@After
+	public void tearDown()
+	{
+		tester.destroy();
+	}
+
+	@Test
+	public void adjacentPagesArePrefetched()
+	{
+		assertEquals(Integer.valueOf(0), view.getFirstItem());
+		assertEquals(1, dataSource.getQueryCount(0));
+		assertEquals(1, dataSource.getQueryCount(10));
+
+		view.setCurrentPage(1);
+		assertEquals(Integer.valueOf(10), view.getFirstItem());
+		assertEquals(10, view.getCurrentPageItemCount());
+		assertEquals(1, dataSource.getQueryCount(10));
+		assertEquals(1, dataSource.getQueryCount(20));
+
+		// the previous page has been kept
+		view.setCurrentPage(0);
+		assertEquals(Integer.valueOf(0), view.getFirstItem());
+		assertEquals(1, dataSource.getQueryCount(0));
+	}
+
+	@Test
+	public void renderedPageIsQueriedAgain()
+	{
+		assertEquals(Integer.valueOf(0), view.getFirstItem());
+
+		// the current page is rendered again, e.g. after its items have changed
+		view.detach();
+		assertEquals(Integer.valueOf(0), view.getFirstItem());
+		assertEquals(2, dataSource.getQueryCount(0));
+	}
+
+	@Test
+	public void pagesAreKeyedByFilterState()
+	{
+		assertEquals(Integer.valueOf(0), view.getFirstItem());
+
+		view.filterState = "filtered";
+		view.setCurrentPage(1);
+		assertEquals(Integer.valueOf(10), view.getFirstItem());
+		assertEquals(2, dataSource.getQueryCount(10));
+
+		// equal filter states share the pages
+		view.filterState = new String("filtered");
+		view.setCurrentPage(2);
+		assertEquals(Integer.valueOf(20), view.getFirstItem());
+		assertEquals(1, dataSource.getQueryCount(20));
+	}
+
+	@Test
+	public void pagesAreKeyedByDataSource()
+	{
+		assertEquals(Integer.valueOf(0), view.getFirstItem());
+
+		NumberDataSource other = new NumberDataSource(100);
+		view.dataSource = other;
+		view.setCurrentPage(1);
+		assertEquals(Integer.valueOf(10), view.getFirstItem());
+		assertEquals(1, other.getQueryCount(10));
+	}
+
+	@Test
+	public void expiredPagesAreQueriedAgain()
+	{
+		view.maxPrefetchedPageAge = Duration.NONE;
+		assertEquals(Integer.valueOf(0), view.getFirstItem());
+
+		view.setCurrentPage(1);
+		assertEquals(Integer.valueOf(10), view.getFirstItem());
+		assertEquals(2, dataSource.getQueryCount(10));
+	}
+
+	@Test
+	public void leastRecentlyUsedPagesAreEvicted()
+	{
+		for (int page = 0; page < 6; page++)
+		{
+			view.setCurrentPage(page);
+			assertEquals(Integer.valueOf(page * 10), view.getFirstItem());
+			assertEquals(1, dataSource.getQueryCount(page * 10));
+		}
+
+		// only the last four pages are kept
+		view.setCurrentPage(4);
+		assertEquals(Integer.valueOf(40), view.getFirstItem());
+		assertEquals(1, dataSource.getQueryCount(40));
+
+		view.setCurrentPage(0);
+		assertEquals(Integer.valueOf(0), view.getFirstItem());
+		assertEquals(2, dataSource.getQueryCount(0));
+	}
+
+	@Test
+	public void discardedPagesAreQueriedAgain()
+	{
+		assertEquals(Integer.valueOf(0), view.getFirstItem());
+
+		view.discardPrefetched();
+		view.setCurrentPage(1);
+		assertEquals(Integer.valueOf(10), view.getFirstItem());
+		assertEquals(2, dataSource.getQueryCount(10));
+	}
+
+	@Test
+	public void windowIsNotAlignedToPages()
+	{
+		view.setCurrentWindowFirstItem(15);
+		assertTrue(view.isWindowed());
+		assertEquals(15, view.getCurrentWindowFirstItem());
+		assertEquals(Integer.valueOf(15), view.getFirstItem());
+		assertEquals(10, view.getCurrentPageItemCount());
+
+		// paging aligns the items to the pages again
+		view.setCurrentPage(1);
+		assertFalse(view.isWindowed());
+		assertEquals(10, view.getCurrentWindowFirstItem());
+		assertEquals(Integer.valueOf(10), view.getFirstItem());
+	}
+
+	@Test
+	public void windowAtEndOfData()
+	{
+		view.setCurrentWindowFirstItem(95);
+		assertEquals(Integer.valueOf(95), view.getFirstItem());
+		assertEquals(5, view.getCurrentPageItemCount());
+		assertEquals(100, view.getTotalRowCount());
+	}
+
+	@Test
+	public void windowPastEndOfData()
+	{
+		assertEquals(100, view.getTotalRowCount());
+
+		// e.g. the data has shrunk, the last page is displayed instead
+		view.setCurrentWindowFirstItem(200);
+		assertEquals(Integer.valueOf(90), view.getFirstItem());
+		assertEquals(90, view.getCurrentWindowFirstItem());
+		assertEquals(10, view.getCurrentPageItemCount());
+	}
+
+	@Test
+	public void windowOfEmptyData()
+	{
+		view.dataSource = new NumberDataSource(0);
+		view.setCurrentWindowFirstItem(15);
+		assertNull(view.getFirstItem());
+		assertEquals(0, view.getTotalRowCount());
+		assertEquals(0, view.getCurrentWindowFirstItem());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void negativeWindowIsRejected()
+	{
+		view.setCurrentWindowFirstItem(-1);
+	}
+
+	@Test
+	public void prefetchExecutorIsShutDownWithApplication()
+	{
+		ExecutorService executor = AbstractPageableView.getPrefetchExecutor(tester.getApplication());
+		assertSame(executor, AbstractPageableView.getPrefetchExecutor(tester.getApplication()));
+
+		ExecutorService custom = Executors.newSingleThreadExecutor();
+		AbstractPageableView.setPrefetchExecutor(tester.getApplication(), custom);
+		assertTrue(executor.isShutdown());
+		assertSame(custom, AbstractPageableView.getPrefetchExecutor(tester.getApplication()));
+
+		tester.destroy();
+		assertTrue(custom.isShutdown());
+	}
+}
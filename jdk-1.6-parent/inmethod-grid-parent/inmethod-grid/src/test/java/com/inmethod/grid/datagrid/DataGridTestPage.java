@@ -0,0 +1,76 @@
+package com.inmethod.grid.datagrid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+
+import com.inmethod.grid.IGridColumn;
+import com.inmethod.grid.TestDataSource;
+import com.inmethod.grid.TestRow;
+import com.inmethod.grid.column.PropertyColumn;
+
+/**
+ * Page with a {@link DataGrid} of {@link TestRow}s.
+ */
+public class DataGridTestPage extends WebPage implements IMarkupResourceStreamProvider
+{
+	private static final long serialVersionUID = 1L;
+
+	private final DataGrid<TestDataSource, TestRow, String> grid;
+
+	public DataGridTestPage(TestDataSource dataSource)
+	{
+		List<IGridColumn<TestDataSource, TestRow, String>> columns = new ArrayList<IGridColumn<TestDataSource, TestRow, String>>();
+		columns.add(new PropertyColumn<TestDataSource, TestRow, Object, String>("id",
+			Model.of("Id"), "id"));
+		columns.add(new PropertyColumn<TestDataSource, TestRow, Object, String>("name",
+			Model.of("Name"), "name"));
+		columns.add(new PropertyColumn<TestDataSource, TestRow, Object, String>("value",
+			Model.of("Value"), "value"));
+
+		grid = new DataGrid<TestDataSource, TestRow, String>("grid", dataSource, columns);
+		add(grid);
+	}
+
+	public DataGrid<TestDataSource, TestRow, String> getGrid()
+	{
+		return grid;
+	}
+
+	/**
+	 * @return the body of the grid
+	 */
+	DataGridBody<TestDataSource, TestRow, String> getBody()
+	{
+		@SuppressWarnings("unchecked")
+		DataGridBody<TestDataSource, TestRow, String> body = (DataGridBody<TestDataSource, TestRow, String>)grid.get("form:bodyContainer:body");
+		return body;
+	}
+
+	/**
+	 * @return the ids of the rendered rows
+	 */
+	List<Integer> getRenderedIds()
+	{
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Component row : (MarkupContainer)getBody().get("row"))
+		{
+			ids.add(((TestRow)row.getDefaultModelObject()).getId());
+		}
+		return ids;
+	}
+
+	public IResourceStream getMarkupResourceStream(MarkupContainer container,
+		Class<?> containerClass)
+	{
+		return new StringResourceStream(
+			"<html><body><div wicket:id=\"grid\"></div></body></html>");
+	}
+}
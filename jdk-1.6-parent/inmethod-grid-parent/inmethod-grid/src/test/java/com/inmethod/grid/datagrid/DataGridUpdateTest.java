@@ -0,0 +1,191 @@
+package com.inmethod.grid.datagrid;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.json.JSONArray;
+import org.apache.wicket.markup.repeater.Item;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.inmethod.grid.TestDataSource;
+import com.inmethod.grid.TestRow;
+
+/**
+ * Tests finding the rendered rows of a {@link DataGrid} and updating them.
+ */
+public class DataGridUpdateTest extends Assert
+{
+	/**
+	 * Renames rows and updates them in the grid.
+	 */
+	private static class RenameBehavior extends AbstractDefaultAjaxBehavior
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final List<Integer> ids;
+
+		private final String name;
+
+		private RenameBehavior(String name, Integer... ids)
+		{
+			this.name = name;
+			this.ids = Arrays.asList(ids);
+		}
+
+		@Override
+		protected void respond(AjaxRequestTarget target)
+		{
+			DataGrid<TestDataSource, TestRow, String> grid = ((DataGridTestPage)getComponent()).getGrid();
+			for (Integer id : ids)
+			{
+				TestRow row = grid.getDataSource().getRows().get(id);
+				row.setName(name);
+				grid.markItemDirty(grid.getDataSource().model(row));
+			}
+			grid.update();
+		}
+	}
+
+	private static final Pattern PATCH_ROWS = Pattern.compile(
+		"InMethod\\.XTableManager\\.instance\\.patchRows\\(\"([^\"]+)\", (\\[.*\\])\\);",
+		Pattern.DOTALL);
+
+	private WicketTester tester;
+
+	private TestDataSource dataSource;
+
+	private DataGridTestPage page;
+
+	@Before
+	public void setUp()
+	{
+		tester = new WicketTester();
+		dataSource = new TestDataSource(30);
+		page = new DataGridTestPage(dataSource);
+		page.getGrid().setRowsPerPage(10);
+	}
+
+	@After
+	public void tearDown()
+	{
+		tester.destroy();
+	}
+
+	private Item<TestRow> getRow(int id)
+	{
+		return page.getBody().getRow(Model.of(dataSource.getRows().get(id)));
+	}
+
+	private void assertRendered(Item<TestRow> row, int id)
+	{
+		assertNotNull(row);
+		assertEquals(id, row.getModelObject().getId());
+		assertSame(page.getBody().get("row"), row.getParent());
+		assertSame(row, ((MarkupContainer)page.getBody().get("row")).get(row.getId()));
+	}
+
+	@Test
+	public void rowsAreFoundAfterRender()
+	{
+		tester.startPage(page);
+
+		assertRendered(getRow(0), 0);
+		assertRendered(getRow(9), 9);
+		assertNull(getRow(10));
+	}
+
+	@Test
+	public void rowsAreFoundAfterRerender()
+	{
+		tester.startPage(page);
+		assertRendered(getRow(5), 5);
+
+		// other rows are rendered
+		page.getGrid().setCurrentPage(1);
+		tester.startPage(page);
+		assertNull(getRow(5));
+		assertRendered(getRow(15), 15);
+
+		// the same rows are rendered again, the items might be replaced
+		tester.startPage(page);
+		assertRendered(getRow(15), 15);
+
+		// a removed row isn't found anymore
+		dataSource.getRows().remove(15);
+		tester.startPage(page);
+		assertNull(page.getBody().getRow(Model.of(new TestRow(15, null, null, null))));
+		assertRendered(getRow(15), 16);
+	}
+
+	@Test
+	public void dirtyRowsAreRerendered()
+	{
+		page.add(new RenameBehavior("renamed", 3, 15));
+		tester.startPage(page);
+		String markupId = getRow(3).getMarkupId();
+
+		tester.executeBehavior(page.getBehaviors(RenameBehavior.class).get(0));
+
+		// only the row on the current page is rendered
+		String response = tester.getLastResponseAsString();
+		assertTrue(response.contains("<component id=\"" + markupId + "\""));
+		assertTrue(response.contains("renamed"));
+		assertFalse(response.contains("patchRows"));
+		assertEquals(1, countOccurrences(response, "<component id="));
+	}
+
+	@Test
+	public void patchedRowsAreQuoted() throws Exception
+	{
+		String name = "a \"quoted\" \\ name\non two lines</script>";
+		page.getGrid().setRowPatching(true);
+		page.add(new RenameBehavior(name, 3, 4, 15));
+		tester.startPage(page);
+
+		tester.executeBehavior(page.getBehaviors(RenameBehavior.class).get(0));
+
+		String response = tester.getLastResponseAsString();
+		assertFalse(response.contains("<component id="));
+		// the evaluated script is "wicket1" encoded, decode it the way the client does
+		Matcher matcher = PATCH_ROWS.matcher(response.replace("]^", "]"));
+		assertTrue(response, matcher.find());
+		assertEquals(page.getGrid().getMarkupId(), matcher.group(1));
+
+		// the patches are a valid JavaScript array, with the cells as a string
+		JSONArray patches = new JSONArray(matcher.group(2));
+		assertEquals(2, patches.length());
+		for (int i = 0; i < patches.length(); i++)
+		{
+			JSONArray patch = patches.getJSONArray(i);
+			assertEquals(3, patch.length());
+			Item<TestRow> row = page.getBody().getRow(Model.of(dataSource.getRows().get(3 + i)));
+			assertEquals(row.getMarkupId(), patch.getString(0));
+			assertFalse(patch.getBoolean(1));
+			String cells = patch.getString(2);
+			assertTrue(cells, cells.contains("a &quot;quoted&quot; \\ name\non two lines&lt;/script&gt;"));
+		}
+
+		// the closing tag doesn't end the script
+		assertFalse(matcher.group(2).contains("</"));
+	}
+
+	private static int countOccurrences(String text, String part)
+	{
+		int count = 0;
+		for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1))
+		{
+			count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,150 @@
+package com.inmethod.grid.datagrid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.inmethod.grid.SizeUnit;
+import com.inmethod.grid.TestDataSource;
+
+/**
+ * Tests the window of rows rendered by a {@link DataGrid} with virtual scrolling.
+ */
+public class DataGridVirtualScrollingTest extends Assert
+{
+	private WicketTester tester;
+
+	private TestDataSource dataSource;
+
+	private DataGridTestPage page;
+
+	@Before
+	public void setUp()
+	{
+		tester = new WicketTester();
+		dataSource = new TestDataSource(100);
+	}
+
+	@After
+	public void tearDown()
+	{
+		tester.destroy();
+	}
+
+	private void startPage()
+	{
+		page = new DataGridTestPage(dataSource);
+		// 10 visible rows and 5 rows above and below them
+		page.getGrid()
+			.setRowsPerPage(10)
+			.setVirtualScrollingOverscan(5)
+			.setVirtualScrolling(true)
+			.setContentHeight(20, SizeUnit.EM);
+		tester.startPage(page);
+	}
+
+	/**
+	 * Requests the window for the given first visible row, like the client does when scrolled.
+	 */
+	private void scrollTo(long first)
+	{
+		WebMarkupContainer bodyContainer = (WebMarkupContainer)page.getGrid().get(
+			"form:bodyContainer");
+		List<AbstractDefaultAjaxBehavior> behaviors = bodyContainer.getBehaviors(AbstractDefaultAjaxBehavior.class);
+		assertEquals(1, behaviors.size());
+
+		tester.getRequest().setParameter("first", String.valueOf(first));
+		tester.executeBehavior(behaviors.get(0));
+	}
+
+	private static List<Integer> range(int from, int to)
+	{
+		List<Integer> ids = new ArrayList<Integer>();
+		for (int i = from; i < to; i++)
+		{
+			ids.add(i);
+		}
+		return ids;
+	}
+
+	@Test
+	public void windowStartsAtTop()
+	{
+		startPage();
+
+		assertEquals(0, page.getBody().getCurrentWindowFirstItem());
+		assertEquals(range(0, 20), page.getRenderedIds());
+		assertEquals(100, page.getGrid().getTotalRowCount());
+	}
+
+	@Test
+	public void windowSurroundsVisibleRows()
+	{
+		startPage();
+
+		scrollTo(50);
+		assertEquals(45, page.getBody().getCurrentWindowFirstItem());
+		assertEquals(20, page.getGrid().getCurrentPageItemCount());
+		assertEquals(range(45, 65), page.getRenderedIds());
+
+		// the window isn't aligned to the rows per page
+		scrollTo(3);
+		assertEquals(0, page.getBody().getCurrentWindowFirstItem());
+		assertEquals(range(0, 20), page.getRenderedIds());
+	}
+
+	@Test
+	public void windowIsClampedToTotalRowCount()
+	{
+		startPage();
+
+		scrollTo(90);
+		assertEquals(85, page.getBody().getCurrentWindowFirstItem());
+		assertEquals(range(85, 100), page.getRenderedIds());
+
+		// the client asks for rows past the end
+		scrollTo(1000);
+		assertEquals(95, page.getBody().getCurrentWindowFirstItem());
+		assertEquals(range(95, 100), page.getRenderedIds());
+	}
+
+	@Test
+	public void emptyDataSource()
+	{
+		dataSource.getRows().clear();
+		startPage();
+
+		assertEquals(0, page.getGrid().getTotalRowCount());
+		assertEquals(0, page.getGrid().getCurrentPageItemCount());
+
+		scrollTo(30);
+		assertEquals(0, page.getBody().getCurrentWindowFirstItem());
+		assertEquals(0, page.getGrid().getCurrentPageItemCount());
+		assertTrue(page.getRenderedIds().isEmpty());
+	}
+
+	@Test
+	public void windowAfterDataShrinks()
+	{
+		startPage();
+		scrollTo(80);
+		assertEquals(75, page.getBody().getCurrentWindowFirstItem());
+
+		// the rows of the window are gone, the last rows are rendered instead
+		dataSource.getRows().subList(30, 100).clear();
+		tester.startPage(page);
+		assertEquals(30, page.getGrid().getTotalRowCount());
+		assertEquals(range(20, 30), page.getRenderedIds());
+
+		scrollTo(80);
+		assertEquals(25, page.getBody().getCurrentWindowFirstItem());
+		assertEquals(range(25, 30), page.getRenderedIds());
+	}
+}
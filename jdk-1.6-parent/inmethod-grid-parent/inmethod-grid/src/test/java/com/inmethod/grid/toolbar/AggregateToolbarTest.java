@@ -0,0 +1,165 @@
+package com.inmethod.grid.toolbar;
+
+import java.util.Locale;
+
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.inmethod.grid.Aggregate;
+import com.inmethod.grid.TestDataSource;
+import com.inmethod.grid.TestRow;
+import com.inmethod.grid.datagrid.DataGrid;
+import com.inmethod.grid.datagrid.DataGridTestPage;
+
+/**
+ * Tests the aggregates rendered by {@link AggregateToolbar} and their caching.
+ */
+public class AggregateToolbarTest extends Assert
+{
+	/**
+	 * Toolbar with a filter state that is set by the tests.
+	 */
+	private static class TestToolbar extends AggregateToolbar<TestDataSource, TestRow, String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private Object filterState;
+
+		public TestToolbar(DataGrid<TestDataSource, TestRow, String> grid)
+		{
+			super(grid);
+		}
+
+		@Override
+		protected Object getFilterState()
+		{
+			return filterState;
+		}
+	}
+
+	private WicketTester tester;
+
+	private TestDataSource dataSource;
+
+	private TestToolbar toolbar;
+
+	@Before
+	public void setUp()
+	{
+		tester = new WicketTester();
+		tester.getSession().setLocale(Locale.ENGLISH);
+	}
+
+	@After
+	public void tearDown()
+	{
+		tester.destroy();
+	}
+
+	private void startPage(int rowCount)
+	{
+		dataSource = new TestDataSource(rowCount);
+		DataGridTestPage page = new DataGridTestPage(dataSource);
+		toolbar = new TestToolbar(page.getGrid());
+		toolbar.addAggregate("id", Aggregate.count("id"));
+		toolbar.addAggregate("value", Aggregate.sum("value"));
+		page.getGrid().addHeaderToolbar(toolbar);
+		tester.startPage(page);
+	}
+
+	private void render()
+	{
+		tester.startPage(toolbar.getPage());
+	}
+
+	/**
+	 * Asserts the rendered cells of the id, name and value columns.
+	 */
+	private void assertCells(String id, String name, String value)
+	{
+		String path = toolbar.getPageRelativePath() + ":cell:";
+		tester.assertLabel(path + "0:value", id);
+		tester.assertLabel(path + "1:value", name);
+		tester.assertLabel(path + "2:value", value);
+	}
+
+	@Test
+	public void rendersAggregates()
+	{
+		startPage(100);
+
+		// the column without an aggregate is empty
+		assertCells("100", "", "4,950");
+		assertTrue(tester.getLastResponseAsString().contains("imxt-aggregate-cell"));
+	}
+
+	@Test
+	public void rendersNoRows()
+	{
+		startPage(0);
+
+		// there is no sum of no values
+		assertCells("0", "", "");
+	}
+
+	@Test
+	public void rendersNullValues()
+	{
+		startPage(0);
+		dataSource.getRows().add(new TestRow(0, "row 0", null, "even"));
+		toolbar.invalidate();
+		render();
+
+		assertCells("1", "", "");
+	}
+
+	@Test
+	public void aggregatesAreCachedPerFilterState()
+	{
+		startPage(10);
+		assertEquals(1, dataSource.getAggregateCount());
+
+		render();
+		assertEquals(1, dataSource.getAggregateCount());
+
+		toolbar.filterState = "filtered";
+		render();
+		assertEquals(2, dataSource.getAggregateCount());
+
+		// the result for the previous filter state is still cached
+		toolbar.filterState = null;
+		render();
+		assertEquals(2, dataSource.getAggregateCount());
+	}
+
+	@Test
+	public void invalidateComputesAggregatesAgain()
+	{
+		startPage(10);
+		assertCells("10", "", "45");
+
+		dataSource.getRows().add(new TestRow(10, "row 10", 10, "even"));
+		render();
+		// stale until the toolbar is invalidated
+		assertCells("10", "", "45");
+
+		toolbar.invalidate();
+		render();
+		assertCells("11", "", "55");
+		assertEquals(2, dataSource.getAggregateCount());
+	}
+
+	@Test
+	public void addAggregateComputesAggregatesAgain()
+	{
+		startPage(10);
+
+		toolbar.addAggregate("name", Aggregate.max("name"));
+		render();
+		assertCells("10", "row 9", "45");
+		assertEquals(2, dataSource.getAggregateCount());
+	}
+}
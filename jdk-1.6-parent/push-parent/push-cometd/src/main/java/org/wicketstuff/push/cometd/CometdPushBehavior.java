@@ -18,7 +18,6 @@ package org.wicketstuff.push.cometd;
 
 import java.io.InputStream;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
@@ -44,6 +43,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wicketstuff.push.IPushEventHandler;
 import org.wicketstuff.push.IPushNode;
+import org.wicketstuff.push.PushEventDispatcher;
 
 /**
  * This behavior will be asked by client side when it will receive a cometd event associated with
@@ -319,15 +319,8 @@ public class CometdPushBehavior extends AbstractDefaultAjaxBehavior
 		for (final Entry<CometdPushNode, IPushEventHandler> entry : _handlers.entrySet())
 		{
 			final CometdPushNode node = entry.getKey();
-			for (final CometdPushEventContext<?> ctx : (List<CometdPushEventContext<?>>)pushService.pollEvents(node))
-				try
-				{
-					entry.getValue().onEvent(target, ctx.getEvent(), node, ctx);
-				}
-				catch (final RuntimeException ex)
-				{
-					LOG.error("Failed while processing event", ex);
-				}
+			PushEventDispatcher.dispatch(target, entry.getValue(), node,
+				pushService.pollEvents(node));
 		}
 	}
 }
@@ -16,6 +16,7 @@
  */
 package org.wicketstuff.push;
 
+import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -27,7 +28,21 @@ import org.apache.wicket.util.lang.Args;
  */
 public abstract class AbstractPushService implements IPushService
 {
+	/**
+	 * Creates a concurrent set that does not copy its content on modification.
+	 */
+	private static <T> Set<T> newConcurrentSet()
+	{
+		return Collections.newSetFromMap(new ConcurrentHashMap<T, Boolean>());
+	}
+
 	protected final ConcurrentHashMap<IPushChannel<?>, CopyOnWriteArraySet<IPushNode<?>>> nodesByChannels = new ConcurrentHashMap<IPushChannel<?>, CopyOnWriteArraySet<IPushNode<?>>>();
+
+	/**
+	 * The reverse index of {@link #nodesByChannels}, to disconnect a node without scanning all
+	 * channels. Both maps are updated for a node while holding the lock of its set of channels.
+	 */
+	protected final ConcurrentHashMap<IPushNode<?>, Set<IPushChannel<?>>> channelsByNodes = new ConcurrentHashMap<IPushNode<?>, Set<IPushChannel<?>>>();
 	protected final Set<IPushNodeDisconnectedListener> disconnectListeners = new CopyOnWriteArraySet<IPushNodeDisconnectedListener>();
 
 	/**
@@ -53,7 +68,26 @@ public abstract class AbstractPushService implements IPushService
 		if (pnodes == null)
 			throw new IllegalArgumentException("Unknown channel " + channel);
 
-		pnodes.add(node);
+		while (true)
+		{
+			Set<IPushChannel<?>> channels = channelsByNodes.get(node);
+			if (channels == null)
+			{
+				final Set<IPushChannel<?>> newChannels = newConcurrentSet();
+				channels = channelsByNodes.putIfAbsent(node, newChannels);
+				if (channels == null)
+					channels = newChannels;
+			}
+			synchronized (channels)
+			{
+				// the node got disconnected meanwhile, start over with a new set of channels
+				if (channelsByNodes.get(node) != channels)
+					continue;
+				channels.add(channel);
+				pnodes.add(node);
+				return;
+			}
+		}
 	}
 
 	/**
@@ -70,8 +104,28 @@ public abstract class AbstractPushService implements IPushService
 	{
 		Args.notNull(node, "node");
 
-		for (final Set<IPushNode<?>> pnodes : nodesByChannels.values())
-			pnodes.remove(node);
+		while (true)
+		{
+			final Set<IPushChannel<?>> channels = channelsByNodes.get(node);
+			if (channels == null)
+				return;
+
+			synchronized (channels)
+			{
+				if (channelsByNodes.get(node) != channels)
+					continue;
+				for (final IPushChannel<?> channel : channels)
+				{
+					final Set<IPushNode<?>> pnodes = nodesByChannels.get(channel);
+					if (pnodes != null)
+						pnodes.remove(node);
+				}
+				// removed last, a concurrent connect waits for the lock and then starts over with
+				// a new set of channels
+				channelsByNodes.remove(node, channels);
+				return;
+			}
+		}
 	}
 
 	/**
@@ -87,7 +141,21 @@ public abstract class AbstractPushService implements IPushService
 		if (pnodes == null)
 			throw new IllegalArgumentException("Unknown channel " + channel);
 
-		pnodes.remove(node);
+		while (true)
+		{
+			final Set<IPushChannel<?>> channels = channelsByNodes.get(node);
+			if (channels == null)
+				return;
+
+			synchronized (channels)
+			{
+				if (channelsByNodes.get(node) != channels)
+					continue;
+				pnodes.remove(node);
+				channels.remove(channel);
+				return;
+			}
+		}
 	}
 
 	/**
@@ -97,7 +165,16 @@ public abstract class AbstractPushService implements IPushService
 	{
 		Args.notNull(channel, "channel");
 
-		nodesByChannels.remove(channel);
+		final Set<IPushNode<?>> pnodes = nodesByChannels.remove(channel);
+		if (pnodes == null)
+			return;
+
+		for (final IPushNode<?> node : pnodes)
+		{
+			final Set<IPushChannel<?>> channels = channelsByNodes.get(node);
+			if (channels != null)
+				channels.remove(channel);
+		}
 	}
 
 	/**
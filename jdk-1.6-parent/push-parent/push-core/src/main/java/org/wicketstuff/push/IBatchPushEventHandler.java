@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.push;
+
+import java.util.List;
+
+import org.apache.wicket.ajax.AjaxRequestTarget;
+
+/**
+ * An {@link IPushEventHandler} that receives all events queued for the node between two
+ * deliveries in a single callback instead of one callback per event, so components only need to
+ * be updated once. {@link #onEvent(AjaxRequestTarget, Object, IPushNode, IPushEventContext)} is not
+ * called by the push services.
+ * 
+ * @see PushEventDispatcher
+ */
+public interface IBatchPushEventHandler<EventType> extends IPushEventHandler<EventType>
+{
+	/**
+	 * @param events
+	 *            the events in the order they were published
+	 * @param contexts
+	 *            the contexts of the events, in the same order as the events
+	 */
+	void onEvents(AjaxRequestTarget target, List<EventType> events, IPushNode<EventType> node,
+		List<IPushEventContext<EventType>> contexts);
+}
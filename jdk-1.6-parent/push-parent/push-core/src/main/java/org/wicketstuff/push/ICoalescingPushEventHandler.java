@@ -0,0 +1,33 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.push;
+
+/**
+ * An {@link IPushEventHandler} that only wants to receive the latest of several events with the
+ * same merge key, for instance the latest price of a stock. Events queued for the node between two
+ * deliveries are coalesced before the handler is called.
+ * 
+ * @see PushEventDispatcher
+ */
+public interface ICoalescingPushEventHandler<EventType> extends IPushEventHandler<EventType>
+{
+	/**
+	 * @return the key of events that replace each other, or <code>null</code> if the event must
+	 *         always be delivered
+	 */
+	Object getMergeKey(EventType event);
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.push;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.util.lang.Args;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers the events polled for a push node to its {@link IPushEventHandler}. Events for an
+ * {@link ICoalescingPushEventHandler} are coalesced first, an {@link IBatchPushEventHandler}
+ * receives all events in one callback.
+ */
+public final class PushEventDispatcher
+{
+	private static final Logger LOG = LoggerFactory.getLogger(PushEventDispatcher.class);
+
+	/**
+	 * Keeps only the latest event for every merge key. The latest event keeps its position
+	 * relative to the other events.
+	 * 
+	 * @return the remaining events in the order they were published
+	 */
+	public static <EventType> List<IPushEventContext<EventType>> coalesce(
+		final ICoalescingPushEventHandler<EventType> handler,
+		final List<? extends IPushEventContext<EventType>> contexts)
+	{
+		Args.notNull(handler, "handler");
+		Args.notNull(contexts, "contexts");
+
+		final List<IPushEventContext<EventType>> coalesced = new ArrayList<IPushEventContext<EventType>>(
+			contexts.size());
+		final Set<Object> mergeKeys = new HashSet<Object>();
+		// walk backwards so the first event seen for a key is the latest one
+		for (int i = contexts.size() - 1; i >= 0; i--)
+		{
+			final IPushEventContext<EventType> ctx = contexts.get(i);
+			final Object mergeKey = handler.getMergeKey(ctx.getEvent());
+			if (mergeKey == null || mergeKeys.add(mergeKey))
+				coalesced.add(ctx);
+		}
+		Collections.reverse(coalesced);
+		return coalesced;
+	}
+
+	/**
+	 * Delivers the events to the handler. Exceptions thrown by the handler are logged, with a
+	 * regular handler the remaining events are still delivered.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <EventType> void dispatch(final AjaxRequestTarget target,
+		final IPushEventHandler<EventType> handler, final IPushNode<EventType> node,
+		final List<? extends IPushEventContext<EventType>> contexts)
+	{
+		Args.notNull(handler, "handler");
+		Args.notNull(contexts, "contexts");
+
+		if (contexts.isEmpty())
+			return;
+
+		List<? extends IPushEventContext<EventType>> ctxs = contexts;
+		if (handler instanceof ICoalescingPushEventHandler && contexts.size() > 1)
+			ctxs = coalesce((ICoalescingPushEventHandler<EventType>)handler, contexts);
+
+		if (handler instanceof IBatchPushEventHandler)
+		{
+			final List<EventType> events = new ArrayList<EventType>(ctxs.size());
+			for (final IPushEventContext<EventType> ctx : ctxs)
+				events.add(ctx.getEvent());
+			try
+			{
+				((IBatchPushEventHandler<EventType>)handler).onEvents(target,
+					Collections.unmodifiableList(events), node,
+					Collections.unmodifiableList((List<IPushEventContext<EventType>>)ctxs));
+			}
+			catch (final RuntimeException ex)
+			{
+				LOG.error("Failed while processing events", ex);
+			}
+			return;
+		}
+
+		for (final IPushEventContext<EventType> ctx : ctxs)
+			try
+			{
+				handler.onEvent(target, ctx.getEvent(), node, ctx);
+			}
+			catch (final RuntimeException ex)
+			{
+				LOG.error("Failed while processing event", ex);
+			}
+	}
+
+	private PushEventDispatcher()
+	{
+	}
+}
@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.push;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * Lock-free, bounded queue holding the events of a push node until they are polled. When the queue
+ * is full the {@link OverflowPolicy} determines which event is dropped.
+ * <p>
+ * The size is maintained separately from the underlying queue, so under concurrent access it may
+ * briefly exceed the capacity by the number of concurrent publishers. Likewise two events with the
+ * same merge key offered concurrently may both stay queued with {@link OverflowPolicy#COALESCE},
+ * they are coalesced again when they are dispatched.
+ */
+public class PushEventQueue<E>
+{
+	/**
+	 * Determines which event is dropped when an event is added to a full queue.
+	 */
+	public enum OverflowPolicy
+	{
+		/**
+		 * Drops the oldest queued event, the client always receives the most recent events.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Drops the event being added, the client receives the events queued first.
+		 */
+		DROP_NEWEST,
+
+		/**
+		 * Replaces a queued event with the same merge key by the event being added, which is
+		 * moved to the end of the queue, so a burst of events for one key takes a single slot.
+		 * Otherwise the oldest queued event is dropped when the queue is full.
+		 * 
+		 * @see PushEventQueue#getMergeKey(Object)
+		 */
+		COALESCE
+	}
+
+	/**
+	 * Creates a queue for the events delivered to the handler. With {@link OverflowPolicy#COALESCE}
+	 * events are merged by the key of an {@link ICoalescingPushEventHandler}, for other handlers
+	 * the oldest event is dropped.
+	 */
+	public static <EventType, ContextType extends IPushEventContext<EventType>> PushEventQueue<ContextType> forHandler(
+		final int capacity, final OverflowPolicy overflowPolicy,
+		final IPushEventHandler<EventType> handler)
+	{
+		Args.notNull(handler, "handler");
+
+		if (overflowPolicy != OverflowPolicy.COALESCE ||
+			!(handler instanceof ICoalescingPushEventHandler))
+			return new PushEventQueue<ContextType>(capacity, overflowPolicy);
+
+		final ICoalescingPushEventHandler<EventType> coalescingHandler = (ICoalescingPushEventHandler<EventType>)handler;
+		return new PushEventQueue<ContextType>(capacity, overflowPolicy)
+		{
+			@Override
+			protected Object getMergeKey(final ContextType ctx)
+			{
+				return coalescingHandler.getMergeKey(ctx.getEvent());
+			}
+		};
+	}
+
+	private final ConcurrentLinkedQueue<E> _events = new ConcurrentLinkedQueue<E>();
+	private final AtomicInteger _size = new AtomicInteger();
+	private final AtomicLong _droppedCount = new AtomicLong();
+	private final AtomicLong _coalescedCount = new AtomicLong();
+	private final int _capacity;
+	private final OverflowPolicy _overflowPolicy;
+
+	/**
+	 * The latest queued event for every merge key, only used with {@link OverflowPolicy#COALESCE}.
+	 */
+	private final ConcurrentHashMap<Object, E> _latestByMergeKey;
+
+	public PushEventQueue(final int capacity, final OverflowPolicy overflowPolicy)
+	{
+		Args.isTrue(capacity > 0, "capacity must be > 0, not %s", capacity);
+		Args.notNull(overflowPolicy, "overflowPolicy");
+
+		_capacity = capacity;
+		_overflowPolicy = overflowPolicy;
+		_latestByMergeKey = overflowPolicy == OverflowPolicy.COALESCE ? new ConcurrentHashMap<Object, E>()
+			: null;
+	}
+
+	/**
+	 * Forgets the merge key of an event that left the queue.
+	 */
+	private void _removed(final E event)
+	{
+		if (_latestByMergeKey == null)
+			return;
+
+		final Object mergeKey = getMergeKey(event);
+		if (mergeKey != null)
+			_latestByMergeKey.remove(mergeKey, event);
+	}
+
+	/**
+	 * Removes all queued events.
+	 *
+	 * @return the removed events in the order they were queued
+	 */
+	@SuppressWarnings("unchecked")
+	public List<E> drain()
+	{
+		E event = _events.poll();
+		if (event == null)
+			return Collections.EMPTY_LIST;
+
+		final List<E> events = new ArrayList<E>(Math.max(2, _size.get()));
+		while (event != null)
+		{
+			_size.decrementAndGet();
+			_removed(event);
+			events.add(event);
+			event = _events.poll();
+		}
+		return events;
+	}
+
+	public int getCapacity()
+	{
+		return _capacity;
+	}
+
+	/**
+	 * @return the number of queued events replaced by a later event with the same merge key
+	 */
+	public long getCoalescedCount()
+	{
+		return _coalescedCount.get();
+	}
+
+	/**
+	 * @return the number of events dropped because the queue was full
+	 */
+	public long getDroppedCount()
+	{
+		return _droppedCount.get();
+	}
+
+	/**
+	 * Returns the key of events replacing each other with {@link OverflowPolicy#COALESCE}.
+	 * 
+	 * @return the merge key, or <code>null</code> if the event never replaces a queued event. The
+	 *         default implementation returns <code>null</code>.
+	 */
+	protected Object getMergeKey(final E event)
+	{
+		return null;
+	}
+
+	public OverflowPolicy getOverflowPolicy()
+	{
+		return _overflowPolicy;
+	}
+
+	public boolean isEmpty()
+	{
+		return _events.isEmpty();
+	}
+
+	/**
+	 * Adds an event to the queue.
+	 *
+	 * @return <code>false</code> if an event was dropped because the queue was full
+	 */
+	public boolean offer(final E event)
+	{
+		Args.notNull(event, "event");
+
+		if (_overflowPolicy == OverflowPolicy.DROP_NEWEST)
+		{
+			// reserve a slot before adding the event
+			int size;
+			do
+			{
+				size = _size.get();
+				if (size >= _capacity)
+				{
+					_droppedCount.incrementAndGet();
+					return false;
+				}
+			}
+			while (!_size.compareAndSet(size, size + 1));
+			_events.offer(event);
+			return true;
+		}
+
+		if (_latestByMergeKey != null)
+		{
+			final Object mergeKey = getMergeKey(event);
+			if (mergeKey != null)
+			{
+				final E replaced = _latestByMergeKey.put(mergeKey, event);
+				// the replaced event may have been polled meanwhile, then the event is added
+				if (replaced != null && _events.remove(replaced))
+				{
+					_events.offer(event);
+					_coalescedCount.incrementAndGet();
+					return true;
+				}
+			}
+		}
+
+		final int size = _size.incrementAndGet();
+		_events.offer(event);
+		if (size > _capacity)
+		{
+			final E dropped = _events.poll();
+			if (dropped != null)
+			{
+				_size.decrementAndGet();
+				_removed(dropped);
+				_droppedCount.incrementAndGet();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of queued events
+	 */
+	public int size()
+	{
+		return Math.max(0, _size.get());
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.push;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.wicket.Component;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the two-way index of channels and nodes maintained by {@link AbstractPushService}.
+ */
+public class AbstractPushServiceTest extends Assert
+{
+	private static class TestPushNode implements IPushNode<String>
+	{
+		private static final long serialVersionUID = 1L;
+	}
+
+	private static class TestPushService extends AbstractPushService
+	{
+		public <EventType> IPushNode<EventType> installNode(final Component component,
+			final IPushEventHandler<EventType> handler)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		public boolean isConnected(final IPushNode<?> node)
+		{
+			return channelsByNodes.containsKey(node);
+		}
+
+		public <EventType> void publish(final IPushChannel<EventType> channel,
+			final EventType event)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		public <EventType> void publish(final IPushNode<EventType> node, final EventType event)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		public void uninstallNode(final Component component, final IPushNode<?> node)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Checks that both maps contain the same connections.
+		 */
+		void assertConsistent()
+		{
+			int connections = 0;
+			for (final Entry<IPushChannel<?>, ? extends Set<IPushNode<?>>> entry : nodesByChannels.entrySet())
+				for (final IPushNode<?> node : entry.getValue())
+				{
+					final Set<IPushChannel<?>> channels = channelsByNodes.get(node);
+					assertNotNull(node + " not indexed", channels);
+					assertTrue(entry.getKey() + " missing for " + node,
+						channels.contains(entry.getKey()));
+					connections++;
+				}
+			for (final Set<IPushChannel<?>> channels : channelsByNodes.values())
+				connections -= channels.size();
+			assertEquals(0, connections);
+		}
+	}
+
+	private final TestPushService service = new TestPushService();
+
+	@Test
+	public void testConnectAndDisconnect()
+	{
+		final IPushChannel<String> channel1 = service.createChannel("1");
+		final IPushChannel<String> channel2 = service.createChannel("2");
+		final IPushNode<String> node1 = new TestPushNode();
+		final IPushNode<String> node2 = new TestPushNode();
+
+		service.connectToChannel(node1, channel1);
+		service.connectToChannel(node1, channel2);
+		service.connectToChannel(node2, channel1);
+		service.assertConsistent();
+		assertEquals(2, service.nodesByChannels.get(channel1).size());
+		assertEquals(2, service.channelsByNodes.get(node1).size());
+
+		service.disconnectFromChannel(node1, channel1);
+		service.assertConsistent();
+		assertFalse(service.nodesByChannels.get(channel1).contains(node1));
+		assertEquals(Collections.singleton(channel2), service.channelsByNodes.get(node1));
+
+		service.disconnectFromAllChannels(node1);
+		service.assertConsistent();
+		assertFalse(service.isConnected(node1));
+		assertTrue(service.nodesByChannels.get(channel2).isEmpty());
+		assertTrue(service.isConnected(node2));
+
+		// disconnecting an unknown node is ignored
+		service.disconnectFromChannel(node1, channel2);
+		service.disconnectFromAllChannels(node1);
+		service.assertConsistent();
+	}
+
+	@Test
+	public void testRemoveChannel()
+	{
+		final IPushChannel<String> channel1 = service.createChannel("1");
+		final IPushChannel<String> channel2 = service.createChannel("2");
+		final IPushNode<String> node = new TestPushNode();
+		service.connectToChannel(node, channel1);
+		service.connectToChannel(node, channel2);
+
+		service.removeChannel(channel1);
+		service.assertConsistent();
+		assertEquals(Collections.singleton(channel2), service.channelsByNodes.get(node));
+
+		try
+		{
+			service.connectToChannel(node, channel1);
+			fail();
+		}
+		catch (final IllegalArgumentException ex)
+		{
+			// expected
+		}
+	}
+
+	@Test
+	public void testConcurrentConnectAndDisconnect() throws InterruptedException
+	{
+		final List<IPushChannel<String>> channels = new ArrayList<IPushChannel<String>>();
+		for (int i = 0; i < 4; i++)
+			channels.add(service.<String> createChannel("" + i));
+		final List<IPushNode<String>> nodes = new ArrayList<IPushNode<String>>();
+		for (int i = 0; i < 8; i++)
+			nodes.add(new TestPushNode());
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+		final Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++)
+		{
+			final Random random = new Random(t);
+			threads[t] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+						for (int i = 0; i < 20000; i++)
+						{
+							final IPushNode<String> node = nodes.get(random.nextInt(nodes.size()));
+							final IPushChannel<String> channel = channels.get(random.nextInt(channels.size()));
+							switch (random.nextInt(3))
+							{
+								case 0 :
+									service.connectToChannel(node, channel);
+									break;
+								case 1 :
+									service.disconnectFromChannel(node, channel);
+									break;
+								default :
+									service.disconnectFromAllChannels(node);
+							}
+						}
+					}
+					catch (final Throwable e)
+					{
+						failures.add(e);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		start.countDown();
+		for (final Thread thread : threads)
+			thread.join();
+
+		assertEquals(Collections.emptyList(), failures);
+		service.assertConsistent();
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.push;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.junit.Assert;
+import org.junit.Test;
+import org.wicketstuff.push.PushEventQueueTest.TestPushEventContext;
+
+/**
+ * Tests {@link PushEventDispatcher}.
+ */
+public class PushEventDispatcherTest extends Assert
+{
+	/**
+	 * Records the delivered events, events starting with the same character replace each other.
+	 */
+	private static class RecordingHandler implements ICoalescingPushEventHandler<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		final List<String> events = new ArrayList<String>();
+
+		public void onEvent(final AjaxRequestTarget target, final String event,
+			final IPushNode<String> node, final IPushEventContext<String> ctx)
+		{
+			assertEquals(event, ctx.getEvent());
+			if (event.startsWith("!"))
+				throw new IllegalStateException(event);
+			events.add(event);
+		}
+
+		public Object getMergeKey(final String event)
+		{
+			return event.startsWith("-") ? null : event.charAt(0);
+		}
+	}
+
+	private static class RecordingBatchHandler implements IBatchPushEventHandler<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		final List<List<String>> batches = new ArrayList<List<String>>();
+
+		public void onEvent(final AjaxRequestTarget target, final String event,
+			final IPushNode<String> node, final IPushEventContext<String> ctx)
+		{
+			fail("batch handlers receive all events at once");
+		}
+
+		public void onEvents(final AjaxRequestTarget target, final List<String> events,
+			final IPushNode<String> node, final List<IPushEventContext<String>> contexts)
+		{
+			assertEquals(events.size(), contexts.size());
+			for (int i = 0; i < events.size(); i++)
+				assertEquals(events.get(i), contexts.get(i).getEvent());
+			batches.add(events);
+		}
+	}
+
+	private static class CoalescingBatchHandler extends RecordingBatchHandler implements
+		ICoalescingPushEventHandler<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		public Object getMergeKey(final String event)
+		{
+			return event.charAt(0);
+		}
+	}
+
+	private static List<IPushEventContext<String>> contexts(final String... events)
+	{
+		final List<IPushEventContext<String>> contexts = new ArrayList<IPushEventContext<String>>();
+		for (final String event : events)
+			contexts.add(new TestPushEventContext<String>(event));
+		return contexts;
+	}
+
+	private static List<String> events(final List<IPushEventContext<String>> contexts)
+	{
+		final List<String> events = new ArrayList<String>();
+		for (final IPushEventContext<String> ctx : contexts)
+			events.add(ctx.getEvent());
+		return events;
+	}
+
+	@Test
+	public void testCoalesceKeepsLatestPerKeyInOrder()
+	{
+		final List<IPushEventContext<String>> coalesced = PushEventDispatcher.coalesce(
+			new RecordingHandler(), contexts("a1", "b1", "a2", "c1", "b2"));
+
+		// the latest event of a key takes the position of that event
+		assertEquals(Arrays.asList("a2", "c1", "b2"), events(coalesced));
+	}
+
+	@Test
+	public void testCoalesceKeepsEventsWithoutKey()
+	{
+		final List<IPushEventContext<String>> coalesced = PushEventDispatcher.coalesce(
+			new RecordingHandler(), contexts("-1", "a1", "-2", "a2", "-3"));
+
+		assertEquals(Arrays.asList("-1", "-2", "a2", "-3"), events(coalesced));
+		assertEquals(Collections.emptyList(),
+			PushEventDispatcher.coalesce(new RecordingHandler(), contexts()));
+	}
+
+	@Test
+	public void testDispatchPerEvent()
+	{
+		final List<String> events = new ArrayList<String>();
+		final IPushEventHandler<String> handler = new IPushEventHandler<String>()
+		{
+			private static final long serialVersionUID = 1L;
+
+			public void onEvent(final AjaxRequestTarget target, final String event,
+				final IPushNode<String> node, final IPushEventContext<String> ctx)
+			{
+				events.add(event);
+			}
+		};
+		PushEventDispatcher.dispatch(null, handler, null, contexts("a1", "a2", "a1"));
+
+		// without a merge key every event is delivered
+		assertEquals(Arrays.asList("a1", "a2", "a1"), events);
+	}
+
+	@Test
+	public void testDispatchCoalescedPerEvent()
+	{
+		final RecordingHandler handler = new RecordingHandler();
+		PushEventDispatcher.dispatch(null, handler, null, contexts("a1", "b1", "a2", "-1"));
+
+		assertEquals(Arrays.asList("b1", "a2", "-1"), handler.events);
+	}
+
+	@Test
+	public void testDispatchContinuesAfterFailingEvent()
+	{
+		final RecordingHandler handler = new RecordingHandler();
+		PushEventDispatcher.dispatch(null, handler, null, contexts("a1", "!1", "b1"));
+
+		assertEquals(Arrays.asList("a1", "b1"), handler.events);
+	}
+
+	@Test
+	public void testDispatchBatch()
+	{
+		final RecordingBatchHandler handler = new RecordingBatchHandler();
+		PushEventDispatcher.dispatch(null, handler, null, contexts("a1", "b1", "a2"));
+
+		assertEquals(Collections.singletonList(Arrays.asList("a1", "b1", "a2")), handler.batches);
+
+		// nothing is delivered without events
+		PushEventDispatcher.dispatch(null, handler, null, contexts());
+		assertEquals(1, handler.batches.size());
+	}
+
+	@Test
+	public void testDispatchCoalescedBatch()
+	{
+		final CoalescingBatchHandler handler = new CoalescingBatchHandler();
+		PushEventDispatcher.dispatch(null, handler, null, contexts("a1", "b1", "a2"));
+
+		assertEquals(Collections.singletonList(Arrays.asList("b1", "a2")), handler.batches);
+	}
+}
@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.push;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.junit.Assert;
+import org.junit.Test;
+import org.wicketstuff.push.PushEventQueue.OverflowPolicy;
+
+/**
+ * Tests {@link PushEventQueue}.
+ */
+public class PushEventQueueTest extends Assert
+{
+	static class TestPushEventContext<EventType> extends AbstractPushEventContext<EventType>
+	{
+		TestPushEventContext(final EventType event)
+		{
+			super(event, null);
+		}
+
+		public IPushService getService()
+		{
+			return null;
+		}
+	}
+
+	private static final int PRODUCERS = 4;
+	private static final int EVENTS_PER_PRODUCER = 20000;
+
+	/**
+	 * Merges the events by their first character.
+	 */
+	private static PushEventQueue<String> newCoalescingQueue(final int capacity)
+	{
+		return new PushEventQueue<String>(capacity, OverflowPolicy.COALESCE)
+		{
+			@Override
+			protected Object getMergeKey(final String event)
+			{
+				return event.charAt(0) == '-' ? null : event.charAt(0);
+			}
+		};
+	}
+
+	/**
+	 * Offers the numbered events of several producers while the queue is drained concurrently.
+	 * 
+	 * @return the drained events, the lowest bits hold the number of the producer
+	 */
+	private static List<Long> offerConcurrently(final PushEventQueue<Long> queue)
+		throws InterruptedException
+	{
+		final List<Long> drained = Collections.synchronizedList(new ArrayList<Long>());
+		final AtomicBoolean done = new AtomicBoolean();
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+
+		final Thread consumer = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				while (!done.get())
+					drained.addAll(queue.drain());
+			}
+		};
+		consumer.start();
+
+		final Thread[] producers = new Thread[PRODUCERS];
+		for (int p = 0; p < PRODUCERS; p++)
+		{
+			final long producer = p;
+			producers[p] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+						for (long i = 0; i < EVENTS_PER_PRODUCER; i++)
+							queue.offer(i * PRODUCERS + producer);
+					}
+					catch (final Throwable e)
+					{
+						failures.add(e);
+					}
+				}
+			};
+			producers[p].start();
+		}
+		start.countDown();
+		for (final Thread producer : producers)
+			producer.join();
+		done.set(true);
+		consumer.join();
+		drained.addAll(queue.drain());
+
+		assertEquals(Collections.emptyList(), failures);
+		return drained;
+	}
+
+	/**
+	 * Checks that no event got lost or duplicated and that the events of every producer were
+	 * drained in the order they were offered.
+	 */
+	private static void assertDrainedInOrder(final PushEventQueue<Long> queue,
+		final List<Long> drained)
+	{
+		assertEquals(PRODUCERS * EVENTS_PER_PRODUCER, drained.size() + queue.getDroppedCount());
+		assertEquals(0, queue.size());
+		assertTrue(queue.isEmpty());
+
+		final long[] last = new long[PRODUCERS];
+		Arrays.fill(last, -1);
+		for (final Long event : drained)
+		{
+			final int producer = (int)(event % PRODUCERS);
+			assertTrue(event + " after " + last[producer], event > last[producer]);
+			last[producer] = event;
+		}
+	}
+
+	@Test
+	public void testDropOldest()
+	{
+		final PushEventQueue<String> queue = new PushEventQueue<String>(3,
+			OverflowPolicy.DROP_OLDEST);
+		assertTrue(queue.offer("a"));
+		assertTrue(queue.offer("b"));
+		assertTrue(queue.offer("c"));
+		assertFalse(queue.offer("d"));
+		assertFalse(queue.offer("e"));
+
+		assertEquals(3, queue.size());
+		assertEquals(2, queue.getDroppedCount());
+		assertEquals(Arrays.asList("c", "d", "e"), queue.drain());
+		assertEquals(0, queue.size());
+		assertEquals(Collections.emptyList(), queue.drain());
+	}
+
+	@Test
+	public void testDropNewest()
+	{
+		final PushEventQueue<String> queue = new PushEventQueue<String>(3,
+			OverflowPolicy.DROP_NEWEST);
+		assertTrue(queue.offer("a"));
+		assertTrue(queue.offer("b"));
+		assertTrue(queue.offer("c"));
+		assertFalse(queue.offer("d"));
+
+		assertEquals(1, queue.getDroppedCount());
+		assertEquals(Arrays.asList("a", "b", "c"), queue.drain());
+
+		// the drained slots are free again
+		assertTrue(queue.offer("e"));
+		assertEquals(Arrays.asList("e"), queue.drain());
+	}
+
+	@Test
+	public void testCoalesceReplacesEventWithSameKey()
+	{
+		final PushEventQueue<String> queue = newCoalescingQueue(3);
+		assertTrue(queue.offer("a1"));
+		assertTrue(queue.offer("b1"));
+		assertTrue(queue.offer("a2"));
+
+		assertEquals(2, queue.size());
+		assertEquals(1, queue.getCoalescedCount());
+		assertEquals(0, queue.getDroppedCount());
+		// the latest event moves to the end
+		assertEquals(Arrays.asList("b1", "a2"), queue.drain());
+
+		// a drained event is not replaced anymore
+		assertTrue(queue.offer("a3"));
+		assertEquals(Arrays.asList("a3"), queue.drain());
+	}
+
+	@Test
+	public void testCoalesceKeepsEventsOfOtherKeysDuringBurst()
+	{
+		final PushEventQueue<String> queue = newCoalescingQueue(2);
+		assertTrue(queue.offer("x"));
+		for (int i = 0; i < 100; i++)
+			assertTrue(queue.offer("a" + i));
+
+		assertEquals(0, queue.getDroppedCount());
+		assertEquals(99, queue.getCoalescedCount());
+		assertEquals(Arrays.asList("x", "a99"), queue.drain());
+	}
+
+	@Test
+	public void testCoalesceDropsOldestWhenFull()
+	{
+		final PushEventQueue<String> queue = newCoalescingQueue(2);
+		assertTrue(queue.offer("a1"));
+		assertTrue(queue.offer("-"));
+		assertFalse(queue.offer("b1"));
+		assertEquals(1, queue.getDroppedCount());
+
+		// the dropped event is not replaced
+		assertFalse(queue.offer("a2"));
+		assertEquals(0, queue.getCoalescedCount());
+		assertEquals(Arrays.asList("b1", "a2"), queue.drain());
+	}
+
+	@Test
+	public void testForHandler()
+	{
+		final ICoalescingPushEventHandler<String> handler = new ICoalescingPushEventHandler<String>()
+		{
+			private static final long serialVersionUID = 1L;
+
+			public void onEvent(final AjaxRequestTarget target, final String event,
+				final IPushNode<String> node, final IPushEventContext<String> ctx)
+			{
+			}
+
+			public Object getMergeKey(final String event)
+			{
+				return event.charAt(0);
+			}
+		};
+
+		final PushEventQueue<TestPushEventContext<String>> queue = PushEventQueue.forHandler(10,
+			OverflowPolicy.COALESCE, handler);
+		queue.offer(new TestPushEventContext<String>("a1"));
+		queue.offer(new TestPushEventContext<String>("a2"));
+		assertEquals(1, queue.size());
+		assertEquals("a2", queue.drain().get(0).getEvent());
+
+		// other policies never coalesce
+		final PushEventQueue<TestPushEventContext<String>> dropping = PushEventQueue.forHandler(
+			10, OverflowPolicy.DROP_OLDEST, handler);
+		dropping.offer(new TestPushEventContext<String>("a1"));
+		dropping.offer(new TestPushEventContext<String>("a2"));
+		assertEquals(2, dropping.size());
+	}
+
+	@Test
+	public void testConcurrentDropOldest() throws InterruptedException
+	{
+		final PushEventQueue<Long> queue = new PushEventQueue<Long>(16,
+			OverflowPolicy.DROP_OLDEST);
+		assertDrainedInOrder(queue, offerConcurrently(queue));
+	}
+
+	@Test
+	public void testConcurrentDropNewest() throws InterruptedException
+	{
+		final PushEventQueue<Long> queue = new PushEventQueue<Long>(16,
+			OverflowPolicy.DROP_NEWEST);
+		assertDrainedInOrder(queue, offerConcurrently(queue));
+	}
+
+	@Test
+	public void testConcurrentCoalesce() throws InterruptedException
+	{
+		// every producer replaces its own events
+		final PushEventQueue<Long> queue = new PushEventQueue<Long>(16, OverflowPolicy.COALESCE)
+		{
+			@Override
+			protected Object getMergeKey(final Long event)
+			{
+				return event % PRODUCERS;
+			}
+		};
+		final List<Long> drained = offerConcurrently(queue);
+
+		assertEquals(PRODUCERS * EVENTS_PER_PRODUCER, drained.size() +
+			queue.getCoalescedCount() + queue.getDroppedCount());
+		assertEquals(0, queue.getDroppedCount());
+		assertEquals(0, queue.size());
+
+		// the last event of every producer is delivered
+		for (long p = 0; p < PRODUCERS; p++)
+			assertTrue(drained.contains((EVENTS_PER_PRODUCER - 1) * PRODUCERS + p));
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.push.longpoll;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.head.JavaScriptHeaderItem;
+import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
+import org.apache.wicket.markup.head.OnEventHeaderItem;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.http.WebRequest;
+import org.wicketstuff.push.IPushEventHandler;
+import org.wicketstuff.push.IPushNode;
+import org.wicketstuff.push.PushEventDispatcher;
+
+/**
+ * Runs the poll loop of the nodes of a component on the client. Whenever the
+ * {@link LongPollPushServlet} reports queued events, the events are fetched with an AJAX request to
+ * this behavior and delivered to the handlers of the nodes.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class LongPollPushBehavior extends AbstractDefaultAjaxBehavior
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Delay before polling again after a failed poll request, in milliseconds.
+	 */
+	private static final int RETRY_DELAY = 5000;
+
+	private final Map<LongPollPushNode, IPushEventHandler> handlers = new HashMap<LongPollPushNode, IPushEventHandler>(
+		2);
+
+	LongPollPushBehavior()
+	{
+		super();
+	}
+
+	<EventType> LongPollPushNode<EventType> addNode(
+		final IPushEventHandler<EventType> pushEventHandler)
+	{
+		final LongPollPushNode<EventType> node = new LongPollPushNode<EventType>();
+		handlers.put(node, pushEventHandler);
+		return node;
+	}
+
+	private String _getNodeIds()
+	{
+		final StringBuilder ids = new StringBuilder();
+		for (final LongPollPushNode<?> node : handlers.keySet())
+		{
+			if (ids.length() > 0)
+				ids.append(',');
+			ids.append(node.getId());
+		}
+		return ids.toString();
+	}
+
+	/**
+	 * @return the number of handlers after the removal
+	 */
+	int removeNode(final IPushNode<?> node)
+	{
+		handlers.remove(node);
+		return handlers.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void renderHead(final Component component, final IHeaderResponse response)
+	{
+		super.renderHead(component, response);
+
+		if (handlers.isEmpty())
+			return;
+
+		final LongPollPushService pushService = LongPollPushService.get(component.getApplication());
+		final String pollUrl = RequestCycle.get()
+			.getUrlRenderer()
+			.renderContextRelativeUrl(pushService.getServletPath()) +
+			"?nodes=" + _getNodeIds();
+		final String callbackUrl = getCallbackUrl().toString();
+		final String key = component.getMarkupId();
+
+		/*
+		 * Each rendering starts a new poll loop, a loop stops as soon as it is replaced, e.g. after
+		 * the component was updated by an AJAX request.
+		 */
+		response.render(OnDomReadyHeaderItem.forScript("(function() {\n" + //
+			"var loops = window.wicketstuffLongPoll = window.wicketstuffLongPoll || {};\n" + //
+			"var loop = {};\n" + //
+			"loops['" + key + "'] = loop;\n" + //
+			"var poll = function() {\n" + //
+			"  if (loops['" + key + "'] !== loop) return;\n" + //
+			"  jQuery.ajax({url: '" + pollUrl + "', cache: false, dataType: 'text',\n" + //
+			"    success: function(data) {\n" + //
+			"      if (data === '" + LongPollPushService.EVENTS_QUEUED + "')\n" + //
+			"        Wicket.Ajax.get({u: '" + callbackUrl + "', sh: [poll],\n" + //
+			"          fh: [function() { setTimeout(poll, " + RETRY_DELAY + "); }]});\n" + //
+			"      else\n" + //
+			"        poll();\n" + //
+			"    },\n" + //
+			"    error: function() { setTimeout(poll, " + RETRY_DELAY + "); }\n" + //
+			"  });\n" + //
+			"};\n" + //
+			"jQuery(window).on('unload', function() { delete loops['" + key + "']; });\n" + //
+			"poll();\n" + //
+			"})();"));
+
+		// install an on-unload handler
+		response.render(JavaScriptHeaderItem.forScript("history.navigationMode = 'compatible';",
+			"Opera on-unload support"));
+		response.render(OnEventHeaderItem.forScript("window", "unload", "Wicket.Ajax.get('" +
+			callbackUrl + "&unload=1', function() { }, function() { });"));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void respond(final AjaxRequestTarget target)
+	{
+		final LongPollPushService pushService = LongPollPushService.get(target.getPage()
+			.getApplication());
+
+		final WebRequest request = (WebRequest)RequestCycle.get().getRequest();
+
+		if (!request.getRequestParameters().getParameterValue("unload").isNull())
+			// if the page is unloaded notify the pushService to disconnect all push nodes
+			for (final LongPollPushNode<?> node : handlers.keySet())
+				pushService.onDisconnect(node);
+
+		else
+			// retrieve all collected events and process them
+			for (final Entry<LongPollPushNode, IPushEventHandler> entry : handlers.entrySet())
+			{
+				final LongPollPushNode node = entry.getKey();
+				PushEventDispatcher.dispatch(target, entry.getValue(), node,
+					pushService.pollEvents(node, entry.getValue()));
+			}
+	}
+}
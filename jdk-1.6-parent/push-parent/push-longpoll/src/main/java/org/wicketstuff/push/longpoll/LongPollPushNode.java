@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.push.longpoll;
+
+import java.util.UUID;
+
+import org.wicketstuff.push.IPushNode;
+
+/**
+ * A push node whose client waits for events with a long polling request.
+ */
+public class LongPollPushNode<EventType> implements IPushNode<EventType>
+{
+	private static final long serialVersionUID = 1L;
+
+	private final String id = UUID.randomUUID().toString();
+	private final String toString;
+
+	LongPollPushNode()
+	{
+		toString = getClass().getName() + "[id=" + id + "]";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(final Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		return id.equals(((LongPollPushNode<?>)obj).id);
+	}
+
+	/**
+	 * @return the id used by the client to refer to this node
+	 */
+	public String getId()
+	{
+		return id;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode()
+	{
+		return id.hashCode();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString()
+	{
+		return toString;
+	}
+}
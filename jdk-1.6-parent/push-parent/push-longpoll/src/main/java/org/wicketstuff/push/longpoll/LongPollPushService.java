@@ -0,0 +1,694 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.push.longpoll;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.Component;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wicketstuff.push.AbstractPushService;
+import org.wicketstuff.push.AbstractPushServiceRef;
+import org.wicketstuff.push.IPushChannel;
+import org.wicketstuff.push.IPushEventHandler;
+import org.wicketstuff.push.IPushNode;
+import org.wicketstuff.push.IPushNodeDisconnectedListener;
+import org.wicketstuff.push.IPushService;
+import org.wicketstuff.push.IPushServiceRef;
+import org.wicketstuff.push.PushEventQueue;
+import org.wicketstuff.push.PushEventQueue.OverflowPolicy;
+
+/**
+ * Long polling implementation of {@link IPushService}.
+ * <p>
+ * The client of a node sends a poll request to the {@link LongPollPushServlet}. The request is
+ * suspended with a Servlet 3 {@link AsyncContext} until an event is queued for one of its nodes or
+ * the poll timeout elapses, so no thread is used while the client waits. When events are queued
+ * the client is told to fetch them with a regular Wicket AJAX request, which delivers them to the
+ * {@link IPushEventHandler}s.
+ */
+public class LongPollPushService extends AbstractPushService
+{
+	/**
+	 * A suspended poll request of a client, waiting for the events of one or more nodes.
+	 */
+	private final class ParkedPoll implements AsyncListener
+	{
+		final AsyncContext asyncContext;
+		final String[] nodeIds;
+		final AtomicBoolean completed = new AtomicBoolean();
+
+		ParkedPoll(final AsyncContext asyncContext, final String[] nodeIds)
+		{
+			this.asyncContext = asyncContext;
+			this.nodeIds = nodeIds;
+		}
+
+		/**
+		 * Sends the response and resumes the request, if this was not done before. The response is
+		 * written by a container thread, so publishing an event does not wait for the clients.
+		 */
+		void complete(final String response)
+		{
+			if (!_markCompleted())
+				return;
+
+			try
+			{
+				asyncContext.start(new Runnable()
+				{
+					public void run()
+					{
+						_respond(response);
+					}
+				});
+			}
+			catch (final IllegalStateException ex)
+			{
+				// the request was completed by the container in the meantime
+				LOG.debug("Failed to respond to poll request", ex);
+			}
+		}
+
+		private boolean _markCompleted()
+		{
+			if (!completed.compareAndSet(false, true))
+				return false;
+
+			_parkedPollCount.decrementAndGet();
+			final Time now = Time.now();
+			for (final String nodeId : nodeIds)
+			{
+				final PushNodeState<?> state = _nodeStates.get(nodeId);
+				if (state != null)
+					state.lastSeenAt = now;
+			}
+			return true;
+		}
+
+		private void _respond(final String response)
+		{
+			try
+			{
+				final ServletResponse servletResponse = asyncContext.getResponse();
+				servletResponse.setContentType("text/plain");
+				servletResponse.setCharacterEncoding("UTF-8");
+				servletResponse.getWriter().write(response);
+				asyncContext.complete();
+			}
+			catch (final IOException ex)
+			{
+				LOG.debug("Failed to respond to poll request", ex);
+			}
+			catch (final IllegalStateException ex)
+			{
+				// the request was completed by the container in the meantime
+				LOG.debug("Failed to respond to poll request", ex);
+			}
+		}
+
+		boolean isCompleted()
+		{
+			return completed.get();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void onComplete(final AsyncEvent event) throws IOException
+		{
+			if (completed.compareAndSet(false, true))
+				_parkedPollCount.decrementAndGet();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void onError(final AsyncEvent event) throws IOException
+		{
+			if (completed.compareAndSet(false, true))
+				_parkedPollCount.decrementAndGet();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void onStartAsync(final AsyncEvent event) throws IOException
+		{
+			// nothing to do
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void onTimeout(final AsyncEvent event) throws IOException
+		{
+			// already running on a container thread, the response must be sent before returning
+			if (_markCompleted())
+				_respond(NO_EVENTS);
+		}
+	}
+
+	private final class PushNodeState<EventType>
+	{
+		final LongPollPushNode<EventType> node;
+		volatile Time lastSeenAt = Time.now();
+		final AtomicReference<ParkedPoll> parkedPoll = new AtomicReference<ParkedPoll>();
+		final PushEventQueue<LongPollPushEventContext<EventType>> queuedEvents;
+
+		PushNodeState(final LongPollPushNode<EventType> node,
+			final IPushEventHandler<EventType> handler)
+		{
+			this.node = node;
+			queuedEvents = PushEventQueue.forHandler(_maxQueueSize, _overflowPolicy, handler);
+		}
+
+		boolean isTimedOut()
+		{
+			final ParkedPoll poll = parkedPoll.get();
+			if (poll != null && !poll.isCompleted())
+				return false;
+			return Time.now().subtract(lastSeenAt).greaterThan(_maxTimeLag);
+		}
+
+		/**
+		 * Resumes the poll request waiting for this node, if any.
+		 */
+		void wake()
+		{
+			final ParkedPoll poll = parkedPoll.getAndSet(null);
+			if (poll != null)
+				poll.complete(EVENTS_QUEUED);
+		}
+	}
+
+	/**
+	 * Response to a poll request telling the client to fetch the events of its nodes.
+	 */
+	static final String EVENTS_QUEUED = "poll";
+
+	/**
+	 * Response to a poll request telling the client to poll again.
+	 */
+	static final String NO_EVENTS = "";
+
+	private static final Logger LOG = LoggerFactory.getLogger(LongPollPushService.class);
+
+	private static final ConcurrentHashMap<Application, LongPollPushService> INSTANCES = new ConcurrentHashMap<Application, LongPollPushService>(
+		2);
+
+	private static final IPushServiceRef<LongPollPushService> PUSH_SERVICE_REF = new AbstractPushServiceRef<LongPollPushService>()
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected LongPollPushService lookupService()
+		{
+			return LongPollPushService.get();
+		}
+	};
+
+	/**
+	 * Finds the service of the application a node belongs to.
+	 * 
+	 * @return the service or <code>null</code> if no service knows the nodes and there is not
+	 *         exactly one service
+	 */
+	static LongPollPushService find(final String[] nodeIds)
+	{
+		for (final LongPollPushService service : INSTANCES.values())
+			for (final String nodeId : nodeIds)
+				if (service._nodeStates.containsKey(nodeId))
+					return service;
+		if (INSTANCES.size() == 1)
+			return INSTANCES.values().iterator().next();
+		return null;
+	}
+
+	public static LongPollPushService get()
+	{
+		return get(Application.get());
+	}
+
+	public static LongPollPushService get(final Application application)
+	{
+		Args.notNull(application, "application");
+
+		LongPollPushService service = INSTANCES.get(application);
+		if (service == null)
+		{
+			service = new LongPollPushService();
+			final LongPollPushService existingInstance = INSTANCES.putIfAbsent(application,
+				service);
+
+			if (existingInstance == null)
+				/*
+				 * If this is the first instance of this service for the given application, then
+				 * schedule the cleanup task.
+				 */
+				service.setCleanupInterval(Duration.seconds(60));
+			else
+				// If it is not the first instance, throw it away.
+				service = existingInstance;
+		}
+		return service;
+	}
+
+	/**
+	 * @return a serializable service reference
+	 */
+	public static IPushServiceRef<LongPollPushService> getRef()
+	{
+		return PUSH_SERVICE_REF;
+	}
+
+	static void onApplicationShutdown(final Application application)
+	{
+		Args.notNull(application, "application");
+
+		final LongPollPushService srv = INSTANCES.remove(application);
+		if (srv != null)
+		{
+			LOG.info("Shutting down {}...", srv);
+			synchronized (srv._cleanupExecutor)
+			{
+				srv._cleanupFuture.cancel(false);
+				srv._cleanupFuture = null;
+				srv._cleanupExecutor.shutdownNow();
+			}
+			// release the waiting clients
+			for (final PushNodeState<?> state : srv._nodeStates.values())
+				state.wake();
+		}
+	}
+
+	private Duration _pollTimeout = Duration.seconds(30);
+
+	private Duration _maxTimeLag = Duration.seconds(10);
+
+	private int _maxQueueSize = 1000;
+
+	private OverflowPolicy _overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+	private String _servletPath = "push-longpoll";
+
+	private final AtomicInteger _parkedPollCount = new AtomicInteger();
+	private final AtomicLong _droppedEventCount = new AtomicLong();
+
+	/**
+	 * The states of the connected nodes by node id.
+	 */
+	private final ConcurrentMap<String, PushNodeState<?>> _nodeStates = new ConcurrentHashMap<String, PushNodeState<?>>();
+	private final ScheduledThreadPoolExecutor _cleanupExecutor = new ScheduledThreadPoolExecutor(1);
+	private ScheduledFuture<?> _cleanupFuture = null;
+
+	private final Runnable _cleanupTask = new Runnable()
+	{
+		public void run()
+		{
+			LOG.debug("Running long poll push node cleanup task...");
+			int count = 0;
+			for (final PushNodeState<?> state : _nodeStates.values())
+				if (state.isTimedOut())
+				{
+					onDisconnect(state.node);
+					count++;
+				}
+			LOG.debug("Cleaned up {} long poll push nodes.", count);
+		}
+	};
+
+	private LongPollPushService()
+	{
+		super();
+	}
+
+	private <EventType> void _enqueue(final PushNodeState<EventType> state,
+		final LongPollPushEventContext<EventType> ctx)
+	{
+		if (!state.queuedEvents.offer(ctx))
+			_droppedEventCount.incrementAndGet();
+		state.wake();
+	}
+
+	private LongPollPushBehavior _findPushBehaviour(final Component component)
+	{
+		for (final Behavior behavior : component.getBehaviors())
+			if (behavior instanceof LongPollPushBehavior)
+				return (LongPollPushBehavior)behavior;
+		return null;
+	}
+
+	private <EventType> void _onConnect(final LongPollPushNode<EventType> node,
+		final IPushEventHandler<EventType> handler)
+	{
+		_nodeStates.put(node.getId(), new PushNodeState<EventType>(node, handler));
+	}
+
+	/**
+	 * @return the number of events dropped because the queue of a node was full
+	 */
+	public long getDroppedEventCount()
+	{
+		return _droppedEventCount.get();
+	}
+
+	public int getMaxQueueSize()
+	{
+		return _maxQueueSize;
+	}
+
+	public Duration getMaxTimeLag()
+	{
+		return _maxTimeLag;
+	}
+
+	public OverflowPolicy getOverflowPolicy()
+	{
+		return _overflowPolicy;
+	}
+
+	/**
+	 * @return the number of poll requests currently waiting for events
+	 */
+	public int getParkedPollCount()
+	{
+		return _parkedPollCount.get();
+	}
+
+	public Duration getPollTimeout()
+	{
+		return _pollTimeout;
+	}
+
+	/**
+	 * @return the context relative path the {@link LongPollPushServlet} is mapped to
+	 */
+	public String getServletPath()
+	{
+		return _servletPath;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public <EventType> LongPollPushNode<EventType> installNode(final Component component,
+		final IPushEventHandler<EventType> handler)
+	{
+		Args.notNull(component, "component");
+		Args.notNull(handler, "handler");
+
+		LongPollPushBehavior behavior = _findPushBehaviour(component);
+		if (behavior == null)
+		{
+			behavior = new LongPollPushBehavior();
+			component.add(behavior);
+		}
+		final LongPollPushNode<EventType> node = behavior.addNode(handler);
+		_onConnect(node, handler);
+		return node;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isConnected(final IPushNode<?> node)
+	{
+		Args.notNull(node, "node");
+
+		if (node instanceof LongPollPushNode)
+		{
+			final PushNodeState<?> state = _nodeStates.get(((LongPollPushNode<?>)node).getId());
+			if (state == null)
+				return false;
+
+			if (state.isTimedOut())
+			{
+				onDisconnect(state.node);
+				return false;
+			}
+			return true;
+		}
+		LOG.warn("Unsupported push node type {}", node);
+		return false;
+	}
+
+	void onDisconnect(final LongPollPushNode<?> node)
+	{
+		final PushNodeState<?> state = _nodeStates.remove(node.getId());
+		if (state != null)
+		{
+			LOG.debug("Long poll push node {} disconnected.", node);
+
+			state.wake();
+			disconnectFromAllChannels(node);
+
+			for (final IPushNodeDisconnectedListener listener : disconnectListeners)
+				try
+				{
+					listener.onDisconnect(node);
+				}
+				catch (final RuntimeException ex)
+				{
+					LOG.error("Failed to notify " + listener, ex);
+				}
+		}
+	}
+
+	/**
+	 * Suspends a poll request until events are queued for one of the nodes or the poll timeout
+	 * elapses. The request is answered immediately if events are already queued or a node is
+	 * unknown, so the client reconnects its nodes.
+	 */
+	void park(final HttpServletRequest request, final String[] nodeIds)
+	{
+		final AsyncContext asyncContext = request.startAsync();
+		asyncContext.setTimeout(_pollTimeout.getMilliseconds());
+		final ParkedPoll poll = new ParkedPoll(asyncContext, nodeIds);
+		asyncContext.addListener(poll);
+		_parkedPollCount.incrementAndGet();
+
+		boolean pending = false;
+		for (final String nodeId : nodeIds)
+		{
+			final PushNodeState<?> state = _nodeStates.get(nodeId);
+			if (state == null)
+			{
+				pending = true;
+				continue;
+			}
+
+			state.lastSeenAt = Time.now();
+			final ParkedPoll previous = state.parkedPoll.getAndSet(poll);
+			if (previous != null)
+				// superseded, e.g. after the page was reloaded
+				previous.complete(NO_EVENTS);
+
+			// checked after parking, events queued in the meantime wake this poll
+			if (!state.queuedEvents.isEmpty())
+				pending = true;
+		}
+
+		if (pending)
+			poll.complete(EVENTS_QUEUED);
+	}
+
+	@SuppressWarnings("unchecked")
+	<EventType> List<LongPollPushEventContext<EventType>> pollEvents(
+		final LongPollPushNode<EventType> node, final IPushEventHandler<EventType> handler)
+	{
+		final PushNodeState<EventType> state = (PushNodeState<EventType>)_nodeStates.get(node.getId());
+		if (state == null)
+		{
+			LOG.debug("Reconnecting push node {}...", node);
+			_onConnect(node, handler);
+			return Collections.EMPTY_LIST;
+		}
+
+		state.lastSeenAt = Time.now();
+		return state.queuedEvents.drain();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public <EventType> void publish(final IPushChannel<EventType> channel, final EventType event)
+	{
+		Args.notNull(channel, "channel");
+
+		final Set<IPushNode<?>> pnodes = nodesByChannels.get(channel);
+		if (pnodes == null)
+			throw new IllegalArgumentException("Unknown channel " + channel);
+
+		final LongPollPushEventContext<EventType> ctx = new LongPollPushEventContext<EventType>(
+			event, channel, this);
+
+		// publish the event to all registered nodes
+		for (final IPushNode<?> pnode : pnodes)
+		{
+			@SuppressWarnings("unchecked")
+			final PushNodeState<EventType> state = (PushNodeState<EventType>)_nodeStates.get(((LongPollPushNode<?>)pnode).getId());
+			if (state == null)
+				continue;
+
+			if (state.isTimedOut())
+				onDisconnect(state.node);
+			else
+				_enqueue(state, ctx);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public <EventType> void publish(final IPushNode<EventType> node, final EventType event)
+	{
+		Args.notNull(node, "node");
+
+		if (node instanceof LongPollPushNode)
+		{
+			@SuppressWarnings("unchecked")
+			final PushNodeState<EventType> state = (PushNodeState<EventType>)_nodeStates.get(((LongPollPushNode<?>)node).getId());
+			if (state == null)
+				return;
+
+			if (state.isTimedOut())
+				onDisconnect(state.node);
+			else
+				_enqueue(state, new LongPollPushEventContext<EventType>(event, null, this));
+		}
+		else
+			LOG.warn("Unsupported push node type {}", node);
+	}
+
+	/**
+	 * Sets the interval in which the clean up task will be executed that removes information about
+	 * disconnected push nodes. Default is 60 seconds.
+	 */
+	public void setCleanupInterval(final Duration interval)
+	{
+		Args.notNull(interval, "interval");
+
+		synchronized (_cleanupExecutor)
+		{
+			if (_cleanupFuture != null)
+				_cleanupFuture.cancel(false);
+			if (!_cleanupExecutor.isShutdown())
+				_cleanupFuture = _cleanupExecutor.scheduleAtFixedRate(_cleanupTask,
+					interval.getMilliseconds(), interval.getMilliseconds(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Sets the maximum number of events queued for a node between two deliveries. Default is 1000.
+	 * Only affects nodes installed afterwards.
+	 */
+	public void setMaxQueueSize(final int maxQueueSize)
+	{
+		Args.isTrue(maxQueueSize > 0, "maxQueueSize must be > 0, not %s", maxQueueSize);
+
+		_maxQueueSize = maxQueueSize;
+	}
+
+	/**
+	 * Sets how long a node may go without a waiting poll request before it is disconnected.
+	 * Default is 10 seconds.
+	 */
+	public void setMaxTimeLag(final Duration maxTimeLag)
+	{
+		Args.notNull(maxTimeLag, "maxTimeLag");
+
+		_maxTimeLag = maxTimeLag;
+	}
+
+	/**
+	 * Sets which event is dropped when the queue of a node is full. Default is
+	 * {@link OverflowPolicy#DROP_OLDEST}. Only affects nodes installed afterwards.
+	 */
+	public void setOverflowPolicy(final OverflowPolicy overflowPolicy)
+	{
+		Args.notNull(overflowPolicy, "overflowPolicy");
+
+		_overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Sets how long a poll request waits for events before the client has to poll again. Should
+	 * be shorter than the timeouts of proxies between the clients and the server. Default is 30
+	 * seconds.
+	 */
+	public void setPollTimeout(final Duration pollTimeout)
+	{
+		Args.notNull(pollTimeout, "pollTimeout");
+
+		_pollTimeout = pollTimeout;
+	}
+
+	/**
+	 * Sets the context relative path the {@link LongPollPushServlet} is mapped to. Default is
+	 * <code>push-longpoll</code>.
+	 */
+	public void setServletPath(final String servletPath)
+	{
+		Args.notEmpty(servletPath, "servletPath");
+
+		_servletPath = servletPath;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void uninstallNode(final Component component, final IPushNode<?> node)
+	{
+		Args.notNull(component, "component");
+		Args.notNull(node, "node");
+
+		if (node instanceof LongPollPushNode)
+		{
+			final LongPollPushBehavior behavior = _findPushBehaviour(component);
+			if (behavior == null)
+				return;
+			if (behavior.removeNode(node) == 0)
+				component.remove(behavior);
+		}
+		else
+			LOG.warn("Unsupported push node type {}", node);
+	}
+}
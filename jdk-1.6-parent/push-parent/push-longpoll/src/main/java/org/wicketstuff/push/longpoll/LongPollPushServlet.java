@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.push.longpoll;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.util.string.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Receives the poll requests of the {@link LongPollPushBehavior} and suspends them until events
+ * are available, see {@link LongPollPushService}. Requires a Servlet 3 container. The servlet must
+ * be mapped to the path configured with {@link LongPollPushService#setServletPath(String)} and
+ * support asynchronous requests, as must all filters in front of it:
+ * 
+ * <pre>
+ * &lt;servlet&gt;
+ *     &lt;servlet-name&gt;push-longpoll&lt;/servlet-name&gt;
+ *     &lt;servlet-class&gt;org.wicketstuff.push.longpoll.LongPollPushServlet&lt;/servlet-class&gt;
+ *     &lt;async-supported&gt;true&lt;/async-supported&gt;
+ * &lt;/servlet&gt;
+ * &lt;servlet-mapping&gt;
+ *     &lt;servlet-name&gt;push-longpoll&lt;/servlet-name&gt;
+ *     &lt;url-pattern&gt;/push-longpoll&lt;/url-pattern&gt;
+ * &lt;/servlet-mapping&gt;
+ * </pre>
+ */
+public class LongPollPushServlet extends HttpServlet
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger LOG = LoggerFactory.getLogger(LongPollPushServlet.class);
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void doGet(final HttpServletRequest request, final HttpServletResponse response)
+		throws ServletException, IOException
+	{
+		final String nodes = request.getParameter("nodes");
+		if (Strings.isEmpty(nodes))
+		{
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missing parameter nodes");
+			return;
+		}
+
+		if (!request.isAsyncSupported())
+		{
+			LOG.error("Asynchronous requests are not supported, set async-supported to true for {} and all filters in front of it.",
+				getServletName());
+			response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			return;
+		}
+
+		final String[] nodeIds = Strings.split(nodes, ',');
+		final LongPollPushService service = LongPollPushService.find(nodeIds);
+		if (service == null)
+		{
+			response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown push nodes");
+			return;
+		}
+
+		service.park(request, nodeIds);
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.push.longpoll;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.util.io.Streams;
+import org.apache.wicket.util.tester.WicketTester;
+import org.apache.wicket.util.time.Duration;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.bio.SocketConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wicketstuff.push.IPushEventContext;
+import org.wicketstuff.push.IPushEventHandler;
+import org.wicketstuff.push.IPushNode;
+
+/**
+ * Runs the {@link LongPollPushServlet} in an embedded Jetty and checks that a parked poll request
+ * is answered when an event is published and when the poll timeout elapses.
+ */
+public class LongPollPushServletTest extends Assert
+{
+	private WicketTester tester;
+	private LongPollPushService service;
+	private IPushEventHandler<String> handler;
+	private LongPollPushNode<String> node;
+	private Server server;
+	private SocketConnector connector;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		tester = new WicketTester();
+		service = LongPollPushService.get(tester.getApplication());
+		handler = new IPushEventHandler<String>()
+		{
+			private static final long serialVersionUID = 1L;
+
+			public void onEvent(final AjaxRequestTarget target, final String event,
+				final IPushNode<String> node, final IPushEventContext<String> ctx)
+			{
+			}
+		};
+		node = service.installNode(new WebMarkupContainer("pushed"), handler);
+
+		connector = new SocketConnector();
+		connector.setPort(0);
+		server = new Server();
+		server.setConnectors(new Connector[] { connector });
+
+		final ServletHolder holder = new ServletHolder(new LongPollPushServlet());
+		holder.setAsyncSupported(true);
+		final ServletContextHandler context = new ServletContextHandler();
+		context.setContextPath("/");
+		context.addServlet(holder, "/" + service.getServletPath());
+		server.setHandler(context);
+		server.start();
+
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		executor.shutdownNow();
+		server.stop();
+		server.join();
+		tester.destroy();
+	}
+
+	@Test
+	public void testWakeUpOnPublish() throws Exception
+	{
+		final Future<String> poll = poll();
+		awaitParkedPolls(1);
+		assertFalse(poll.isDone());
+
+		service.publish(node, "event");
+
+		assertEquals(LongPollPushService.EVENTS_QUEUED, poll.get(5, TimeUnit.SECONDS));
+		assertEquals(0, service.getParkedPollCount());
+		assertEquals(1, service.pollEvents(node, handler).size());
+	}
+
+	@Test
+	public void testTimeout() throws Exception
+	{
+		service.setPollTimeout(Duration.milliseconds(500));
+
+		final Future<String> poll = poll();
+		awaitParkedPolls(1);
+
+		assertEquals(LongPollPushService.NO_EVENTS, poll.get(5, TimeUnit.SECONDS));
+		assertEquals(0, service.getParkedPollCount());
+		assertTrue(service.isConnected(node));
+	}
+
+	private void awaitParkedPolls(final int count) throws InterruptedException
+	{
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (service.getParkedPollCount() != count)
+		{
+			assertTrue("poll request not parked", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Sends a poll request for the node in the background.
+	 */
+	private Future<String> poll()
+	{
+		return executor.submit(new Callable<String>()
+		{
+			public String call() throws Exception
+			{
+				final URL url = new URL("http://localhost:" + connector.getLocalPort() + "/" +
+					service.getServletPath() + "?nodes=" + node.getId());
+				final InputStream in = url.openStream();
+				try
+				{
+					return Streams.readString(in, "UTF-8");
+				}
+				finally
+				{
+					in.close();
+				}
+			}
+		});
+	}
+}
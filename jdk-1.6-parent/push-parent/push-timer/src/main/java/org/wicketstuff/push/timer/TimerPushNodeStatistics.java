@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.push.timer;
+
+import java.io.Serializable;
+
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * Snapshot of the polling statistics of a {@link TimerPushNode}.
+ * 
+ * @see TimerPushService#getStatistics(TimerPushNode)
+ */
+public final class TimerPushNodeStatistics implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private final long pollCount;
+	private final long hitCount;
+	private final Duration pollingInterval;
+	private final Time lastPolledAt;
+
+	TimerPushNodeStatistics(final long pollCount, final long hitCount,
+		final Duration pollingInterval, final Time lastPolledAt)
+	{
+		this.pollCount = pollCount;
+		this.hitCount = hitCount;
+		this.pollingInterval = pollingInterval;
+		this.lastPolledAt = lastPolledAt;
+	}
+
+	/**
+	 * @return the number of polls that returned events
+	 */
+	public long getHitCount()
+	{
+		return hitCount;
+	}
+
+	/**
+	 * @return the fraction of polls that returned events, 0 if the node did not poll yet
+	 */
+	public double getHitRatio()
+	{
+		return pollCount == 0 ? 0 : (double)hitCount / pollCount;
+	}
+
+	public Time getLastPolledAt()
+	{
+		return lastPolledAt;
+	}
+
+	/**
+	 * @return the number of polls
+	 */
+	public long getPollCount()
+	{
+		return pollCount;
+	}
+
+	/**
+	 * @return the interval until the next poll, only differs from
+	 *         {@link TimerPushNode#getPollingInterval()} with adaptive polling
+	 */
+	public Duration getPollingInterval()
+	{
+		return pollingInterval;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + "[polls=" + pollCount + ", hits=" + hitCount +
+			", pollingInterval=" + pollingInterval + "]";
+	}
+}
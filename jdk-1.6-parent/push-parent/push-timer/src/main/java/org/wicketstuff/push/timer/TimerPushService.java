@@ -18,7 +18,6 @@ package org.wicketstuff.push.timer;
 
 import static java.util.Collections.EMPTY_LIST;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -26,6 +25,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.Component;
@@ -45,6 +45,8 @@ import org.wicketstuff.push.IPushNode;
 import org.wicketstuff.push.IPushNodeDisconnectedListener;
 import org.wicketstuff.push.IPushService;
 import org.wicketstuff.push.IPushServiceRef;
+import org.wicketstuff.push.PushEventQueue;
+import org.wicketstuff.push.PushEventQueue.OverflowPolicy;
 
 /**
  * AJAX timer based implementation of {@link IPushService}.
@@ -57,18 +59,27 @@ public class TimerPushService extends AbstractPushService
 	private final class PushNodeState<EventType>
 	{
 		final TimerPushNode<EventType> node;
-		Time lastPolledAt = Time.now();
-		List<TimerPushEventContext<EventType>> queuedEvents = new ArrayList<TimerPushEventContext<EventType>>(
-			2);
-
-		PushNodeState(final TimerPushNode<EventType> node)
+		volatile Time lastPolledAt = Time.now();
+		volatile long lastQueuedAt = 0;
+		volatile Duration pollingInterval;
+		final AtomicLong pollCount = new AtomicLong();
+		final AtomicLong hitCount = new AtomicLong();
+		final PushEventQueue<TimerPushEventContext<EventType>> queuedEvents;
+
+		PushNodeState(final TimerPushNode<EventType> node, final IPushEventHandler<EventType> handler)
 		{
 			this.node = node;
+			pollingInterval = node.getPollingInterval();
+			queuedEvents = PushEventQueue.forHandler(_maxQueueSize, _overflowPolicy, handler);
 		}
 
 		boolean isTimedOut()
 		{
-			return Time.now().subtract(lastPolledAt).greaterThan(_maxTimeLag);
+			// a node backing off is expected to poll later than usual
+			final long backOff = Math.max(0, pollingInterval.getMilliseconds() -
+				node.getPollingInterval().getMilliseconds());
+			return Time.now().subtract(lastPolledAt).getMilliseconds() > _maxTimeLag.getMilliseconds() +
+				backOff;
 		}
 	}
 
@@ -145,6 +156,20 @@ public class TimerPushService extends AbstractPushService
 
 	private Duration _maxTimeLag = Duration.seconds(10);
 
+	private int _maxQueueSize = 1000;
+
+	private boolean _adaptivePolling = false;
+
+	private Duration _maxPollingInterval = Duration.seconds(30);
+
+	private Duration _activityPeriod = Duration.seconds(10);
+
+	private OverflowPolicy _overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+	private final AtomicLong _publishedEventCount = new AtomicLong();
+	private final AtomicLong _queuedEventCount = new AtomicLong();
+	private final AtomicLong _droppedEventCount = new AtomicLong();
+
 	private final ConcurrentMap<TimerPushNode<?>, PushNodeState<?>> _nodeStates = new ConcurrentHashMap<TimerPushNode<?>, PushNodeState<?>>();
 	private final ScheduledThreadPoolExecutor _cleanupExecutor = new ScheduledThreadPoolExecutor(1);
 	private ScheduledFuture<?> _cleanupFuture = null;
@@ -156,13 +181,10 @@ public class TimerPushService extends AbstractPushService
 			LOG.debug("Running timer push node cleanup task...");
 			int count = 0;
 			for (final PushNodeState<?> state : _nodeStates.values())
-				synchronized (state)
+				if (state.isTimedOut())
 				{
-					if (state.isTimedOut())
-					{
-						onDisconnect(state.node);
-						count++;
-					}
+					onDisconnect(state.node);
+					count++;
 				}
 			LOG.debug("Cleaned up {} timer push nodes.", count);
 		}
@@ -181,9 +203,56 @@ public class TimerPushService extends AbstractPushService
 		return null;
 	}
 
-	private <EventType> void _onConnect(final TimerPushNode<EventType> node)
+	private <EventType> void _enqueue(final PushNodeState<EventType> state,
+		final TimerPushEventContext<EventType> ctx)
 	{
-		_nodeStates.put(node, new PushNodeState<EventType>(node));
+		state.lastQueuedAt = ctx.getTimestamp();
+		_queuedEventCount.incrementAndGet();
+		if (!state.queuedEvents.offer(ctx))
+			_droppedEventCount.incrementAndGet();
+	}
+
+	/**
+	 * Determines when a node polls next with adaptive polling: at its own polling interval if
+	 * events were queued for it recently, otherwise the interval is doubled up to the maximum
+	 * polling interval.
+	 */
+	private void _adaptPollingInterval(final PushNodeState<?> state, final boolean hit)
+	{
+		final Duration interval = state.node.getPollingInterval();
+		if (!_adaptivePolling || hit ||
+			System.currentTimeMillis() - state.lastQueuedAt < _activityPeriod.getMilliseconds())
+		{
+			state.pollingInterval = interval;
+			return;
+		}
+
+		final long max = Math.max(interval.getMilliseconds(), _maxPollingInterval.getMilliseconds());
+		state.pollingInterval = Duration.milliseconds(Math.min(max,
+			state.pollingInterval.getMilliseconds() * 2));
+	}
+
+	private <EventType> void _onConnect(final TimerPushNode<EventType> node,
+		final IPushEventHandler<EventType> handler)
+	{
+		_nodeStates.put(node, new PushNodeState<EventType>(node, handler));
+	}
+
+	/**
+	 * @return the number of events dropped because the queue of a node was full
+	 */
+	public long getDroppedEventCount()
+	{
+		return _droppedEventCount.get();
+	}
+
+	/**
+	 * @return the period after queuing an event during which a node keeps polling at its own
+	 *         polling interval with adaptive polling
+	 */
+	public Duration getActivityPeriod()
+	{
+		return _activityPeriod;
 	}
 
 	public Duration getDefaultPollingInterval()
@@ -191,11 +260,101 @@ public class TimerPushService extends AbstractPushService
 		return _defaultPollingInterval;
 	}
 
+	/**
+	 * @return the longest interval between two polls of a node with adaptive polling
+	 */
+	public Duration getMaxPollingInterval()
+	{
+		return _maxPollingInterval;
+	}
+
+	/**
+	 * @return the maximum number of events queued for a node
+	 */
+	public int getMaxQueueSize()
+	{
+		return _maxQueueSize;
+	}
+
 	public Duration getMaxTimeLag()
 	{
 		return _maxTimeLag;
 	}
 
+	public boolean isAdaptivePolling()
+	{
+		return _adaptivePolling;
+	}
+
+	public OverflowPolicy getOverflowPolicy()
+	{
+		return _overflowPolicy;
+	}
+
+	/**
+	 * @return the interval until the next poll of the node, with adaptive polling this depends on
+	 *         the recent activity of the node
+	 */
+	Duration getPollingInterval(final TimerPushNode<?> node)
+	{
+		final PushNodeState<?> state = _nodeStates.get(node);
+		return state == null ? node.getPollingInterval() : state.pollingInterval;
+	}
+
+	/**
+	 * @return the number of events published to channels or nodes
+	 */
+	public long getPublishedEventCount()
+	{
+		return _publishedEventCount.get();
+	}
+
+	/**
+	 * @return the number of events queued for nodes, an event published to a channel is queued
+	 *         once for every node of the channel
+	 */
+	public long getQueuedEventCount()
+	{
+		return _queuedEventCount.get();
+	}
+
+	/**
+	 * @return the number of events currently waiting to be polled, summed over all nodes
+	 */
+	public int getQueueDepth()
+	{
+		int depth = 0;
+		for (final PushNodeState<?> state : _nodeStates.values())
+			depth += state.queuedEvents.size();
+		return depth;
+	}
+
+	/**
+	 * @return the number of events currently waiting to be polled by the node with the most
+	 *         events
+	 */
+	public int getMaxQueueDepth()
+	{
+		int depth = 0;
+		for (final PushNodeState<?> state : _nodeStates.values())
+			depth = Math.max(depth, state.queuedEvents.size());
+		return depth;
+	}
+
+	/**
+	 * @return the polling statistics of the node or <code>null</code> if the node is not connected
+	 */
+	public TimerPushNodeStatistics getStatistics(final TimerPushNode<?> node)
+	{
+		Args.notNull(node, "node");
+
+		final PushNodeState<?> state = _nodeStates.get(node);
+		if (state == null)
+			return null;
+		return new TimerPushNodeStatistics(state.pollCount.get(), state.hitCount.get(),
+			state.pollingInterval, state.lastPolledAt);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -224,7 +383,7 @@ public class TimerPushService extends AbstractPushService
 			component.add(behavior);
 		}
 		final TimerPushNode<EventType> node = behavior.addNode(handler, pollingInterval);
-		_onConnect(node);
+		_onConnect(node, handler);
 		return node;
 	}
 
@@ -241,13 +400,10 @@ public class TimerPushService extends AbstractPushService
 			if (state == null)
 				return false;
 
-			synchronized (state)
+			if (state.isTimedOut())
 			{
-				if (state.isTimedOut())
-				{
-					onDisconnect(state.node);
-					return false;
-				}
+				onDisconnect(state.node);
+				return false;
 			}
 			return true;
 		}
@@ -277,27 +433,24 @@ public class TimerPushService extends AbstractPushService
 
 	@SuppressWarnings("unchecked")
 	<EventType> List<TimerPushEventContext<EventType>> pollEvents(
-		final TimerPushNode<EventType> node)
+		final TimerPushNode<EventType> node, final IPushEventHandler<EventType> handler)
 	{
 		final PushNodeState<EventType> state = (PushNodeState<EventType>)_nodeStates.get(node);
 		if (state == null)
 		{
 			LOG.debug("Reconnecting push node {}...", node);
-			_onConnect(node);
+			_onConnect(node, handler);
 			return EMPTY_LIST;
 		}
 
-		synchronized (state)
-		{
-			state.lastPolledAt = Time.now();
-
-			if (state.queuedEvents.size() == 0)
-				return EMPTY_LIST;
+		state.lastPolledAt = Time.now();
+		state.pollCount.incrementAndGet();
 
-			final List<TimerPushEventContext<EventType>> events = state.queuedEvents;
-			state.queuedEvents = new ArrayList<TimerPushEventContext<EventType>>(2);
-			return events;
-		}
+		final List<TimerPushEventContext<EventType>> events = state.queuedEvents.drain();
+		if (!events.isEmpty())
+			state.hitCount.incrementAndGet();
+		_adaptPollingInterval(state, !events.isEmpty());
+		return events;
 	}
 
 	/**
@@ -311,6 +464,8 @@ public class TimerPushService extends AbstractPushService
 		if (pnodes == null)
 			throw new IllegalArgumentException("Unknown channel " + channel);
 
+		_publishedEventCount.incrementAndGet();
+
 		final TimerPushEventContext<EventType> ctx = new TimerPushEventContext<EventType>(event,
 			channel, this);
 
@@ -318,18 +473,14 @@ public class TimerPushService extends AbstractPushService
 		for (final IPushNode<?> pnode : pnodes)
 		{
 			@SuppressWarnings("unchecked")
-			final TimerPushNode<EventType> node = (TimerPushNode<EventType>)pnode;
+			final PushNodeState<EventType> state = (PushNodeState<EventType>)_nodeStates.get(pnode);
+			if (state == null)
+				continue;
 
-			if (isConnected(node))
-			{
-				@SuppressWarnings("unchecked")
-				final PushNodeState<EventType> state = (PushNodeState<EventType>)_nodeStates.get(node);
-				if (state != null)
-					synchronized (state)
-					{
-						state.queuedEvents.add(ctx);
-					}
-			}
+			if (state.isTimedOut())
+				onDisconnect(state.node);
+			else
+				_enqueue(state, ctx);
 		}
 	}
 
@@ -342,22 +493,47 @@ public class TimerPushService extends AbstractPushService
 
 		if (node instanceof TimerPushNode)
 		{
-			if (isConnected(node))
-			{
-				@SuppressWarnings("unchecked")
-				final PushNodeState<EventType> state = (PushNodeState<EventType>)_nodeStates.get(node);
-				if (state != null)
-					synchronized (state)
-					{
-						state.queuedEvents.add(new TimerPushEventContext<EventType>(event, null,
-							this));
-					}
-			}
+			_publishedEventCount.incrementAndGet();
+
+			@SuppressWarnings("unchecked")
+			final PushNodeState<EventType> state = (PushNodeState<EventType>)_nodeStates.get(node);
+			if (state == null)
+				return;
+
+			if (state.isTimedOut())
+				onDisconnect(state.node);
+			else
+				_enqueue(state, new TimerPushEventContext<EventType>(event, null, this));
 		}
 		else
 			LOG.warn("Unsupported push node type {}", node);
 	}
 
+	/**
+	 * Sets the period after queuing an event during which a node keeps polling at its own polling
+	 * interval with adaptive polling. Default is 10 seconds.
+	 */
+	public void setActivityPeriod(final Duration activityPeriod)
+	{
+		Args.notNull(activityPeriod, "activityPeriod");
+
+		_activityPeriod = activityPeriod;
+	}
+
+	/**
+	 * Enables or disables adaptive polling. With adaptive polling a node that did not receive
+	 * events recently doubles its polling interval after every poll, up to the maximum polling
+	 * interval. As soon as it receives events, it polls at its own polling interval again. The
+	 * next interval is sent to the client in the response of every poll. Default is disabled.
+	 * 
+	 * @see #setActivityPeriod(Duration)
+	 * @see #setMaxPollingInterval(Duration)
+	 */
+	public void setAdaptivePolling(final boolean adaptivePolling)
+	{
+		_adaptivePolling = adaptivePolling;
+	}
+
 	/**
 	 * Sets the interval in which the clean up task will be executed that removes information about
 	 * disconnected push nodes. Default is 60 seconds.
@@ -383,6 +559,28 @@ public class TimerPushService extends AbstractPushService
 		_defaultPollingInterval = defaultPollingInterval;
 	}
 
+	/**
+	 * Sets the maximum number of events queued for a node between two polls. Default is 1000. Only
+	 * affects nodes installed afterwards.
+	 */
+	public void setMaxQueueSize(final int maxQueueSize)
+	{
+		Args.isTrue(maxQueueSize > 0, "maxQueueSize must be > 0, not %s", maxQueueSize);
+
+		_maxQueueSize = maxQueueSize;
+	}
+
+	/**
+	 * Sets the longest interval between two polls of a node with adaptive polling. Default is 30
+	 * seconds.
+	 */
+	public void setMaxPollingInterval(final Duration maxPollingInterval)
+	{
+		Args.notNull(maxPollingInterval, "maxPollingInterval");
+
+		_maxPollingInterval = maxPollingInterval;
+	}
+
 	public void setMaxTimeLag(final Duration maxTimeLag)
 	{
 		Args.notNull(maxTimeLag, "maxTimeLag");
@@ -390,6 +588,17 @@ public class TimerPushService extends AbstractPushService
 		_maxTimeLag = maxTimeLag;
 	}
 
+	/**
+	 * Sets which event is dropped when the queue of a node is full. Default is
+	 * {@link OverflowPolicy#DROP_OLDEST}. Only affects nodes installed afterwards.
+	 */
+	public void setOverflowPolicy(final OverflowPolicy overflowPolicy)
+	{
+		Args.notNull(overflowPolicy, "overflowPolicy");
+
+		_overflowPolicy = overflowPolicy;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
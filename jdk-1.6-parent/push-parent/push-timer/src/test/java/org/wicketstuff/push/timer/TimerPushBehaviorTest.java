@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.push.timer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.tester.WicketTester;
+import org.apache.wicket.util.time.Duration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wicketstuff.push.IPushEventContext;
+import org.wicketstuff.push.IPushEventHandler;
+import org.wicketstuff.push.IPushNode;
+
+/**
+ * Tests the polling interval of {@link TimerPushBehavior}.
+ */
+public class TimerPushBehaviorTest extends Assert
+{
+	public static class TestPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		public IResourceStream getMarkupResourceStream(final MarkupContainer container,
+			final Class<?> containerClass)
+		{
+			return new StringResourceStream("<html><body></body></html>");
+		}
+	}
+
+	private static class RecordingHandler implements IPushEventHandler<String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		final List<String> events = new ArrayList<String>();
+
+		public void onEvent(final AjaxRequestTarget target, final String event,
+			final IPushNode<String> node, final IPushEventContext<String> ctx)
+		{
+			events.add(event);
+		}
+	}
+
+	private WicketTester tester;
+
+	private TimerPushService service;
+
+	private TestPage page;
+
+	@Before
+	public void setUp()
+	{
+		tester = new WicketTester();
+		service = TimerPushService.get(tester.getApplication());
+		page = new TestPage();
+	}
+
+	@After
+	public void tearDown()
+	{
+		tester.destroy();
+	}
+
+	private TimerPushBehavior getBehavior()
+	{
+		return page.getBehaviors(TimerPushBehavior.class).get(0);
+	}
+
+	private long poll()
+	{
+		tester.executeBehavior(getBehavior());
+		return getBehavior().getUpdateInterval().getMilliseconds();
+	}
+
+	@Test
+	public void testFastestNodeDeterminesInterval()
+	{
+		service.installNode(page, new RecordingHandler(), Duration.seconds(1));
+		final TimerPushNode<String> fast = service.installNode(page, new RecordingHandler(),
+			Duration.milliseconds(200));
+		service.installNode(page, new RecordingHandler(), Duration.seconds(2));
+		assertEquals(1, page.getBehaviors(TimerPushBehavior.class).size());
+		assertEquals(200, getBehavior().getUpdateInterval().getMilliseconds());
+
+		getBehavior().removeNode(fast);
+		assertEquals(1000, getBehavior().getUpdateInterval().getMilliseconds());
+	}
+
+	@Test
+	public void testMostActiveNodeDeterminesAdaptiveInterval()
+	{
+		service.setAdaptivePolling(true);
+		service.setActivityPeriod(Duration.NONE);
+		service.setMaxPollingInterval(Duration.seconds(10));
+
+		final RecordingHandler slowHandler = new RecordingHandler();
+		final TimerPushNode<String> slow = service.installNode(page, slowHandler,
+			Duration.seconds(1));
+		service.installNode(page, new RecordingHandler(), Duration.milliseconds(200));
+		tester.startPage(page);
+
+		// both nodes back off
+		assertEquals(400, poll());
+
+		// the slow node is reset to its own interval, the fast one keeps backing off
+		service.publish(slow, "event");
+		assertEquals(800, poll());
+		assertEquals(Arrays.asList("event"), slowHandler.events);
+
+		assertEquals(1600, poll());
+	}
+}
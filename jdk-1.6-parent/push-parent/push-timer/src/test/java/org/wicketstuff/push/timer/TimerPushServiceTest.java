@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.push.timer;
+
+import java.util.List;
+
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.util.tester.WicketTester;
+import org.apache.wicket.util.time.Duration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wicketstuff.push.IPushEventContext;
+import org.wicketstuff.push.IPushEventHandler;
+import org.wicketstuff.push.IPushNode;
+
+/**
+ * Tests the adaptive polling of {@link TimerPushService}.
+ */
+public class TimerPushServiceTest extends Assert
+{
+	static final IPushEventHandler<String> HANDLER = new IPushEventHandler<String>()
+	{
+		private static final long serialVersionUID = 1L;
+
+		public void onEvent(final AjaxRequestTarget target, final String event,
+			final IPushNode<String> node, final IPushEventContext<String> ctx)
+		{
+			// nothing to do
+		}
+	};
+
+	private WicketTester tester;
+
+	private TimerPushService service;
+
+	@Before
+	public void setUp()
+	{
+		tester = new WicketTester();
+		service = TimerPushService.get(tester.getApplication());
+		service.setAdaptivePolling(true);
+		service.setActivityPeriod(Duration.NONE);
+		service.setMaxPollingInterval(Duration.milliseconds(800));
+	}
+
+	@After
+	public void tearDown()
+	{
+		tester.destroy();
+	}
+
+	private TimerPushNode<String> installNode(final long pollingInterval)
+	{
+		return service.installNode(new WebMarkupContainer("component"), HANDLER,
+			Duration.milliseconds(pollingInterval));
+	}
+
+	private long poll(final TimerPushNode<String> node, final int expectedEvents)
+	{
+		final List<TimerPushEventContext<String>> events = service.pollEvents(node, HANDLER);
+		assertEquals(expectedEvents, events.size());
+		return service.getPollingInterval(node).getMilliseconds();
+	}
+
+	@Test
+	public void testBackOffDoublesUpToMaximum()
+	{
+		final TimerPushNode<String> node = installNode(100);
+		assertEquals(100, service.getPollingInterval(node).getMilliseconds());
+
+		assertEquals(200, poll(node, 0));
+		assertEquals(400, poll(node, 0));
+		assertEquals(800, poll(node, 0));
+		assertEquals(800, poll(node, 0));
+	}
+
+	@Test
+	public void testBackOffIsResetByEvent()
+	{
+		final TimerPushNode<String> node = installNode(100);
+		assertEquals(200, poll(node, 0));
+		assertEquals(400, poll(node, 0));
+
+		service.publish(node, "event");
+		assertEquals(100, poll(node, 1));
+		assertEquals(200, poll(node, 0));
+	}
+
+	@Test
+	public void testNoBackOffDuringActivityPeriod()
+	{
+		service.setActivityPeriod(Duration.minutes(1));
+		final TimerPushNode<String> node = installNode(100);
+		service.publish(node, "event");
+
+		assertEquals(100, poll(node, 1));
+		assertEquals(100, poll(node, 0));
+	}
+
+	@Test
+	public void testNoBackOffBeyondOwnInterval()
+	{
+		// a maximum below the interval of the node keeps the interval of the node
+		service.setMaxPollingInterval(Duration.milliseconds(50));
+		final TimerPushNode<String> node = installNode(100);
+
+		assertEquals(100, poll(node, 0));
+		assertEquals(100, poll(node, 0));
+	}
+
+	@Test
+	public void testNoBackOffWithoutAdaptivePolling()
+	{
+		service.setAdaptivePolling(false);
+		final TimerPushNode<String> node = installNode(100);
+
+		assertEquals(100, poll(node, 0));
+		assertEquals(100, poll(node, 0));
+	}
+
+	@Test
+	public void testTimeOutAllowsForBackOff() throws InterruptedException
+	{
+		service.setMaxTimeLag(Duration.milliseconds(200));
+		final TimerPushNode<String> backingOff = installNode(100);
+		final TimerPushNode<String> active = installNode(100);
+
+		poll(backingOff, 0);
+		poll(backingOff, 0);
+		assertEquals(800, poll(backingOff, 0));
+		service.publish(active, "event");
+		assertEquals(100, poll(active, 1));
+
+		Thread.sleep(400);
+
+		// the lag of the node backing off is within the time lag plus its additional 700ms
+		assertTrue(service.isConnected(backingOff));
+		assertFalse(service.isConnected(active));
+	}
+}
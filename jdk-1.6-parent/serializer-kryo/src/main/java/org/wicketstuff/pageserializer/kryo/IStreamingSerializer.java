@@ -0,0 +1,40 @@
+package org.wicketstuff.pageserializer.kryo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.wicket.serialize.ISerializer;
+
+/**
+ * An {@link ISerializer} which can write to and read from streams without an intermediate byte
+ * array. A {@link java.nio.channels.FileChannel} can be used with
+ * {@link java.nio.channels.Channels#newOutputStream(java.nio.channels.WritableByteChannel)} and
+ * {@link java.nio.channels.Channels#newInputStream(java.nio.channels.ReadableByteChannel)}.
+ * 
+ * @see StreamingSerializers
+ */
+public interface IStreamingSerializer extends ISerializer
+{
+	/**
+	 * Writes the object to the stream, the stream is flushed but not closed.
+	 * 
+	 * @param object
+	 *            the object to serialize
+	 * @param out
+	 *            the target stream
+	 * @throws IOException
+	 */
+	void serialize(Object object, OutputStream out) throws IOException;
+
+	/**
+	 * Reads an object written by {@link #serialize(Object, OutputStream)}, the stream is not
+	 * closed. The serializer may read ahead, so nothing should be stored after the object.
+	 * 
+	 * @param in
+	 *            the source stream
+	 * @return the deserialized object
+	 * @throws IOException
+	 */
+	Object deserialize(InputStream in) throws IOException;
+}
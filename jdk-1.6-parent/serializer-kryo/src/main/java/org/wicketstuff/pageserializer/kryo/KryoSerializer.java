@@ -1,7 +1,13 @@
 package org.wicketstuff.pageserializer.kryo;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationHandler;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Currency;
@@ -44,7 +50,7 @@ import de.javakaffee.kryoserializers.cglib.CGLibProxySerializer;
  * An {@link ISerializer} based on <a href="http://code.google.com/p/kryo">kryo</a> and <a
  * href="https://github.com/magro/kryo-serializers">additional kryo serializers</a>
  */
-public class KryoSerializer implements ISerializer
+public class KryoSerializer implements IStreamingSerializer
 {
 
 	private static final Logger LOG = LoggerFactory.getLogger(KryoSerializer.class);
@@ -106,6 +112,74 @@ public class KryoSerializer implements ISerializer
 		return data;
 	}
 
+	@Override
+	public void serialize(final Object object, final OutputStream out) throws IOException
+	{
+		LOG.debug("Going to serialize: '{}'", object);
+		ByteBuffer buffer = getBuffer(object);
+		kryo.writeClassAndObject(buffer, object);
+		buffer.flip();
+		if (buffer.hasArray())
+		{
+			out.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+		}
+		else
+		{
+			write(buffer, Channels.newChannel(out));
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes the object to the channel without copying the serialized page, the channel is not
+	 * closed.
+	 * 
+	 * @param object
+	 *            the object to serialize
+	 * @param channel
+	 *            the target channel, e.g. a {@link java.nio.channels.FileChannel}
+	 * @throws IOException
+	 */
+	public void serialize(final Object object, final WritableByteChannel channel)
+		throws IOException
+	{
+		LOG.debug("Going to serialize: '{}'", object);
+		ByteBuffer buffer = getBuffer(object);
+		kryo.writeClassAndObject(buffer, object);
+		buffer.flip();
+		write(buffer, channel);
+	}
+
+	@Override
+	public Object deserialize(final InputStream in) throws IOException
+	{
+		ByteBuffer buffer = getBuffer(null);
+		ReadableByteChannel channel = Channels.newChannel(in);
+		int read;
+		do
+		{
+			read = channel.read(buffer);
+		}
+		while ((read >= 0) && buffer.hasRemaining());
+		if ((read >= 0) && (in.read() != -1))
+		{
+			throw new IOException("Serialized data does not fit into buffer of size " +
+				bufferSize);
+		}
+		buffer.flip();
+		Object object = kryo.readClassAndObject(buffer);
+		LOG.debug("Deserialized: '{}'", object);
+		return object;
+	}
+
+	private static void write(ByteBuffer buffer, WritableByteChannel channel) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+	}
+
 	@Override
 	public Object deserialize(byte[] data)
 	{
@@ -126,7 +200,7 @@ public class KryoSerializer implements ISerializer
 	 * 
 	 * @param target
 	 *            the object that will be serialized. Can be used to decide dynamically what size to
-	 *            use
+	 *            use, null if the buffer is used to read a streamed object
 	 * @return the buffer that will be used to serialize the {@code target}
 	 */
 	protected ByteBuffer getBuffer(Object target)
@@ -0,0 +1,67 @@
+package org.wicketstuff.pageserializer.kryo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.wicket.serialize.ISerializer;
+import org.apache.wicket.util.io.Streams;
+
+/**
+ * Helper for stores which want to stream if the serializer supports it and fall back to the byte
+ * array contract of {@link ISerializer} otherwise.
+ */
+public final class StreamingSerializers
+{
+	private StreamingSerializers()
+	{
+		// no instance
+	}
+
+	/**
+	 * @param serializer
+	 *            the serializer
+	 * @param object
+	 *            the object to serialize
+	 * @param out
+	 *            the target stream
+	 * @throws IOException
+	 */
+	public static void serialize(ISerializer serializer, Object object, OutputStream out)
+		throws IOException
+	{
+		if (serializer instanceof IStreamingSerializer)
+		{
+			((IStreamingSerializer)serializer).serialize(object, out);
+		}
+		else
+		{
+			byte[] data = serializer.serialize(object);
+			if (data != null)
+			{
+				out.write(data);
+			}
+			out.flush();
+		}
+	}
+
+	/**
+	 * @param serializer
+	 *            the serializer
+	 * @param in
+	 *            the source stream
+	 * @return the deserialized object
+	 * @throws IOException
+	 */
+	public static Object deserialize(ISerializer serializer, InputStream in) throws IOException
+	{
+		if (serializer instanceof IStreamingSerializer)
+		{
+			return ((IStreamingSerializer)serializer).deserialize(in);
+		}
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		Streams.copy(in, data);
+		return serializer.deserialize(data.toByteArray());
+	}
+}
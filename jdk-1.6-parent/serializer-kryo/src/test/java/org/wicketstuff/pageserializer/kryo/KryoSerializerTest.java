@@ -1,5 +1,9 @@
 package org.wicketstuff.pageserializer.kryo;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
 import org.apache.wicket.serialize.ISerializer;
 import org.apache.wicket.util.tester.WicketTester;
 import org.junit.After;
@@ -52,4 +56,23 @@ public class KryoSerializerTest
 			object instanceof HomePage);
 
 	}
+
+	@Test
+	public void streamedPageCanBeRead() throws IOException
+	{
+		HomePage page = tester.startPage(HomePage.class);
+
+		KryoSerializer pageSerializer = (KryoSerializer)tester.getApplication()
+			.getFrameworkSettings()
+			.getSerializer();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		pageSerializer.serialize(page, out);
+		Assert.assertTrue("The produced data length is not correct!", out.size() > 300);
+
+		Object object = pageSerializer.deserialize(new ByteArrayInputStream(out.toByteArray()));
+		Assert.assertTrue(
+			"The deserialized page must be of type HomePage. Type: " + object.getClass(),
+			object instanceof HomePage);
+	}
 }
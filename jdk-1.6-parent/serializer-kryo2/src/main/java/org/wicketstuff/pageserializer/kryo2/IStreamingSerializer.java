@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.wicket.serialize.ISerializer;
+
+/**
+ * An {@link ISerializer} which can write to and read from streams without an intermediate byte
+ * array. A {@link java.nio.channels.FileChannel} can be used with
+ * {@link java.nio.channels.Channels#newOutputStream(java.nio.channels.WritableByteChannel)} and
+ * {@link java.nio.channels.Channels#newInputStream(java.nio.channels.ReadableByteChannel)}.
+ * 
+ * @see StreamingSerializers
+ */
+public interface IStreamingSerializer extends ISerializer
+{
+	/**
+	 * Writes the object to the stream, the stream is flushed but not closed.
+	 * 
+	 * @param object
+	 *            the object to serialize
+	 * @param out
+	 *            the target stream
+	 * @throws IOException
+	 */
+	void serialize(Object object, OutputStream out) throws IOException;
+
+	/**
+	 * Reads an object written by {@link #serialize(Object, OutputStream)}, the stream is not
+	 * closed. The serializer may read ahead, so nothing should be stored after the object.
+	 * 
+	 * @param in
+	 *            the source stream
+	 * @return the deserialized object
+	 * @throws IOException
+	 */
+	Object deserialize(InputStream in) throws IOException;
+}
@@ -20,6 +20,9 @@
  */
 package org.wicketstuff.pageserializer.kryo2;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationHandler;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
@@ -38,6 +41,8 @@ import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Bytes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wicketstuff.pageserializer.kryo2.buffer.IBufferPool;
+import org.wicketstuff.pageserializer.kryo2.registration.ClassRegistration;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
@@ -66,7 +71,7 @@ import de.javakaffee.kryoserializers.cglib.CGLibProxySerializer;
  * An {@link ISerializer} based on <a href="http://code.google.com/p/kryo">kryo</a> and <a
  * href="https://github.com/magro/kryo-serializers">additional kryo serializers</a>
  */
-public class KryoSerializer implements ISerializer
+public class KryoSerializer implements IStreamingSerializer
 {
 
 	private static final Logger LOG = LoggerFactory.getLogger(KryoSerializer.class);
@@ -76,8 +81,23 @@ public class KryoSerializer implements ISerializer
 	 */
 	private static final Bytes DEFAULT_BUFFER_SIZE = Bytes.megabytes(10L);
 
+	/**
+	 * The size of the buffer between kryo and a stream
+	 */
+	private static final int STREAM_BUFFER_SIZE = (int)Bytes.kilobytes(8L).bytes();
+
 	private final Bytes bufferSize;
 
+	/**
+	 * reusable buffers, if null a new buffer is allocated for each page
+	 */
+	private final IBufferPool bufferPool;
+
+	/**
+	 * classes registered with stable ids in every Kryo instance
+	 */
+	private volatile ClassRegistration classRegistration;
+
 	/**
 	 * Store a per thread Kryo instance (as Kryo is 
 	 * not thread safe).
@@ -100,9 +120,50 @@ public class KryoSerializer implements ISerializer
 	public KryoSerializer(final Bytes bufferSize)
 	{
 		this.bufferSize = Args.notNull(bufferSize, "bufferSize");
+		this.bufferPool = null;
 		LOG.debug("Buffer size: '{}'", bufferSize);
 	}
 
+	/**
+	 * Constructor using pooled buffers. The default buffer size is kept for subclasses that
+	 * allocate their own buffers.
+	 * 
+	 * @param bufferPool
+	 *            source of reusable buffers
+	 */
+	public KryoSerializer(final IBufferPool bufferPool)
+	{
+		this.bufferSize = DEFAULT_BUFFER_SIZE;
+		this.bufferPool = Args.notNull(bufferPool, "bufferPool");
+		LOG.debug("Buffer pool: '{}'", bufferPool);
+	}
+
+	/**
+	 * Registers the classes in each Kryo instance created after this call, so they are written as
+	 * ids instead of class names.
+	 * 
+	 * @param classRegistration
+	 *            the class registration, shared by all threads
+	 * @return this
+	 */
+	public KryoSerializer setClassRegistration(final ClassRegistration classRegistration)
+	{
+		this.classRegistration = classRegistration;
+		return this;
+	}
+
+	/**
+	 * Creates and configures the Kryo instance of the current thread, so configuration errors show
+	 * up at startup and not with the first serialized page.
+	 * 
+	 * @return this
+	 */
+	public KryoSerializer warmup()
+	{
+		getKryo();
+		return this;
+	}
+
 	/**
 	 * Factory method for Kryo serializers.
 	 * 
@@ -138,29 +199,44 @@ public class KryoSerializer implements ISerializer
 			{
 				LOG.error("Kryo wasn't able to serialize: '{}'", object);
 			}
-
-			// release the memory for the buffer
-			buffer.clear();
-			buffer = null;
-
 			return data;
 		} finally {
-			System.runFinalization();
+			releaseBuffer(buffer);
 		}
 	}
 
+	@Override
+	public void serialize(final Object object, final OutputStream out) throws IOException
+	{
+		LOG.debug("Going to serialize: '{}'", object);
+		Output buffer = getStreamBuffer(object);
+		try {
+			buffer.setOutputStream(out);
+			getKryo().writeClassAndObject(buffer, object);
+			buffer.flush();
+		} finally {
+			if (bufferPool != null)
+			{
+				bufferPool.release(buffer);
+			}
+		}
+	}
+
+	@Override
+	public Object deserialize(final InputStream in) throws IOException
+	{
+		Input buffer = new Input(in, STREAM_BUFFER_SIZE);
+		Object object = getKryo().readClassAndObject(buffer);
+		LOG.debug("Deserialized: '{}'", object);
+		return object;
+	}
+
 	@Override
 	public Object deserialize(byte[] data)
 	{
 		Input buffer = new Input(data);
 		Object object = getKryo().readClassAndObject(buffer);
 		LOG.debug("Deserialized: '{}'", object);
-
-		// release the memory for the buffer
-		// buffer.clear();
-		buffer = null;
-		System.runFinalization();
-
 		return object;
 	}
 
@@ -174,9 +250,53 @@ public class KryoSerializer implements ISerializer
 	 */
 	protected Output getBuffer(Object target)
 	{
+		if (bufferPool != null)
+		{
+			return bufferPool.acquire(target);
+		}
 		return new Output((int)bufferSize.bytes());
 	}
 
+	/**
+	 * Creates the buffer that will be used to serialize the {@code target} into a stream. It is
+	 * flushed into the stream if full, so it does not need to hold the whole page.
+	 * 
+	 * @param target
+	 *            the object that will be serialized
+	 * @return the buffer that will be used to serialize the {@code target}
+	 */
+	protected Output getStreamBuffer(Object target)
+	{
+		if (bufferPool != null)
+		{
+			return bufferPool.acquire(target);
+		}
+		return new Output(STREAM_BUFFER_SIZE);
+	}
+
+	/**
+	 * Releases the buffer after the {@code target} was serialized
+	 * 
+	 * @param buffer
+	 *            the buffer returned by {@link #getBuffer(Object)}
+	 */
+	protected void releaseBuffer(Output buffer)
+	{
+		if (bufferPool != null)
+		{
+			bufferPool.release(buffer);
+		}
+		// an unpooled buffer is left to the garbage collector
+	}
+
+	/**
+	 * @return the buffer pool, null if a new buffer is allocated for each page
+	 */
+	protected final IBufferPool getBufferPool()
+	{
+		return bufferPool;
+	}
+
 	/**
 	 * Configures {@link Kryo} with some custom {@link Serializer}s and registers some known Wicket
 	 * classes which are known to be serialized sooner or later
@@ -216,6 +336,12 @@ public class KryoSerializer implements ISerializer
 		kryo.register(Label.class);
 		kryo.register(ListView.class);
 
+		ClassRegistration registration = classRegistration;
+		if (registration != null)
+		{
+			registration.register(kryo);
+		}
+
 		init(kryo);
 	}
 
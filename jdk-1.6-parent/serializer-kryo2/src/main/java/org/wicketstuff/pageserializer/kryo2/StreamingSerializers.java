@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.wicket.serialize.ISerializer;
+import org.apache.wicket.util.io.Streams;
+
+/**
+ * Helper for stores which want to stream if the serializer supports it and fall back to the byte
+ * array contract of {@link ISerializer} otherwise.
+ */
+public final class StreamingSerializers
+{
+	private StreamingSerializers()
+	{
+		// no instance
+	}
+
+	/**
+	 * @param serializer
+	 *            the serializer
+	 * @param object
+	 *            the object to serialize
+	 * @param out
+	 *            the target stream
+	 * @throws IOException
+	 */
+	public static void serialize(ISerializer serializer, Object object, OutputStream out)
+		throws IOException
+	{
+		if (serializer instanceof IStreamingSerializer)
+		{
+			((IStreamingSerializer)serializer).serialize(object, out);
+		}
+		else
+		{
+			byte[] data = serializer.serialize(object);
+			if (data != null)
+			{
+				out.write(data);
+			}
+			out.flush();
+		}
+	}
+
+	/**
+	 * @param serializer
+	 *            the serializer
+	 * @param in
+	 *            the source stream
+	 * @return the deserialized object
+	 * @throws IOException
+	 */
+	public static Object deserialize(ISerializer serializer, InputStream in) throws IOException
+	{
+		if (serializer instanceof IStreamingSerializer)
+		{
+			return ((IStreamingSerializer)serializer).deserialize(in);
+		}
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		Streams.copy(in, data);
+		return serializer.deserialize(data.toByteArray());
+	}
+}
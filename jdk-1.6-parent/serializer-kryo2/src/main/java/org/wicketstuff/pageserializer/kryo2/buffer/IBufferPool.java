@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.buffer;
+
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * source of reusable {@link Output} buffers for the serializer
+ */
+public interface IBufferPool
+{
+	/**
+	 * @param target
+	 *            the object that will be serialized
+	 * @return an empty buffer, exclusively used by the caller until it is released
+	 */
+	Output acquire(Object target);
+
+	/**
+	 * gives the buffer back to the pool, the buffer must not be used after this call, an output
+	 * stream set on the buffer is detached
+	 * 
+	 * @param buffer
+	 *            buffer returned by {@link #acquire(Object)}
+	 */
+	void release(Output buffer);
+}
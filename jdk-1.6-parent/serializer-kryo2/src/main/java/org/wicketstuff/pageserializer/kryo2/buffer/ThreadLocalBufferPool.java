@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.buffer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.wicketstuff.pageserializer.kryo2.metrics.Log2Histogram;
+
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * keeps one growable buffer per thread, new buffers start with the size of the configured
+ * percentile of all serialized pages so far, a buffer which grew far beyond this size is dropped
+ * after use instead of pinning the memory to the thread
+ */
+public class ThreadLocalBufferPool implements IBufferPool
+{
+	private static final Bytes DEFAULT_MIN_SIZE = Bytes.kilobytes(4L);
+	private static final double DEFAULT_PERCENTILE = 0.9;
+	private static final int SHRINK_FACTOR = 4;
+
+	private final int minBufferSize;
+	private final int maxBufferSize;
+	private final double percentile;
+
+	private final ThreadLocal<PooledOutput> buffers = new ThreadLocal<PooledOutput>();
+	private final Log2Histogram sizes = new Log2Histogram();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong growths = new AtomicLong();
+	private final AtomicLong discards = new AtomicLong();
+
+	/**
+	 * @param maxBufferSize
+	 *            write will fail if a page does not fit into this size
+	 */
+	public ThreadLocalBufferPool(Bytes maxBufferSize)
+	{
+		this(DEFAULT_MIN_SIZE, maxBufferSize, DEFAULT_PERCENTILE);
+	}
+
+	/**
+	 * @param minBufferSize
+	 *            size of the first buffer
+	 * @param maxBufferSize
+	 *            write will fail if a page does not fit into this size
+	 * @param percentile
+	 *            page size percentile used as start size of new buffers
+	 */
+	public ThreadLocalBufferPool(Bytes minBufferSize, Bytes maxBufferSize, double percentile)
+	{
+		Args.notNull(minBufferSize, "minBufferSize");
+		Args.notNull(maxBufferSize, "maxBufferSize");
+		Args.withinRange(0.0, 1.0, percentile, "percentile");
+		this.maxBufferSize = (int)maxBufferSize.bytes();
+		this.minBufferSize = (int)Math.min(minBufferSize.bytes(), this.maxBufferSize);
+		this.percentile = percentile;
+	}
+
+	@Override
+	public Output acquire(Object target)
+	{
+		PooledOutput buffer = buffers.get();
+		if (buffer != null)
+		{
+			// nested serialization on the same thread gets its own buffer
+			buffers.remove();
+			hits.incrementAndGet();
+		}
+		else
+		{
+			misses.incrementAndGet();
+			buffer = new PooledOutput(targetSize(), maxBufferSize);
+		}
+		buffer.acquiredCapacity = buffer.getBuffer().length;
+		return buffer;
+	}
+
+	@Override
+	public void release(Output buffer)
+	{
+		if (!(buffer instanceof PooledOutput))
+		{
+			return;
+		}
+		PooledOutput pooled = (PooledOutput)buffer;
+		sizes.record(pooled.total());
+
+		int capacity = pooled.getBuffer().length;
+		if (capacity > pooled.acquiredCapacity)
+		{
+			growths.incrementAndGet();
+		}
+
+		if ((capacity > minBufferSize) && (capacity / SHRINK_FACTOR > targetSize()))
+		{
+			discards.incrementAndGet();
+			return;
+		}
+		// detaches the stream if any and resets the position
+		pooled.setOutputStream(null);
+		buffers.set(pooled);
+	}
+
+	/**
+	 * @return start size of a new buffer based on the observed page sizes
+	 */
+	protected int targetSize()
+	{
+		long observed = sizes.percentile(percentile) + 1;
+		return (int)Math.max(minBufferSize, Math.min(maxBufferSize, observed));
+	}
+
+	/**
+	 * @return number of acquired buffers which could be reused
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return number of acquired buffers which had to be allocated
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return number of serializations which had to grow the buffer
+	 */
+	public long getGrowths()
+	{
+		return growths.get();
+	}
+
+	/**
+	 * @return number of buffers dropped because they were much bigger than needed
+	 */
+	public long getDiscards()
+	{
+		return discards.get();
+	}
+
+	/**
+	 * @return biggest serialized page so far
+	 */
+	public long getPeakSize()
+	{
+		return sizes.max();
+	}
+
+	/**
+	 * @return histogram of serialized page sizes
+	 */
+	public Log2Histogram getSizes()
+	{
+		return sizes;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "hits=" + getHits() + ", misses=" + getMisses() + ", growths=" + getGrowths() +
+			", discards=" + getDiscards() + ", sizes: " + sizes;
+	}
+
+	static final class PooledOutput extends Output
+	{
+		int acquiredCapacity;
+
+		PooledOutput(int bufferSize, int maxBufferSize)
+		{
+			super(bufferSize, maxBufferSize);
+		}
+	}
+}
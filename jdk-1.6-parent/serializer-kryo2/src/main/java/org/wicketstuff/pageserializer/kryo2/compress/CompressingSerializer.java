@@ -0,0 +1,355 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.compress;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.wicket.serialize.ISerializer;
+import org.apache.wicket.util.io.Streams;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wicketstuff.pageserializer.kryo2.IStreamingSerializer;
+import org.wicketstuff.pageserializer.kryo2.StreamingSerializers;
+
+/**
+ * compresses the output of another {@link ISerializer}, pages smaller than the threshold or
+ * pages which do not shrink are stored uncompressed. The first byte of the serialized data is the
+ * id of the used codec (0 for uncompressed data), so data written with an other built-in codec can
+ * still be read.
+ * <p>
+ * Written to a stream, the size of a page is not known in advance, so pages are always compressed
+ * with a {@link Deflater} stream, whatever codec is configured. The delegate is streamed as well
+ * if it is an {@link IStreamingSerializer}.
+ * 
+ * <pre>
+ * getFrameworkSettings().setSerializer(
+ * 	new CompressingSerializer(new KryoSerializer(), new Lz4Codec(), Bytes.kilobytes(1L)));
+ * </pre>
+ */
+public class CompressingSerializer implements IStreamingSerializer
+{
+	private static final Logger LOG = LoggerFactory.getLogger(CompressingSerializer.class);
+
+	private static final Bytes DEFAULT_THRESHOLD = Bytes.bytes(512L);
+
+	private static final byte UNCOMPRESSED = 0;
+	private static final byte DEFLATE_STREAM = -1;
+	private static final int STREAM_BUFFER_SIZE = (int)Bytes.kilobytes(8L).bytes();
+	private static final int HEADER_SIZE = 5;
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final ISerializer delegate;
+	private final ICompressionCodec codec;
+	private final ICompressionCodec[] codecs = new ICompressionCodec[128];
+	private final int threshold;
+
+	private final CompressionStatistics statistics = new CompressionStatistics();
+
+	/**
+	 * @param delegate
+	 *            serializer
+	 * @param codec
+	 *            compression codec
+	 */
+	public CompressingSerializer(ISerializer delegate, ICompressionCodec codec)
+	{
+		this(delegate, codec, DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * @param delegate
+	 *            serializer
+	 * @param codec
+	 *            compression codec
+	 * @param threshold
+	 *            pages below this size are not compressed
+	 */
+	public CompressingSerializer(ISerializer delegate, ICompressionCodec codec, Bytes threshold)
+	{
+		this.delegate = Args.notNull(delegate, "delegate");
+		this.codec = Args.notNull(codec, "codec");
+		this.threshold = (int)Args.notNull(threshold, "threshold").bytes();
+		Args.withinRange((byte)1, Byte.MAX_VALUE, codec.id(), "codec.id");
+
+		register(new Lz4Codec());
+		register(new DeflateCodec());
+		register(codec);
+		LOG.debug("Codec: '{}', threshold: '{}'", codec, threshold);
+	}
+
+	private void register(ICompressionCodec c)
+	{
+		codecs[c.id()] = c;
+	}
+
+	@Override
+	public byte[] serialize(Object object)
+	{
+		if (delegate instanceof IStreamingSerializer)
+		{
+			return serializeStreamed(object);
+		}
+
+		byte[] data = delegate.serialize(object);
+		if (data == null)
+		{
+			return null;
+		}
+		if (data.length < threshold)
+		{
+			statistics.skipped();
+			return uncompressed(data);
+		}
+		byte[] compressed = compress(data, 0, data.length);
+		return (compressed != null) ? compressed : uncompressed(data);
+	}
+
+	/**
+	 * serializes the page behind the flag byte, so an uncompressed page needs no further copy
+	 */
+	private byte[] serializeStreamed(Object object)
+	{
+		PageOutputStream out = new PageOutputStream();
+		out.write(UNCOMPRESSED);
+		try
+		{
+			((IStreamingSerializer)delegate).serialize(object, out);
+		}
+		catch (IOException e)
+		{
+			// not thrown by a ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+		int length = out.size() - 1;
+		if (length < threshold)
+		{
+			statistics.skipped();
+			return out.toByteArray();
+		}
+		byte[] compressed = compress(out.buffer(), 1, length);
+		return (compressed != null) ? compressed : out.toByteArray();
+	}
+
+	/**
+	 * @return the compressed data with header or null if the data does not shrink
+	 */
+	private byte[] compress(byte[] data, int offset, int length)
+	{
+		long start = cpuTime();
+		byte[] buffer = new byte[HEADER_SIZE + codec.maxCompressedLength(length)];
+		int compressedLength = codec.compress(data, offset, length, buffer, HEADER_SIZE);
+		long time = cpuTime() - start;
+
+		if ((compressedLength < 0) || (compressedLength >= length))
+		{
+			statistics.incompressible(time);
+			return null;
+		}
+		statistics.compressed(length, compressedLength, time);
+
+		buffer[0] = codec.id();
+		writeInt(buffer, 1, length);
+		return Arrays.copyOf(buffer, HEADER_SIZE + compressedLength);
+	}
+
+	@Override
+	public void serialize(Object object, OutputStream out) throws IOException
+	{
+		out.write(DEFLATE_STREAM);
+		long start = cpuTime();
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try
+		{
+			DeflaterOutputStream deflaterOut = new DeflaterOutputStream(new NonClosingOutputStream(
+				out), deflater, STREAM_BUFFER_SIZE);
+			StreamingSerializers.serialize(delegate, object, deflaterOut);
+			deflaterOut.finish();
+			out.flush();
+			statistics.compressed((int)deflater.getBytesRead(), (int)deflater.getBytesWritten(),
+				cpuTime() - start);
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+
+	@Override
+	public Object deserialize(InputStream in) throws IOException
+	{
+		int id = in.read();
+		if (id < 0)
+		{
+			throw new IOException("no data");
+		}
+		if ((byte)id == DEFLATE_STREAM)
+		{
+			long start = cpuTime();
+			Inflater inflater = new Inflater();
+			try
+			{
+				Object object = StreamingSerializers.deserialize(delegate,
+					new InflaterInputStream(in, inflater, STREAM_BUFFER_SIZE));
+				statistics.decompressed(cpuTime() - start);
+				return object;
+			}
+			finally
+			{
+				inflater.end();
+			}
+		}
+		if ((byte)id == UNCOMPRESSED)
+		{
+			return StreamingSerializers.deserialize(delegate, in);
+		}
+		// written as byte array with a codec
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		data.write(id);
+		Streams.copy(in, data);
+		return deserialize(data.toByteArray());
+	}
+
+	@Override
+	public Object deserialize(byte[] data)
+	{
+		byte id = data[0];
+		if ((id == DEFLATE_STREAM) ||
+			((id == UNCOMPRESSED) && (delegate instanceof IStreamingSerializer)))
+		{
+			try
+			{
+				return deserialize(new ByteArrayInputStream(data));
+			}
+			catch (IOException e)
+			{
+				// not thrown by a ByteArrayInputStream
+				throw new IllegalStateException(e);
+			}
+		}
+		if (id == UNCOMPRESSED)
+		{
+			return delegate.deserialize(Arrays.copyOfRange(data, 1, data.length));
+		}
+
+		ICompressionCodec c = (id > 0) ? codecs[id] : null;
+		if (c == null)
+		{
+			throw new IllegalArgumentException("unknown compression codec: " + id);
+		}
+
+		long start = cpuTime();
+		int length = readInt(data, 1);
+		byte[] uncompressed = new byte[length];
+		c.decompress(data, HEADER_SIZE, data.length - HEADER_SIZE, uncompressed, 0, length);
+		statistics.decompressed(cpuTime() - start);
+
+		return delegate.deserialize(uncompressed);
+	}
+
+	/**
+	 * @return compression statistics
+	 */
+	public CompressionStatistics getStatistics()
+	{
+		return statistics;
+	}
+
+	private static byte[] uncompressed(byte[] data)
+	{
+		byte[] ret = new byte[data.length + 1];
+		ret[0] = UNCOMPRESSED;
+		System.arraycopy(data, 0, ret, 1, data.length);
+		return ret;
+	}
+
+	/**
+	 * gives access to the buffer to avoid a copy
+	 */
+	private static class PageOutputStream extends ByteArrayOutputStream
+	{
+		PageOutputStream()
+		{
+			super(STREAM_BUFFER_SIZE);
+		}
+
+		byte[] buffer()
+		{
+			return buf;
+		}
+	}
+
+	/**
+	 * the target stream is flushed but not closed
+	 */
+	private static class NonClosingOutputStream extends FilterOutputStream
+	{
+		NonClosingOutputStream(OutputStream out)
+		{
+			super(out);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			flush();
+		}
+	}
+
+	private static long cpuTime()
+	{
+		if (THREADS.isCurrentThreadCpuTimeSupported())
+		{
+			return THREADS.getCurrentThreadCpuTime();
+		}
+		return System.nanoTime();
+	}
+
+	private static void writeInt(byte[] buffer, int pos, int value)
+	{
+		buffer[pos] = (byte)(value >>> 24);
+		buffer[pos + 1] = (byte)(value >>> 16);
+		buffer[pos + 2] = (byte)(value >>> 8);
+		buffer[pos + 3] = (byte)value;
+	}
+
+	private static int readInt(byte[] buffer, int pos)
+	{
+		return ((buffer[pos] & 0xFF) << 24) | ((buffer[pos + 1] & 0xFF) << 16) |
+			((buffer[pos + 2] & 0xFF) << 8) | (buffer[pos + 3] & 0xFF);
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.compress;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.wicketstuff.pageserializer.kryo2.metrics.Log2Histogram;
+
+/**
+ * counters and histograms of the {@link CompressingSerializer}
+ */
+public class CompressionStatistics
+{
+	private final AtomicLong skipped = new AtomicLong();
+	private final AtomicLong incompressible = new AtomicLong();
+	private final AtomicLong uncompressedBytes = new AtomicLong();
+	private final AtomicLong compressedBytes = new AtomicLong();
+
+	private final Log2Histogram ratio = new Log2Histogram();
+	private final Log2Histogram compressTime = new Log2Histogram();
+	private final Log2Histogram decompressTime = new Log2Histogram();
+
+	void skipped()
+	{
+		skipped.incrementAndGet();
+	}
+
+	void incompressible(long nanos)
+	{
+		incompressible.incrementAndGet();
+		compressTime.record(nanos);
+	}
+
+	void compressed(int uncompressed, int compressed, long nanos)
+	{
+		uncompressedBytes.addAndGet(uncompressed);
+		compressedBytes.addAndGet(compressed);
+		if (uncompressed > 0)
+		{
+			// the streaming path reports what the deflater read, which can be nothing
+			ratio.record(100L * compressed / uncompressed);
+		}
+		compressTime.record(nanos);
+	}
+
+	void decompressed(long nanos)
+	{
+		decompressTime.record(nanos);
+	}
+
+	/**
+	 * @return number of pages stored uncompressed because they were below the threshold
+	 */
+	public long getSkipped()
+	{
+		return skipped.get();
+	}
+
+	/**
+	 * @return number of pages stored uncompressed because compression did not shrink them
+	 */
+	public long getIncompressible()
+	{
+		return incompressible.get();
+	}
+
+	/**
+	 * @return sum of all compressed pages before compression
+	 */
+	public long getUncompressedBytes()
+	{
+		return uncompressedBytes.get();
+	}
+
+	/**
+	 * @return sum of all compressed pages after compression
+	 */
+	public long getCompressedBytes()
+	{
+		return compressedBytes.get();
+	}
+
+	/**
+	 * @return compressed size in percent of the uncompressed size
+	 */
+	public Log2Histogram getRatio()
+	{
+		return ratio;
+	}
+
+	/**
+	 * @return cpu time in nanoseconds used to compress a page
+	 */
+	public Log2Histogram getCompressTime()
+	{
+		return compressTime;
+	}
+
+	/**
+	 * @return cpu time in nanoseconds used to decompress a page
+	 */
+	public Log2Histogram getDecompressTime()
+	{
+		return decompressTime;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "skipped=" + getSkipped() + ", incompressible=" + getIncompressible() +
+			", bytes=" + getUncompressedBytes() + "->" + getCompressedBytes() + ", ratio(%): " +
+			ratio + ", compress(ns): " + compressTime + ", decompress(ns): " + decompressTime;
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.compress;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * {@link Deflater} based codec, slower than {@link Lz4Codec} but with better compression
+ */
+public class DeflateCodec implements ICompressionCodec
+{
+	/**
+	 * codec id
+	 */
+	public static final byte ID = 2;
+
+	private final int level;
+
+	/**
+	 * codec with {@link Deflater#BEST_SPEED}
+	 */
+	public DeflateCodec()
+	{
+		this(Deflater.BEST_SPEED);
+	}
+
+	/**
+	 * @param level
+	 *            compression level (0-9)
+	 */
+	public DeflateCodec(int level)
+	{
+		this.level = Args.withinRange(Deflater.NO_COMPRESSION, Deflater.BEST_COMPRESSION, level,
+			"level");
+	}
+
+	@Override
+	public byte id()
+	{
+		return ID;
+	}
+
+	@Override
+	public int maxCompressedLength(int length)
+	{
+		// only smaller results are useful
+		return length;
+	}
+
+	@Override
+	public int compress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset)
+	{
+		Deflater deflater = new Deflater(level);
+		try
+		{
+			deflater.setInput(src, srcOffset, srcLength);
+			deflater.finish();
+			int room = maxCompressedLength(srcLength);
+			int length = 0;
+			while (!deflater.finished() && (length < room))
+			{
+				length += deflater.deflate(dest, destOffset + length, room - length);
+			}
+			return deflater.finished() ? length : -1;
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+
+	@Override
+	public void decompress(byte[] src, int srcOffset, int srcLength, byte[] dest,
+		int destOffset, int destLength)
+	{
+		Inflater inflater = new Inflater();
+		try
+		{
+			inflater.setInput(src, srcOffset, srcLength);
+			int length = 0;
+			while (length < destLength)
+			{
+				int read = inflater.inflate(dest, destOffset + length, destLength - length);
+				if ((read == 0) && (inflater.finished() || inflater.needsInput()))
+				{
+					break;
+				}
+				length += read;
+			}
+			if (length != destLength)
+			{
+				throw new IllegalArgumentException("corrupt data, expected " + destLength +
+					" bytes, got " + length);
+			}
+		}
+		catch (DataFormatException e)
+		{
+			throw new IllegalArgumentException("corrupt data", e);
+		}
+		finally
+		{
+			inflater.end();
+		}
+	}
+}
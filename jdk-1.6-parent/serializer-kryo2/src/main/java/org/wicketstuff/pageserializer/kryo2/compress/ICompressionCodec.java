@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.compress;
+
+/**
+ * block compression used by the {@link CompressingSerializer}
+ */
+public interface ICompressionCodec
+{
+	/**
+	 * @return unique codec id (1..127), written in front of each compressed page
+	 */
+	byte id();
+
+	/**
+	 * @param length
+	 *            uncompressed length
+	 * @return size of the destination buffer needed by
+	 *         {@link #compress(byte[], int, int, byte[], int)}
+	 */
+	int maxCompressedLength(int length);
+
+	/**
+	 * @param src
+	 *            uncompressed data
+	 * @param srcOffset
+	 *            start in src
+	 * @param srcLength
+	 *            length of uncompressed data
+	 * @param dest
+	 *            destination buffer with at least {@link #maxCompressedLength(int)} bytes after
+	 *            destOffset
+	 * @param destOffset
+	 *            start in dest
+	 * @return compressed length, -1 if data could not be compressed into the buffer
+	 */
+	int compress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset);
+
+	/**
+	 * @param src
+	 *            compressed data
+	 * @param srcOffset
+	 *            start in src
+	 * @param srcLength
+	 *            length of compressed data
+	 * @param dest
+	 *            destination buffer
+	 * @param destOffset
+	 *            start in dest
+	 * @param destLength
+	 *            uncompressed length
+	 */
+	void decompress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset,
+		int destLength);
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.compress;
+
+/**
+ * pure java implementation of the LZ4 block format, fast with moderate compression
+ */
+public class Lz4Codec implements ICompressionCodec
+{
+	/**
+	 * codec id
+	 */
+	public static final byte ID = 1;
+
+	private static final int MIN_MATCH = 4;
+	private static final int LAST_LITERALS = 5;
+	private static final int MF_LIMIT = 12;
+	private static final int MAX_DISTANCE = 0xFFFF;
+	private static final int HASH_LOG = 12;
+	private static final int RUN_MASK = 15;
+
+	@Override
+	public byte id()
+	{
+		return ID;
+	}
+
+	@Override
+	public int maxCompressedLength(int length)
+	{
+		return length + length / 255 + 16;
+	}
+
+	@Override
+	public int compress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset)
+	{
+		int[] hashTable = new int[1 << HASH_LOG];
+		int srcEnd = srcOffset + srcLength;
+		int matchLimit = srcEnd - LAST_LITERALS;
+		int mfLimit = srcEnd - MF_LIMIT;
+
+		int anchor = srcOffset;
+		int ip = srcOffset;
+		int op = destOffset;
+
+		if (srcLength > MF_LIMIT)
+		{
+			while (ip < mfLimit)
+			{
+				int sequence = readInt(src, ip);
+				int hash = hash(sequence);
+				// 0 marks an empty slot
+				int ref = hashTable[hash] - 1;
+				hashTable[hash] = ip + 1;
+
+				if ((ref < 0) || (ip - ref > MAX_DISTANCE) || (readInt(src, ref) != sequence))
+				{
+					ip++;
+					continue;
+				}
+
+				while ((ip > anchor) && (ref > srcOffset) && (src[ip - 1] == src[ref - 1]))
+				{
+					ip--;
+					ref--;
+				}
+
+				int matchLength = MIN_MATCH;
+				while ((ip + matchLength < matchLimit) &&
+					(src[ip + matchLength] == src[ref + matchLength]))
+				{
+					matchLength++;
+				}
+
+				op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dest, op);
+				ip += matchLength;
+				anchor = ip;
+			}
+		}
+
+		op = writeLastLiterals(src, anchor, srcEnd - anchor, dest, op);
+		return op - destOffset;
+	}
+
+	@Override
+	public void decompress(byte[] src, int srcOffset, int srcLength, byte[] dest,
+		int destOffset, int destLength)
+	{
+		int ip = srcOffset;
+		int srcEnd = srcOffset + srcLength;
+		int op = destOffset;
+		int destEnd = destOffset + destLength;
+
+		try
+		{
+			while (ip < srcEnd)
+			{
+				int token = src[ip++] & 0xFF;
+
+				int literalLength = token >>> 4;
+				if (literalLength == RUN_MASK)
+				{
+					int b;
+					do
+					{
+						b = src[ip++] & 0xFF;
+						literalLength += b;
+					}
+					while (b == 255);
+				}
+				System.arraycopy(src, ip, dest, op, literalLength);
+				ip += literalLength;
+				op += literalLength;
+
+				if (ip >= srcEnd)
+				{
+					break;
+				}
+
+				int offset = (src[ip++] & 0xFF) | ((src[ip++] & 0xFF) << 8);
+				int matchLength = token & RUN_MASK;
+				if (matchLength == RUN_MASK)
+				{
+					int b;
+					do
+					{
+						b = src[ip++] & 0xFF;
+						matchLength += b;
+					}
+					while (b == 255);
+				}
+				matchLength += MIN_MATCH;
+
+				int ref = op - offset;
+				if ((offset == 0) || (ref < destOffset) || (op + matchLength > destEnd))
+				{
+					throw new IllegalArgumentException("corrupt data at " + (ip - srcOffset));
+				}
+				// byte by byte because source and target may overlap
+				for (int i = 0; i < matchLength; i++)
+				{
+					dest[op++] = dest[ref++];
+				}
+			}
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			throw new IllegalArgumentException("corrupt data", e);
+		}
+		if (op != destEnd)
+		{
+			throw new IllegalArgumentException("corrupt data, expected " + destLength +
+				" bytes, got " + (op - destOffset));
+		}
+	}
+
+	private static int writeSequence(byte[] src, int literalStart, int literalLength,
+		int offset, int matchLength, byte[] dest, int op)
+	{
+		int tokenPos = op++;
+		int token = (Math.min(literalLength, RUN_MASK) << 4);
+		op = writeLength(literalLength, dest, op);
+		System.arraycopy(src, literalStart, dest, op, literalLength);
+		op += literalLength;
+
+		dest[op++] = (byte)offset;
+		dest[op++] = (byte)(offset >>> 8);
+
+		int length = matchLength - MIN_MATCH;
+		token |= Math.min(length, RUN_MASK);
+		op = writeLength(length, dest, op);
+
+		dest[tokenPos] = (byte)token;
+		return op;
+	}
+
+	private static int writeLastLiterals(byte[] src, int literalStart, int literalLength,
+		byte[] dest, int op)
+	{
+		dest[op++] = (byte)(Math.min(literalLength, RUN_MASK) << 4);
+		op = writeLength(literalLength, dest, op);
+		System.arraycopy(src, literalStart, dest, op, literalLength);
+		return op + literalLength;
+	}
+
+	private static int writeLength(int length, byte[] dest, int op)
+	{
+		if (length >= RUN_MASK)
+		{
+			int rest = length - RUN_MASK;
+			while (rest >= 255)
+			{
+				dest[op++] = (byte)255;
+				rest -= 255;
+			}
+			dest[op++] = (byte)rest;
+		}
+		return op;
+	}
+
+	private static int readInt(byte[] buf, int pos)
+	{
+		return (buf[pos] & 0xFF) | ((buf[pos + 1] & 0xFF) << 8) | ((buf[pos + 2] & 0xFF) << 16) |
+			((buf[pos + 3] & 0xFF) << 24);
+	}
+
+	private static int hash(int sequence)
+	{
+		return (sequence * -1640531535) >>> (32 - HASH_LOG);
+	}
+}
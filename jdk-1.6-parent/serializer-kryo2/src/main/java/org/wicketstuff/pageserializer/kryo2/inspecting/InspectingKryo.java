@@ -40,6 +40,7 @@ public class InspectingKryo extends KryoReflectionFactorySupport
 
 	private final static Logger LOG = LoggerFactory.getLogger(InspectingKryo.class);
 	private final InspectingKryoSerializer parent;
+	private boolean inspecting = true;
 
 	protected InspectingKryo(InspectingKryoSerializer parent)
 	{
@@ -96,14 +97,28 @@ public class InspectingKryo extends KryoReflectionFactorySupport
 		after(output, object);
 	}
 
+	/**
+	 * @param inspecting
+	 *            if false, no listener is called
+	 * @return the previous value
+	 */
+	boolean inspecting(boolean inspecting)
+	{
+		boolean ret = this.inspecting;
+		this.inspecting = inspecting;
+		return ret;
+	}
+
 	private void before(Output output, Object object)
 	{
-		parent.serializingListener().before(output.position(), object);
+		if (inspecting)
+			parent.serializingListener().before(output.position(), object);
 	}
 
 	private void after(Output output, Object object)
 	{
-		parent.serializingListener().after(output.position(), object);
+		if (inspecting)
+			parent.serializingListener().after(output.position(), object);
 	}
 
 }
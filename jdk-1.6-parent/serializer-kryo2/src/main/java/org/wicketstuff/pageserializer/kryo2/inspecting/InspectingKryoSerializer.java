@@ -20,9 +20,17 @@
  */
 package org.wicketstuff.pageserializer.kryo2.inspecting;
 
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Bytes;
 import org.wicketstuff.pageserializer.kryo2.KryoSerializer;
+import org.wicketstuff.pageserializer.kryo2.buffer.IBufferPool;
 import org.wicketstuff.pageserializer.kryo2.inspecting.listener.ISerializationListener;
+import org.wicketstuff.pageserializer.kryo2.inspecting.sampling.ISamplingStrategy;
+import org.wicketstuff.pageserializer.kryo2.inspecting.sampling.Sampling;
 
 import com.esotericsoftware.kryo.Kryo;
 
@@ -36,6 +44,8 @@ public class InspectingKryoSerializer extends KryoSerializer
 
 	private final ISerializationListener serializingListener;
 
+	private volatile ISamplingStrategy sampling = Sampling.always();
+
 	/**
 	 * 
 	 * @param size
@@ -49,15 +59,53 @@ public class InspectingKryoSerializer extends KryoSerializer
 		this.serializingListener = serializingListener;
 	}
 
+	/**
+	 * 
+	 * @param bufferPool
+	 *            source of reusable buffers
+	 * @param serializingListener
+	 *            serialization listener
+	 */
+	public InspectingKryoSerializer(IBufferPool bufferPool,
+		ISerializationListener serializingListener)
+	{
+		super(bufferPool);
+		this.serializingListener = serializingListener;
+	}
+
 	@Override
 	protected Kryo createKryo()
 	{
 		return new InspectingKryo(this);
 	}
 
+	/**
+	 * only sampled objects are inspected, all others are serialized without listener calls
+	 * 
+	 * @param sampling
+	 *            sampling strategy
+	 * @return this
+	 */
+	public InspectingKryoSerializer setSampling(ISamplingStrategy sampling)
+	{
+		this.sampling = Args.notNull(sampling, "sampling");
+		return this;
+	}
+
 	@Override
 	public byte[] serialize(Object object)
 	{
+		ISamplingStrategy currentSampling = sampling;
+		if (!currentSampling.sample(object))
+		{
+			byte[] ret = serializeWithoutInspection(object);
+			if (ret != null)
+			{
+				currentSampling.serialized(object, ret.length);
+			}
+			return ret;
+		}
+
 		RuntimeException exceptionIfAny = null;
 		byte[] ret;
 		try
@@ -74,11 +122,100 @@ public class InspectingKryoSerializer extends KryoSerializer
 		{
 			serializingListener.end(object, exceptionIfAny);
 		}
+		if (ret != null)
+		{
+			currentSampling.serialized(object, ret.length);
+		}
 		return ret;
 	}
 
+	@Override
+	public void serialize(Object object, OutputStream out) throws IOException
+	{
+		ISamplingStrategy currentSampling = sampling;
+		CountingOutputStream countingOut = new CountingOutputStream(out);
+		if (!currentSampling.sample(object))
+		{
+			InspectingKryo kryo = inspectingKryo();
+			boolean inspecting = kryo.inspecting(false);
+			try
+			{
+				super.serialize(object, countingOut);
+			}
+			finally
+			{
+				kryo.inspecting(inspecting);
+			}
+			currentSampling.serialized(object, countingOut.count);
+			return;
+		}
+
+		RuntimeException exceptionIfAny = null;
+		try
+		{
+			serializingListener.begin(object);
+			super.serialize(object, countingOut);
+		}
+		catch (RuntimeException ex)
+		{
+			exceptionIfAny = ex;
+			throw ex;
+		}
+		finally
+		{
+			serializingListener.end(object, exceptionIfAny);
+		}
+		currentSampling.serialized(object, countingOut.count);
+	}
+
+	private byte[] serializeWithoutInspection(Object object)
+	{
+		InspectingKryo kryo = inspectingKryo();
+		boolean inspecting = kryo.inspecting(false);
+		try
+		{
+			return super.serialize(object);
+		}
+		finally
+		{
+			kryo.inspecting(inspecting);
+		}
+	}
+
+	private InspectingKryo inspectingKryo()
+	{
+		return (InspectingKryo)getKryo();
+	}
+
 	protected final ISerializationListener serializingListener()
 	{
 		return serializingListener;
 	}
+
+	/**
+	 * counts the written bytes to report the size of a streamed object
+	 */
+	private static class CountingOutputStream extends FilterOutputStream
+	{
+		private int count;
+
+		CountingOutputStream(OutputStream out)
+		{
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			out.write(b, off, len);
+			count += len;
+		}
+	}
 }
@@ -21,43 +21,58 @@
 package org.wicketstuff.pageserializer.kryo2.inspecting.analyze;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 
 /**
- * tree builder
+ * tree builder, records all nodes into flat arrays and merges nodes with the same key only once
+ * at the end
  * @author mosmann
  *
  */
 class ObjectTreeTracker
 {
+	private static final int INITIAL_CAPACITY = 256;
+	private static final int NONE = -1;
+
 	ObjectIdFactory objectIdFactory=new ObjectIdFactory();
 	
 	int lastPosition = 0;
 	private final IObjectLabelizer labelizer;
-	private Item currentItem;
+
+	private int count = 0;
+	private int current;
+	private Object[] objects = new Object[INITIAL_CAPACITY];
+	private int[] parent = new int[INITIAL_CAPACITY];
+	private int[] size = new int[INITIAL_CAPACITY];
+	private int[] firstChild = new int[INITIAL_CAPACITY];
+	private int[] lastChild = new int[INITIAL_CAPACITY];
+	private int[] nextSibling = new int[INITIAL_CAPACITY];
 
 	public ObjectTreeTracker(IObjectLabelizer labelizer, Object root)
 	{
 		this.labelizer = labelizer;
-		this.currentItem = new Item(new ItemKey(objectIdFactory.idFor(root),root.getClass(), labelizer.labelFor(root)));
+		this.current = add(NONE, root);
 	}
 
 	public void newItem(int position, Object object)
 	{
 		int diff = updatePositionAndCalculateDiff(position);
-		currentItem = currentItem.newItem(diff,
-			new ItemKey(objectIdFactory.idFor(object), object.getClass(), labelizer.labelFor(object)));
+		size[current] += diff;
+		current = add(current, object);
 	}
 
 	public void closeItem(int position, Object object)
 	{
 		int diff = updatePositionAndCalculateDiff(position);
-		currentItem = currentItem.closeItem(diff,
-			new ItemKey(objectIdFactory.idFor(object),object.getClass(), labelizer.labelFor(object)));
+		if (objects[current] != object)
+			throw new IllegalArgumentException("object does not match " + objects[current] + "!=" +
+				object);
+		size[current] += diff;
+		current = parent[current];
 	}
 
 	private int updatePositionAndCalculateDiff(int position)
@@ -66,108 +81,146 @@ class ObjectTreeTracker
 		lastPosition = position;
 		return diff;
 	}
-	
-	private ObjectId idFor(Object object) {
-		return null;
-	}
-
-	public ISerializedObjectTree end(Object object)
-	{
-		return asImmutableTree(stripRootNode());
-	}
-
-	private Item stripRootNode()
-	{
-		return currentItem.children().iterator().next();
-	}
 
-	private static List<? extends ISerializedObjectTree> cloneList(Collection<Item> source)
+	private int add(int parentIndex, Object object)
 	{
-		List<ImmutableTree> lchildren = new ArrayList<ImmutableTree>();
-		for (Item child : source)
+		if (count == objects.length)
 		{
-			lchildren.add(asImmutableTree(child));
+			grow();
 		}
-		return lchildren;
+		int index = count++;
+		objects[index] = object;
+		parent[index] = parentIndex;
+		size[index] = 0;
+		firstChild[index] = NONE;
+		lastChild[index] = NONE;
+		nextSibling[index] = NONE;
+		if (parentIndex != NONE)
+		{
+			if (firstChild[parentIndex] == NONE)
+			{
+				firstChild[parentIndex] = index;
+			}
+			else
+			{
+				nextSibling[lastChild[parentIndex]] = index;
+			}
+			lastChild[parentIndex] = index;
+		}
+		return index;
 	}
 
-	private static ImmutableTree asImmutableTree(Item child)
+	private void grow()
 	{
-		return new ImmutableTree(child.id(), child.type(), child.label(), child.size(),
-			cloneList(child.children()));
+		int capacity = objects.length * 2;
+		objects = Arrays.copyOf(objects, capacity);
+		parent = Arrays.copyOf(parent, capacity);
+		size = Arrays.copyOf(size, capacity);
+		firstChild = Arrays.copyOf(firstChild, capacity);
+		lastChild = Arrays.copyOf(lastChild, capacity);
+		nextSibling = Arrays.copyOf(nextSibling, capacity);
 	}
 
-
-	static class Item
+	public ISerializedObjectTree end(Object object)
 	{
+		Grouping grouping = new Grouping();
+		return grouping.asImmutableTree(grouping.stripRootNode());
+	}
 
-		private final ItemKey key;
-		Map<ItemKey, Item> children = new LinkedHashMap<ItemKey, ObjectTreeTracker.Item>();
-
-		int size = 0;
-
-		Item parent = null;
-
-		public Item(ItemKey key)
-		{
-			this.key = key;
-		}
-
-		public ObjectId id()
-		{
-			return key.id();
-		}
-
-		public Item newItem(int diff, ItemKey key)
-		{
-			size = size + diff;
-			Item item = getOrCreateItem(key);
-			return item;
-		}
-
-		private Item getOrCreateItem(ItemKey key)
+	/**
+	 * merges the recorded nodes: every distinct key gets an int id once, children are grouped by
+	 * this id with int arrays instead of one map per group
+	 */
+	private class Grouping
+	{
+		private final ItemKey[] keys = new ItemKey[count];
+		private final int[] keyIds = new int[count];
+		// scratch arrays indexed by key id, only used within one groupChildren call
+		private final int[] groupStamps;
+		private final int[] groupOfKey;
+		private final int[] groupSizes;
+		private int stamp = 0;
+
+		Grouping()
 		{
-			Item item = children.get(key);
-			if (item == null)
+			Map<ItemKey, Integer> ids = new HashMap<ItemKey, Integer>();
+			for (int i = 0; i < count; i++)
 			{
-				item = new Item(this, key);
-				children.put(key, item);
+				Object o = objects[i];
+				ItemKey key = new ItemKey(objectIdFactory.idFor(o), o.getClass(),
+					labelizer.labelFor(o));
+				Integer id = ids.get(key);
+				if (id == null)
+				{
+					id = ids.size();
+					ids.put(key, id);
+				}
+				keys[i] = key;
+				keyIds[i] = id;
 			}
-			return item;
+			groupStamps = new int[ids.size()];
+			groupOfKey = new int[ids.size()];
+			groupSizes = new int[ids.size()];
 		}
 
-		public Item closeItem(int diff, ItemKey key)
+		int[] stripRootNode()
 		{
-			if (!this.key.equals(key))
-				throw new IllegalArgumentException("key does not match " + this.key + "!=" + key);
-			size = size + diff;
-			return parent;
+			return groupChildren(new int[] { 0 })[0];
 		}
 
-		private Item(Item parent, ItemKey key)
+		/**
+		 * children of all nodes, grouped by key in order of first occurrence
+		 */
+		int[][] groupChildren(int[] nodes)
 		{
-			this(key);
-			this.parent = parent;
-		}
-
-		public int size()
-		{
-			return size;
-		}
-
-		public Class<? extends Object> type()
-		{
-			return key.type();
-		}
-
-		public String label()
-		{
-			return key.label();
+			stamp++;
+			int groupCount = 0;
+			for (int node : nodes)
+			{
+				for (int child = firstChild[node]; child != NONE; child = nextSibling[child])
+				{
+					int keyId = keyIds[child];
+					if (groupStamps[keyId] != stamp)
+					{
+						groupStamps[keyId] = stamp;
+						groupOfKey[keyId] = groupCount;
+						groupSizes[groupCount++] = 0;
+					}
+					groupSizes[groupOfKey[keyId]]++;
+				}
+			}
+			int[][] groups = new int[groupCount][];
+			for (int group = 0; group < groupCount; group++)
+			{
+				groups[group] = new int[groupSizes[group]];
+				groupSizes[group] = 0;
+			}
+			for (int node : nodes)
+			{
+				for (int child = firstChild[node]; child != NONE; child = nextSibling[child])
+				{
+					int group = groupOfKey[keyIds[child]];
+					groups[group][groupSizes[group]++] = child;
+				}
+			}
+			return groups;
 		}
 
-		public Collection<Item> children()
+		ImmutableTree asImmutableTree(int[] nodes)
 		{
-			return children.values();
+			int sum = 0;
+			for (int node : nodes)
+			{
+				sum = sum + size[node];
+			}
+			int[][] groups = groupChildren(nodes);
+			List<ImmutableTree> children = new ArrayList<ImmutableTree>(groups.length);
+			for (int[] group : groups)
+			{
+				children.add(asImmutableTree(group));
+			}
+			ItemKey key = keys[nodes[0]];
+			return new ImmutableTree(key.id(), key.type(), key.label(), sum, children);
 		}
 	}
 
@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.inspecting.analyze.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Duration;
+import org.wicketstuff.pageserializer.kryo2.inspecting.analyze.ISerializedObjectTree;
+import org.wicketstuff.pageserializer.kryo2.inspecting.analyze.ISerializedObjectTreeProcessor;
+import org.wicketstuff.pageserializer.kryo2.inspecting.analyze.reportbuilder.AttributeBuilder;
+import org.wicketstuff.pageserializer.kryo2.inspecting.analyze.reportbuilder.Column;
+import org.wicketstuff.pageserializer.kryo2.inspecting.analyze.reportbuilder.Report;
+import org.wicketstuff.pageserializer.kryo2.metrics.Log2Histogram;
+
+/**
+ * aggregates the trees of many pages per page type: histogram of page sizes, bytes per type (like
+ * {@link TypeSizeReport}) and bytes per tree path up to a max depth (like {@link TreeSizeReport}).
+ * Data is collected in windows, the current window is replaced after the window duration and kept
+ * as previous window. Tree paths are built from types only, labels are ignored. Can be registered
+ * as MBean.
+ */
+public class AggregatingTreeProcessor implements ISerializedObjectTreeProcessor,
+	AggregatingTreeProcessorMBean
+{
+	static final Column emptyFirst = new Column("",
+		new AttributeBuilder().set(Column.Separator, "|").build());
+	static final Column label = new Column("Type", new AttributeBuilder().set(Column.FillAfter, ' ')
+		.set(Column.Separator, "|")
+		.build());
+	static final Column bytes = new Column("bytes/page", new AttributeBuilder().set(
+		Column.Align.Right)
+		.set(Column.FillBefore, ' ')
+		.set(Column.Separator, "|")
+		.build());
+
+	private final long windowMillis;
+	private final int maxDepth;
+
+	private volatile Window current = new Window();
+	private volatile Window previous;
+
+	/**
+	 * @param window
+	 *            window duration
+	 * @param maxDepth
+	 *            max depth of aggregated tree paths
+	 */
+	public AggregatingTreeProcessor(Duration window, int maxDepth)
+	{
+		this.windowMillis = Args.notNull(window, "window").getMilliseconds();
+		this.maxDepth = maxDepth;
+	}
+
+	@Override
+	public void process(ISerializedObjectTree tree)
+	{
+		window().statisticsFor(tree.type()).add(tree, maxDepth);
+	}
+
+	private Window window()
+	{
+		Window ret = current;
+		if (System.currentTimeMillis() - ret.start > windowMillis)
+		{
+			synchronized (this)
+			{
+				if (current == ret)
+				{
+					previous = ret;
+					current = new Window();
+				}
+				ret = current;
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public String[] getPageTypes()
+	{
+		List<String> ret = new ArrayList<String>();
+		for (Class<?> type : current.pages.keySet())
+		{
+			ret.add(type.getName());
+		}
+		Collections.sort(ret);
+		return ret.toArray(new String[ret.size()]);
+	}
+
+	@Override
+	public long getPages()
+	{
+		long ret = 0;
+		for (PageTypeStatistics statistics : current.pages.values())
+		{
+			ret = ret + statistics.sizes.count();
+		}
+		return ret;
+	}
+
+	/**
+	 * @param pageType
+	 *            page type
+	 * @return histogram of page sizes of the current window, null if no page was analyzed
+	 */
+	public Log2Histogram getPageSizes(Class<?> pageType)
+	{
+		PageTypeStatistics statistics = current.pages.get(pageType);
+		return statistics != null ? statistics.sizes : null;
+	}
+
+	@Override
+	public synchronized void reset()
+	{
+		previous = null;
+		current = new Window();
+	}
+
+	@Override
+	public String report()
+	{
+		StringBuilder sb = new StringBuilder();
+		render(sb, "current", window());
+		Window last = previous;
+		if (last != null)
+		{
+			render(sb, "previous", last);
+		}
+		return sb.toString();
+	}
+
+	private static void render(StringBuilder sb, String name, Window window)
+	{
+		sb.append(name).append(" window since ").append(new Date(window.start)).append('\n');
+		for (Map.Entry<Class<?>, PageTypeStatistics> e : window.pages.entrySet())
+		{
+			PageTypeStatistics statistics = e.getValue();
+			long pages = statistics.sizes.count();
+			sb.append(e.getKey().getName()).append(": ").append(statistics.sizes).append('\n');
+			sb.append(table("Types", statistics.typeBytes, pages));
+			sb.append(table("Tree", statistics.pathBytes, pages));
+		}
+	}
+
+	private static <K> String table(String title, Map<K, AtomicLong> values, long pages)
+	{
+		List<Map.Entry<K, AtomicLong>> sorted = new ArrayList<Map.Entry<K, AtomicLong>>(
+			values.entrySet());
+		Collections.sort(sorted, new Comparator<Map.Entry<K, AtomicLong>>()
+		{
+			@Override
+			public int compare(Map.Entry<K, AtomicLong> o1, Map.Entry<K, AtomicLong> o2)
+			{
+				long s1 = o1.getValue().get();
+				long s2 = o2.getValue().get();
+				return s1 == s2 ? 0 : s1 > s2 ? -1 : 1;
+			}
+		});
+
+		Report report = new Report(title + "\n");
+		for (Map.Entry<K, AtomicLong> e : sorted)
+		{
+			Object key = e.getKey();
+			report.newRow()
+				.set(label, 0, key instanceof Class ? ((Class<?>)key).getName() : key.toString())
+				.set(bytes, 0, "" + (e.getValue().get() / Math.max(1, pages)));
+		}
+		return report.export(emptyFirst, bytes, label)
+			.separateColumnNamesWith('-')
+			.tableBorderWith('=')
+			.asString();
+	}
+
+	static final class Window
+	{
+		final long start = System.currentTimeMillis();
+		final ConcurrentMap<Class<?>, PageTypeStatistics> pages = new ConcurrentHashMap<Class<?>, AggregatingTreeProcessor.PageTypeStatistics>();
+
+		PageTypeStatistics statisticsFor(Class<?> type)
+		{
+			PageTypeStatistics ret = pages.get(type);
+			if (ret == null)
+			{
+				ret = new PageTypeStatistics();
+				PageTypeStatistics existing = pages.putIfAbsent(type, ret);
+				if (existing != null)
+				{
+					ret = existing;
+				}
+			}
+			return ret;
+		}
+	}
+
+	static final class PageTypeStatistics
+	{
+		final Log2Histogram sizes = new Log2Histogram();
+		final ConcurrentMap<Class<?>, AtomicLong> typeBytes = new ConcurrentHashMap<Class<?>, AtomicLong>();
+		final ConcurrentMap<String, AtomicLong> pathBytes = new ConcurrentHashMap<String, AtomicLong>();
+
+		void add(ISerializedObjectTree tree, int maxDepth)
+		{
+			sizes.record(tree.size() + tree.childSize());
+			addTypes(tree);
+			addPaths(tree, "", maxDepth);
+		}
+
+		private void addTypes(ISerializedObjectTree tree)
+		{
+			add(typeBytes, tree.type(), tree.size());
+			for (ISerializedObjectTree child : tree.children())
+			{
+				addTypes(child);
+			}
+		}
+
+		private void addPaths(ISerializedObjectTree tree, String parentPath, int depth)
+		{
+			// labels are left out, they are unbounded (list indices, map keys) and would let the
+			// path map grow with every new label
+			String path = parentPath + "/" + tree.type().getName();
+			add(pathBytes, path, tree.size() + tree.childSize());
+			if (depth > 0)
+			{
+				for (ISerializedObjectTree child : tree.children())
+				{
+					addPaths(child, path, depth - 1);
+				}
+			}
+		}
+
+		private static <K> void add(ConcurrentMap<K, AtomicLong> map, K key, long value)
+		{
+			AtomicLong counter = map.get(key);
+			if (counter == null)
+			{
+				counter = new AtomicLong();
+				AtomicLong existing = map.putIfAbsent(key, counter);
+				if (existing != null)
+				{
+					counter = existing;
+				}
+			}
+			counter.addAndGet(value);
+		}
+	}
+}
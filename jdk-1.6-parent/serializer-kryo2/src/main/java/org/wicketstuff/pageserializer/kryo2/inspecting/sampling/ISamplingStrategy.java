@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.inspecting.sampling;
+
+/**
+ * decides which serialized objects are inspected, all other objects are serialized without any
+ * listener calls
+ */
+public interface ISamplingStrategy
+{
+	/**
+	 * called before serialization
+	 * 
+	 * @param object
+	 *            object to be serialized
+	 * @return true if the serialization should be inspected
+	 */
+	boolean sample(Object object);
+
+	/**
+	 * called after a successful serialization, sampled or not
+	 * 
+	 * @param object
+	 *            serialized object
+	 * @param size
+	 *            serialized size in bytes
+	 */
+	void serialized(Object object, int size);
+}
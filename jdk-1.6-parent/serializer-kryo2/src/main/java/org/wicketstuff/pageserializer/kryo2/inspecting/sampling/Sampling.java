@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.inspecting.sampling;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+
+/**
+ * sampling strategies
+ */
+public final class Sampling
+{
+	private Sampling()
+	{
+		// no instance
+	}
+
+	/**
+	 * @return inspects every object
+	 */
+	public static ISamplingStrategy always()
+	{
+		return new ISamplingStrategy()
+		{
+			@Override
+			public boolean sample(Object object)
+			{
+				return true;
+			}
+
+			@Override
+			public void serialized(Object object, int size)
+			{
+			}
+		};
+	}
+
+	/**
+	 * @param n
+	 *            sample rate
+	 * @return inspects one of n objects
+	 */
+	public static ISamplingStrategy oneOf(final int n)
+	{
+		Args.withinRange(1, Integer.MAX_VALUE, n, "n");
+		final AtomicLong counter = new AtomicLong();
+		return new ISamplingStrategy()
+		{
+			@Override
+			public boolean sample(Object object)
+			{
+				return counter.getAndIncrement() % n == 0;
+			}
+
+			@Override
+			public void serialized(Object object, int size)
+			{
+			}
+		};
+	}
+
+	/**
+	 * the size is only known after serialization, so the next object of a type is inspected if the
+	 * last object of this type was bigger than the threshold
+	 * 
+	 * @param threshold
+	 *            size threshold
+	 * @return inspects objects of types which got bigger than the threshold
+	 */
+	public static ISamplingStrategy biggerThan(Bytes threshold)
+	{
+		final long limit = Args.notNull(threshold, "threshold").bytes();
+		final ConcurrentMap<Class<?>, Boolean> bigTypes = new ConcurrentHashMap<Class<?>, Boolean>();
+		return new ISamplingStrategy()
+		{
+			@Override
+			public boolean sample(Object object)
+			{
+				return (object != null) && bigTypes.containsKey(object.getClass());
+			}
+
+			@Override
+			public void serialized(Object object, int size)
+			{
+				if (object == null)
+				{
+					return;
+				}
+				if (size > limit)
+				{
+					bigTypes.put(object.getClass(), Boolean.TRUE);
+				}
+				else
+				{
+					bigTypes.remove(object.getClass());
+				}
+			}
+		};
+	}
+
+	/**
+	 * @param strategies
+	 *            strategies
+	 * @return inspects an object if any strategy says so
+	 */
+	public static ISamplingStrategy anyOf(final ISamplingStrategy... strategies)
+	{
+		return new ISamplingStrategy()
+		{
+			@Override
+			public boolean sample(Object object)
+			{
+				boolean ret = false;
+				for (ISamplingStrategy s : strategies)
+				{
+					// no short cut, so every strategy sees every object
+					ret = s.sample(object) || ret;
+				}
+				return ret;
+			}
+
+			@Override
+			public void serialized(Object object, int size)
+			{
+				for (ISamplingStrategy s : strategies)
+				{
+					s.serialized(object, size);
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * thread safe histogram with power of two buckets, bucket n holds all values between 2^(n-1) and
+ * 2^n-1
+ */
+public class Log2Histogram
+{
+	private static final int BUCKETS = 65;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param value
+	 *            value to record, must not be negative
+	 */
+	public void record(long value)
+	{
+		Args.withinRange(0L, Long.MAX_VALUE, value, "value");
+		buckets.incrementAndGet(bucketOf(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long current;
+		do
+		{
+			current = max.get();
+		}
+		while ((value > current) && !max.compareAndSet(current, value));
+	}
+
+	/**
+	 * @return number of recorded values
+	 */
+	public long count()
+	{
+		return count.get();
+	}
+
+	/**
+	 * @return biggest recorded value
+	 */
+	public long max()
+	{
+		return max.get();
+	}
+
+	/**
+	 * @return mean of all recorded values, 0 if nothing was recorded
+	 */
+	public long mean()
+	{
+		long c = count.get();
+		return c > 0 ? sum.get() / c : 0;
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0.0 and 1.0
+	 * @return upper bound of the bucket which contains the percentile, 0 if nothing was recorded
+	 */
+	public long percentile(double percentile)
+	{
+		Args.withinRange(0.0, 1.0, percentile, "percentile");
+		long total = count.get();
+		if (total == 0)
+		{
+			return 0;
+		}
+		long limit = (long)Math.ceil(total * percentile);
+		long current = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			current += buckets.get(i);
+			if ((current >= limit) && (current > 0))
+			{
+				return upperBoundOf(i);
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * @return recorded values per bucket, index is the bucket number
+	 */
+	public long[] buckets()
+	{
+		long[] ret = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			ret[i] = buckets.get(i);
+		}
+		return ret;
+	}
+
+	/**
+	 * @param bucket
+	 *            bucket number
+	 * @return biggest value which is counted in this bucket
+	 */
+	public static long upperBoundOf(int bucket)
+	{
+		if (bucket >= 63)
+		{
+			return Long.MAX_VALUE;
+		}
+		return (1L << bucket) - 1;
+	}
+
+	static int bucketOf(long value)
+	{
+		return 64 - Long.numberOfLeadingZeros(value);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "count=" + count() + ", mean=" + mean() + ", p50=" + percentile(0.5) + ", p90=" +
+			percentile(0.9) + ", p99=" + percentile(0.99) + ", max=" + max();
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.registration;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * ordered list of class names, the position of a class is its registration id. New classes are
+ * only appended, so ids of known classes stay stable and pages written with an older manifest can
+ * still be read.
+ * 
+ * The file format is one class name per line, empty lines and lines starting with '#' are ignored.
+ */
+public final class ClassManifest
+{
+	private static final String ENCODING = "UTF-8";
+
+	private final List<String> classNames;
+
+	private ClassManifest(Collection<String> classNames)
+	{
+		this.classNames = Collections.unmodifiableList(new ArrayList<String>(classNames));
+	}
+
+	/**
+	 * @return class names, index is the registration id offset
+	 */
+	public List<String> classNames()
+	{
+		return classNames;
+	}
+
+	/**
+	 * @param newClassNames
+	 *            class names
+	 * @return manifest with all unknown class names appended
+	 */
+	public ClassManifest append(Collection<String> newClassNames)
+	{
+		Set<String> merged = new LinkedHashSet<String>(classNames);
+		merged.addAll(newClassNames);
+		return new ClassManifest(merged);
+	}
+
+	/**
+	 * @param out
+	 *            target, will not be closed
+	 * @throws IOException
+	 */
+	public void write(OutputStream out) throws IOException
+	{
+		Writer writer = new OutputStreamWriter(out, ENCODING);
+		writer.write("# kryo class registration manifest, append new classes only\n");
+		for (String className : classNames)
+		{
+			writer.write(className);
+			writer.write('\n');
+		}
+		writer.flush();
+	}
+
+	/**
+	 * @param file
+	 *            target
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException
+	{
+		OutputStream out = new FileOutputStream(file);
+		try
+		{
+			write(out);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	/**
+	 * @param classNames
+	 *            class names
+	 * @return manifest
+	 */
+	public static ClassManifest of(Collection<String> classNames)
+	{
+		return new ClassManifest(new LinkedHashSet<String>(Args.notNull(classNames, "classNames")));
+	}
+
+	/**
+	 * @param in
+	 *            source, will not be closed
+	 * @return manifest
+	 * @throws IOException
+	 */
+	public static ClassManifest read(InputStream in) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, ENCODING));
+		Set<String> classNames = new LinkedHashSet<String>();
+		String line;
+		while ((line = reader.readLine()) != null)
+		{
+			line = line.trim();
+			if ((line.length() > 0) && !line.startsWith("#"))
+			{
+				classNames.add(line);
+			}
+		}
+		return new ClassManifest(classNames);
+	}
+
+	/**
+	 * @param url
+	 *            source, e.g. a class path resource
+	 * @return manifest
+	 * @throws IOException
+	 */
+	public static ClassManifest read(URL url) throws IOException
+	{
+		InputStream in = Args.notNull(url, "url").openStream();
+		try
+		{
+			return read(in);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * scans the packages for {@link Component} and {@link IModel} implementations
+	 * 
+	 * @param classLoader
+	 *            class loader
+	 * @param packageNames
+	 *            packages to scan
+	 * @return manifest with all found classes sorted by name
+	 * @throws IOException
+	 */
+	public static ClassManifest scan(ClassLoader classLoader, String... packageNames)
+		throws IOException
+	{
+		return new ClassManifest(new ClasspathScanner(classLoader, Component.class, IModel.class)
+			.scan(packageNames));
+	}
+
+	/**
+	 * reads the manifest file if it exists, appends classes found by {@link #scan} and writes the
+	 * file if something was added, so the first run creates the file
+	 * 
+	 * @param file
+	 *            manifest file
+	 * @param classLoader
+	 *            class loader
+	 * @param packageNames
+	 *            packages to scan
+	 * @return manifest
+	 * @throws IOException
+	 */
+	public static ClassManifest readAndUpdate(File file, ClassLoader classLoader,
+		String... packageNames) throws IOException
+	{
+		ClassManifest existing = new ClassManifest(Collections.<String> emptyList());
+		if (file.exists())
+		{
+			InputStream in = new FileInputStream(file);
+			try
+			{
+				existing = read(in);
+			}
+			finally
+			{
+				IOUtils.closeQuietly(in);
+			}
+		}
+		ClassManifest ret = existing.append(scan(classLoader, packageNames).classNames());
+		if (ret.classNames().size() != existing.classNames().size())
+		{
+			ret.write(file);
+		}
+		return ret;
+	}
+
+	/**
+	 * build time generation, e.g. with the exec-maven-plugin
+	 * 
+	 * @param args
+	 *            manifest file followed by the packages to scan
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 2)
+		{
+			System.err.println("Usage: ClassManifest <manifest file> <package> [<package>...]");
+			System.exit(1);
+		}
+		String[] packageNames = new String[args.length - 1];
+		System.arraycopy(args, 1, packageNames, 0, packageNames.length);
+		ClassManifest manifest = readAndUpdate(new File(args[0]),
+			Thread.currentThread().getContextClassLoader(), packageNames);
+		System.out.println(manifest.classNames().size() + " classes in " + args[0]);
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.registration;
+
+import java.util.List;
+
+import org.apache.wicket.util.lang.Args;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
+
+/**
+ * classes of a {@link ClassManifest}, resolved once and registered with stable ids in every
+ * {@link Kryo} instance. Registered classes are written as small integer ids instead of the class
+ * name.
+ * 
+ * In strict mode {@link Kryo#setRegistrationRequired(boolean)} is enabled, so every class which is
+ * not registered is rejected, the manifest must then contain every serialized class.
+ */
+public class ClassRegistration
+{
+	private static final Logger LOG = LoggerFactory.getLogger(ClassRegistration.class);
+
+	/**
+	 * first id used for the manifest classes, lower ids are used by kryo and the built-in
+	 * registrations of the serializer
+	 */
+	public static final int FIRST_ID = 100;
+
+	private final Class<?>[] classes;
+	private final boolean strict;
+
+	/**
+	 * @param manifest
+	 *            class manifest
+	 * @param classLoader
+	 *            class loader used to resolve the class names
+	 * @param strict
+	 *            reject classes which are not registered
+	 */
+	public ClassRegistration(ClassManifest manifest, ClassLoader classLoader, boolean strict)
+	{
+		Args.notNull(manifest, "manifest");
+		Args.notNull(classLoader, "classLoader");
+
+		List<String> classNames = manifest.classNames();
+		this.classes = new Class<?>[classNames.size()];
+		this.strict = strict;
+
+		for (int i = 0; i < classes.length; i++)
+		{
+			String className = classNames.get(i);
+			try
+			{
+				classes[i] = Class.forName(className, false, classLoader);
+			}
+			catch (ClassNotFoundException e)
+			{
+				// keep the id reserved, so the following ids do not change
+				LOG.warn("Class '{}' of manifest not found", className);
+			}
+		}
+	}
+
+	/**
+	 * registers all classes, the serializer of each class is created on first use
+	 * 
+	 * @param kryo
+	 *            kryo instance
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void register(Kryo kryo)
+	{
+		for (int i = 0; i < classes.length; i++)
+		{
+			if (classes[i] != null)
+			{
+				kryo.register(new Registration(classes[i], new LazySerializer(classes[i]), FIRST_ID +
+					i));
+			}
+		}
+		kryo.setRegistrationRequired(strict);
+	}
+
+	/**
+	 * @return true if unregistered classes are rejected
+	 */
+	public boolean isStrict()
+	{
+		return strict;
+	}
+
+	/**
+	 * @return number of registered classes
+	 */
+	public int size()
+	{
+		return classes.length;
+	}
+}
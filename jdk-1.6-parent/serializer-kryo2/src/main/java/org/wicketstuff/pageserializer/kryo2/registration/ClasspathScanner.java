@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.registration;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.wicket.util.lang.Args;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * finds all concrete classes below some packages which are assignable to one of the given types
+ */
+public class ClasspathScanner
+{
+	private static final Logger LOG = LoggerFactory.getLogger(ClasspathScanner.class);
+
+	private static final String CLASS_SUFFIX = ".class";
+
+	private final ClassLoader classLoader;
+	private final Class<?>[] types;
+
+	/**
+	 * @param classLoader
+	 *            class loader used to find and load the classes
+	 * @param types
+	 *            classes must be assignable to one of these types
+	 */
+	public ClasspathScanner(ClassLoader classLoader, Class<?>... types)
+	{
+		this.classLoader = Args.notNull(classLoader, "classLoader");
+		this.types = Args.notNull(types, "types");
+	}
+
+	/**
+	 * @param packageNames
+	 *            packages to scan (including sub packages)
+	 * @return sorted class names
+	 * @throws IOException
+	 */
+	public Set<String> scan(String... packageNames) throws IOException
+	{
+		Set<String> ret = new TreeSet<String>();
+		for (String packageName : packageNames)
+		{
+			String path = packageName.replace('.', '/');
+			// a directory url only lists the package itself, jars have to be filtered by the
+			// package path including its separator, otherwise com/foo/bar matches com/foo/barbaz
+			Enumeration<URL> resources = classLoader.getResources(path);
+			while (resources.hasMoreElements())
+			{
+				URL url = resources.nextElement();
+				if ("file".equals(url.getProtocol()))
+				{
+					scanDirectory(new File(decode(url.getPath())), packageName, ret);
+				}
+				else
+				{
+					URLConnection connection = url.openConnection();
+					if (connection instanceof JarURLConnection)
+					{
+						scanJar(((JarURLConnection)connection).getJarFile(), path + "/", ret);
+					}
+					else
+					{
+						LOG.warn("Can not scan '{}'", url);
+					}
+				}
+			}
+		}
+		return ret;
+	}
+
+	private void scanDirectory(File directory, String packageName, Set<String> result)
+	{
+		File[] files = directory.listFiles();
+		if (files == null)
+		{
+			return;
+		}
+		for (File file : files)
+		{
+			String name = file.getName();
+			if (file.isDirectory())
+			{
+				scanDirectory(file, packageName + "." + name, result);
+			}
+			else if (name.endsWith(CLASS_SUFFIX))
+			{
+				check(packageName + "." + name.substring(0, name.length() - CLASS_SUFFIX.length()),
+					result);
+			}
+		}
+	}
+
+	private void scanJar(JarFile jar, String prefix, Set<String> result)
+	{
+		Enumeration<JarEntry> entries = jar.entries();
+		while (entries.hasMoreElements())
+		{
+			String name = entries.nextElement().getName();
+			if (name.startsWith(prefix) && name.endsWith(CLASS_SUFFIX))
+			{
+				check(name.substring(0, name.length() - CLASS_SUFFIX.length()).replace('/', '.'),
+					result);
+			}
+		}
+	}
+
+	private void check(String className, Set<String> result)
+	{
+		Class<?> clazz;
+		try
+		{
+			clazz = Class.forName(className, false, classLoader);
+		}
+		catch (Throwable e)
+		{
+			LOG.debug("Could not load '{}': {}", className, e.toString());
+			return;
+		}
+		if (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers()))
+		{
+			return;
+		}
+		for (Class<?> type : types)
+		{
+			if (type.isAssignableFrom(clazz))
+			{
+				result.add(className);
+				return;
+			}
+		}
+	}
+
+	private static String decode(String path) throws UnsupportedEncodingException
+	{
+		return URLDecoder.decode(path, "UTF-8");
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.registration;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * creates the default serializer on first use and replaces itself in the registration, so a new
+ * {@link Kryo} instance does not pay for the reflective setup of classes it never writes
+ */
+class LazySerializer<T> extends Serializer<T>
+{
+	private final Class<T> type;
+	private Serializer<T> delegate;
+
+	LazySerializer(Class<T> type)
+	{
+		this.type = type;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Serializer<T> delegate(Kryo kryo)
+	{
+		if (delegate == null)
+		{
+			delegate = kryo.getDefaultSerializer(type);
+			kryo.getRegistration(type).setSerializer(delegate);
+		}
+		return delegate;
+	}
+
+	@Override
+	public void write(Kryo kryo, Output output, T object)
+	{
+		delegate(kryo).write(kryo, output, object);
+	}
+
+	@Override
+	public T read(Kryo kryo, Input input, Class<T> type)
+	{
+		return delegate(kryo).read(kryo, input, type);
+	}
+
+	@Override
+	public void setGenerics(Kryo kryo, @SuppressWarnings("rawtypes") Class[] generics)
+	{
+		delegate(kryo).setGenerics(kryo, generics);
+	}
+
+	@Override
+	public T copy(Kryo kryo, T original)
+	{
+		return delegate(kryo).copy(kryo, original);
+	}
+}
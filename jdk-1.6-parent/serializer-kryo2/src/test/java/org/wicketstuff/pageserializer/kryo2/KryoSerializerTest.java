@@ -20,13 +20,24 @@
  */
 package org.wicketstuff.pageserializer.kryo2;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.serialize.ISerializer;
+import org.apache.wicket.serialize.java.JavaSerializer;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.tester.WicketTester;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.wicketstuff.pageserializer.kryo2.buffer.ThreadLocalBufferPool;
 import org.wicketstuff.pageserializer.kryo2.pages.NotSerializablePage;
 import org.wicketstuff.pageserializer.kryo2.pages.SamplePage;
 
@@ -103,6 +114,95 @@ public class KryoSerializerTest
 		tester.assertRenderedPage(SamplePage.class);
 	}
 	
+	@Test
+	public void pooledBuffersAreReused()
+	{
+		SamplePage page = tester.startPage(SamplePage.class,
+			new PageParameters().add("Test", "asString"));
+
+		ThreadLocalBufferPool pool = new ThreadLocalBufferPool(Bytes.megabytes(1L));
+		ISerializer pageSerializer = new KryoSerializer(pool);
+
+		byte[] first = pageSerializer.serialize(page);
+		byte[] second = pageSerializer.serialize(page);
+		Assert.assertArrayEquals(first, second);
+
+		Object object = pageSerializer.deserialize(second);
+		Assert.assertTrue(object instanceof SamplePage);
+
+		Assert.assertEquals(1, pool.getMisses());
+		Assert.assertEquals(1, pool.getHits());
+		Assert.assertEquals(first.length, pool.getPeakSize());
+	}
+
+	@Test
+	public void streamedPageMatchesByteArray() throws IOException
+	{
+		SamplePage page = tester.startPage(SamplePage.class,
+			new PageParameters().add("Test", "asString"));
+
+		KryoSerializer pageSerializer = new KryoSerializer();
+		byte[] data = pageSerializer.serialize(page);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		pageSerializer.serialize(page, out);
+		Assert.assertArrayEquals(data, out.toByteArray());
+
+		Object object = pageSerializer.deserialize(new ByteArrayInputStream(out.toByteArray()));
+		Assert.assertTrue(object instanceof SamplePage);
+	}
+
+	@Test
+	public void pooledBufferStreamsIntoFileChannel() throws IOException
+	{
+		SamplePage page = tester.startPage(SamplePage.class,
+			new PageParameters().add("Test", "asString"));
+
+		ThreadLocalBufferPool pool = new ThreadLocalBufferPool(Bytes.bytes(64L),
+			Bytes.megabytes(1L), 0.9);
+		KryoSerializer pageSerializer = new KryoSerializer(pool);
+		byte[] data = pageSerializer.serialize(page);
+
+		File file = File.createTempFile("page", ".data");
+		try
+		{
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try
+			{
+				FileChannel channel = raf.getChannel();
+				pageSerializer.serialize(page, Channels.newOutputStream(channel));
+				Assert.assertEquals(data.length, channel.size());
+
+				channel.position(0);
+				Object object = pageSerializer.deserialize(Channels.newInputStream(channel));
+				Assert.assertTrue(object instanceof SamplePage);
+			}
+			finally
+			{
+				raf.close();
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+		Assert.assertEquals(data.length, pool.getPeakSize());
+		// only the byte array serialization had to grow the buffer, the stream is flushed
+		Assert.assertEquals(1, pool.getGrowths());
+	}
+
+	@Test
+	public void nonStreamingSerializerFallsBackToByteArray() throws IOException
+	{
+		ISerializer pageSerializer = new JavaSerializer("test");
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		StreamingSerializers.serialize(pageSerializer, "value", out);
+		Object object = StreamingSerializers.deserialize(pageSerializer,
+			new ByteArrayInputStream(out.toByteArray()));
+		Assert.assertEquals("value", object);
+	}
+
 	@Test(expected=KryoException.class)
 	public void notSerializableCompontentThrowsException()
 	{
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.buffer;
+
+import org.apache.wicket.util.lang.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.io.Output;
+
+public class ThreadLocalBufferPoolTest
+{
+	@Test
+	public void bufferIsReusedOnSameThread()
+	{
+		ThreadLocalBufferPool pool = new ThreadLocalBufferPool(Bytes.megabytes(1L));
+
+		Output first = pool.acquire(null);
+		first.writeString("first");
+		pool.release(first);
+
+		Output second = pool.acquire(null);
+		Assert.assertSame(first, second);
+		Assert.assertEquals(0, second.position());
+		pool.release(second);
+
+		Assert.assertEquals(1, pool.getMisses());
+		Assert.assertEquals(1, pool.getHits());
+	}
+
+	@Test
+	public void nestedAcquireGetsOwnBuffer()
+	{
+		ThreadLocalBufferPool pool = new ThreadLocalBufferPool(Bytes.megabytes(1L));
+		pool.release(pool.acquire(null));
+
+		Output outer = pool.acquire(null);
+		Output inner = pool.acquire(null);
+		Assert.assertNotSame(outer, inner);
+		pool.release(inner);
+		pool.release(outer);
+	}
+
+	@Test
+	public void bufferGrowsAndOversizedBufferIsDropped()
+	{
+		ThreadLocalBufferPool pool = new ThreadLocalBufferPool(Bytes.kilobytes(1L),
+			Bytes.megabytes(1L), 0.9);
+
+		for (int i = 0; i < 10; i++)
+		{
+			Output buffer = pool.acquire(null);
+			buffer.writeBytes(new byte[100]);
+			pool.release(buffer);
+		}
+		Assert.assertEquals(0, pool.getGrowths());
+
+		Output big = pool.acquire(null);
+		big.writeBytes(new byte[100 * 1024]);
+		pool.release(big);
+
+		Assert.assertEquals(1, pool.getGrowths());
+		Assert.assertEquals(1, pool.getDiscards());
+		Assert.assertEquals(100 * 1024, pool.getPeakSize());
+		Assert.assertNotSame(big, pool.acquire(null));
+	}
+
+	@Test
+	public void newBuffersStartWithObservedPercentile()
+	{
+		ThreadLocalBufferPool pool = new ThreadLocalBufferPool(Bytes.kilobytes(1L),
+			Bytes.megabytes(1L), 0.9);
+
+		for (int i = 0; i < 10; i++)
+		{
+			Output buffer = pool.acquire(null);
+			buffer.writeBytes(new byte[3000]);
+			pool.release(buffer);
+		}
+		Assert.assertEquals(4096, pool.targetSize());
+	}
+}
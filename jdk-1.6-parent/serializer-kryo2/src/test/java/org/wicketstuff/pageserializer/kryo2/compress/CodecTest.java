@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.compress;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CodecTest
+{
+	@Test
+	public void lz4RoundTrip()
+	{
+		roundTrip(new Lz4Codec());
+	}
+
+	@Test
+	public void deflateRoundTrip()
+	{
+		roundTrip(new DeflateCodec());
+	}
+
+	@Test
+	public void lz4ShrinksRepetitiveData()
+	{
+		byte[] data = repetitive(10000);
+		Lz4Codec codec = new Lz4Codec();
+		byte[] buffer = new byte[codec.maxCompressedLength(data.length)];
+		int length = codec.compress(data, 0, data.length, buffer, 0);
+		Assert.assertTrue("compressed to " + length, length < data.length / 4);
+	}
+
+	@Test
+	public void deflateFailsOnRandomData()
+	{
+		byte[] data = random(10000);
+		DeflateCodec codec = new DeflateCodec();
+		byte[] buffer = new byte[codec.maxCompressedLength(data.length)];
+		Assert.assertEquals(-1, codec.compress(data, 0, data.length, buffer, 0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void corruptLz4DataIsDetected()
+	{
+		byte[] data = repetitive(1000);
+		Lz4Codec codec = new Lz4Codec();
+		byte[] buffer = new byte[codec.maxCompressedLength(data.length)];
+		int length = codec.compress(data, 0, data.length, buffer, 0);
+		codec.decompress(buffer, 0, length, new byte[data.length + 1], 0, data.length + 1);
+	}
+
+	private static void roundTrip(ICompressionCodec codec)
+	{
+		for (byte[] data : Arrays.asList(new byte[0], new byte[] { 1, 2, 3 }, repetitive(13),
+			repetitive(100000), random(1000), mixed(70000)))
+		{
+			byte[] buffer = new byte[3 + codec.maxCompressedLength(data.length)];
+			int length = codec.compress(data, 0, data.length, buffer, 3);
+			if (length >= 0)
+			{
+				byte[] result = new byte[data.length + 2];
+				codec.decompress(buffer, 3, length, result, 2, data.length);
+				Assert.assertArrayEquals(data, Arrays.copyOfRange(result, 2, result.length));
+			}
+		}
+	}
+
+	private static byte[] repetitive(int size)
+	{
+		byte[] ret = new byte[size];
+		byte[] pattern = "org.apache.wicket.markup.html.basic.Label".getBytes();
+		for (int i = 0; i < size; i++)
+		{
+			ret[i] = pattern[i % pattern.length];
+		}
+		return ret;
+	}
+
+	private static byte[] random(int size)
+	{
+		byte[] ret = new byte[size];
+		new Random(size).nextBytes(ret);
+		return ret;
+	}
+
+	private static byte[] mixed(int size)
+	{
+		byte[] ret = repetitive(size);
+		Random random = new Random(size);
+		for (int i = 0; i < size; i += 1 + random.nextInt(50))
+		{
+			ret[i] = (byte)random.nextInt();
+		}
+		return ret;
+	}
+}
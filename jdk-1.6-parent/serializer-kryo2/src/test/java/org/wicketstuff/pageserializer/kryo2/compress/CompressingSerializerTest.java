@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.compress;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wicketstuff.pageserializer.kryo2.IStreamingSerializer;
+import org.wicketstuff.pageserializer.kryo2.KryoSerializer;
+import org.wicketstuff.pageserializer.kryo2.WicketApplication;
+import org.wicketstuff.pageserializer.kryo2.pages.SamplePage;
+
+public class CompressingSerializerTest
+{
+	private WicketTester tester;
+
+	@Before
+	public void setUp()
+	{
+		tester = new WicketTester(new WicketApplication());
+	}
+
+	@After
+	public void tearDown()
+	{
+		tester.destroy();
+	}
+
+	@Test
+	public void compressedPageCanBeRead()
+	{
+		SamplePage page = tester.startPage(SamplePage.class,
+			new PageParameters().add("Test", "asString"));
+
+		KryoSerializer kryo = new KryoSerializer();
+		int uncompressed = kryo.serialize(page).length;
+
+		for (ICompressionCodec codec : new ICompressionCodec[] { new Lz4Codec(),
+				new DeflateCodec() })
+		{
+			CompressingSerializer serializer = new CompressingSerializer(kryo, codec,
+				Bytes.bytes(1L));
+			byte[] data = serializer.serialize(page);
+			Assert.assertTrue(codec + ": " + data.length, data.length < uncompressed);
+			Assert.assertTrue(serializer.deserialize(data) instanceof SamplePage);
+			Assert.assertEquals(1, serializer.getStatistics().getRatio().count());
+			Assert.assertEquals(1, serializer.getStatistics().getDecompressTime().count());
+		}
+	}
+
+	@Test
+	public void pagesBelowThresholdAreNotCompressed()
+	{
+		SamplePage page = tester.startPage(SamplePage.class,
+			new PageParameters().add("Test", "asString"));
+
+		KryoSerializer kryo = new KryoSerializer();
+		int uncompressed = kryo.serialize(page).length;
+
+		CompressingSerializer serializer = new CompressingSerializer(kryo, new Lz4Codec(),
+			Bytes.megabytes(1L));
+		byte[] data = serializer.serialize(page);
+		Assert.assertEquals(uncompressed + 1, data.length);
+		Assert.assertTrue(serializer.deserialize(data) instanceof SamplePage);
+		Assert.assertEquals(1, serializer.getStatistics().getSkipped());
+	}
+
+	@Test
+	public void dataOfOtherCodecCanBeRead()
+	{
+		KryoSerializer kryo = new KryoSerializer();
+		String value = "org.apache.wicket.markup.html.basic.Label " +
+			"org.apache.wicket.markup.html.basic.Label";
+
+		byte[] data = new CompressingSerializer(kryo, new DeflateCodec(), Bytes.bytes(1L))
+			.serialize(value);
+		Assert.assertEquals(value,
+			new CompressingSerializer(kryo, new Lz4Codec(), Bytes.bytes(1L)).deserialize(data));
+	}
+
+	@Test
+	public void streamedPageCanBeRead() throws IOException
+	{
+		SamplePage page = tester.startPage(SamplePage.class,
+			new PageParameters().add("Test", "asString"));
+
+		KryoSerializer kryo = new KryoSerializer();
+		int uncompressed = kryo.serialize(page).length;
+
+		IStreamingSerializer serializer = new CompressingSerializer(kryo, new Lz4Codec());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.serialize(page, out);
+		Assert.assertTrue(out.size() + " < " + uncompressed, out.size() < uncompressed);
+
+		byte[] data = out.toByteArray();
+		Assert.assertTrue(serializer.deserialize(new ByteArrayInputStream(data)) instanceof SamplePage);
+		Assert.assertTrue(serializer.deserialize(data) instanceof SamplePage);
+	}
+
+	@Test
+	public void byteArrayCanBeReadFromStream() throws IOException
+	{
+		String value = "org.apache.wicket.markup.html.basic.Label";
+		for (Bytes threshold : new Bytes[] { Bytes.bytes(1L), Bytes.megabytes(1L) })
+		{
+			CompressingSerializer serializer = new CompressingSerializer(new KryoSerializer(),
+				new DeflateCodec(), threshold);
+			byte[] data = serializer.serialize(value + value + value);
+			Assert.assertEquals(value + value + value,
+				serializer.deserialize(new ByteArrayInputStream(data)));
+		}
+	}
+
+	@Test
+	public void emptyStreamedPageIsCounted()
+	{
+		CompressionStatistics statistics = new CompressionStatistics();
+		statistics.compressed(0, 2, 1L);
+		Assert.assertEquals(2, statistics.getCompressedBytes());
+		Assert.assertEquals(0, statistics.getRatio().count());
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.inspecting.sampling;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
+import org.junit.Assert;
+import org.junit.Test;
+import org.wicketstuff.pageserializer.kryo2.inspecting.InspectingKryoSerializer;
+import org.wicketstuff.pageserializer.kryo2.inspecting.analyze.AnalyzingSerializationListener;
+import org.wicketstuff.pageserializer.kryo2.inspecting.analyze.IObjectLabelizer;
+import org.wicketstuff.pageserializer.kryo2.inspecting.analyze.report.AggregatingTreeProcessor;
+import org.wicketstuff.pageserializer.kryo2.inspecting.listener.ISerializationListener;
+import org.wicketstuff.pageserializer.kryo2.inspecting.listener.SerializationListeners;
+
+public class SamplingTest
+{
+	@Test
+	public void oneOfNIsInspected()
+	{
+		CountingListener counter = new CountingListener();
+		InspectingKryoSerializer serializer = new InspectingKryoSerializer(Bytes.kilobytes(64L),
+			counter).setSampling(Sampling.oneOf(3));
+
+		for (int i = 0; i < 9; i++)
+		{
+			Assert.assertEquals("" + i, serializer.deserialize(serializer.serialize("" + i)));
+		}
+		Assert.assertEquals(3, counter.begins.get());
+		Assert.assertEquals(3, counter.ends.get());
+	}
+
+	@Test
+	public void bigObjectsAreInspectedNextTime()
+	{
+		CountingListener counter = new CountingListener();
+		InspectingKryoSerializer serializer = new InspectingKryoSerializer(Bytes.kilobytes(64L),
+			counter).setSampling(Sampling.biggerThan(Bytes.bytes(100L)));
+
+		List<String> big = new ArrayList<String>();
+		for (int i = 0; i < 50; i++)
+		{
+			big.add("element " + i);
+		}
+		serializer.serialize("small");
+		serializer.serialize(big);
+		Assert.assertEquals(0, counter.begins.get());
+
+		serializer.serialize(big);
+		serializer.serialize("small");
+		Assert.assertEquals(1, counter.begins.get());
+	}
+
+	@Test
+	public void bigStreamedObjectsAreInspectedNextTime() throws IOException
+	{
+		CountingListener counter = new CountingListener();
+		InspectingKryoSerializer serializer = new InspectingKryoSerializer(Bytes.kilobytes(64L),
+			counter).setSampling(Sampling.biggerThan(Bytes.bytes(100L)));
+
+		List<String> big = new ArrayList<String>();
+		for (int i = 0; i < 50; i++)
+		{
+			big.add("element " + i);
+		}
+		serializer.serialize(big, new ByteArrayOutputStream());
+		Assert.assertEquals(0, counter.begins.get());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.serialize(big, out);
+		Assert.assertEquals(1, counter.begins.get());
+		Assert.assertEquals(big, serializer.deserialize(out.toByteArray()));
+	}
+
+	@Test
+	public void sampledTreesAreAggregatedPerRootType()
+	{
+		AggregatingTreeProcessor aggregator = new AggregatingTreeProcessor(Duration.minutes(1), 2);
+		ISerializationListener listener = SerializationListeners.listOf(new CountingListener(),
+			new AnalyzingSerializationListener(new IObjectLabelizer()
+			{
+				@Override
+				public String labelFor(Object object)
+				{
+					return null;
+				}
+			}, aggregator));
+		InspectingKryoSerializer serializer = new InspectingKryoSerializer(Bytes.kilobytes(64L),
+			listener).setSampling(Sampling.oneOf(2));
+
+		for (int i = 0; i < 10; i++)
+		{
+			serializer.serialize(new ArrayList<String>(Arrays.asList("A", "B", "" + i)));
+		}
+
+		Assert.assertEquals(5, aggregator.getPages());
+		Assert.assertArrayEquals(new String[] { ArrayList.class.getName() },
+			aggregator.getPageTypes());
+		Assert.assertEquals(5, aggregator.getPageSizes(ArrayList.class).count());
+		Assert.assertTrue(aggregator.report().contains(String.class.getName()));
+	}
+
+	static class CountingListener implements ISerializationListener
+	{
+		final AtomicInteger begins = new AtomicInteger();
+		final AtomicInteger ends = new AtomicInteger();
+
+		@Override
+		public void begin(Object object)
+		{
+			begins.incrementAndGet();
+		}
+
+		@Override
+		public void before(int position, Object object)
+		{
+			Assert.assertTrue(begins.get() > ends.get());
+		}
+
+		@Override
+		public void after(int position, Object object)
+		{
+			Assert.assertTrue(begins.get() > ends.get());
+		}
+
+		@Override
+		public void end(Object object, RuntimeException exceptionIfAny)
+		{
+			ends.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.pageserializer.kryo2.registration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.apache.wicket.Page;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wicketstuff.pageserializer.kryo2.KryoSerializer;
+import org.wicketstuff.pageserializer.kryo2.WicketApplication;
+import org.wicketstuff.pageserializer.kryo2.pages.ListViewPage;
+import org.wicketstuff.pageserializer.kryo2.pages.SamplePage;
+
+public class ClassRegistrationTest
+{
+	private static final String PAGES = "org.wicketstuff.pageserializer.kryo2.pages";
+
+	private WicketTester tester;
+
+	@Before
+	public void setUp()
+	{
+		tester = new WicketTester(new WicketApplication());
+	}
+
+	@After
+	public void tearDown()
+	{
+		tester.destroy();
+	}
+
+	@Test
+	public void scanFindsPagesAndComponents() throws IOException
+	{
+		ClassManifest manifest = ClassManifest.scan(getClass().getClassLoader(), PAGES);
+		Assert.assertTrue(manifest.classNames().contains(SamplePage.class.getName()));
+		Assert.assertTrue(manifest.classNames().contains(ListViewPage.class.getName() + "$1"));
+	}
+
+	@Test
+	public void scanDoesNotMatchPackagesWithTheSamePrefix() throws IOException
+	{
+		String entry = SamplePage.class.getName().replace('.', '/') + ".class";
+		File jar = File.createTempFile("scanner", ".jar");
+		try
+		{
+			JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+			try
+			{
+				// the directory entry of the sibling package makes the class loader find it
+				out.putNextEntry(new JarEntry("org/wicketstuff/pageserializer/kryo/"));
+				out.putNextEntry(new JarEntry(entry));
+				InputStream in = getClass().getClassLoader().getResourceAsStream(entry);
+				try
+				{
+					IOUtils.copy(in, out);
+				}
+				finally
+				{
+					in.close();
+				}
+			}
+			finally
+			{
+				out.close();
+			}
+
+			URLClassLoader classLoader = new URLClassLoader(new URL[] { jar.toURI().toURL() },
+				getClass().getClassLoader());
+			Set<String> classNames = new ClasspathScanner(classLoader, Page.class).scan(
+				"org.wicketstuff.pageserializer.kryo");
+			Assert.assertTrue(classNames.toString(), classNames.isEmpty());
+		}
+		finally
+		{
+			jar.delete();
+		}
+	}
+
+	@Test
+	public void appendKeepsIds() throws IOException
+	{
+		ClassManifest manifest = ClassManifest.of(Arrays.asList("b.B", "a.A"));
+		ClassManifest appended = manifest.append(Arrays.asList("a.A", "c.C"));
+		Assert.assertEquals(Arrays.asList("b.B", "a.A", "c.C"), appended.classNames());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		appended.write(out);
+		Assert.assertEquals(appended.classNames(),
+			ClassManifest.read(new ByteArrayInputStream(out.toByteArray())).classNames());
+	}
+
+	@Test
+	public void registeredClassesShrinkPages() throws IOException
+	{
+		SamplePage page = tester.startPage(SamplePage.class,
+			new PageParameters().add("Test", "asString"));
+
+		int unregistered = new KryoSerializer().serialize(page).length;
+
+		ClassManifest manifest = ClassManifest.scan(getClass().getClassLoader(), PAGES,
+			"org.apache.wicket.markup.html");
+		KryoSerializer serializer = new KryoSerializer().setClassRegistration(
+			new ClassRegistration(manifest, getClass().getClassLoader(), false)).warmup();
+		byte[] data = serializer.serialize(page);
+		Assert.assertTrue(data.length + " < " + unregistered, data.length < unregistered);
+		Assert.assertTrue(serializer.deserialize(data) instanceof SamplePage);
+	}
+
+	@Test
+	public void missingClassesKeepTheirId()
+	{
+		ClassManifest manifest = ClassManifest.of(Arrays.asList("not.There",
+			ArrayList.class.getName()));
+		ClassRegistration registration = new ClassRegistration(manifest,
+			getClass().getClassLoader(), true);
+		Assert.assertEquals(2, registration.size());
+
+		KryoSerializer serializer = new KryoSerializer().setClassRegistration(registration);
+		ArrayList<String> value = new ArrayList<String>(Arrays.asList("A"));
+		Assert.assertEquals(value, serializer.deserialize(serializer.serialize(value)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void strictModeRejectsUnknownClasses()
+	{
+		ClassManifest manifest = ClassManifest.of(Arrays.asList(ArrayList.class.getName()));
+		KryoSerializer serializer = new KryoSerializer().setClassRegistration(
+			new ClassRegistration(manifest, getClass().getClassLoader(), true));
+		serializer.serialize(new java.util.LinkedList<String>());
+	}
+}
@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 import org.wicketstuff.security.hive.authentication.Subject;
 import org.wicketstuff.security.hive.authorization.Permission;
 import org.wicketstuff.security.hive.authorization.Principal;
+import org.wicketstuff.security.hive.authorization.permissions.PermissionIndex;
 import org.wicketstuff.security.util.ManyToManyMap;
 
 /**
@@ -43,6 +44,12 @@ public class BasicHive implements Hive
 	 */
 	private ManyToManyMap<Permission, Principal> principals;
 
+	/**
+	 * Index of the permissions, used to find the permissions that might imply a permission. Only
+	 * available once the hive is locked.
+	 */
+	private PermissionIndex index;
+
 	/**
 	 * indicates if permissions and or principals are accepted by the hive.
 	 */
@@ -60,13 +67,28 @@ public class BasicHive implements Hive
 
 	/**
 	 * Locks this hive. No changes are allowed anymore. After this {@link #isLocked()} will return
-	 * true;
+	 * true; Locking the hive also builds the index used to find implied permissions.
 	 */
 	public final void lock()
 	{
+		if (locked)
+			return;
+		index = new PermissionIndex(principals.leftIterator());
+		onLock();
 		locked = true;
 		if (log.isDebugEnabled())
-			log.debug("Locking Hive, permissions can not be added anymore.");
+			log.debug("Locking Hive, permissions can not be added anymore. Indexed " +
+				index.size() + " permissions.");
+	}
+
+	/**
+	 * Called once when this hive is locked, after which its permissions are final. Allows
+	 * subclasses to discard any state depending on the permissions, like cached results. By
+	 * default this method does not have an implementation.
+	 */
+	protected void onLock()
+	{
+		// noop
 	}
 
 	/**
@@ -195,8 +217,13 @@ public class BasicHive implements Hive
 			cacheResult(subject, permission, true);
 			return true;
 		}
-		// permission has no exact match, perform an implies check
-		Iterator<Permission> it = principals.leftIterator();
+		// permission has no exact match, perform an implies check on the permissions that might
+		// imply it
+		Iterator<Permission> it;
+		if (index != null)
+			it = index.getCandidates(permission).iterator();
+		else
+			it = principals.leftIterator();
 		while (it.hasNext())
 		{
 			Permission possibleMatch = it.next();
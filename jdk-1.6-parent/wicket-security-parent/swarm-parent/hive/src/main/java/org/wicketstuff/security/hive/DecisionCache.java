@@ -0,0 +1,375 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.security.hive;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.wicketstuff.security.hive.authentication.Subject;
+import org.wicketstuff.security.hive.authorization.Permission;
+import org.wicketstuff.security.hive.authorization.Principal;
+
+/**
+ * Thread safe cache for the decisions of a hive. Decisions are stored per set of principals
+ * instead of per subject, so subjects with the same principals share their cached decisions. This
+ * assumes {@link Principal#implies(Subject)} only depends on the principals of the subject, as the
+ * principals in this package do. Decisions for a null subject are cached separately from subjects
+ * without principals.
+ *
+ * The cache holds at most a fixed number of decisions, when full the least recently used decision
+ * is evicted. Decisions also expire after a fixed time. The cache is split in segments, each with
+ * its own lock, to reduce contention. Eviction happens per segment, so the least recently used
+ * decision of the whole cache is not necessarily the first to go.
+ *
+ * @see SimpleCachingHive
+ */
+public class DecisionCache
+{
+	/**
+	 * The default maximum number of cached decisions.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	/**
+	 * The default time after which a decision expires, in milliseconds.
+	 */
+	public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(30);
+
+	private static final int SEGMENTS = 16;
+
+	private final Segment[] segments;
+
+	private final long timeToLiveNanos;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final AtomicLong expirations = new AtomicLong();
+
+	/**
+	 * Construct a cache with the default size and time to live.
+	 */
+	public DecisionCache()
+	{
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Construct.
+	 *
+	 * @param maxEntries
+	 *            the maximum number of cached decisions
+	 * @param timeToLive
+	 *            the time after which a decision expires
+	 * @param unit
+	 *            the unit of timeToLive
+	 * @throws IllegalArgumentException
+	 *             if maxEntries or timeToLive is not positive
+	 */
+	public DecisionCache(int maxEntries, long timeToLive, TimeUnit unit)
+	{
+		if (maxEntries <= 0)
+			throw new IllegalArgumentException("maxEntries must be > 0, not " + maxEntries);
+		if (timeToLive <= 0)
+			throw new IllegalArgumentException("timeToLive must be > 0, not " + timeToLive);
+		if (unit == null)
+			throw new IllegalArgumentException("A time unit is required.");
+		timeToLiveNanos = unit.toNanos(timeToLive);
+		int segmentCount = Math.min(SEGMENTS, maxEntries);
+		segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++)
+		{
+			// spread the remainder over the first segments
+			int segmentSize = maxEntries / segmentCount + (i < maxEntries % segmentCount ? 1 : 0);
+			segments[i] = new Segment(segmentSize);
+		}
+	}
+
+	/**
+	 * Looks up a cached decision.
+	 *
+	 * @param subject
+	 *            (optional) subject
+	 * @param permission
+	 *            the permission to check
+	 * @return null if there is no cached decision, true if the permission is granted, false if the
+	 *         permission is denied
+	 */
+	public Boolean get(Subject subject, Permission permission)
+	{
+		Key key = new Key(getPrincipals(subject), permission);
+		Entry entry = segmentFor(key).get(key);
+		if (entry == null)
+		{
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.result;
+	}
+
+	/**
+	 * Caches a decision.
+	 *
+	 * @param subject
+	 *            (optional) subject
+	 * @param permission
+	 *            the checked permission
+	 * @param result
+	 *            the decision
+	 */
+	public void put(Subject subject, Permission permission, boolean result)
+	{
+		Set<Principal> principals = getPrincipals(subject);
+		if (principals != null)
+			principals = Collections.unmodifiableSet(new HashSet<Principal>(principals));
+		Key key = new Key(principals, permission);
+		segmentFor(key).put(key, new Entry(Boolean.valueOf(result), now() + timeToLiveNanos));
+	}
+
+	/**
+	 * Removes all cached decisions, for instance because the hive changed. The metrics are not
+	 * reset.
+	 */
+	public void invalidate()
+	{
+		for (Segment segment : segments)
+			segment.clear();
+	}
+
+	/**
+	 *
+	 * @return the number of cached decisions, including expired decisions that are not removed yet
+	 */
+	public int size()
+	{
+		int size = 0;
+		for (Segment segment : segments)
+			size += segment.size();
+		return size;
+	}
+
+	/**
+	 *
+	 * @return the number of lookups that found a decision
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 *
+	 * @return the number of lookups that did not find a decision
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	/**
+	 *
+	 * @return the fraction of lookups that found a decision, 0 if there were no lookups
+	 */
+	public double getHitRate()
+	{
+		long hitCount = hits.get();
+		long total = hitCount + misses.get();
+		return total == 0 ? 0 : (double)hitCount / total;
+	}
+
+	/**
+	 *
+	 * @return the number of decisions removed to make room for new ones
+	 */
+	public long getEvictions()
+	{
+		return evictions.get();
+	}
+
+	/**
+	 *
+	 * @return the number of decisions removed because they expired
+	 */
+	public long getExpirations()
+	{
+		return expirations.get();
+	}
+
+	/**
+	 * Resets the metrics.
+	 */
+	public void resetMetrics()
+	{
+		hits.set(0);
+		misses.set(0);
+		evictions.set(0);
+		expirations.set(0);
+	}
+
+	/**
+	 * The current time used to expire decisions. Changeable by subclasses, mainly for testing.
+	 *
+	 * @return the current time in nanoseconds
+	 */
+	protected long now()
+	{
+		return System.nanoTime();
+	}
+
+	/**
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return "DecisionCache: " + size() + " decisions, " + getHits() + " hits, " + getMisses() +
+			" misses, hit rate " + getHitRate() + ", " + getEvictions() + " evictions, " +
+			getExpirations() + " expirations";
+	}
+
+	private static Set<Principal> getPrincipals(Subject subject)
+	{
+		return subject == null ? null : subject.getPrincipals();
+	}
+
+	private Segment segmentFor(Key key)
+	{
+		// spread the bits, hash codes of principals and permissions are often poorly distributed
+		int hash = key.hashCode();
+		hash ^= (hash >>> 20) ^ (hash >>> 12);
+		hash ^= (hash >>> 7) ^ (hash >>> 4);
+		return segments[(hash & 0x7fffffff) % segments.length];
+	}
+
+	/**
+	 * Part of the cache with its own lock.
+	 */
+	private final class Segment
+	{
+		private final LinkedHashMap<Key, Entry> entries;
+
+		Segment(final int maxEntries)
+		{
+			entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true)
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+				{
+					if (size() <= maxEntries)
+						return false;
+					evictions.incrementAndGet();
+					return true;
+				}
+			};
+		}
+
+		synchronized Entry get(Key key)
+		{
+			Entry entry = entries.get(key);
+			if (entry != null && entry.expires - now() <= 0)
+			{
+				entries.remove(key);
+				expirations.incrementAndGet();
+				return null;
+			}
+			return entry;
+		}
+
+		synchronized void put(Key key, Entry entry)
+		{
+			entries.put(key, entry);
+		}
+
+		synchronized void clear()
+		{
+			entries.clear();
+		}
+
+		synchronized int size()
+		{
+			return entries.size();
+		}
+	}
+
+	/**
+	 * A cached decision.
+	 */
+	private static final class Entry
+	{
+		private final Boolean result;
+
+		private final long expires;
+
+		Entry(Boolean result, long expires)
+		{
+			this.result = result;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * Key of a decision, the principals of the subject and the checked permission.
+	 */
+	private static final class Key
+	{
+		private final Set<Principal> principals;
+
+		private final Permission permission;
+
+		private final int hash;
+
+		Key(Set<Principal> principals, Permission permission)
+		{
+			this.principals = principals;
+			this.permission = permission;
+			hash = 31 * (principals == null ? -1 : principals.hashCode()) + permission.hashCode();
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (obj == this)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key)obj;
+			if (hash != other.hash || !permission.equals(other.permission))
+				return false;
+			if (principals == null)
+				return other.principals == null;
+			return principals.equals(other.principals);
+		}
+	}
+}
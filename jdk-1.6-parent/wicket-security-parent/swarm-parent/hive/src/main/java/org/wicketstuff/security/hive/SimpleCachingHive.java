@@ -16,66 +16,96 @@
  */
 package org.wicketstuff.security.hive;
 
-import java.util.Map;
-import java.util.WeakHashMap;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.wicketstuff.security.hive.authentication.Subject;
 import org.wicketstuff.security.hive.authorization.Permission;
 
 /**
  * A very simple caching mechanism on top of {@link BasicHive}. If you want more control over your
- * cache you could for example use EHCache and extend BasicHive yourself. This cache is cleared when
- * a subject logs off but no guarantees are given that the cache will not be cleared prematurely or
- * how long it takes after a user logs off to clear the cached results.
+ * cache you could for example use EHCache and extend BasicHive yourself. Decisions are kept in a
+ * {@link DecisionCache}, shared by all subjects with the same principals. The cache is bounded and
+ * decisions expire after a while. Decisions are only cached once the hive is locked, since the
+ * permissions of an unlocked hive might still change.
  * 
  * @author marrink
  */
 public class SimpleCachingHive extends BasicHive
 {
-	private final WeakHashMap<Subject, Map<Permission, Boolean>> cache;
+	private final DecisionCache cache;
 
+	/**
+	 * Construct a hive with a cache of {@link DecisionCache#DEFAULT_MAX_ENTRIES} decisions, expiring
+	 * after {@link DecisionCache#DEFAULT_TIME_TO_LIVE} milliseconds.
+	 */
 	public SimpleCachingHive()
 	{
-		// reasonable init cache size
-		cache = new WeakHashMap<Subject, Map<Permission, Boolean>>(50);
+		this(new DecisionCache());
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxEntries
+	 *            the maximum number of cached decisions
+	 * @param timeToLive
+	 *            the time after which a decision expires
+	 * @param unit
+	 *            the unit of timeToLive
+	 */
+	public SimpleCachingHive(int maxEntries, long timeToLive, TimeUnit unit)
+	{
+		this(new DecisionCache(maxEntries, timeToLive, unit));
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param cache
+	 *            the cache for the decisions of this hive
+	 */
+	public SimpleCachingHive(DecisionCache cache)
+	{
+		if (cache == null)
+			throw new IllegalArgumentException("A cache is required.");
+		this.cache = cache;
+	}
+
+	/**
+	 * The cache of this hive, for instance to monitor its hit rate.
+	 * 
+	 * @return the cache
+	 */
+	public final DecisionCache getDecisionCache()
+	{
+		return cache;
+	}
+
+	/**
+	 * Discards the decisions cached for a previous build of the hive, if the cache is shared.
+	 * 
+	 * @see org.wicketstuff.security.hive.BasicHive#onLock()
+	 */
+	@Override
+	protected void onLock()
+	{
+		cache.invalidate();
 	}
 
 	@Override
 	protected Boolean cacheLookUp(Subject subject, Permission permission)
 	{
-		// easier not use cache when subject is null, since there is no timeout
-		// mechanism
-		if (subject == null || permission == null)
+		if (permission == null || !isLocked())
 			return null;
-		// no synch, since it does not matter much if we miss a cache hit
-		Map<Permission, Boolean> result = cache.get(subject);
-		if (result != null)
-			return result.get(permission);
-		return null;
-
+		return cache.get(subject, permission);
 	}
 
 	@Override
 	protected void cacheResult(Subject subject, Permission permission, boolean result)
 	{
-		if (subject == null || permission == null)
+		if (permission == null || !isLocked())
 			return;
-
-		Map<Permission, Boolean> resultMap = cache.get(subject);
-		if (resultMap == null)
-		{
-			// a bit of sync, concurrent puts can destroy the internals of a HashMap,
-			// causing never ending loops
-			resultMap = new ConcurrentHashMap<Permission, Boolean>();
-			resultMap.put(permission, result);
-			synchronized (cache)
-			{
-				cache.put(subject, resultMap);
-			}
-		}
-		else
-			resultMap.put(permission, result);
+		cache.put(subject, permission, result);
 	}
 
 }
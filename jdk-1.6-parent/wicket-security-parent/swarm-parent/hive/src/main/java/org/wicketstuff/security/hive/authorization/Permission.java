@@ -147,4 +147,31 @@ public abstract class Permission implements Serializable
 	{
 		return name;
 	}
+
+	/**
+	 * Hint for hives indexing their permissions. Returns the type of the permissions this
+	 * permission is able to imply, the hive never checks this permission against permissions that
+	 * are not an instance of this type. By default any permission might be implied.
+	 * 
+	 * @return the type of the permissions this permission might imply.
+	 * @see #implies(Permission)
+	 */
+	public Class<? extends Permission> getImpliedType()
+	{
+		return Permission.class;
+	}
+
+	/**
+	 * Hint for hives indexing their permissions. Returns true if this permission only implies
+	 * permissions whose name starts with the name of this permission, this allows the hive to look
+	 * up this permission by name instead of checking it against every permission. By default false.
+	 * 
+	 * @return true if this permission only implies permissions whose name starts with the name of
+	 *         this permission, false otherwise.
+	 * @see #implies(Permission)
+	 */
+	public boolean impliesNamePrefixesOnly()
+	{
+		return false;
+	}
 }
@@ -108,6 +108,52 @@ public class ActionPermission extends Permission
 		return false;
 	}
 
+	/**
+	 * Only other {@link ActionPermission}s are implied, unless a subclass overrides
+	 * {@link #implies(Permission)}.
+	 * 
+	 * @see Permission#getImpliedType()
+	 */
+	@Override
+	public Class<? extends Permission> getImpliedType()
+	{
+		if (isImpliesInherited())
+			return ActionPermission.class;
+		return super.getImpliedType();
+	}
+
+	/**
+	 * Only permissions whose name starts with the name of this permission and whose actions are
+	 * implied by the actions of this permission are implied, unless a subclass overrides
+	 * {@link #implies(Permission)}. Subclasses overriding implies may return true as long as they
+	 * honor the same contract, hives use it to skip permissions with insufficient actions as well.
+	 * 
+	 * @see Permission#impliesNamePrefixesOnly()
+	 */
+	@Override
+	public boolean impliesNamePrefixesOnly()
+	{
+		return isImpliesInherited();
+	}
+
+	/**
+	 * Checks if this class uses the implies method of ActionPermission.
+	 * 
+	 * @return true if {@link #implies(Permission)} is not overridden by a subclass
+	 */
+	private boolean isImpliesInherited()
+	{
+		try
+		{
+			return ActionPermission.class.equals(getClass().getMethod("implies", Permission.class)
+				.getDeclaringClass());
+		}
+		catch (NoSuchMethodException e)
+		{
+			return false;
+		}
+	}
+
 	/**
 	 * ActionPermissions are only equal if they have the same class, name and actions.
 	 * 
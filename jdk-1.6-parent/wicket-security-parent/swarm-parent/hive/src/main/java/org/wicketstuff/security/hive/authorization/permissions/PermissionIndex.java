@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.security.hive.authorization.permissions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.wicketstuff.security.actions.WaspAction;
+import org.wicketstuff.security.hive.BasicHive;
+import org.wicketstuff.security.hive.authorization.Permission;
+
+/**
+ * Index of the permissions in a hive, used to find the permissions that might imply a permission
+ * without checking every permission in the hive. Permissions are grouped by the type of
+ * permissions they imply (see {@link Permission#getImpliedType()}). Within a group, permissions
+ * that only imply names starting with their own name (see
+ * {@link Permission#impliesNamePrefixesOnly()}) are stored in a trie on their name, so only the
+ * permissions whose name is a prefix of the name of the checked permission are found. Each node of
+ * the trie also keeps the combined actions of its {@link ActionPermission}s, when these do not
+ * imply the actions of the checked permission none of them is returned. All other permissions of
+ * the group are always returned.
+ *
+ * The index is immutable, it is built by {@link BasicHive#lock()}. It lives in this package to
+ * read the actions of {@link ActionPermission}s.
+ */
+public final class PermissionIndex
+{
+	private final Group[] groups;
+
+	private final int size;
+
+	/**
+	 * Construct.
+	 *
+	 * @param permissions
+	 *            the permissions to index
+	 */
+	public PermissionIndex(Iterator<Permission> permissions)
+	{
+		Map<Class<? extends Permission>, Group> groupsByType = new LinkedHashMap<Class<? extends Permission>, Group>();
+		int count = 0;
+		while (permissions.hasNext())
+		{
+			Permission permission = permissions.next();
+			Class<? extends Permission> type = permission.getImpliedType();
+			Group group = groupsByType.get(type);
+			if (group == null)
+			{
+				group = new Group(type);
+				groupsByType.put(type, group);
+			}
+			group.add(permission);
+			count++;
+		}
+		groups = groupsByType.values().toArray(new Group[groupsByType.size()]);
+		size = count;
+	}
+
+	/**
+	 * Finds the permissions that might imply the specified permission. Permissions not returned by
+	 * this method certainly do not imply the permission, the returned permissions still need to be
+	 * checked.
+	 *
+	 * @param permission
+	 *            the permission to check
+	 * @return the candidates, never null
+	 */
+	public List<Permission> getCandidates(Permission permission)
+	{
+		List<Permission> candidates = new ArrayList<Permission>();
+		for (Group group : groups)
+		{
+			if (group.type.isInstance(permission))
+				group.collect(permission, candidates);
+		}
+		return candidates;
+	}
+
+	/**
+	 *
+	 * @return the number of indexed permissions
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * The actions of a permission.
+	 *
+	 * @param permission
+	 * @return the actions of an {@link ActionPermission}, null for any other permission
+	 */
+	private static WaspAction getActions(Permission permission)
+	{
+		if (permission instanceof ActionPermission)
+			return ((ActionPermission)permission).getAction();
+		return null;
+	}
+
+	/**
+	 * Permissions implying the same type of permissions.
+	 */
+	private static final class Group
+	{
+		private final Class<? extends Permission> type;
+
+		/**
+		 * Root of the trie for permissions implying only names starting with their own name.
+		 */
+		private final Node root = new Node("");
+
+		/**
+		 * Permissions that can not be looked up by name.
+		 */
+		private final List<Permission> unscoped = new ArrayList<Permission>();
+
+		Group(Class<? extends Permission> type)
+		{
+			this.type = type;
+		}
+
+		void add(Permission permission)
+		{
+			if (permission.impliesNamePrefixesOnly() && permission.getName() != null)
+				root.add(permission.getName(), permission);
+			else
+				unscoped.add(permission);
+		}
+
+		void collect(Permission permission, List<Permission> candidates)
+		{
+			candidates.addAll(unscoped);
+			if (permission.getName() != null)
+				root.collect(permission.getName(), getActions(permission), candidates);
+		}
+	}
+
+	/**
+	 * Node of a radix trie, each node stores the permissions whose name is the concatenation of the
+	 * labels from the root to that node.
+	 */
+	private static final class Node
+	{
+		private String label;
+
+		private Map<Character, Node> children;
+
+		private List<Permission> permissions;
+
+		/**
+		 * The combined actions of the permissions of this node, null if they are unknown.
+		 */
+		private WaspAction actions;
+
+		Node(String label)
+		{
+			this.label = label;
+		}
+
+		/**
+		 * Adds a permission to the trie starting at this (root) node.
+		 *
+		 * @param name
+		 * @param permission
+		 */
+		void add(String name, Permission permission)
+		{
+			Node node = this;
+			int index = 0;
+			while (index < name.length())
+			{
+				Character key = Character.valueOf(name.charAt(index));
+				Node child = node.children == null ? null : node.children.get(key);
+				if (child == null)
+				{
+					child = new Node(name.substring(index));
+					node.addChild(child);
+					node = child;
+					break;
+				}
+				int common = 1;
+				while (common < child.label.length() && index + common < name.length() &&
+					child.label.charAt(common) == name.charAt(index + common))
+					common++;
+				if (common < child.label.length())
+				{
+					// split the child at the end of the common part
+					Node split = new Node(child.label.substring(0, common));
+					child.label = child.label.substring(common);
+					split.addChild(child);
+					node.children.put(key, split);
+					child = split;
+				}
+				node = child;
+				index += common;
+			}
+			node.addPermission(permission);
+		}
+
+		/**
+		 * Collects the permissions of the nodes on the path of the name, starting at this (root)
+		 * node.
+		 *
+		 * @param name
+		 * @param actions
+		 *            optional actions the permissions need to imply
+		 * @param candidates
+		 */
+		void collect(String name, WaspAction actions, List<Permission> candidates)
+		{
+			Node node = this;
+			int index = 0;
+			while (true)
+			{
+				if (node.permissions != null &&
+					(actions == null || node.actions == null || node.actions.implies(actions)))
+					candidates.addAll(node.permissions);
+				if (index == name.length() || node.children == null)
+					return;
+				node = node.children.get(Character.valueOf(name.charAt(index)));
+				if (node == null || !name.startsWith(node.label, index))
+					return;
+				index += node.label.length();
+			}
+		}
+
+		private void addChild(Node child)
+		{
+			if (children == null)
+				children = new HashMap<Character, Node>(4);
+			children.put(Character.valueOf(child.label.charAt(0)), child);
+		}
+
+		private void addPermission(Permission permission)
+		{
+			WaspAction permissionActions = getActions(permission);
+			if (permissions == null)
+			{
+				permissions = new ArrayList<Permission>(2);
+				actions = permissionActions;
+			}
+			else if (actions != null)
+			{
+				if (permissionActions == null ||
+					actions.getActionFactory() != permissionActions.getActionFactory())
+					actions = null;
+				else
+				{
+					try
+					{
+						actions = actions.add(permissionActions);
+					}
+					catch (IllegalArgumentException e)
+					{
+						// actions that can not be combined
+						actions = null;
+					}
+				}
+			}
+			permissions.add(permission);
+		}
+	}
+}
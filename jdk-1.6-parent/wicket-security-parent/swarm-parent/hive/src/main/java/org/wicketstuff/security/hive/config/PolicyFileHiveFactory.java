@@ -17,19 +17,24 @@
 package org.wicketstuff.security.hive.config;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.lang.reflect.Constructor;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.TreeMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +47,7 @@ import org.wicketstuff.security.hive.authorization.EverybodyPrincipal;
 import org.wicketstuff.security.hive.authorization.Permission;
 import org.wicketstuff.security.hive.authorization.Principal;
 import org.wicketstuff.security.hive.authorization.permissions.AllPermissions;
+import org.wicketstuff.security.hive.config.PolicyTokenizer.Statement;
 
 /**
  * A factory to produce Hive's based on policy files. This factory is designed to make a best effort
@@ -71,8 +77,14 @@ import org.wicketstuff.security.hive.authorization.permissions.AllPermissions;
  * <li>aliases may be chained but not nested, so ${foo}${bar} is valid but not ${foo${bar}}</li>
  * <li>aliases are not allowed in actions or reserved words (grant, permission, principal)</li>
  * <li>aliases are case sensitive</li>
+ * </ul>
  * By default the following aliases is available: AllPermissions for
- * org.wicketstuff.security.hive.authorization.permissions.AllPermissions
+ * org.wicketstuff.security.hive.authorization.permissions.AllPermissions<br>
+ * Each line is tokenized in a single pass, classes and constructors are looked up once per
+ * {@link #createHive()}. When a snapshot file is set the compiled policy is stored in that file, a
+ * next {@link #createHive()} with unchanged policy files and aliases builds the hive from the
+ * snapshot without parsing the files. Note that the notify and skip methods are not called when
+ * the hive is built from a snapshot.
  * 
  * 
  * @author marrink
@@ -88,12 +100,6 @@ public class PolicyFileHiveFactory implements HiveFactory
 
 	private Set<Reader> inputReaders;
 
-	private static final Pattern principalPattern = Pattern.compile("\\s*(?:grant(?:\\s+principal\\s+([^\"]+)\\s+\"([^\"]+)\")?){1}\\s*");
-
-	private static final Pattern permissionPattern = Pattern.compile("\\s*(?:permission\\s+([^\",]+?)\\s+(?:(?:\"([^\"]+)\"){1}?(?:\\s*,\\s*\"([^\"]*)\")?)?\\s*;){1}\\s*");
-
-	private static final Pattern aliasPattern = Pattern.compile("(\\$\\{[^\"\\{\\}\\$]+?\\})+?");
-
 	private static final Class<?>[][] constructorArgs = new Class[][] {
 			new Class[] { String.class, WaspAction.class },
 			new Class[] { String.class, String.class },
@@ -107,8 +113,37 @@ public class PolicyFileHiveFactory implements HiveFactory
 
 	private int currentLineNr;
 
+	/**
+	 * True while the hive is built from the snapshot. Entries that can not be created only
+	 * invalidate the snapshot, the skip hooks are left to the parsing of the policy files.
+	 */
+	private boolean loadingSnapshot;
+
 	private final ActionFactory actionFactory;
 
+	private File snapshotFile;
+
+	/**
+	 * The snapshot being compiled, null if no snapshot is written.
+	 */
+	private PolicySnapshot snapshot;
+
+	/**
+	 * The number of sources completely read.
+	 */
+	private int compiledSources;
+
+	/**
+	 * Classes or {@link ClassNotFoundException}s by name.
+	 */
+	private final Map<String, Object> classes = new HashMap<String, Object>();
+
+	private final Map<Class<?>, Constructor<? extends Permission>> permissionConstructors = new HashMap<Class<?>, Constructor<? extends Permission>>();
+
+	private final Map<Class<?>, Constructor<? extends Permission>> actionlessPermissionConstructors = new HashMap<Class<?>, Constructor<? extends Permission>>();
+
+	private final Map<Class<?>, Constructor<? extends Principal>> principalConstructors = new HashMap<Class<?>, Constructor<? extends Principal>>();
+
 	/**
 	 * 
 	 * Constructs a new factory that builds a Hive out of one (1) or more policy files. It registers
@@ -255,6 +290,29 @@ public class PolicyFileHiveFactory implements HiveFactory
 		return currentLineNr;
 	}
 
+	/**
+	 * The file holding the snapshot of the compiled policy files.
+	 * 
+	 * @return the snapshot file or null if no snapshot is used
+	 */
+	public final File getSnapshotFile()
+	{
+		return snapshotFile;
+	}
+
+	/**
+	 * Sets the file holding the snapshot of the compiled policy files. The snapshot is only used
+	 * if all policies are added as {@link URL}s, it is written when the policy files are parsed and
+	 * is replaced when they or the aliases change. Default is no snapshot.
+	 * 
+	 * @param snapshotFile
+	 *            the snapshot file or null to not use a snapshot
+	 */
+	public final void setSnapshotFile(File snapshotFile)
+	{
+		this.snapshotFile = snapshotFile;
+	}
+
 	/**
 	 * Checks raw input for aliases and then replaces those with the registered values. Note that if
 	 * the encountered alias is not allowed it is left unresolved and will probably later in the
@@ -266,27 +324,27 @@ public class PolicyFileHiveFactory implements HiveFactory
 	 */
 	private String resolveAliases(String raw)
 	{
-		Matcher m = aliasPattern.matcher(raw);
-		StringBuffer buff = new StringBuffer(raw.length() + 30); // guess
+		if (raw == null)
+			return null;
+		int start = raw.indexOf("${");
+		if (start < 0)
+			return raw;
+		StringBuilder buff = new StringBuilder(raw.length() + 30); // guess
 		int index = 0;
-		while (m.find())
+		while (start >= 0)
 		{
-			if (m.start() > index)
-			{
-				buff.append(raw.substring(index, m.start()));
-				replaceAlias(raw, m, buff);
-			}
-			else if (m.start() == index)
+			int end = aliasEnd(raw, start + 2);
+			if (end < 0)
 			{
-				replaceAlias(raw, m, buff);
+				start = raw.indexOf("${", start + 1);
+				continue;
 			}
-			else
-				// should not happen
-				throw new IllegalStateException("These aliases are not supported: " + raw);
-			index = m.end();
+			buff.append(raw, index, start);
+			buff.append(resolveAlias(raw.substring(start + 2, end)));
+			index = end + 1;
+			start = raw.indexOf("${", index);
 		}
-		if (index < raw.length())
-			buff.append(raw.substring(index, raw.length()));
+		buff.append(raw, index, raw.length());
 		String temp = buff.toString();
 		if (temp.indexOf("${") >= 0)
 			throw new IllegalStateException("Nesting aliases is not supported: " + raw);
@@ -294,18 +352,37 @@ public class PolicyFileHiveFactory implements HiveFactory
 	}
 
 	/**
-	 * Replaces the alias with the actual value.
+	 * Finds the closing } of an alias. The alias must be at least 1 character long and must not
+	 * contain any of the characters "${
 	 * 
 	 * @param raw
-	 *            the raw input string
-	 * @param m
-	 *            the matcher holding the alias
-	 * @param buff
-	 *            output for the value
+	 *            the raw input
+	 * @param from
+	 *            index of the first character of the alias
+	 * @return the index of the closing }, or -1 if there is no valid alias
 	 */
-	private void replaceAlias(String raw, Matcher m, StringBuffer buff)
+	private static int aliasEnd(String raw, int from)
+	{
+		for (int i = from; i < raw.length(); i++)
+		{
+			char c = raw.charAt(i);
+			if (c == '}')
+				return i > from ? i : -1;
+			if (c == '"' || c == '{' || c == '$')
+				return -1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Looks up the actual value of an alias.
+	 * 
+	 * @param key
+	 *            the part between the ${}
+	 * @return the value, or the key if the alias does not exist
+	 */
+	private String resolveAlias(String key)
 	{
-		String key = raw.substring(m.start() + 2, m.end() - 1);
 		String alias = getAlias(key);
 		if (alias == null) // will probably be skipped later on
 		{
@@ -315,8 +392,7 @@ public class PolicyFileHiveFactory implements HiveFactory
 		}
 		else if (log.isDebugEnabled())
 			log.debug("resolved alias: " + key + " to " + alias);
-		buff.ensureCapacity(buff.length() + alias.length());
-		buff.append(alias);
+		return alias;
 	}
 
 	/**
@@ -334,58 +410,224 @@ public class PolicyFileHiveFactory implements HiveFactory
 	}
 
 	/**
-	 * This method is not thread safe.
+	 * This method is not thread safe. If a snapshot file is set and the hive is built from policy
+	 * files only, the snapshot is used instead of parsing the files when they did not change since
+	 * the snapshot was written. Otherwise the files are parsed and a new snapshot is written.
 	 * 
 	 * @see org.wicketstuff.security.hive.config.HiveFactory#createHive()
+	 * @see #setSnapshotFile(File)
 	 */
 	public final Hive createHive()
 	{
-		BasicHive hive = constructHive();
-		boolean readAnything = false;
-		for (URL file : policyFiles)
+		try
 		{
-			readAnything = true;
-			try
+			String snapshotKey = null;
+			if (snapshotFile != null && inputStreams.isEmpty() && inputReaders.isEmpty() &&
+				!policyFiles.isEmpty())
 			{
-				readPolicyFile(file, hive);
+				snapshotKey = getSnapshotKey();
+				if (snapshotKey != null)
+				{
+					BasicHive hive = loadSnapshot(snapshotKey);
+					if (hive != null)
+					{
+						hive.lock();
+						return hive;
+					}
+					snapshot = new PolicySnapshot();
+					compiledSources = 0;
+				}
 			}
-			catch (IOException e)
+			BasicHive hive = constructHive();
+			boolean readAnything = false;
+			for (URL file : policyFiles)
 			{
-				log.error("Could not read from " + file, e);
+				readAnything = true;
+				try
+				{
+					readPolicyFile(file, hive);
+				}
+				catch (IOException e)
+				{
+					log.error("Could not read from " + file, e);
+				}
 			}
-		}
-		for (InputStream stream : inputStreams)
-		{
-			readAnything = true;
-			try
+			for (InputStream stream : inputStreams)
 			{
-				readInputStream(stream, hive);
+				readAnything = true;
+				try
+				{
+					readInputStream(stream, hive);
+				}
+				catch (IOException e)
+				{
+					log.error("Could not read from stream", e);
+				}
 			}
-			catch (IOException e)
+			inputStreams.clear();
+			for (Reader stream : inputReaders)
 			{
-				log.error("Could not read from stream", e);
+				readAnything = true;
+				try
+				{
+					readInputReader(stream, hive);
+				}
+				catch (IOException e)
+				{
+					log.error("Could not read from reader", e);
+				}
 			}
+			inputReaders.clear();
+			if (!readAnything)
+				log.warn("No policyFiles or inputstreams were added to the factory!");
+			// only files completely read by this factory end up in the snapshot
+			if (snapshot != null && compiledSources == policyFiles.size())
+				writeSnapshot(snapshotKey);
+			hive.lock();
+			return hive;
 		}
-		inputStreams.clear();
-		for (Reader stream : inputReaders)
+		finally
 		{
-			readAnything = true;
-			try
+			snapshot = null;
+			classes.clear();
+			permissionConstructors.clear();
+			actionlessPermissionConstructors.clear();
+			principalConstructors.clear();
+		}
+	}
+
+	/**
+	 * Computes the key of the current policy files: a hash of their content and the aliases.
+	 * 
+	 * @return the key or null if one of the files could not be read
+	 */
+	private String getSnapshotKey()
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			List<URL> files = new ArrayList<URL>(policyFiles);
+			Collections.sort(files, new Comparator<URL>()
+			{
+				public int compare(URL o1, URL o2)
+				{
+					return o1.toExternalForm().compareTo(o2.toExternalForm());
+				}
+			});
+			byte[] buffer = new byte[4096];
+			for (URL file : files)
+			{
+				digest.update(file.toExternalForm().getBytes("UTF-8"));
+				InputStream stream = file.openStream();
+				try
+				{
+					int read = stream.read(buffer);
+					while (read >= 0)
+					{
+						digest.update(buffer, 0, read);
+						read = stream.read(buffer);
+					}
+				}
+				finally
+				{
+					stream.close();
+				}
+			}
+			for (Map.Entry<String, String> alias : new TreeMap<String, String>(aliases).entrySet())
+				digest.update((alias.getKey() + "=" + alias.getValue() + "\n").getBytes("UTF-8"));
+			StringBuilder key = new StringBuilder(40);
+			for (byte b : digest.digest())
 			{
-				readInputReader(stream, hive);
+				key.append(Character.forDigit((b >> 4) & 0xF, 16));
+				key.append(Character.forDigit(b & 0xF, 16));
 			}
-			catch (IOException e)
+			return key.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			log.warn("Unable to use snapshot " + snapshotFile, e);
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to use snapshot " + snapshotFile, e);
+		}
+		return null;
+	}
+
+	/**
+	 * Builds a hive from the snapshot file.
+	 * 
+	 * @param snapshotKey
+	 *            the key of the current policy files
+	 * @return the hive, or null if there is no valid snapshot for the current policy files
+	 */
+	private BasicHive loadSnapshot(String snapshotKey)
+	{
+		PolicySnapshot loaded;
+		try
+		{
+			loaded = PolicySnapshot.read(snapshotFile, snapshotKey);
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to read snapshot " + snapshotFile, e);
+			return null;
+		}
+		if (loaded == null)
+			return null;
+		currentLineNr = 0;
+		loadingSnapshot = true;
+		BasicHive hive = constructHive();
+		try
+		{
+			for (PolicySnapshot.Grant grant : loaded.getGrants())
 			{
-				log.error("Could not read from reader", e);
+				Principal principal;
+				if (grant.principal.className == null)
+					principal = new EverybodyPrincipal();
+				else
+					principal = createPrincipal(grant.principal.className, grant.principal.name);
+				if (principal == null)
+					return null;
+				Set<Permission> permissions = new HashSet<Permission>();
+				for (Statement statement : grant.permissions)
+				{
+					Permission permission = createPermission(statement.className, statement.name,
+						statement.actions);
+					if (permission == null)
+						return null;
+					permissions.add(permission);
+				}
+				hive.addPrincipal(principal, permissions);
 			}
 		}
-		inputReaders.clear();
-		if (!readAnything)
-			log.warn("No policyFiles or inputstreams were added to the factory!");
-		hive.lock();
+		finally
+		{
+			loadingSnapshot = false;
+		}
+		if (log.isDebugEnabled())
+			log.debug("Loaded hive from snapshot " + snapshotFile);
 		return hive;
 	}
 
+	/**
+	 * Writes the snapshot of the policy files just read.
+	 * 
+	 * @param snapshotKey
+	 *            the key of the policy files
+	 */
+	private void writeSnapshot(String snapshotKey)
+	{
+		try
+		{
+			snapshot.write(snapshotFile, snapshotKey);
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to write snapshot " + snapshotFile, e);
+		}
+	}
+
 	/**
 	 * Reads principals and permissions from a file, found items are added to the hive.
 	 * 
@@ -568,6 +810,9 @@ public class PolicyFileHiveFactory implements HiveFactory
 		boolean inPrincipalBlock = false;
 		Principal principal = null;
 		Set<Permission> permissions = null;
+		// the resolved statements, for the snapshot
+		Statement compiledPrincipal = null;
+		List<Statement> compiledPermissions = null;
 		currentLineNr = 0;
 		String line = reader.readLine();
 		while (line != null)
@@ -582,13 +827,15 @@ public class PolicyFileHiveFactory implements HiveFactory
 					if (permissions != null || principal == null)
 						skipIllegalPrincipal(currentLineNr, principal, permissions);
 					permissions = new HashSet<Permission>();
+					compiledPermissions = new ArrayList<Statement>();
 				}
 				boolean endsWith = trim.endsWith("};");
 				if (endsWith)
 				{
 					inPrincipalBlock = false;
 					if (permissions != null && permissions.size() > 0)
-						hive.addPrincipal(principal, permissions);
+						addPrincipal(hive, principal, permissions, compiledPrincipal,
+							compiledPermissions);
 					else
 						skipEmptyPrincipal(currentLineNr, principal);
 
@@ -597,52 +844,31 @@ public class PolicyFileHiveFactory implements HiveFactory
 				}
 				if (!(startsWith || endsWith))
 				{
-					Matcher m = permissionPattern.matcher(line);
-					if (m.matches())
+					Statement statement = PolicyTokenizer.parsePermission(line);
+					if (statement != null)
 					{
-						String classname = m.group(1);
-						if (classname == null)
+						String classname = resolveAliases(statement.className);
+						String name = resolveAliases(statement.name);
+						Permission temp = createPermission(classname, name, statement.actions);
+						if (temp == null)
 						{
-							skipPermission(currentLineNr, null);
 							line = reader.readLine();
 							continue;
 						}
-						try
-						{
-							Class<?> permissionClass = Class.forName(resolveAliases(classname));
-							if (!Permission.class.isAssignableFrom(permissionClass))
-							{
-								skipPermission(currentLineNr, permissionClass);
-								line = reader.readLine();
-								continue;
-							}
-							String name = resolveAliases(m.group(2));
-							String actions = m.group(3);
-							Permission temp = createPermission(
-								permissionClass.asSubclass(Permission.class), name, actions);
-							if (temp == null)
-							{
-								line = reader.readLine();
-								continue;
-							}
-							if (permissions == null)
-							{
-								skipIllegalPermission(currentLineNr, principal, temp);
-								line = reader.readLine();
-								continue;
-							}
-							if (!permissions.add(temp))
-								skipPermission(currentLineNr, principal, temp);
-							else
-								notifyPermission(currentLineNr, principal, temp);
-
-						}
-						catch (ClassNotFoundException e)
+						if (permissions == null)
 						{
-							skipPermission(currentLineNr, classname, e);
+							skipIllegalPermission(currentLineNr, principal, temp);
 							line = reader.readLine();
 							continue;
 						}
+						if (!permissions.add(temp))
+							skipPermission(currentLineNr, principal, temp);
+						else
+						{
+							compiledPermissions.add(new Statement(classname, name,
+								statement.actions));
+							notifyPermission(currentLineNr, principal, temp);
+						}
 					}
 					else
 					{
@@ -653,63 +879,25 @@ public class PolicyFileHiveFactory implements HiveFactory
 			}
 			else
 			{
-				Matcher m = principalPattern.matcher(line);
-				if (m.matches())
+				Statement statement = PolicyTokenizer.parseGrant(line);
+				if (statement != null)
 				{
-					String classname = m.group(1);
-					if (classname == null)
+					if (statement.className == null)
+					{
 						principal = new EverybodyPrincipal();
+						compiledPrincipal = statement;
+					}
 					else
 					{
-						try
-						{
-							Class<?> readPrincipalClass = Class.forName(resolveAliases(classname));
-							if (!Principal.class.isAssignableFrom(readPrincipalClass))
-							{
-								skipPrincipalClass(currentLineNr, readPrincipalClass);
-								line = reader.readLine();
-								continue;
-							}
-							Class<? extends Principal> principalClass = readPrincipalClass.asSubclass(Principal.class);
-							Constructor<? extends Principal> constructor = null;
-							try
-							{
-								constructor = principalClass.getConstructor(constructorArgs[constructorArgs.length - 1]);
-							}
-							catch (SecurityException e)
-							{
-								log.error(
-									"No valid constructor found for " + principalClass.getName(), e);
-							}
-							catch (NoSuchMethodException e)
-							{
-								log.error(
-									"No valid constructor found for " + principalClass.getName(), e);
-							}
-							if (constructor == null)
-							{
-								skipPrincipal(currentLineNr, principalClass);
-								line = reader.readLine();
-								continue;
-							}
-							try
-							{
-								principal = constructor.newInstance(new Object[] { resolveAliases(m.group(2)) });
-							}
-							catch (Exception e)
-							{
-								skipPrincipal(currentLineNr, principalClass, e);
-								line = reader.readLine();
-								continue;
-							}
-
-						}
-						catch (ClassNotFoundException e)
+						String classname = resolveAliases(statement.className);
+						String name = resolveAliases(statement.name);
+						principal = createPrincipal(classname, name);
+						if (principal == null)
 						{
-							skipPrincipalClass(currentLineNr, classname, e);
 							line = reader.readLine();
 							continue;
 						}
+						compiledPrincipal = new Statement(classname, name, null);
 					}
 					notifyOfPrincipal(currentLineNr, principal);
 					inPrincipalBlock = true;
@@ -727,13 +915,168 @@ public class PolicyFileHiveFactory implements HiveFactory
 			warnUnclosedPrincipalBlock(principal, currentLineNr);
 			inPrincipalBlock = false;
 			if (permissions != null && permissions.size() > 0)
-				hive.addPrincipal(principal, permissions);
+				addPrincipal(hive, principal, permissions, compiledPrincipal, compiledPermissions);
 			else
 				skipEmptyPrincipal(currentLineNr, principal);
 
 			permissions = null;
 			principal = null;
 		}
+		compiledSources++;
+	}
+
+	/**
+	 * Adds a principal to the hive and records it in the snapshot being compiled.
+	 * 
+	 * @param hive
+	 * @param principal
+	 * @param permissions
+	 * @param compiledPrincipal
+	 *            the resolved principal statement
+	 * @param compiledPermissions
+	 *            the resolved permission statements
+	 */
+	private void addPrincipal(BasicHive hive, Principal principal, Set<Permission> permissions,
+		Statement compiledPrincipal, List<Statement> compiledPermissions)
+	{
+		hive.addPrincipal(principal, permissions);
+		if (snapshot != null)
+			snapshot.add(compiledPrincipal, compiledPermissions);
+	}
+
+	/**
+	 * Loads a class, remembering the outcome for the rest of {@link #createHive()}.
+	 * 
+	 * @param classname
+	 * @return the class
+	 * @throws ClassNotFoundException
+	 */
+	private Class<?> loadClass(String classname) throws ClassNotFoundException
+	{
+		Object cached = classes.get(classname);
+		if (cached == null)
+		{
+			try
+			{
+				cached = Class.forName(classname);
+			}
+			catch (ClassNotFoundException e)
+			{
+				cached = e;
+			}
+			classes.put(classname, cached);
+		}
+		if (cached instanceof ClassNotFoundException)
+			throw (ClassNotFoundException)cached;
+		return (Class<?>)cached;
+	}
+
+	/**
+	 * Tries to create a principal.
+	 * 
+	 * @param classname
+	 *            the resolved class name
+	 * @param name
+	 *            the resolved name
+	 * @return the principal or null if it could not be created.
+	 */
+	private Principal createPrincipal(String classname, String name)
+	{
+		Class<?> readPrincipalClass;
+		try
+		{
+			readPrincipalClass = loadClass(classname);
+		}
+		catch (ClassNotFoundException e)
+		{
+			if (!loadingSnapshot)
+				skipPrincipalClass(currentLineNr, classname, e);
+			return null;
+		}
+		if (!Principal.class.isAssignableFrom(readPrincipalClass))
+		{
+			if (!loadingSnapshot)
+				skipPrincipalClass(currentLineNr, readPrincipalClass);
+			return null;
+		}
+		Class<? extends Principal> principalClass = readPrincipalClass.asSubclass(Principal.class);
+		Constructor<? extends Principal> constructor = findConstructor(principalClass);
+		if (constructor == null)
+		{
+			if (!loadingSnapshot)
+				skipPrincipal(currentLineNr, principalClass);
+			return null;
+		}
+		try
+		{
+			return constructor.newInstance(new Object[] { name });
+		}
+		catch (Exception e)
+		{
+			if (!loadingSnapshot)
+				skipPrincipal(currentLineNr, principalClass, e);
+		}
+		return null;
+	}
+
+	/**
+	 * Tries to find the constructor with a single {@link String} argument of a {@link Principal}.
+	 * 
+	 * @param principalClass
+	 * @return the constructor or null if there is none.
+	 */
+	private Constructor<? extends Principal> findConstructor(
+		Class<? extends Principal> principalClass)
+	{
+		if (principalConstructors.containsKey(principalClass))
+			return principalConstructors.get(principalClass);
+		Constructor<? extends Principal> constructor = null;
+		try
+		{
+			constructor = principalClass.getConstructor(constructorArgs[constructorArgs.length - 1]);
+		}
+		catch (SecurityException e)
+		{
+			log.error("No valid constructor found for " + principalClass.getName(), e);
+		}
+		catch (NoSuchMethodException e)
+		{
+			log.error("No valid constructor found for " + principalClass.getName(), e);
+		}
+		principalConstructors.put(principalClass, constructor);
+		return constructor;
+	}
+
+	/**
+	 * Tries to create a permission.
+	 * 
+	 * @param classname
+	 *            the resolved class name
+	 * @param name
+	 *            the resolved name (optional)
+	 * @param actions
+	 *            the actions (optional)
+	 * @return the permission or null if it could not be created.
+	 */
+	private Permission createPermission(String classname, String name, String actions)
+	{
+		try
+		{
+			Class<?> permissionClass = loadClass(classname);
+			if (!Permission.class.isAssignableFrom(permissionClass))
+			{
+				if (!loadingSnapshot)
+					skipPermission(currentLineNr, permissionClass);
+				return null;
+			}
+			return createPermission(permissionClass.asSubclass(Permission.class), name, actions);
+		}
+		catch (ClassNotFoundException e)
+		{
+			if (!loadingSnapshot)
+				skipPermission(currentLineNr, classname, e);
+			return null;
+		}
 	}
 
 	/**
@@ -751,7 +1094,8 @@ public class PolicyFileHiveFactory implements HiveFactory
 		Constructor<? extends Permission> constructor = findConstructor(permissionClass, actions);
 		if (constructor == null)
 		{
-			skipPermission(currentLineNr, permissionClass);
+			if (!loadingSnapshot)
+				skipPermission(currentLineNr, permissionClass);
 			return null;
 		}
 		Object[] argValues = null;
@@ -777,7 +1121,8 @@ public class PolicyFileHiveFactory implements HiveFactory
 		}
 		catch (Exception e)
 		{
-			skipPermission(currentLineNr, permissionClass, argValues, e);
+			if (!loadingSnapshot)
+				skipPermission(currentLineNr, permissionClass, argValues, e);
 
 		}
 		return null;
@@ -811,7 +1156,8 @@ public class PolicyFileHiveFactory implements HiveFactory
 	}
 
 	/**
-	 * Tries to find a constructor for a {@link Permission}.
+	 * Tries to find a constructor for a {@link Permission}. The outcome is remembered for the rest
+	 * of {@link #createHive()}.
 	 * 
 	 * @param permissionClass
 	 * @param actions
@@ -821,10 +1167,19 @@ public class PolicyFileHiveFactory implements HiveFactory
 	private Constructor<? extends Permission> findConstructor(
 		Class<? extends Permission> permissionClass, String actions)
 	{
+		Map<Class<?>, Constructor<? extends Permission>> constructors = permissionConstructors;
 		int index = 0;
 		if (actions == null)
+		{
+			constructors = actionlessPermissionConstructors;
 			index = 2;
-		return findConstructor(permissionClass, index);
+		}
+		// also remember classes without a suitable constructor
+		if (constructors.containsKey(permissionClass))
+			return constructors.get(permissionClass);
+		Constructor<? extends Permission> constructor = findConstructor(permissionClass, index);
+		constructors.put(permissionClass, constructor);
+		return constructor;
 	}
 
 	/**
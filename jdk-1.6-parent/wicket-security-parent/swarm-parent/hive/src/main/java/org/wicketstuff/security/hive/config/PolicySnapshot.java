@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.security.hive.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.wicketstuff.security.hive.config.PolicyTokenizer.Statement;
+
+/**
+ * The compiled content of policy files: every principal added to the hive with its permissions,
+ * with all aliases resolved. A snapshot is stored in a compact binary file together with a key
+ * identifying the policy files it was compiled from, so the files don't need to be parsed again as
+ * long as they do not change.
+ *
+ * The file starts with a header (magic number, format version and key), followed by a table of
+ * all distinct strings and the grants, referring to strings by their index in the table.
+ */
+final class PolicySnapshot
+{
+	private static final int MAGIC = 0x48495645;
+
+	private static final int VERSION = 1;
+
+	// the minimum number of bytes taken by a string, a grant and a permission in the file
+	private static final int MIN_STRING_SIZE = 2;
+
+	private static final int MIN_GRANT_SIZE = 16;
+
+	private static final int MIN_PERMISSION_SIZE = 12;
+
+	private final List<Grant> grants = new ArrayList<Grant>();
+
+	/**
+	 * Adds the permissions granted to a principal.
+	 *
+	 * @param principal
+	 *            the principal statement, with a null class for everybody
+	 * @param permissions
+	 *            the permission statements
+	 */
+	void add(Statement principal, List<Statement> permissions)
+	{
+		grants.add(new Grant(principal, permissions));
+	}
+
+	/**
+	 *
+	 * @return the grants in this snapshot
+	 */
+	List<Grant> getGrants()
+	{
+		return Collections.unmodifiableList(grants);
+	}
+
+	/**
+	 * Writes this snapshot to a file. The file is replaced only after the snapshot is completely
+	 * written.
+	 *
+	 * @param file
+	 * @param key
+	 *            the key of the policy files
+	 * @throws IOException
+	 */
+	void write(File file, String key) throws IOException
+	{
+		Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+		for (Grant grant : grants)
+		{
+			index(strings, grant.principal);
+			for (Statement permission : grant.permissions)
+				index(strings, permission);
+		}
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+			temp)));
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(key);
+			out.writeInt(strings.size());
+			for (String string : strings.keySet())
+				out.writeUTF(string);
+			out.writeInt(grants.size());
+			for (Grant grant : grants)
+			{
+				write(out, strings, grant.principal);
+				out.writeInt(grant.permissions.size());
+				for (Statement permission : grant.permissions)
+					write(out, strings, permission);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+		if (file.exists() && !file.delete())
+			throw new IOException("Unable to replace " + file);
+		if (!temp.renameTo(file))
+			throw new IOException("Unable to rename " + temp + " to " + file);
+	}
+
+	/**
+	 * Reads a snapshot from a file.
+	 *
+	 * @param file
+	 * @param key
+	 *            the key of the current policy files
+	 * @return the snapshot, or null if the file does not exist or was written for other policy
+	 *         files or by another version
+	 * @throws IOException
+	 *             if the file can not be read or is corrupt
+	 */
+	static PolicySnapshot read(File file, String key) throws IOException
+	{
+		if (!file.isFile())
+			return null;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try
+		{
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(in.readUTF()))
+				return null;
+			long length = file.length();
+			String[] strings = new String[readCount(in, length, MIN_STRING_SIZE)];
+			for (int i = 0; i < strings.length; i++)
+				strings[i] = in.readUTF();
+			PolicySnapshot snapshot = new PolicySnapshot();
+			int grantCount = readCount(in, length, MIN_GRANT_SIZE);
+			for (int i = 0; i < grantCount; i++)
+			{
+				Statement principal = read(in, strings);
+				int permissionCount = readCount(in, length, MIN_PERMISSION_SIZE);
+				List<Statement> permissions = new ArrayList<Statement>(permissionCount);
+				for (int j = 0; j < permissionCount; j++)
+					permissions.add(read(in, strings));
+				snapshot.add(principal, permissions);
+			}
+			return snapshot;
+		}
+		catch (RuntimeException e)
+		{
+			// invalid string indexes or counts
+			throw new IOException("Corrupt snapshot " + file, e);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads the number of following entries, which can not be more than fit in the file. A corrupt
+	 * count would otherwise allocate a huge array or list before the end of the file is reached.
+	 */
+	private static int readCount(DataInputStream in, long length, int minSize) throws IOException
+	{
+		int count = in.readInt();
+		if (count < 0 || (long)count * minSize > length)
+			throw new IOException("Invalid count " + count);
+		return count;
+	}
+
+	private static void index(Map<String, Integer> strings, Statement statement)
+	{
+		index(strings, statement.className);
+		index(strings, statement.name);
+		index(strings, statement.actions);
+	}
+
+	private static void index(Map<String, Integer> strings, String string)
+	{
+		if (string != null && !strings.containsKey(string))
+			strings.put(string, Integer.valueOf(strings.size()));
+	}
+
+	private static void write(DataOutputStream out, Map<String, Integer> strings,
+		Statement statement) throws IOException
+	{
+		write(out, strings, statement.className);
+		write(out, strings, statement.name);
+		write(out, strings, statement.actions);
+	}
+
+	private static void write(DataOutputStream out, Map<String, Integer> strings, String string)
+		throws IOException
+	{
+		out.writeInt(string == null ? -1 : strings.get(string).intValue());
+	}
+
+	private static Statement read(DataInputStream in, String[] strings) throws IOException
+	{
+		return new Statement(read(in.readInt(), strings), read(in.readInt(), strings), read(
+			in.readInt(), strings));
+	}
+
+	private static String read(int index, String[] strings)
+	{
+		return index < 0 ? null : strings[index];
+	}
+
+	/**
+	 * The permissions granted to a principal.
+	 */
+	static final class Grant
+	{
+		final Statement principal;
+
+		final List<Statement> permissions;
+
+		Grant(Statement principal, List<Statement> permissions)
+		{
+			this.principal = principal;
+			this.permissions = permissions;
+		}
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.security.hive.config;
+
+/**
+ * Tokenizer for the statements of a policy file, see {@link PolicyFileHiveFactory} for the format.
+ * Each line is scanned once, from left to right, without using regular expressions. Aliases are
+ * not resolved by the tokenizer.
+ */
+final class PolicyTokenizer
+{
+	private final String line;
+
+	private final int length;
+
+	private int pos;
+
+	private PolicyTokenizer(String line)
+	{
+		this.line = line;
+		length = line.length();
+	}
+
+	/**
+	 * Parses a grant statement: <code>grant[ principal &lt;principal class&gt; "name"]</code>.
+	 *
+	 * @param line
+	 *            the line to parse
+	 * @return the statement, with a null class and name if no principal is specified, or null if
+	 *         the line is not a grant statement
+	 */
+	static Statement parseGrant(String line)
+	{
+		PolicyTokenizer tokenizer = new PolicyTokenizer(line);
+		tokenizer.skipWhitespace();
+		if (!tokenizer.keyword("grant"))
+			return null;
+		boolean separated = tokenizer.skipWhitespace();
+		if (tokenizer.atEnd())
+			return new Statement(null, null, null);
+		if (!separated || !tokenizer.keyword("principal") || !tokenizer.skipWhitespace())
+			return null;
+		String className = tokenizer.className(line.indexOf('"', tokenizer.pos), false);
+		if (className == null)
+			return null;
+		String name = tokenizer.quoted();
+		if (name == null || name.length() == 0)
+			return null;
+		tokenizer.skipWhitespace();
+		if (!tokenizer.atEnd())
+			return null;
+		return new Statement(className, name, null);
+	}
+
+	/**
+	 * Parses a permission statement:
+	 * <code>permission &lt;permission class&gt; "name"[, "actions"];</code>.
+	 *
+	 * @param line
+	 *            the line to parse
+	 * @return the statement, or null if the line is not a permission statement
+	 */
+	static Statement parsePermission(String line)
+	{
+		PolicyTokenizer tokenizer = new PolicyTokenizer(line);
+		tokenizer.skipWhitespace();
+		if (!tokenizer.keyword("permission") || !tokenizer.skipWhitespace())
+			return null;
+		int quote = line.indexOf('"', tokenizer.pos);
+		if (quote < 0)
+		{
+			// just a class: permission <class> ;
+			int end = length(line);
+			if (end == 0 || line.charAt(end - 1) != ';')
+				return null;
+			String className = tokenizer.className(end - 1, true);
+			if (className == null)
+				return null;
+			return new Statement(className, null, null);
+		}
+		String className = tokenizer.className(quote, true);
+		if (className == null)
+			return null;
+		String name = tokenizer.quoted();
+		if (name == null || name.length() == 0)
+			return null;
+		String actions = null;
+		tokenizer.skipWhitespace();
+		if (tokenizer.next(','))
+		{
+			tokenizer.skipWhitespace();
+			actions = tokenizer.quoted();
+			if (actions == null)
+				return null;
+			tokenizer.skipWhitespace();
+		}
+		if (!tokenizer.next(';'))
+			return null;
+		tokenizer.skipWhitespace();
+		if (!tokenizer.atEnd())
+			return null;
+		return new Statement(className, name, actions);
+	}
+
+	/**
+	 * The length of the line without trailing whitespace.
+	 *
+	 * @param line
+	 * @return the length
+	 */
+	private static int length(String line)
+	{
+		int end = line.length();
+		while (end > 0 && isWhitespace(line.charAt(end - 1)))
+			end--;
+		return end;
+	}
+
+	/**
+	 * Same characters as \s in a regular expression.
+	 *
+	 * @param c
+	 * @return true if the character is whitespace
+	 */
+	private static boolean isWhitespace(char c)
+	{
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * Reads a class name up to the specified index. The class name must be followed by whitespace
+	 * and may not contain double quotes.
+	 *
+	 * @param end
+	 *            index of the first character after the class name and its trailing whitespace, a
+	 *            negative index if there is no such character
+	 * @param noCommas
+	 *            if true commas are not allowed
+	 * @return the class name or null if there is no valid class name
+	 */
+	private String className(int end, boolean noCommas)
+	{
+		if (end < 0)
+			return null;
+		int classEnd = end;
+		while (classEnd > pos && isWhitespace(line.charAt(classEnd - 1)))
+			classEnd--;
+		if (classEnd == end || classEnd == pos)
+			return null;
+		String className = line.substring(pos, classEnd);
+		if (className.indexOf('"') >= 0 || (noCommas && className.indexOf(',') >= 0))
+			return null;
+		pos = end;
+		return className;
+	}
+
+	/**
+	 * Reads a quoted string.
+	 *
+	 * @return the string between the quotes, or null if the next character is not a quote or the
+	 *         string is not terminated
+	 */
+	private String quoted()
+	{
+		if (!next('"'))
+			return null;
+		int quote = line.indexOf('"', pos);
+		if (quote < 0)
+			return null;
+		String result = line.substring(pos, quote);
+		pos = quote + 1;
+		return result;
+	}
+
+	/**
+	 * Skips whitespace.
+	 *
+	 * @return true if any whitespace was skipped
+	 */
+	private boolean skipWhitespace()
+	{
+		int start = pos;
+		while (pos < length && isWhitespace(line.charAt(pos)))
+			pos++;
+		return pos > start;
+	}
+
+	private boolean keyword(String keyword)
+	{
+		if (!line.startsWith(keyword, pos))
+			return false;
+		pos += keyword.length();
+		return true;
+	}
+
+	private boolean next(char c)
+	{
+		if (pos < length && line.charAt(pos) == c)
+		{
+			pos++;
+			return true;
+		}
+		return false;
+	}
+
+	private boolean atEnd()
+	{
+		return pos == length;
+	}
+
+	/**
+	 * A parsed statement.
+	 */
+	static final class Statement
+	{
+		/**
+		 * The class of the principal or permission, null for a grant without principal.
+		 */
+		final String className;
+
+		/**
+		 * The name of the principal or permission, optional for a permission.
+		 */
+		final String name;
+
+		/**
+		 * The actions of a permission, optional.
+		 */
+		final String actions;
+
+		Statement(String className, String name, String actions)
+		{
+			this.className = className;
+			this.name = name;
+			this.actions = actions;
+		}
+	}
+}
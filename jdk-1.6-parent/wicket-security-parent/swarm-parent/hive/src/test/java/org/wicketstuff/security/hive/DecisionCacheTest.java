@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.security.hive;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.wicketstuff.security.hive.authentication.BaseSubject;
+import org.wicketstuff.security.hive.authorization.SimplePrincipal;
+import org.wicketstuff.security.hive.authorization.TestPermission;
+
+/**
+ * Test the decision cache of the {@link SimpleCachingHive}.
+ */
+public class DecisionCacheTest extends TestCase
+{
+	/**
+	 *
+	 * Construct.
+	 *
+	 * @param name
+	 */
+	public DecisionCacheTest(String name)
+	{
+		super(name);
+	}
+
+	/**
+	 * Subjects with the same principals share their decisions.
+	 */
+	public void testSharedDecisions()
+	{
+		DecisionCache cache = new DecisionCache();
+		BaseSubject subject1 = newSubject("admin");
+		BaseSubject subject2 = newSubject("admin");
+		cache.put(subject1, new TestPermission("foo"), true);
+		assertEquals(Boolean.TRUE, cache.get(subject2, new TestPermission("foo")));
+		assertNull(cache.get(newSubject("user"), new TestPermission("foo")));
+		assertNull(cache.get(null, new TestPermission("foo")));
+		assertNull(cache.get(new BaseSubject(), new TestPermission("foo")));
+
+		// changing the principals of a subject changes its decisions
+		subject2.addPrincipal(new SimplePrincipal("user"));
+		assertNull(cache.get(subject2, new TestPermission("foo")));
+		assertEquals(1, cache.getHits());
+		assertEquals(4, cache.getMisses());
+		assertEquals(0.2, cache.getHitRate(), 0.0001);
+	}
+
+	/**
+	 * The cache never holds more than the maximum number of decisions.
+	 */
+	public void testEviction()
+	{
+		DecisionCache cache = new DecisionCache(32, 1, TimeUnit.MINUTES);
+		BaseSubject subject = newSubject("admin");
+		for (int i = 0; i < 1000; i++)
+			cache.put(subject, new TestPermission("foo" + i), true);
+		assertTrue(cache.size() <= 32);
+		assertEquals(1000 - cache.size(), cache.getEvictions());
+
+		cache = new DecisionCache(1, 1, TimeUnit.MINUTES);
+		cache.put(subject, new TestPermission("foo"), true);
+		cache.put(subject, new TestPermission("bar"), false);
+		assertNull(cache.get(subject, new TestPermission("foo")));
+		assertEquals(Boolean.FALSE, cache.get(subject, new TestPermission("bar")));
+	}
+
+	/**
+	 * Decisions expire after their time to live.
+	 */
+	public void testExpiration()
+	{
+		final long[] time = new long[1];
+		DecisionCache cache = new DecisionCache(10, 10, TimeUnit.NANOSECONDS)
+		{
+			@Override
+			protected long now()
+			{
+				return time[0];
+			}
+		};
+		BaseSubject subject = newSubject("admin");
+		cache.put(subject, new TestPermission("foo"), true);
+		time[0] = 9;
+		assertEquals(Boolean.TRUE, cache.get(subject, new TestPermission("foo")));
+		time[0] = 10;
+		assertNull(cache.get(subject, new TestPermission("foo")));
+		assertEquals(1, cache.getExpirations());
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * A hive only caches decisions once it is locked and discards the decisions of a shared cache
+	 * when it is locked.
+	 */
+	public void testHive()
+	{
+		DecisionCache cache = new DecisionCache();
+		SimpleCachingHive hive = new SimpleCachingHive(cache);
+		BaseSubject subject = newSubject("admin");
+		hive.addPermission(new SimplePrincipal("admin"), new TestPermission("foo"));
+		assertTrue(hive.hasPermission(subject, new TestPermission("foo")));
+		assertEquals(0, cache.size());
+
+		cache.put(subject, new TestPermission("bar"), true);
+		hive.lock();
+		assertEquals(0, cache.size());
+		assertFalse(hive.hasPermission(subject, new TestPermission("bar")));
+		assertFalse(hive.hasPermission(newSubject("admin"), new TestPermission("bar")));
+		assertTrue(hive.hasPermission(subject, new TestPermission("foo")));
+		assertEquals(2, cache.size());
+		assertEquals(1, hive.getDecisionCache().getHits());
+	}
+
+	private BaseSubject newSubject(String principal)
+	{
+		BaseSubject subject = new BaseSubject();
+		subject.addPrincipal(new SimplePrincipal(principal));
+		return subject;
+	}
+}
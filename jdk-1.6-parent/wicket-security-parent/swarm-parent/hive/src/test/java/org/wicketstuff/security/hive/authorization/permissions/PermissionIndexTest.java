@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wicketstuff.security.hive.authorization.permissions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.wicketstuff.security.actions.ActionFactory;
+import org.wicketstuff.security.actions.Actions;
+import org.wicketstuff.security.actions.WaspAction;
+import org.wicketstuff.security.hive.BasicHive;
+import org.wicketstuff.security.hive.authorization.EverybodyPrincipal;
+import org.wicketstuff.security.hive.authorization.Permission;
+import org.wicketstuff.security.hive.authorization.SimplePrincipal;
+import org.wicketstuff.security.hive.authorization.TestPermission;
+import org.wicketstuff.security.hive.config.TestActionFactory;
+
+/**
+ * Test the index used by a locked hive.
+ */
+public class PermissionIndexTest extends TestCase
+{
+	private static final String KEY = "INDEX_TEST";
+
+	private ActionFactory factory;
+
+	/**
+	 *
+	 * Construct.
+	 *
+	 * @param name
+	 */
+	public PermissionIndexTest(String name)
+	{
+		super(name);
+	}
+
+	@Override
+	protected void setUp()
+	{
+		factory = new TestActionFactory(KEY);
+	}
+
+	@Override
+	protected void tearDown()
+	{
+		Actions.unregisterActionFactory(KEY);
+	}
+
+	/**
+	 * Only permissions with a name that is a prefix of the checked name are candidates.
+	 */
+	public void testNamePrefixes()
+	{
+		List<Permission> permissions = new ArrayList<Permission>();
+		permissions.add(permission("a", "render"));
+		permissions.add(permission("ab", "render"));
+		permissions.add(permission("abc", "render"));
+		permissions.add(permission("abd", "render"));
+		permissions.add(permission("b", "render"));
+		PermissionIndex index = new PermissionIndex(permissions.iterator());
+		assertEquals(5, index.size());
+
+		List<Permission> candidates = index.getCandidates(permission("abd", "render"));
+		assertEquals(3, candidates.size());
+		assertTrue(candidates.contains(permission("a", "render")));
+		assertTrue(candidates.contains(permission("ab", "render")));
+		assertTrue(candidates.contains(permission("abd", "render")));
+
+		candidates = index.getCandidates(permission("abdef", "render"));
+		assertEquals(3, candidates.size());
+		assertTrue(index.getCandidates(permission("c", "render")).isEmpty());
+	}
+
+	/**
+	 * Permissions that do not have the required actions are not candidates.
+	 */
+	public void testActions()
+	{
+		List<Permission> permissions = new ArrayList<Permission>();
+		permissions.add(permission("org.Page", "inherit, render"));
+		permissions.add(permission("org.Page:panel", "enable"));
+		PermissionIndex index = new PermissionIndex(permissions.iterator());
+
+		List<Permission> candidates = index.getCandidates(permission("org.Page:panel:link",
+			"enable"));
+		assertEquals(1, candidates.size());
+		assertTrue(candidates.contains(permission("org.Page:panel", "enable")));
+		assertEquals(2, index.getCandidates(permission("org.Page:panel:link", "render")).size());
+	}
+
+	/**
+	 * Permissions that can not be looked up by name are always candidates, but only for the type of
+	 * permissions they imply.
+	 */
+	public void testUnscoped()
+	{
+		List<Permission> permissions = new ArrayList<Permission>();
+		permissions.add(permission("org.Page", "render"));
+		permissions.add(new AllPermissions("all", factory));
+		permissions.add(new TestPermission("foo"));
+		PermissionIndex index = new PermissionIndex(permissions.iterator());
+
+		assertEquals(3, index.getCandidates(permission("org.Page:panel", "render")).size());
+		assertEquals(2, index.getCandidates(permission("other", "render")).size());
+		assertEquals(2, index.getCandidates(new TestPermission("org.Page")).size());
+	}
+
+	/**
+	 * A locked hive must give the same answers as an unlocked hive.
+	 */
+	public void testLockedHive()
+	{
+		BasicHive locked = new BasicHive();
+		BasicHive unlocked = new BasicHive();
+		for (BasicHive hive : new BasicHive[] { locked, unlocked })
+		{
+			hive.addPermission(new EverybodyPrincipal(), permission("org.Page", "inherit, render"));
+			hive.addPermission(new EverybodyPrincipal(), permission("org.Page:form", "enable"));
+			hive.addPermission(new SimplePrincipal("admin"), new AllPermissions("all", factory));
+			hive.addPermission(new EverybodyPrincipal(), new TestPermission("test", "read, write"));
+		}
+		locked.lock();
+
+		Permission[] checks = new Permission[] { permission("org.Page", "render"),
+				permission("org.Page", "enable"), permission("org.Page:form", "render"),
+				permission("org.Page:form", "enable"), permission("org.Page:form:field", "enable"),
+				permission("org.Page:link", "render"), permission("org.Other", "render"),
+				permission("org", "render"), new TestPermission("test", "read"),
+				new TestPermission("test", "delete"), new TestPermission("org.Page") };
+		for (Permission check : checks)
+			assertEquals(check.toString(), unlocked.hasPermission(null, check),
+				locked.hasPermission(null, check));
+		assertTrue(locked.hasPermission(null, permission("org.Page:form:field", "render")));
+		assertFalse(locked.hasPermission(null, permission("org.Page:form:field", "enable")));
+	}
+
+	/**
+	 * A locked hive must give the same answers as an unlocked hive for many permissions.
+	 */
+	public void testLockedHiveRandomChecks()
+	{
+		int pages = 50;
+		BasicHive locked = new BasicHive();
+		BasicHive unlocked = new BasicHive();
+		for (BasicHive hive : new BasicHive[] { locked, unlocked })
+		{
+			for (int i = 0; i < pages; i++)
+			{
+				String page = "org.example.pages.Page" + i;
+				hive.addPermission(new EverybodyPrincipal(), permission(page, "inherit, render"));
+				for (int j = 0; j < 9; j++)
+					hive.addPermission(new SimplePrincipal("role" + (j % 3)), permission(page +
+						":panel" + j, "enable"));
+			}
+		}
+		locked.lock();
+
+		Random random = new Random(42);
+		for (int i = 0; i < 2000; i++)
+		{
+			Permission check = permission("org.example.pages.Page" + random.nextInt(pages + 5) +
+				":panel" + random.nextInt(10) + ":link", random.nextBoolean() ? "render" : "enable");
+			assertEquals(check.toString(), unlocked.hasPermission(null, check),
+				locked.hasPermission(null, check));
+		}
+	}
+
+	private Permission permission(String name, String actions)
+	{
+		return new IndexedPermission(name, factory.getAction(actions));
+	}
+
+	/**
+	 * Plain {@link ActionPermission}.
+	 */
+	static class IndexedPermission extends ActionPermission
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 *
+		 * @param name
+		 * @param actions
+		 */
+		public IndexedPermission(String name, WaspAction actions)
+		{
+			super(name, actions);
+		}
+	}
+}
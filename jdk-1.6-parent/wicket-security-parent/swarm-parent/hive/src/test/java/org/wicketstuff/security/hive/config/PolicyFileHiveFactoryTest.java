@@ -16,16 +16,18 @@
  */
 package org.wicketstuff.security.hive.config;
 
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.lang.reflect.Field;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import junit.framework.TestCase;
 
@@ -33,6 +35,7 @@ import org.wicketstuff.security.actions.Actions;
 import org.wicketstuff.security.hive.Hive;
 import org.wicketstuff.security.hive.authorization.EverybodyPrincipal;
 import org.wicketstuff.security.hive.authorization.FaultyPermission;
+import org.wicketstuff.security.hive.authorization.Principal;
 import org.wicketstuff.security.hive.authorization.SimplePrincipal;
 import org.wicketstuff.security.hive.authorization.TestPermission;
 
@@ -201,188 +204,128 @@ public class PolicyFileHiveFactoryTest extends TestCase
 	}
 
 	/**
-	 * Test if the regex used in the factory is OK.
+	 * Test if the tokenizer used in the factory recognizes grant statements.
 	 */
-	public void testRegExPrincipalPattern()
+	public void testPrincipalTokenizer()
 	{
-		Pattern principalPattern = null;
-		try
-		{
-			Field field = PolicyFileHiveFactory.class.getDeclaredField("principalPattern");
-			field.setAccessible(true);
-			principalPattern = (Pattern)field.get(null);
-		}
-		catch (IllegalArgumentException e)
-		{
-			fail(e.getMessage());
-		}
-		catch (SecurityException e)
-		{
-			fail(e.getMessage());
-		}
-		catch (IllegalAccessException e)
-		{
-			fail(e.getMessage());
-		}
-		catch (NoSuchFieldException e)
-		{
-			fail(e.getMessage());
-		}
-		assertNotNull(principalPattern);
-		assertFalse(principalPattern.matcher("").matches());
-		assertTrue(principalPattern.matcher("grant").matches());
-		assertTrue(principalPattern.matcher(
-			"grant principal org.apache.wicket.TestPrincipal \"render\"").matches());
-		assertFalse(principalPattern.matcher("grant foo").matches());
-		assertFalse(principalPattern.matcher(
-			"grant principal org.apache.wicket.TestPrincipal \"render").matches());
-		assertFalse(principalPattern.matcher(
-			"grant principal \"org.apache.wicket.TestPrincipal\" \"render\"").matches());
-		assertTrue(principalPattern.matcher(
-			"grant principal org.apache. wicket.TestPrincipal \"render\"").matches());
-		assertFalse(principalPattern.matcher(
-			"grant principal org.apache.wicket\".TestPrincipal \"render\"").matches());
-		assertFalse(principalPattern.matcher(
-			"grant principal org.apache.wicket.TestPrincipal \"render\" \"enable\"").matches());
-		assertTrue(principalPattern.matcher(
-			"grant principal org.apache.wicket.TestPrincipal \"some 'wicket' actions\"").matches());
-		assertFalse(principalPattern.matcher("grant principal \"org.apache.wicket.TestPrincipal\"")
-			.matches());
-		assertFalse(principalPattern.matcher(
-			"grant principal org.apache.wicket.TestPrincipal render").matches());
+		assertNull(PolicyTokenizer.parseGrant(""));
+		assertNotNull(PolicyTokenizer.parseGrant("grant"));
+		assertNotNull(PolicyTokenizer.parseGrant(
+			"grant principal org.apache.wicket.TestPrincipal \"render\""));
+		assertNull(PolicyTokenizer.parseGrant("grant foo"));
+		assertNull(PolicyTokenizer.parseGrant(
+			"grant principal org.apache.wicket.TestPrincipal \"render"));
+		assertNull(PolicyTokenizer.parseGrant(
+			"grant principal \"org.apache.wicket.TestPrincipal\" \"render\""));
+		assertNotNull(PolicyTokenizer.parseGrant(
+			"grant principal org.apache. wicket.TestPrincipal \"render\""));
+		assertNull(PolicyTokenizer.parseGrant(
+			"grant principal org.apache.wicket\".TestPrincipal \"render\""));
+		assertNull(PolicyTokenizer.parseGrant(
+			"grant principal org.apache.wicket.TestPrincipal \"render\" \"enable\""));
+		assertNotNull(PolicyTokenizer.parseGrant(
+			"grant principal org.apache.wicket.TestPrincipal \"some 'wicket' actions\""));
+		assertNull(PolicyTokenizer.parseGrant("grant principal \"org.apache.wicket.TestPrincipal\""));
+		assertNull(PolicyTokenizer.parseGrant(
+			"grant principal org.apache.wicket.TestPrincipal render"));
+
+		PolicyTokenizer.Statement statement = PolicyTokenizer.parseGrant(
+			"  grant principal ${auth}.SimplePrincipal \"test ${nine}\"  ");
+		assertEquals("${auth}.SimplePrincipal", statement.className);
+		assertEquals("test ${nine}", statement.name);
+		assertNull(PolicyTokenizer.parseGrant(" grant ").className);
 	}
 
 	/**
-	 * Test if the regex used in the factory is OK.
+	 * Test if the tokenizer used in the factory recognizes permission statements.
 	 */
-	public void testRegExPermissionPattern()
+	public void testPermissionTokenizer()
 	{
-		Pattern permissionPattern = null;
-		try
-		{
-			Field field = PolicyFileHiveFactory.class.getDeclaredField("permissionPattern");
-			field.setAccessible(true);
-			permissionPattern = (Pattern)field.get(null);
-			assertTrue(permissionPattern.matcher(
-				"permission org.apache.wicket.TestPrincipal \"test\", \"render\";").matches());
-			assertTrue(permissionPattern.matcher(
-				"permission org.apache.wicket.TestPrincipal \"test\";").matches());
-			assertTrue(permissionPattern.matcher(
-				"permission org.apache.wicket.TestPrincipal \"test 123\", \"render\";").matches());
-			assertTrue(permissionPattern.matcher(
-				"permission org.apache.wicket.TestPrincipal \"test\", \"render 123\";").matches());
-			assertTrue(permissionPattern.matcher(
-				"permission org.apache.wicket.TestPrincipal \"test\", \"render 'wicket'\";")
-				.matches());
-			assertTrue(permissionPattern.matcher(
-				"permission org.apache. wicket.TestPrincipal \"test\", \"render 'wicket'\";")
-				.matches());
-			assertTrue(permissionPattern.matcher(
-				"permission org.apache.wicket.TestPrincipal \"test 'wicket'\", \"render\";")
-				.matches());
-			assertFalse(permissionPattern.matcher("permission org.apache.wicket.TestPrincipal;")
-				.matches());
-			assertFalse(permissionPattern.matcher("permission ").matches());
-			assertFalse(permissionPattern.matcher(
-				" org.apache.wicket.TestPrincipal \"test\", \"render\";").matches());
-			assertFalse(permissionPattern.matcher(
-				"permission org.apache.wicket.TestPrincipal \"test\" \"test\";").matches());
-			assertFalse(permissionPattern.matcher(
-				"permission org.apache.wicket.TestPrincipal \"test\", ;").matches());
-			assertFalse(permissionPattern.matcher(
-				"permission org.apache.wicket.TestPrincipal \"test\", \"render\"").matches());
-			assertFalse(permissionPattern.matcher(
-				"permission ${ComponentPermission} ${ml}, \"inherit, render\";").matches());
-			assertTrue(permissionPattern.matcher(
-				"permission ${ComponentPermission} \"${ml}\", \"inherit, render\";").matches());
-			assertTrue(permissionPattern.matcher(
-				"permission ${ComponentPermission} ${ml} \"${ml}\", \"inherit, render\";")
-				.matches());
-			assertFalse(permissionPattern.matcher(
-				"permission ${ComponentPermission} ${ml}, \"whatever\", \"inherit, render\";")
-				.matches());
-			// technically spaces and some other characters are not allowed in
-			// classnames either but they don't cause any problems yet "," did
-		}
-		catch (IllegalArgumentException e)
-		{
-			fail(e.getMessage());
-		}
-		catch (SecurityException e)
-		{
-			fail(e.getMessage());
-		}
-		catch (IllegalAccessException e)
-		{
-			fail(e.getMessage());
-		}
-		catch (NoSuchFieldException e)
-		{
-			fail(e.getMessage());
-		}
-		assertNotNull(permissionPattern);
+		assertNotNull(PolicyTokenizer.parsePermission(
+			"permission org.apache.wicket.TestPrincipal \"test\", \"render\";"));
+		assertNotNull(PolicyTokenizer.parsePermission(
+			"permission org.apache.wicket.TestPrincipal \"test\";"));
+		assertNotNull(PolicyTokenizer.parsePermission(
+			"permission org.apache.wicket.TestPrincipal \"test 123\", \"render\";"));
+		assertNotNull(PolicyTokenizer.parsePermission(
+			"permission org.apache.wicket.TestPrincipal \"test\", \"render 123\";"));
+		assertNotNull(PolicyTokenizer.parsePermission(
+			"permission org.apache.wicket.TestPrincipal \"test\", \"render 'wicket'\";"));
+		assertNotNull(PolicyTokenizer.parsePermission(
+			"permission org.apache. wicket.TestPrincipal \"test\", \"render 'wicket'\";"));
+		assertNotNull(PolicyTokenizer.parsePermission(
+			"permission org.apache.wicket.TestPrincipal \"test 'wicket'\", \"render\";"));
+		assertNull(PolicyTokenizer.parsePermission("permission org.apache.wicket.TestPrincipal;"));
+		assertNull(PolicyTokenizer.parsePermission("permission "));
+		assertNull(PolicyTokenizer.parsePermission(
+			" org.apache.wicket.TestPrincipal \"test\", \"render\";"));
+		assertNull(PolicyTokenizer.parsePermission(
+			"permission org.apache.wicket.TestPrincipal \"test\" \"test\";"));
+		assertNull(PolicyTokenizer.parsePermission(
+			"permission org.apache.wicket.TestPrincipal \"test\", ;"));
+		assertNull(PolicyTokenizer.parsePermission(
+			"permission org.apache.wicket.TestPrincipal \"test\", \"render\""));
+		assertNull(PolicyTokenizer.parsePermission(
+			"permission ${ComponentPermission} ${ml}, \"inherit, render\";"));
+		assertNotNull(PolicyTokenizer.parsePermission(
+			"permission ${ComponentPermission} \"${ml}\", \"inherit, render\";"));
+		assertNotNull(PolicyTokenizer.parsePermission(
+			"permission ${ComponentPermission} ${ml} \"${ml}\", \"inherit, render\";"));
+		assertNull(PolicyTokenizer.parsePermission(
+			"permission ${ComponentPermission} ${ml}, \"whatever\", \"inherit, render\";"));
+		// technically spaces and some other characters are not allowed in
+		// classnames either but they don't cause any problems yet "," did
+
+		PolicyTokenizer.Statement statement = PolicyTokenizer.parsePermission(
+			"\tpermission ${perm} \"A\" , \"inherit, render\" ; ");
+		assertEquals("${perm}", statement.className);
+		assertEquals("A", statement.name);
+		assertEquals("inherit, render", statement.actions);
+		statement = PolicyTokenizer.parsePermission("permission ${perm} \"A\";");
+		assertNull(statement.actions);
 	}
 
 	/**
-	 * Test if the regex used in the factory is OK.
+	 * Test the resolving of aliases.
+	 * 
+	 * @throws Exception
 	 */
-	public void testRegExAliasPattern()
+	public void testAliases() throws Exception
 	{
-		Pattern aliasPattern = null;
+		Method method = PolicyFileHiveFactory.class.getDeclaredMethod("resolveAliases",
+			new Class[] { String.class });
+		method.setAccessible(true);
+		PolicyFileHiveFactory factory = new PolicyFileHiveFactory(Actions.getActionFactory(KEY));
+		factory.setAlias("foo", "1");
+		factory.setAlias("bar", "2");
+		factory.setAlias("foo bar", "3");
+		assertEquals("no alias used whatsoever", method.invoke(factory,
+			new Object[] { "no alias used whatsoever" }));
+		assertEquals("foo2", method.invoke(factory, new Object[] { "foo${bar}" }));
+		assertEquals("1bar", method.invoke(factory, new Object[] { "${foo}bar" }));
+		assertEquals("foobar", method.invoke(factory, new Object[] { "fo${o}bar" }));
+		assertEquals("12", method.invoke(factory, new Object[] { "${foo}${bar}" }));
+		assertEquals("3foo2", method.invoke(factory, new Object[] { "${foo bar}foo${bar}" }));
+		assertEquals("$1", method.invoke(factory, new Object[] { "$${foo}" }));
+		assertEquals("{1}", method.invoke(factory, new Object[] { "{${foo}}" }));
 		try
 		{
-			Field field = PolicyFileHiveFactory.class.getDeclaredField("aliasPattern");
-			field.setAccessible(true);
-			aliasPattern = (Pattern)field.get(null);
-			assertFalse(aliasPattern.matcher("no alias used whatsoever").find());
-			Matcher m = aliasPattern.matcher("foo${bar}");
-			assertTrue(m.find());
-			assertEquals("${bar}", m.group());
-			assertFalse(m.find());
-			m = aliasPattern.matcher("${foo}bar");
-			assertTrue(m.find());
-			assertEquals("${foo}", m.group());
-			assertFalse(m.find());
-			m = aliasPattern.matcher("fo${o}bar");
-			assertTrue(m.find());
-			assertEquals("${o}", m.group());
-			assertFalse(m.find());
-			m = aliasPattern.matcher("${foo}${bar}");
-			assertTrue(m.find());
-			assertEquals("${foo}", m.group());
-			assertTrue(m.find());
-			assertEquals("${bar}", m.group());
-			assertFalse(m.find());
-			m = aliasPattern.matcher("${foo bar}foo${bar}");
-			assertTrue(m.find());
-			assertEquals("${foo bar}", m.group());
-			assertTrue(m.find());
-			assertEquals("${bar}", m.group());
-			assertFalse(m.find());
-			assertFalse(aliasPattern.matcher("${$foo}").find());
-			assertFalse(aliasPattern.matcher("${}").find());
-			assertFalse(aliasPattern.matcher("${foo\"bar\"}").find());
-			// regex alone is not enough to detect nested alias
-			// assertFalse(aliasPattern.matcher("${${foo}").find());
-			// assertFalse(aliasPattern.matcher("${${foo}bar}").find());
-		}
-		catch (IllegalArgumentException e)
-		{
-			fail(e.getMessage());
+			method.invoke(factory, new Object[] { "${$foo}" });
+			fail("invalid alias");
 		}
-		catch (SecurityException e)
+		catch (InvocationTargetException e)
 		{
-			fail(e.getMessage());
+			assertTrue(e.getCause() instanceof IllegalStateException);
 		}
-		catch (IllegalAccessException e)
+		try
 		{
-			fail(e.getMessage());
+			method.invoke(factory, new Object[] { "${}" });
+			fail("invalid alias");
 		}
-		catch (NoSuchFieldException e)
+		catch (InvocationTargetException e)
 		{
-			fail(e.getMessage());
+			assertTrue(e.getCause() instanceof IllegalStateException);
 		}
-		assertNotNull(aliasPattern);
 	}
 
 	/**
@@ -473,6 +416,175 @@ public class PolicyFileHiveFactoryTest extends TestCase
 		}
 	}
 
+	/**
+	 * A second hive is built from the snapshot written when the first hive was built, unless the
+	 * policy changed.
+	 * 
+	 * @throws IOException
+	 */
+	public void testSnapshot() throws IOException
+	{
+		File snapshot = File.createTempFile("policy", ".snapshot");
+		assertTrue(snapshot.delete());
+		try
+		{
+			final int[] principals = new int[1];
+			PolicyFileHiveFactory factory = new PolicyFileHiveFactory(
+				Actions.getActionFactory(KEY))
+			{
+				@Override
+				protected void notifyOfPrincipal(int lineNr, Principal principal)
+				{
+					principals[0]++;
+				}
+			};
+			factory.addPolicyFile(getClass().getResource("test-policy.hive"));
+			factory.setSnapshotFile(snapshot);
+			doCreateHive(factory);
+			int parsed = principals[0];
+			assertTrue(parsed > 0);
+			assertTrue(snapshot.isFile());
+
+			// loaded from the snapshot
+			doCreateHive(factory);
+			assertEquals(parsed, principals[0]);
+
+			// aliases are part of the policy
+			factory.setAlias("nine", "nine");
+			Hive hive = factory.createHive();
+			assertEquals(2 * parsed, principals[0]);
+			assertFalse(hive.containsPrincipal(new SimplePrincipal("test9")));
+			assertTrue(hive.containsPrincipal(new SimplePrincipal("testnine")));
+			doCreateHive(factory);
+			assertEquals(3 * parsed, principals[0]);
+
+			// a corrupt snapshot is ignored
+			OutputStream out = new FileOutputStream(snapshot);
+			out.write(new byte[] { 'H', 'I', 'V', 'E', 0, 0, 0, 1, 0, 0 });
+			out.close();
+			doCreateHive(factory);
+			assertEquals(4 * parsed, principals[0]);
+			doCreateHive(factory);
+			assertEquals(4 * parsed, principals[0]);
+		}
+		finally
+		{
+			snapshot.delete();
+		}
+	}
+
+	/**
+	 * Test a snapshot with a corrupt count is ignored without allocating for it.
+	 * 
+	 * @throws IOException
+	 */
+	public void testSnapshotWithHugeCount() throws IOException
+	{
+		File snapshot = File.createTempFile("policy", ".snapshot");
+		assertTrue(snapshot.delete());
+		try
+		{
+			final int[] principals = new int[1];
+			PolicyFileHiveFactory factory = new PolicyFileHiveFactory(
+				Actions.getActionFactory(KEY))
+			{
+				@Override
+				protected void notifyOfPrincipal(int lineNr, Principal principal)
+				{
+					principals[0]++;
+				}
+			};
+			factory.addPolicyFile(getClass().getResource("test-policy.hive"));
+			factory.setSnapshotFile(snapshot);
+			doCreateHive(factory);
+			int parsed = principals[0];
+
+			// the string count follows the magic number, the version and the key
+			byte[] content = new byte[(int)snapshot.length()];
+			DataInputStream in = new DataInputStream(new FileInputStream(snapshot));
+			in.readFully(content);
+			in.close();
+			int offset = 10 + (((content[8] & 0xff) << 8) | (content[9] & 0xff));
+			content[offset] = 0x7f;
+			content[offset + 1] = (byte)0xff;
+			content[offset + 2] = (byte)0xff;
+			content[offset + 3] = (byte)0xff;
+			OutputStream out = new FileOutputStream(snapshot);
+			out.write(content);
+			out.close();
+
+			doCreateHive(factory);
+			assertEquals(2 * parsed, principals[0]);
+		}
+		finally
+		{
+			snapshot.delete();
+		}
+	}
+
+	/**
+	 * Test a snapshot entry that can not be created is only reported by the parsing of the policy
+	 * file.
+	 * 
+	 * @throws IOException
+	 */
+	public void testSnapshotSkipsSilently() throws IOException
+	{
+		File snapshot = File.createTempFile("policy", ".snapshot");
+		assertTrue(snapshot.delete());
+		try
+		{
+			final int[] skipped = new int[1];
+			PolicyFileHiveFactory factory = new PolicyFileHiveFactory(
+				Actions.getActionFactory(KEY))
+			{
+				@Override
+				protected void skipPermission(int lineNr, String classname,
+					ClassNotFoundException e)
+				{
+					skipped[0]++;
+				}
+			};
+			factory.addPolicyFile(getClass().getResource("test-policy.hive"));
+			factory.setSnapshotFile(snapshot);
+			doCreateHive(factory);
+			int parsed = skipped[0];
+			assertTrue(parsed > 0);
+
+			// rename a permission class in the snapshot, the names keep their length
+			byte[] content = new byte[(int)snapshot.length()];
+			DataInputStream in = new DataInputStream(new FileInputStream(snapshot));
+			in.readFully(content);
+			in.close();
+			String name = TestPermission.class.getName();
+			byte[] search = name.getBytes("UTF-8");
+			byte[] replacement = (name.substring(0, name.length() - 1) + "X").getBytes("UTF-8");
+			int renamed = 0;
+			for (int i = 0; i <= content.length - search.length; i++)
+			{
+				int j = 0;
+				while (j < search.length && content[i + j] == search[j])
+					j++;
+				if (j == search.length)
+				{
+					System.arraycopy(replacement, 0, content, i, replacement.length);
+					renamed++;
+				}
+			}
+			assertTrue(renamed > 0);
+			OutputStream out = new FileOutputStream(snapshot);
+			out.write(content);
+			out.close();
+
+			doCreateHive(factory);
+			assertEquals(2 * parsed, skipped[0]);
+		}
+		finally
+		{
+			snapshot.delete();
+		}
+	}
+
 	/**
 	 * Test handling null urls, readers and streams.
 	 */
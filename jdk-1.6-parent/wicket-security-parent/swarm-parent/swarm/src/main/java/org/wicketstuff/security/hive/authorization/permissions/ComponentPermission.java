@@ -98,6 +98,19 @@ public class ComponentPermission extends ActionPermission
 		return false;
 	}
 
+	/**
+	 * Only other ComponentPermissions are implied. Note that the name of the implied permissions
+	 * does not necessarily start with the name of this permission, because the component path is
+	 * matched anywhere in the path of the other permission.
+	 * 
+	 * @see org.wicketstuff.security.hive.authorization.permissions.ActionPermission#getImpliedType()
+	 */
+	@Override
+	public Class<? extends Permission> getImpliedType()
+	{
+		return ComponentPermission.class;
+	}
+
 	private boolean impliesHierarchy(ComponentPermission other)
 	{
 		if (other == null)
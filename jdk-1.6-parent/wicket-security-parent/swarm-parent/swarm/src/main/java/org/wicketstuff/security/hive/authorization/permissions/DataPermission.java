@@ -80,6 +80,29 @@ public class DataPermission extends ActionPermission
 		return false;
 	}
 
+	/**
+	 * Only other DataPermissions are implied.
+	 * 
+	 * @see org.wicketstuff.security.hive.authorization.permissions.ActionPermission#getImpliedType()
+	 */
+	@Override
+	public Class<? extends Permission> getImpliedType()
+	{
+		return DataPermission.class;
+	}
+
+	/**
+	 * Same as an {@link ActionPermission}, only names starting with the name of this permission are
+	 * implied.
+	 * 
+	 * @see org.wicketstuff.security.hive.authorization.permissions.ActionPermission#impliesNamePrefixesOnly()
+	 */
+	@Override
+	public boolean impliesNamePrefixesOnly()
+	{
+		return true;
+	}
+
 	/**
 	 * 
 	 * @see org.wicketstuff.security.hive.authorization.permissions.ActionPermission#hashCode()
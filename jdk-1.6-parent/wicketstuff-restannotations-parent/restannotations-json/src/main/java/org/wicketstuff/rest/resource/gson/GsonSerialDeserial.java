@@ -16,14 +16,26 @@
  */
 package org.wicketstuff.rest.resource.gson;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Iterator;
+
 import org.wicketstuff.rest.contenthandling.RestMimeTypes;
 import org.wicketstuff.rest.contenthandling.serialdeserial.TextualObjectSerialDeserial;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Textual object serializer/deserializer that works with JSON format and uses <a
- * href="http://code.google.com/p/google-gson/">Gson library</a>.
+ * href="http://code.google.com/p/google-gson/">Gson library</a>.<br/>
+ * Objects are written to the response and read from the request without buffering the whole
+ * payload. If the serialized object is an {@link Iterator} or an {@link Iterable}, its elements
+ * are written one at a time as a JSON array, so a method can return a large result without
+ * loading it in memory. The output follows the settings of the Gson instance (pretty printing,
+ * non-executable prefix, HTML escaping).
  * 
  * @author andrea del bene
  * 
@@ -36,6 +48,12 @@ public class GsonSerialDeserial extends TextualObjectSerialDeserial
 	public static final String CHARSET_UTF_8 = "UTF-8";
 	/** Mime type used by the serial/deserial */
 	public static final String APPLICATION_JSON = RestMimeTypes.APPLICATION_JSON;
+	/** Prefix written by Gson when non-executable JSON is enabled */
+	private static final String NON_EXECUTABLE_PREFIX = ")]}'\n";
+	/** True if the Gson instance generates non-executable JSON */
+	private final boolean nonExecutableJson;
+	/** True if the Gson instance pretty prints its output */
+	private final boolean prettyPrinting;
 
 	/**
 	 * Default constructor that creates an instance of Gson entity.
@@ -44,6 +62,8 @@ public class GsonSerialDeserial extends TextualObjectSerialDeserial
 	{
 		super(CHARSET_UTF_8, APPLICATION_JSON);
 		this.gson = buildDefaultGson();
+		this.nonExecutableJson = isNonExecutableJson(gson);
+		this.prettyPrinting = isPrettyPrinting(gson);
 	}
 
 	/**
@@ -56,6 +76,22 @@ public class GsonSerialDeserial extends TextualObjectSerialDeserial
 	{
 		super(CHARSET_UTF_8, APPLICATION_JSON);
 		this.gson = gson;
+		this.nonExecutableJson = isNonExecutableJson(gson);
+		this.prettyPrinting = isPrettyPrinting(gson);
+	}
+
+	/*
+	 * Gson doesn't expose its settings nor its JsonWriter factory, so the ones that change the
+	 * output layout are read back from a sample serialization.
+	 */
+	private static boolean isNonExecutableJson(Gson gson)
+	{
+		return gson.toJson(0).startsWith(NON_EXECUTABLE_PREFIX);
+	}
+
+	private static boolean isPrettyPrinting(Gson gson)
+	{
+		return gson.toJson(Collections.singletonList(0)).endsWith("\n]");
 	}
 
 	/**
@@ -84,4 +120,83 @@ public class GsonSerialDeserial extends TextualObjectSerialDeserial
 	{
 		return gson.fromJson(source, targetClass);
 	}
-}
\ No newline at end of file
+
+	@Override
+	public void serializeObject(Object targetObject, String mimeType, Writer writer)
+		throws IOException
+	{
+		Iterator<?> iterator = null;
+
+		if (targetObject instanceof Iterator)
+			iterator = (Iterator<?>)targetObject;
+		else if (targetObject instanceof Iterable)
+			iterator = ((Iterable<?>)targetObject).iterator();
+
+		if (iterator != null)
+		{
+			JsonWriter jsonWriter = newJsonWriter(writer);
+
+			jsonWriter.beginArray();
+
+			while (iterator.hasNext())
+			{
+				writeJson(iterator.next(), jsonWriter);
+			}
+
+			jsonWriter.endArray();
+			jsonWriter.flush();
+		}
+		else
+		{
+			gson.toJson(targetObject, writer);
+		}
+	}
+
+	/**
+	 * Creates a JsonWriter with the same layout as the one Gson uses for its own output.
+	 * 
+	 * @param writer
+	 *            the underlying writer.
+	 * @return the JsonWriter.
+	 * @throws IOException
+	 */
+	protected JsonWriter newJsonWriter(Writer writer) throws IOException
+	{
+		if (nonExecutableJson)
+			writer.write(NON_EXECUTABLE_PREFIX);
+
+		JsonWriter jsonWriter = new JsonWriter(writer);
+
+		if (prettyPrinting)
+			jsonWriter.setIndent("  ");
+
+		// HTML escaping and nulls are set by Gson on each toJson call.
+		jsonWriter.setLenient(true);
+
+		return jsonWriter;
+	}
+
+	/**
+	 * Writes a single value with the Gson instance.
+	 * 
+	 * @param value
+	 *            the value to write.
+	 * @param jsonWriter
+	 *            the writer to use.
+	 * @throws IOException
+	 */
+	private void writeJson(Object value, JsonWriter jsonWriter) throws IOException
+	{
+		if (value == null)
+			jsonWriter.nullValue();
+		else
+			gson.toJson(value, value.getClass(), jsonWriter);
+	}
+
+	@Override
+	public <T> T deserializeObject(Reader source, Class<T> targetClass, String mimeType)
+		throws IOException
+	{
+		return gson.fromJson(source, targetClass);
+	}
+}
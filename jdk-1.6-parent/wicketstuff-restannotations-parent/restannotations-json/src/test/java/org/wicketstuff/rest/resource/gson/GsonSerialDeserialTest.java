@@ -0,0 +1,102 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wicketstuff.rest.resource.gson;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wicketstuff.rest.Person;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+public class GsonSerialDeserialTest extends Assert
+{
+	private final GsonSerialDeserial serialDeserial = new GsonSerialDeserial();
+
+	@Test
+	public void testStreamedObject() throws Exception
+	{
+		Person person = new Person("Tim", "Jolly", "hero@gmail.com");
+		StringWriter writer = new StringWriter();
+
+		serialDeserial.serializeObject(person, GsonSerialDeserial.APPLICATION_JSON, writer);
+
+		assertEquals(serialDeserial.serializeObject(person, GsonSerialDeserial.APPLICATION_JSON),
+			writer.toString());
+
+		Person deserialized = serialDeserial.deserializeObject(new StringReader(writer.toString()),
+			Person.class, GsonSerialDeserial.APPLICATION_JSON);
+
+		assertEquals(person.getName(), deserialized.getName());
+		assertEquals(person.getSurname(), deserialized.getSurname());
+		assertEquals(person.getEmail(), deserialized.getEmail());
+	}
+
+	@Test
+	public void testStreamedIterator() throws Exception
+	{
+		List<Person> persons = Arrays.asList(new Person("Tim", "Jolly", "hero@gmail.com"), null,
+			new Person("Ann", "Smith", "ann@gmail.com"));
+		StringWriter iteratorWriter = new StringWriter();
+		StringWriter iterableWriter = new StringWriter();
+
+		serialDeserial.serializeObject(persons.iterator(), GsonSerialDeserial.APPLICATION_JSON,
+			iteratorWriter);
+		serialDeserial.serializeObject(persons, GsonSerialDeserial.APPLICATION_JSON,
+			iterableWriter);
+
+		assertEquals(serialDeserial.getGson().toJson(persons), iteratorWriter.toString());
+		assertEquals(iteratorWriter.toString(), iterableWriter.toString());
+	}
+
+	@Test
+	public void testStreamedPrimitives() throws Exception
+	{
+		StringWriter writer = new StringWriter();
+
+		serialDeserial.serializeObject("text", GsonSerialDeserial.APPLICATION_JSON, writer);
+		assertEquals("\"text\"", writer.toString());
+
+		writer = new StringWriter();
+		serialDeserial.serializeObject(null, GsonSerialDeserial.APPLICATION_JSON, writer);
+		assertEquals("null", writer.toString());
+	}
+
+	@Test
+	public void testStreamedWithGsonSettings() throws Exception
+	{
+		Gson gson = new GsonBuilder().setPrettyPrinting().generateNonExecutableJson().create();
+		GsonSerialDeserial configured = new GsonSerialDeserial(gson);
+		Person person = new Person("Tim", "<Jolly>", "hero@gmail.com");
+		List<Person> persons = Arrays.asList(person, new Person("Ann", "Smith", "ann@gmail.com"));
+		StringWriter objectWriter = new StringWriter();
+		StringWriter iteratorWriter = new StringWriter();
+
+		configured.serializeObject(person, GsonSerialDeserial.APPLICATION_JSON, objectWriter);
+		configured.serializeObject(persons.iterator(), GsonSerialDeserial.APPLICATION_JSON,
+			iteratorWriter);
+
+		assertEquals(gson.toJson(person), objectWriter.toString());
+		assertEquals(gson.toJson(persons), iteratorWriter.toString());
+		assertTrue(iteratorWriter.toString().contains("\\u003cJolly\\u003e"));
+	}
+}
@@ -0,0 +1,75 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wicketstuff.rest.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.wicketstuff.rest.resource.cache.DigestETagGenerator;
+import org.wicketstuff.rest.resource.cache.IETagGenerator;
+
+/**
+ * Annotation to cache the response of a resource method mapped with HTTP method GET. Annotating a
+ * method mapped with another HTTP method makes the resource fail to be built. The serialized
+ * response is kept in the response cache of the resource and served again, without invoking the
+ * method, until it expires. Every response carries an ETag header and a request with a matching
+ * If-None-Match header gets a 304 (not modified) response.<br/>
+ * Responses are cached separately for every URL path (including matrix parameters) and for the
+ * values of the query string parameters, headers and cookies bound to the method parameters.
+ * Inputs the method reads without declaring them as parameters must be listed in
+ * {@link #varyByParams()} and {@link #varyByHeaders()}. Any other input the method uses must not
+ * change its result.<br/>
+ * A response is cached only if its status code is left unset or set to 200 (see
+ * {@link org.wicketstuff.rest.resource.AbstractRestResource#setResponseStatusCode(int)}).
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD })
+public @interface Cacheable {
+
+	/**
+	 * Time to live of the cached responses, in seconds.
+	 * 
+	 * @return the time to live. Returns 60 seconds by default.
+	 */
+	int ttl() default 60;
+
+	/**
+	 * Query string parameters the response depends on, besides those bound to method parameters.
+	 * 
+	 * @return the parameter names. Returns a zero length array by default.
+	 */
+	String[] varyByParams() default {};
+
+	/**
+	 * Request headers the response depends on, besides those bound to method parameters.
+	 * 
+	 * @return the header names. Returns a zero length array by default.
+	 */
+	String[] varyByHeaders() default {};
+
+	/**
+	 * The class used to generate the ETag of the responses. It must have a no-argument
+	 * constructor.
+	 * 
+	 * @return the ETag generator class. Returns {@link DigestETagGenerator} by default.
+	 */
+	Class<? extends IETagGenerator> etagGenerator() default DigestETagGenerator.class;
+}
@@ -0,0 +1,58 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wicketstuff.rest.contenthandling;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Interface to implement object serializers/deserializers that work directly on character
+ * streams, without building the whole representation of the object in memory. This is the
+ * streaming counterpart of {@link IObjectSerialDeserial}&lt;String&gt;.
+ */
+public interface IStreamingObjectSerialDeserial {
+
+	/**
+	 * Writes a given representation of the target object to a writer.
+	 * 
+	 * @param target
+	 *            the object to convert to the given format.
+	 * @param mimeType
+	 *            the target MIME type.
+	 * @param writer
+	 *            the writer to use. It is flushed but not closed.
+	 * @throws IOException
+	 */
+	public void serializeObject(Object target, String mimeType, Writer writer)
+			throws IOException;
+
+	/**
+	 * Extract an object instance reading its representation from a reader.
+	 * 
+	 * @param source
+	 *            the reader with the representation of the object.
+	 * @param targetClass
+	 *            the type of the returned object.
+	 * @param mimeType
+	 *            the source MIME type.
+	 * @return the extracted object.
+	 * @throws IOException
+	 */
+	public <E> E deserializeObject(Reader source, Class<E> targetClass, String mimeType)
+			throws IOException;
+}
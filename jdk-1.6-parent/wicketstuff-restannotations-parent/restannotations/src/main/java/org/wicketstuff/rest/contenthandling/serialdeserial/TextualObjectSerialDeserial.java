@@ -16,22 +16,34 @@
  */
 package org.wicketstuff.rest.contenthandling.serialdeserial;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
 import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
 
 import org.apache.wicket.request.http.WebRequest;
 import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.util.io.Streams;
 import org.wicketstuff.rest.contenthandling.IObjectSerialDeserial;
+import org.wicketstuff.rest.contenthandling.IStreamingObjectSerialDeserial;
 import org.wicketstuff.rest.contenthandling.IWebSerialDeserial;
 import org.wicketstuff.rest.contenthandling.RestMimeTypes;
-import org.wicketstuff.rest.utils.http.HttpUtils;
+import org.wicketstuff.rest.utils.wicket.ResponseWriter;
 
 /**
- * Abstract object serializer/deserializer that works with textual formats.
+ * Abstract object serializer/deserializer that works with textual formats.<br/>
+ * The response is written and the request is read through character streams (see
+ * {@link IStreamingObjectSerialDeserial}). By default the streaming methods fall back to the
+ * string based ones, subclasses can override them to avoid building the whole payload in memory.
  * 
  * @author andrea del bene
  * 
  */
-public abstract class TextualObjectSerialDeserial implements IWebSerialDeserial, IObjectSerialDeserial<String> {
+public abstract class TextualObjectSerialDeserial implements IWebSerialDeserial,
+		IObjectSerialDeserial<String>, IStreamingObjectSerialDeserial {
 	
 	/** the supported charset. */
 	private final String charset;
@@ -55,14 +67,16 @@ public abstract class TextualObjectSerialDeserial implements IWebSerialDeserial,
 			throws Exception {
 		setCharsetResponse(response);
 		
-		String strOutput;
+		// write through response.write(CharSequence) like the other textual writes, so an
+		// error message written later on the same response doesn't switch channel.
+		Writer writer = new BufferedWriter(new ResponseWriter(response));
 		
 		if(RestMimeTypes.TEXT_PLAIN.equals(mimeType))
-			strOutput = targetObject == null ? "" : targetObject.toString();
+			writer.write(targetObject == null ? "" : targetObject.toString());
 		else
-			strOutput = serializeObject(targetObject, mimeType);
+			serializeObject(targetObject, mimeType, writer);
 		
-		response.write(strOutput);
+		writer.flush();
 	}
 
 	/**
@@ -80,7 +94,30 @@ public abstract class TextualObjectSerialDeserial implements IWebSerialDeserial,
 	@Override
 	public <T> T requestToObject(WebRequest request, Class<T> targetClass, String mimeType)
 			throws Exception {
-		return deserializeObject(HttpUtils.readStringFromRequest(request), targetClass, mimeType);
+		HttpServletRequest httpRequest = (HttpServletRequest) request.getContainerRequest();
+		
+		return deserializeObject(httpRequest.getReader(), targetClass, mimeType);
+	}
+
+	/**
+	 * Writes the object to the writer. The default implementation writes the string returned by
+	 * {@link #serializeObject(Object, String)}, override it to write the object directly.
+	 */
+	@Override
+	public void serializeObject(Object targetObject, String mimeType, Writer writer)
+			throws IOException {
+		writer.write(serializeObject(targetObject, mimeType));
+	}
+
+	/**
+	 * Reads the object from the reader. The default implementation reads the whole content and
+	 * passes it to {@link #deserializeObject(String, Class, String)}, override it to read the
+	 * object directly.
+	 */
+	@Override
+	public <T> T deserializeObject(Reader source, Class<T> targetClass, String mimeType)
+			throws IOException {
+		return deserializeObject(Streams.readString(source), targetClass, mimeType);
 	}
 
 	@Override
@@ -17,17 +17,23 @@
 package org.wicketstuff.rest.resource;
 
 import java.io.Serializable;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
 
 import org.apache.wicket.Application;
+import org.apache.wicket.IConverterLocator;
+import org.apache.wicket.MetaDataKey;
 import org.apache.wicket.Session;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.authroles.authorization.strategies.role.IRoleCheckingStrategy;
@@ -41,6 +47,7 @@ import org.apache.wicket.request.resource.IResource;
 import org.apache.wicket.util.collections.MultiMap;
 import org.apache.wicket.util.convert.IConverter;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.string.StringValue;
 import org.apache.wicket.util.string.Strings;
 import org.apache.wicket.validation.IErrorMessageSource;
 import org.apache.wicket.validation.IValidationError;
@@ -49,21 +56,19 @@ import org.apache.wicket.validation.Validatable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wicketstuff.rest.annotations.AuthorizeInvocation;
+import org.wicketstuff.rest.annotations.Cacheable;
 import org.wicketstuff.rest.annotations.MethodMapping;
-import org.wicketstuff.rest.annotations.parameters.CookieParam;
-import org.wicketstuff.rest.annotations.parameters.HeaderParam;
-import org.wicketstuff.rest.annotations.parameters.MatrixParam;
-import org.wicketstuff.rest.annotations.parameters.PathParam;
-import org.wicketstuff.rest.annotations.parameters.RequestBody;
-import org.wicketstuff.rest.annotations.parameters.RequestParam;
 import org.wicketstuff.rest.contenthandling.IWebSerialDeserial;
 import org.wicketstuff.rest.contenthandling.RestMimeTypes;
+import org.wicketstuff.rest.resource.MethodInvocationPlan.ParameterPlan;
+import org.wicketstuff.rest.resource.cache.CachedResponse;
+import org.wicketstuff.rest.resource.cache.ResponseCache;
 import org.wicketstuff.rest.resource.urlsegments.AbstractURLSegment;
 import org.wicketstuff.rest.utils.http.HttpMethod;
 import org.wicketstuff.rest.utils.http.HttpUtils;
 import org.wicketstuff.rest.utils.reflection.MethodParameter;
-import org.wicketstuff.rest.utils.reflection.ReflectionUtils;
 import org.wicketstuff.rest.utils.wicket.AttributesWrapper;
+import org.wicketstuff.rest.utils.wicket.CapturingWebResponse;
 import org.wicketstuff.rest.utils.wicket.DefaultBundleResolver;
 
 /**
@@ -76,11 +81,26 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 {
 	private static final Logger log = LoggerFactory.getLogger(AbstractRestResource.class);
 
+	/**
+	 * Key for the status code set on the current response by {@link #setResponseStatusCode(int)}
+	 * or by a failed parameter conversion.
+	 */
+	private static final MetaDataKey<Integer> RESPONSE_STATUS_KEY = new MetaDataKey<Integer>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
 	/**
 	 * HashMap that stores every mapped method of the class. Mapped method are stored concatenating
 	 * the number of the segments of their URL and their HTTP method (see annotation MethodMapping)
 	 */
 	private final Map<String, List<MethodMappingInfo>> mappedMethods;
+
+	/**
+	 * The mapped methods compiled into a trie of URL segments, used to select the method that
+	 * serves a request.
+	 */
+	private final MappedMethodsTrie mappedMethodsTrie;
 	
 	/**
 	 * HashMap that stores the validators registered by the resource.
@@ -99,6 +119,9 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 	/** Bundle resolver */
 	private final IErrorMessageSource bundleResolver = new DefaultBundleResolver(getClass());
 
+	/** The cache for the responses of methods annotated with {@link Cacheable}. */
+	private final ResponseCache responseCache;
+
 	/**
 	 * Constructor with no role-checker (i.e we don't use annotation {@link AuthorizeInvocation}).
 	 * 
@@ -126,6 +149,8 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 		this.objSerialDeserial = serialDeserial;
 		this.roleCheckingStrategy = roleCheckingStrategy;
 		this.mappedMethods = loadAnnotatedMethods(new MultiMap<String, MethodMappingInfo>());
+		this.mappedMethodsTrie = new MappedMethodsTrie(getAllMappedMethods());
+		this.responseCache = newResponseCache();
 		
 		configureObjSerialDeserial(serialDeserial);
 		onInitialize(serialDeserial);
@@ -183,8 +208,23 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 			return;
 		}
 
-		// 2-extract method parameters
-		List parametersValues = extractMethodParameters(mappedMethod, attributesWrapper);
+		// 2-serve a cached response, if the method is cacheable
+		List<Object> cacheKey = null;
+
+		if (mappedMethod.getCacheable() != null && httpMethod == HttpMethod.GET)
+		{
+			cacheKey = buildCacheKey(mappedMethod, attributesWrapper);
+			CachedResponse cachedResponse = responseCache.get(cacheKey);
+
+			if (cachedResponse != null)
+			{
+				writeCachedResponse(attributesWrapper, cachedResponse);
+				return;
+			}
+		}
+
+		// 3-extract method parameters
+		Object[] parametersValues = extractMethodParameters(mappedMethod, attributesWrapper);
 
 		if (parametersValues == null)
 		{
@@ -192,7 +232,7 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 			return;
 		}
 		
-		// 3-validate method parameters
+		// 4-validate method parameters
 		List<IValidationError> validationErrors = validateMethodParameters(mappedMethod, parametersValues);
 
 		if(validationErrors.size() > 0)
@@ -204,17 +244,181 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 			return;
 		}
 		
-		// 4-invoke method triggering the before-after hooks
+		// 5-invoke method triggering the before-after hooks
 		onBeforeMethodInvoked(mappedMethod, attributes);
-		Object result = invokeMappedMethod(mappedMethod.getMethod(), parametersValues, response);
+		Object result = invokeMappedMethod(mappedMethod, parametersValues, response);
 		onAfterMethodInvoked(mappedMethod, attributes, result);
 
-		// 5-if the invoked method returns a value, it is written to response
-		if (result != null)
+		// 6-if the invoked method returns a value, it is written to response. Only successful
+		// responses are cached, as the status code is not replayed.
+		if (result != null && cacheKey != null && isSuccessfulStatus())
+		{
+			writeCachedResponse(attributesWrapper,
+				cacheResponse(mappedMethod, cacheKey, response, result));
+		}
+		else if (result != null)
 		{
 			serializeObjectToResponse(response, result, mappedMethod.getMimeOutputFormat());
 		}
 	}
+
+	/**
+	 * Checks if the status code of the current response is unset or 200 (OK).
+	 * 
+	 * @return true if the response is successful.
+	 */
+	private boolean isSuccessfulStatus()
+	{
+		Integer statusCode = RequestCycle.get().getMetaData(RESPONSE_STATUS_KEY);
+
+		return statusCode == null || statusCode == 200;
+	}
+
+	/**
+	 * Builds the key of the cached responses for the current request. The key contains the
+	 * mapped method, the URL segments (with their matrix parameters), the raw values of the
+	 * query string parameters, headers and cookies bound to the method parameters (see
+	 * {@link MethodInvocationPlan}) and the values of the other parameters and headers the method
+	 * varies by (see {@link Cacheable}).
+	 * 
+	 * @param mappedMethod
+	 *            the cacheable method.
+	 * @param attributesWrapper
+	 *            wrapper for the current Attributes
+	 * @return the cache key.
+	 */
+	private List<Object> buildCacheKey(MethodMappingInfo mappedMethod,
+		AttributesWrapper attributesWrapper)
+	{
+		Cacheable cacheable = mappedMethod.getCacheable();
+		MethodInvocationPlan invocationPlan = mappedMethod.getInvocationPlan();
+		PageParameters pageParameters = attributesWrapper.getPageParameters();
+		WebRequest webRequest = attributesWrapper.getWebRequest();
+		int indexedCount = pageParameters.getIndexedCount();
+		List<Object> cacheKey = new ArrayList<Object>(indexedCount +
+			invocationPlan.getParametersCount() + cacheable.varyByParams().length +
+			cacheable.varyByHeaders().length + 1);
+		Set<String> boundParams = new HashSet<String>();
+		Set<String> boundHeaders = new HashSet<String>();
+
+		cacheKey.add(mappedMethod);
+
+		// path and matrix parameters are part of the segments
+		for (int i = 0; i < indexedCount; i++)
+		{
+			cacheKey.add(pageParameters.get(i).toString());
+		}
+
+		for (int i = 0; i < invocationPlan.getParametersCount(); i++)
+		{
+			ParameterPlan parameterPlan = invocationPlan.getParameter(i);
+			String name = parameterPlan.getName();
+
+			switch (parameterPlan.getSource())
+			{
+				case REQUEST_PARAM :
+					boundParams.add(name);
+					cacheKey.add(pageParameters.getValues(name).toString());
+					break;
+				case HEADER_PARAM :
+					boundHeaders.add(name);
+					cacheKey.add(webRequest.getHeader(name));
+					break;
+				case COOKIE_PARAM :
+					Cookie cookie = webRequest.getCookie(name);
+					cacheKey.add(cookie != null ? cookie.getValue() : null);
+					break;
+				default :
+					break;
+			}
+		}
+
+		for (String paramName : cacheable.varyByParams())
+		{
+			if (!boundParams.contains(paramName))
+				cacheKey.add(pageParameters.getValues(paramName).toString());
+		}
+
+		for (String headerName : cacheable.varyByHeaders())
+		{
+			if (!boundHeaders.contains(headerName))
+				cacheKey.add(webRequest.getHeader(headerName));
+		}
+
+		return cacheKey;
+	}
+
+	/**
+	 * Serializes the result of a cacheable method and puts it in the response cache.
+	 * 
+	 * @param mappedMethod
+	 *            the cacheable method.
+	 * @param cacheKey
+	 *            the key for the response.
+	 * @param response
+	 *            the current response object.
+	 * @param result
+	 *            the value returned by the method.
+	 * @return the cached response.
+	 */
+	private CachedResponse cacheResponse(MethodMappingInfo mappedMethod, List<Object> cacheKey,
+		WebResponse response, Object result)
+	{
+		CapturingWebResponse capturingResponse = new CapturingWebResponse(response);
+		String mimeType = mappedMethod.getMimeOutputFormat();
+
+		serializeObjectToResponse(capturingResponse, result, mimeType);
+
+		byte[] body = capturingResponse.getContent();
+		String etag = mappedMethod.getETagGenerator().generateETag(body, mimeType);
+		long expirationTime = System.currentTimeMillis() +
+			mappedMethod.getCacheable().ttl() * 1000L;
+		CachedResponse cachedResponse = new CachedResponse(body, mimeType,
+			capturingResponse.getCharacterEncoding(), etag, expirationTime);
+
+		responseCache.put(cacheKey, cachedResponse);
+
+		return cachedResponse;
+	}
+
+	/**
+	 * Writes a cached response, or a 304 (not modified) response if the If-None-Match header of
+	 * the request matches its ETag.
+	 * 
+	 * @param attributesWrapper
+	 *            wrapper for the current Attributes
+	 * @param cachedResponse
+	 *            the cached response.
+	 */
+	private void writeCachedResponse(AttributesWrapper attributesWrapper,
+		CachedResponse cachedResponse)
+	{
+		WebResponse response = attributesWrapper.getWebResponse();
+		String ifNoneMatch = attributesWrapper.getWebRequest().getHeader("If-None-Match");
+
+		response.setHeader("ETag", cachedResponse.getETag());
+
+		if (cachedResponse.matches(ifNoneMatch))
+		{
+			responseCache.countNotModified();
+			response.setStatus(304);
+			return;
+		}
+
+		Object containerResponse = response.getContainerResponse();
+
+		if (cachedResponse.getCharacterEncoding() != null &&
+			containerResponse instanceof ServletResponse)
+		{
+			ServletResponse servletResponse = (ServletResponse)containerResponse;
+
+			servletResponse.setCharacterEncoding(cachedResponse.getCharacterEncoding());
+		}
+
+		response.setContentType(cachedResponse.getMimeType());
+		response.setContentLength(cachedResponse.getBody().length);
+		response.write(cachedResponse.getBody());
+	}
 	
 
 	/**
@@ -261,21 +465,21 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 	 * 			the parameter values
 	 * @return the list of validation errors, it is empty if validation succeeds
 	 */
-	private List<IValidationError> validateMethodParameters(MethodMappingInfo mappedMethod, List parametersValues)
+	private List<IValidationError> validateMethodParameters(MethodMappingInfo mappedMethod, Object[] parametersValues)
 	{
 		List<MethodParameter> methodParameters = mappedMethod.getMethodParameters();
 		List<IValidationError> errors = new ArrayList<IValidationError>();
 		
-		for (MethodParameter methodParameter : methodParameters) 
+		for (int i = 0; i < parametersValues.length; i++) 
 		{
-			int i = methodParameters.indexOf(methodParameter);
-			
+			MethodParameter methodParameter = methodParameters.get(i);
 			String validatorKey = methodParameter.getValdatorKey();			
 			IValidator validator = getValidator(validatorKey);
-			Validatable validatable = new Validatable(parametersValues.get(i));
 			
 			if(validator != null)
 			{
+				Validatable validatable = new Validatable(parametersValues[i]);
+				
 				validator.validate(validatable);
 				errors.addAll(validatable.getErrors());
 			}
@@ -341,65 +545,42 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 	/**
 	 * Method invoked to select the most suited method to serve the current request.
 	 * 
-	 * @param mappedMethods
-	 *            List of {@link MethodMappingInfo} containing the informations of mapped methods.
-	 * @param pageParameters
-	 *            The PageParameters of the current request.
+	 * @param attributesWrapper
+	 *            wrapper for the Attributes of the current request.
 	 * @return The "best" method found to serve the request.
 	 */
 	private MethodMappingInfo selectMostSuitedMethod(AttributesWrapper attributesWrapper)
 	{
-		int indexedParamCount = attributesWrapper.getPageParameters().getIndexedCount();
-		PageParameters pageParameters = attributesWrapper.getPageParameters();
-		List<MethodMappingInfo> mappedMethodsCandidates = mappedMethods.get(indexedParamCount +
-			"_" + attributesWrapper.getHttpMethod());
-
-		MultiMap<Integer, MethodMappingInfo> mappedMethodByScore = new MultiMap<Integer, MethodMappingInfo>();
-		int highestScore = 0;
+		List<MethodMappingInfo> mappedMethodsCandidates = mappedMethodsTrie.select(
+			attributesWrapper.getHttpMethod(), attributesWrapper.getPageParameters());
 
 		// no method mapped
-		if (mappedMethodsCandidates == null || mappedMethodsCandidates.size() == 0)
+		if (mappedMethodsCandidates.isEmpty())
 			return null;
 
-		/**
-		 * To select the "best" method, a score is assigned to every mapped method. To calculate the
-		 * score method calculateScore is executed for every segment.
-		 */
-		for (MethodMappingInfo mappedMethod : mappedMethodsCandidates)
-		{
-			List<AbstractURLSegment> segments = mappedMethod.getSegments();
-			int score = 0;
-
-			for (AbstractURLSegment segment : segments)
-			{
-				int i = segments.indexOf(segment);
-				String currentActualSegment = AbstractURLSegment.getActualSegment(pageParameters.get(
-					i).toString());
-
-				int partialScore = segment.calculateScore(currentActualSegment);
+		// if we have more than one method with the highest score, throw
+		// ambiguous exception.
+		if (mappedMethodsCandidates.size() > 1)
+			throwAmbiguousMethodsException(mappedMethodsCandidates);
 
-				if (partialScore == 0)
-				{
-					score = -1;
-					break;
-				}
+		return mappedMethodsCandidates.get(0);
+	}
 
-				score += partialScore;
-			}
+	/**
+	 * Collects the mapped methods of every HTTP method and segments count.
+	 * 
+	 * @return the list of all the mapped methods.
+	 */
+	private List<MethodMappingInfo> getAllMappedMethods()
+	{
+		List<MethodMappingInfo> allMappedMethods = new ArrayList<MethodMappingInfo>();
 
-			if (score >= highestScore)
-			{
-				highestScore = score;
-				mappedMethodByScore.addValue(score, mappedMethod);
-			}
+		for (List<MethodMappingInfo> methods : mappedMethods.values())
+		{
+			allMappedMethods.addAll(methods);
 		}
-		// if we have more than one method with the highest score, throw
-		// ambiguous exception.
-		if (mappedMethodByScore.get(highestScore) != null &&
-			mappedMethodByScore.get(highestScore).size() > 1)
-			throwAmbiguousMethodsException(mappedMethodByScore.get(highestScore));
 
-		return mappedMethodByScore.getFirstValue(highestScore);
+		return allMappedMethods;
 	}
 
 	/**
@@ -479,6 +660,12 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 					throw new WicketRuntimeException(
 						"Mapped methods use a MIME type not supported by obj serializer/deserializer!");
 
+				// only the responses of safe requests can be served again
+				if (methodMappingInfo.getCacheable() != null && httpMethod != HttpMethod.GET)
+					throw new WicketRuntimeException("Method '" + method.getName() +
+						"' is annotated with Cacheable but it is mapped with HTTP method " +
+						httpMethod.getMethod() + " instead of GET.");
+
 				mappedMethods.addValue(
 					methodMappingInfo.getSegmentsCount() + "_" + httpMethod.getMethod(),
 					methodMappingInfo);
@@ -526,39 +713,38 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 	}
 
 	/***
-	 * Invokes one of the resource methods annotated with {@link MethodMapping}.
+	 * Extracts the values of the parameters of a mapped method from the current request, following
+	 * the invocation plan of the method.
 	 * 
 	 * @param mappedMethod
 	 *            mapping info of the method.
-	 * @param attributes
-	 *            Attributes object for the current request.
-	 * @return the value returned by the invoked method
+	 * @param attributesWrapper
+	 *            wrapper for the Attributes of the current request.
+	 * @return the values of method parameters, or null if a required value is missing.
 	 */
-	private List extractMethodParameters(MethodMappingInfo mappedMethod,
+	private Object[] extractMethodParameters(MethodMappingInfo mappedMethod,
 		AttributesWrapper attributesWrapper)
 	{
-		Method method = mappedMethod.getMethod();
-		List parametersValues = new ArrayList();
+		MethodInvocationPlan invocationPlan = mappedMethod.getInvocationPlan();
+		Object[] parametersValues = invocationPlan.newArguments();
 		PageParameters pageParameters = attributesWrapper.getPageParameters();
 		LinkedHashMap<String, String> pathParameters = mappedMethod.populatePathParameters(pageParameters);
 		Iterator<String> pathParamsIterator = pathParameters.values().iterator();
-		List<MethodParameter> methodParameters = mappedMethod.getMethodParameters();
+		IConverterLocator converterLocator = Application.get().getConverterLocator();
 		
-		for (MethodParameter methodParameter : methodParameters)
+		for (int i = 0; i < parametersValues.length; i++)
 		{
-			Object paramValue = null;
-			Annotation annotation = ReflectionUtils.getAnnotationParam(methodParameters.indexOf(methodParameter), method);
+			ParameterPlan parameterPlan = invocationPlan.getParameter(i);
+			MethodParameter methodParameter = parameterPlan.getMethodParameter();
+			IConverter converter = parameterPlan.getConverter(converterLocator);
 
 			// retrieve parameter value
-			if (annotation != null)
-				paramValue = extractParameterValue(methodParameter, pathParameters, annotation,
-					pageParameters);
-			else
-				paramValue = extractParameterFromUrl(methodParameter, pathParamsIterator);
+			Object paramValue = extractParameterValue(parameterPlan, converter, pathParameters,
+				pathParamsIterator, pageParameters);
 
 			// try to use the default value
 			if (paramValue == null && !methodParameter.getDeaultValue().isEmpty())
-				paramValue = toObject(methodParameter.getParameterClass(),
+				paramValue = toObject(converter, methodParameter.getParameterClass(),
 					methodParameter.getDeaultValue());
 
 			// if parameter is null and is required, abort extraction.
@@ -567,7 +753,7 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 				return null;
 			}
 
-			parametersValues.add(paramValue);
+			parametersValues[i] = paramValue;
 		}
 
 		return parametersValues;
@@ -576,24 +762,25 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 	/**
 	 * Execute a method implemented in the current resource class
 	 * 
-	 * @param method
-	 *            the method that must be executed.
+	 * @param mappedMethod
+	 *            mapping info of the method that must be executed.
 	 * @param parametersValues
 	 *            method parameters
 	 * @param response
 	 *            the current WebResponse object.
 	 * @return the value (if any) returned by the method.
 	 */
-	private Object invokeMappedMethod(Method method, List parametersValues, WebResponse response)
+	private Object invokeMappedMethod(MethodMappingInfo mappedMethod, Object[] parametersValues,
+		WebResponse response)
 	{
 		try
 		{
-			return method.invoke(this, parametersValues.toArray());
+			return mappedMethod.getInvocationPlan().invoke(this, parametersValues);
 		}
 		catch (Exception e)
 		{
 			response.sendError(500, "General server error.");
-			log.debug("Error invoking method '" + method.getName() + "'");
+			log.debug("Error invoking method '" + mappedMethod.getMethod().getName() + "'");
 		}
 
 		return null;
@@ -610,44 +797,48 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 	}
 
 	/**
-	 * Extract the value for an annotated-method parameter (see package
+	 * Extract the value for a method parameter from the source resolved by its plan (see package
 	 * {@link org.wicketstuff.rest.annotations.parameters}).
 	 * 
-	 * @param methodParameter
-	 *            the current method parameter.
+	 * @param parameterPlan
+	 *            the plan of the current method parameter.
+	 * @param converter
+	 *            the converter for the type of the parameter.
 	 * @param pathParameters
 	 *            the values of path parameters for the current request.
-	 * @param annotation
-	 *            the annotation for the current parameter that indicates how to retrieve the value
-	 *            for the current parameter.
+	 * @param pathParamIterator
+	 *            an iterator on the current values of path parameters.
 	 * @param pageParameters
 	 *            PageParameters for the current request.
 	 * @return the extracted value.
 	 */
-	private Object extractParameterValue(MethodParameter methodParameter,
-		LinkedHashMap<String, String> pathParameters, Annotation annotation,
+	private Object extractParameterValue(ParameterPlan parameterPlan, IConverter converter,
+		LinkedHashMap<String, String> pathParameters, Iterator<String> pathParamIterator,
 		PageParameters pageParameters)
 	{
-		Object paramValue = null;
+		MethodParameter methodParameter = parameterPlan.getMethodParameter();
 		Class<?> argClass = methodParameter.getParameterClass();
-		String mimeInputFormat = methodParameter.getOwnerMethod().getMimeInputFormat();
-
-		if (annotation instanceof RequestBody)
-			paramValue = deserializeObjectFromRequest(argClass, mimeInputFormat);
-		else if (annotation instanceof PathParam)
-			paramValue = toObject(argClass, pathParameters.get(((PathParam)annotation).value()));
-		else if (annotation instanceof RequestParam)
-			paramValue = extractParameterFromQuery(pageParameters, (RequestParam)annotation,
-				argClass);
-		else if (annotation instanceof HeaderParam)
-			paramValue = extractParameterFromHeader((HeaderParam)annotation, argClass);
-		else if (annotation instanceof CookieParam)
-			paramValue = extractParameterFromCookies((CookieParam)annotation, argClass);
-		else if (annotation instanceof MatrixParam)
-			paramValue = extractParameterFromMatrixParams(pageParameters, (MatrixParam)annotation,
-				argClass);
+		String name = parameterPlan.getName();
 
-		return paramValue;
+		switch (parameterPlan.getSource())
+		{
+			case REQUEST_BODY :
+				return deserializeObjectFromRequest(argClass,
+					methodParameter.getOwnerMethod().getMimeInputFormat());
+			case PATH_PARAM :
+				return toObject(converter, argClass, pathParameters.get(name));
+			case REQUEST_PARAM :
+				return extractParameterFromQuery(pageParameters, name, converter, argClass);
+			case HEADER_PARAM :
+				return extractParameterFromHeader(name, converter, argClass);
+			case COOKIE_PARAM :
+				return extractParameterFromCookies(name, converter, argClass);
+			case MATRIX_PARAM :
+				return extractParameterFromMatrixParams(pageParameters,
+					parameterPlan.getSegmentIndex(), name, converter, argClass);
+			default :
+				return extractParameterFromUrl(pathParamIterator, converter, argClass);
+		}
 	}
 
 	/**
@@ -655,41 +846,45 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 	 * 
 	 * @param pageParameters
 	 *            PageParameters for the current request.
-	 * @param matrixParam
-	 *            the {@link MatrixParam} annotation used for the current parameter.
+	 * @param segmentIndex
+	 *            the index of the segment containing the matrix parameter.
+	 * @param variableName
+	 *            the name of the matrix parameter.
+	 * @param converter
+	 *            the converter for argClass.
 	 * @param argClass
 	 *            the type of the current method parameter.
 	 * @return the value obtained from query parameters and converted to argClass.
 	 */
 	private Object extractParameterFromMatrixParams(PageParameters pageParameters,
-		MatrixParam matrixParam, Class<?> argClass)
+		int segmentIndex, String variableName, IConverter converter, Class<?> argClass)
 	{
-		int segmentIndex = matrixParam.segmentIndex();
-		String variableName = matrixParam.parameterName();
 		String rawsSegment = pageParameters.get(segmentIndex).toString();
 		Map<String, String> matrixParameters = AbstractURLSegment.getSegmentMatrixParameters(rawsSegment);
 
 		if (matrixParameters.get(variableName) == null)
 			return null;
 
-		return toObject(argClass, matrixParameters.get(variableName));
+		return toObject(converter, argClass, matrixParameters.get(variableName));
 	}
 
 	/**
 	 * Extract method parameter value from request header.
 	 * 
-	 * @param headerParam
-	 *            the {@link HeaderParam} annotation used for the current method parameter.
+	 * @param headerName
+	 *            the name of the header.
+	 * @param converter
+	 *            the converter for argClass.
 	 * @param argClass
 	 *            the type of the current method parameter.
 	 * @return the extracted value converted to argClass.
 	 */
-	private Object extractParameterFromHeader(HeaderParam headerParam, Class<?> argClass)
+	private Object extractParameterFromHeader(String headerName, IConverter converter,
+		Class<?> argClass)
 	{
-		String value = headerParam.value();
 		WebRequest webRequest = (WebRequest)RequestCycle.get().getRequest();
 
-		return toObject(argClass, webRequest.getHeader(value));
+		return toObject(converter, argClass, webRequest.getHeader(headerName));
 	}
 
 	/**
@@ -697,42 +892,46 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 	 * 
 	 * @param pageParameters
 	 *            the PageParameters of the current request.
-	 * @param requestParam
-	 *            the {@link RequestParam} annotation used for the current method parameter.
+	 * @param parameterName
+	 *            the name of the query string parameter.
+	 * @param converter
+	 *            the converter for argClass.
 	 * @param argClass
 	 *            the type of the current method parameter.
 	 * @return the extracted value converted to argClass.
 	 */
 	private Object extractParameterFromQuery(PageParameters pageParameters,
-		RequestParam requestParam, Class<?> argClass)
+		String parameterName, IConverter converter, Class<?> argClass)
 	{
+		StringValue value = pageParameters.get(parameterName);
 
-		String value = requestParam.value();
-
-		if (pageParameters.get(value) == null)
+		if (value == null)
 			return null;
 
-		return toObject(argClass, pageParameters.get(value).toString());
+		return toObject(converter, argClass, value.toString());
 	}
 
 	/**
 	 * Extract method parameter's value from cookies.
 	 * 
-	 * @param annotation
-	 *            the {@link CookieParam} annotation used for the current method parameter.
+	 * @param cookieName
+	 *            the name of the cookie.
+	 * @param converter
+	 *            the converter for argClass.
 	 * @param argClass
 	 *            the type of the current method parameter.
 	 * @return the extracted value converted to argClass.
 	 */
-	private Object extractParameterFromCookies(CookieParam cookieParam, Class<?> argClass)
+	private Object extractParameterFromCookies(String cookieName, IConverter converter,
+		Class<?> argClass)
 	{
-		String value = cookieParam.value();
 		WebRequest webRequest = (WebRequest)RequestCycle.get().getRequest();
+		Cookie cookie = webRequest.getCookie(cookieName);
 
-		if (webRequest.getCookie(value) == null)
+		if (cookie == null)
 			return null;
 
-		return toObject(argClass, webRequest.getCookie(value).getValue());
+		return toObject(converter, argClass, cookie.getValue());
 	}
 
 	/**
@@ -759,20 +958,22 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 	/***
 	 * Extract a parameter values from the REST URL.
 	 * 
-	 * @param methodParameter
-	 *            the current method parameter.
 	 * @param pathParamIterator
 	 *            an iterator on the current values of path parameters.
+	 * @param converter
+	 *            the converter for argClass.
+	 * @param argClass
+	 *            the type of the current method parameter.
 	 * 
 	 * @return the parameter value.
 	 */
-	private Object extractParameterFromUrl(MethodParameter methodParameter,
-		Iterator<String> pathParamIterator)
+	private Object extractParameterFromUrl(Iterator<String> pathParamIterator,
+		IConverter converter, Class<?> argClass)
 	{
 		if (!pathParamIterator.hasNext())
 			return null;
 
-		return toObject(methodParameter.getParameterClass(), pathParamIterator.next());
+		return toObject(converter, argClass, pathParamIterator.next());
 	}
 
 	/**
@@ -795,20 +996,50 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 		{
 			IConverter converter = Application.get().getConverterLocator().getConverter(clazz);
 
-			return converter.convertToObject(value, Session.get().getLocale());
+			return toObject(converter, clazz, value);
 		}
 		catch (Exception e)
 		{
-			WebResponse response = (WebResponse)RequestCycle.get().getResponse();
-
-			response.setStatus(400);
-			log.debug("Could not find a suitable converter for value '" + value + "' of type '" +
-				clazz + "'");
+			return conversionFailed(clazz, value);
+		}
+	}
 
+	/**
+	 * Converts a string value with the given converter. See {@link #toObject(Class, String)}.
+	 * 
+	 * @param converter
+	 *            the converter for clazz.
+	 * @param clazz
+	 *            the type of the object we want to obtain.
+	 * @param value
+	 *            the string value we want to convert.
+	 * @return the object corresponding to the converted string value, or null if value parameter is
+	 *         null or can not be converted.
+	 */
+	private static Object toObject(IConverter converter, Class clazz, String value)
+	{
+		if (value == null)
 			return null;
+
+		try
+		{
+			return converter.convertToObject(value, Session.get().getLocale());
+		}
+		catch (Exception e)
+		{
+			return conversionFailed(clazz, value);
 		}
 	}
 
+	private static Object conversionFailed(Class clazz, String value)
+	{
+		setCurrentResponseStatus(400);
+		log.debug("Could not find a suitable converter for value '" + value + "' of type '" +
+			clazz + "'");
+
+		return null;
+	}
+
 	/**
 	 * Set the status code for the current response.
 	 * 
@@ -819,8 +1050,7 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 	{
 		try
 		{
-			WebResponse webResponse = (WebResponse) RequestCycle.get().getResponse();
-			webResponse.setStatus(statusCode);
+			setCurrentResponseStatus(statusCode);
 		}
 		catch (Exception e)
 		{
@@ -828,6 +1058,21 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 				"Could not find a suitable WebResponse object for the current ThreadContext.", e);
 		}
 	}
+
+	/**
+	 * Sets the status code on the current response and keeps track of it for the response cache.
+	 * 
+	 * @param statusCode
+	 *            the status code.
+	 */
+	private static void setCurrentResponseStatus(int statusCode)
+	{
+		RequestCycle requestCycle = RequestCycle.get();
+		WebResponse webResponse = (WebResponse)requestCycle.getResponse();
+
+		webResponse.setStatus(statusCode);
+		requestCycle.setMetaData(RESPONSE_STATUS_KEY, statusCode);
+	}
 	
 	/**
 	 * Return mapped methods grouped by number of segments and HTTP method. So for example, to get
@@ -840,6 +1085,28 @@ public abstract class AbstractRestResource<T extends IWebSerialDeserial> impleme
 	{
 		return mappedMethods;
 	}
+
+	/**
+	 * Creates the cache for the responses of methods annotated with {@link Cacheable}. Override it
+	 * to change the limits of the cache.
+	 * 
+	 * @return the response cache.
+	 */
+	protected ResponseCache newResponseCache()
+	{
+		return new ResponseCache();
+	}
+
+	/**
+	 * Gets the cache for the responses of methods annotated with {@link Cacheable}, for example to
+	 * read its statistics or to clear it when the data changes.
+	 * 
+	 * @return the response cache.
+	 */
+	public ResponseCache getResponseCache()
+	{
+		return responseCache;
+	}
 	
 	protected void registerValidator(String key, IValidator validator){
 		declaredValidators.put(key, validator);
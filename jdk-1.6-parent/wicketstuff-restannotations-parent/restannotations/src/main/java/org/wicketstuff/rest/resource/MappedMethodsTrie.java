@@ -0,0 +1,275 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wicketstuff.rest.resource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.wicketstuff.rest.resource.urlsegments.AbstractURLSegment;
+import org.wicketstuff.rest.resource.urlsegments.FixedURLSegment;
+import org.wicketstuff.rest.utils.http.HttpMethod;
+
+/**
+ * Routing table that compiles the mapped methods of a resource into a trie of URL segments. There
+ * is a trie for every HTTP method and number of segments. Each node indexes its fixed segments by
+ * their value, so they are selected with a single hash lookup, while parameter and regular
+ * expression segments are kept in a separate list and tested only after them.<br/>
+ * The selection follows the same rules used so far: every fixed segment that matches scores 2,
+ * every other segment scores 1 and the method with the highest score wins. Two methods mapped on
+ * the same HTTP method and on equivalent segments are detected when the trie is built. Methods
+ * whose segments are different but can match the same URL with the same score (for example two
+ * regular expressions) can only be detected at request time.
+ *
+ */
+public class MappedMethodsTrie
+{
+	/** Roots of the tries, indexed by HTTP method and by segments count. */
+	private final Map<HttpMethod, List<Node>> roots = new EnumMap<HttpMethod, List<Node>>(
+		HttpMethod.class);
+
+	/**
+	 * Builds the trie for the given mapped methods.
+	 *
+	 * @param mappedMethods
+	 *            the mapped methods of the resource.
+	 * @throws WicketRuntimeException
+	 *             if two methods are mapped on the same HTTP method and on equivalent segments.
+	 */
+	public MappedMethodsTrie(Collection<MethodMappingInfo> mappedMethods)
+	{
+		for (MethodMappingInfo mappedMethod : mappedMethods)
+		{
+			addMappedMethod(mappedMethod);
+		}
+	}
+
+	/**
+	 * Adds a mapped method to the trie.
+	 *
+	 * @param mappedMethod
+	 *            the mapped method
+	 */
+	private void addMappedMethod(MethodMappingInfo mappedMethod)
+	{
+		List<Node> rootsByCount = roots.get(mappedMethod.getHttpMethod());
+		int segmentsCount = mappedMethod.getSegmentsCount();
+
+		if (rootsByCount == null)
+		{
+			rootsByCount = new ArrayList<Node>();
+			roots.put(mappedMethod.getHttpMethod(), rootsByCount);
+		}
+
+		while (rootsByCount.size() <= segmentsCount)
+			rootsByCount.add(null);
+
+		Node node = rootsByCount.get(segmentsCount);
+
+		if (node == null)
+		{
+			node = new Node(null);
+			rootsByCount.set(segmentsCount, node);
+		}
+
+		for (AbstractURLSegment segment : mappedMethod.getSegments())
+		{
+			node = node.getOrAddChild(segment);
+		}
+
+		if (node.mappedMethod != null)
+			throw new WicketRuntimeException("Ambiguous methods mapped on the same URL: '" +
+				node.mappedMethod.getMethod().getName() + "' and '" +
+				mappedMethod.getMethod().getName() + "', HTTP method " +
+				mappedMethod.getHttpMethod() + ".");
+
+		node.mappedMethod = mappedMethod;
+	}
+
+	/**
+	 * Selects the most suited method to serve a request.
+	 *
+	 * @param httpMethod
+	 *            the HTTP method of the request.
+	 * @param pageParameters
+	 *            the PageParameters of the request, with the URL segments as indexed parameters.
+	 * @return the methods with the highest score: an empty list if no method matches the request,
+	 *         more than one element if the request is ambiguous.
+	 */
+	public List<MethodMappingInfo> select(HttpMethod httpMethod, PageParameters pageParameters)
+	{
+		List<Node> rootsByCount = roots.get(httpMethod);
+		int segmentsCount = pageParameters.getIndexedCount();
+		Selection selection = new Selection();
+
+		if (rootsByCount != null && segmentsCount < rootsByCount.size() &&
+			rootsByCount.get(segmentsCount) != null)
+		{
+			String[] actualSegments = new String[segmentsCount];
+
+			for (int i = 0; i < segmentsCount; i++)
+			{
+				actualSegments[i] = actualSegment(pageParameters.get(i).toString());
+			}
+
+			rootsByCount.get(segmentsCount).select(actualSegments, 0, 0, selection);
+		}
+
+		return selection.getBest();
+	}
+
+	/**
+	 * Strips the optional matrix parameters from a segment. Same as
+	 * {@link AbstractURLSegment#getActualSegment(String)} but without compiling a regular
+	 * expression for every segment.
+	 *
+	 * @param fullSegment
+	 *            the full segment.
+	 * @return the segment without matrix parameters.
+	 */
+	private static String actualSegment(String fullSegment)
+	{
+		int semicolonIndex = fullSegment.indexOf(';');
+
+		return semicolonIndex < 0 ? fullSegment : fullSegment.substring(0, semicolonIndex);
+	}
+
+	/**
+	 * A node of the trie, corresponding to a segment of the mapped URLs.
+	 */
+	private static class Node
+	{
+		/** The segment of this node, null for a root. */
+		private final AbstractURLSegment segment;
+
+		/** Children with a fixed segment, indexed by the segment value. */
+		private final Map<String, Node> fixedChildren = new HashMap<String, Node>();
+
+		/**
+		 * Children with a parameter segment, indexed by the segment pattern so that equivalent
+		 * segments (e.g. "{id}" and "{name}") share the same node.
+		 */
+		private final Map<String, Node> paramChildren = new LinkedHashMap<String, Node>();
+
+		/** The children of paramChildren, as an array to iterate over at request time. */
+		private Node[] paramChildrenArray = new Node[0];
+
+		/** The method mapped on the path ending with this node. */
+		private MethodMappingInfo mappedMethod;
+
+		Node(AbstractURLSegment segment)
+		{
+			this.segment = segment;
+		}
+
+		Node getOrAddChild(AbstractURLSegment childSegment)
+		{
+			boolean fixed = childSegment instanceof FixedURLSegment;
+			Map<String, Node> children = fixed ? fixedChildren : paramChildren;
+			String key = fixed ? childSegment.toString() : childSegment.getMetaPattern()
+				.toString();
+			Node child = children.get(key);
+
+			if (child == null)
+			{
+				child = new Node(childSegment);
+				children.put(key, child);
+
+				if (!fixed)
+					paramChildrenArray = paramChildren.values().toArray(new Node[0]);
+			}
+
+			return child;
+		}
+
+		void select(String[] actualSegments, int index, int score, Selection selection)
+		{
+			if (index == actualSegments.length)
+			{
+				if (mappedMethod != null)
+					selection.offer(mappedMethod, score);
+
+				return;
+			}
+
+			String actualSegment = actualSegments[index];
+			Node fixedChild = fixedChildren.get(actualSegment);
+
+			if (fixedChild != null)
+				fixedChild.select(actualSegments, index + 1, score + 2, selection);
+
+			for (int i = 0; i < paramChildrenArray.length; i++)
+			{
+				Node child = paramChildrenArray[i];
+				int partialScore = child.segment.calculateScore(actualSegment);
+
+				if (partialScore > 0)
+					child.select(actualSegments, index + 1, score + partialScore, selection);
+			}
+		}
+	}
+
+	/**
+	 * Keeps track of the methods with the highest score found so far.
+	 */
+	private static class Selection
+	{
+		private int highestScore = -1;
+
+		private MethodMappingInfo best;
+
+		private List<MethodMappingInfo> ties;
+
+		void offer(MethodMappingInfo mappedMethod, int score)
+		{
+			if (score > highestScore)
+			{
+				highestScore = score;
+				best = mappedMethod;
+				ties = null;
+			}
+			else if (score == highestScore)
+			{
+				if (ties == null)
+				{
+					ties = new ArrayList<MethodMappingInfo>();
+					ties.add(best);
+				}
+
+				ties.add(mappedMethod);
+			}
+		}
+
+		List<MethodMappingInfo> getBest()
+		{
+			if (ties != null)
+				return ties;
+
+			if (best == null)
+				return Collections.emptyList();
+
+			return Collections.singletonList(best);
+		}
+	}
+}
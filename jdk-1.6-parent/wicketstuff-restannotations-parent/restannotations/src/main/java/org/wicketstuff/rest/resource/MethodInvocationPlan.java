@@ -0,0 +1,383 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wicketstuff.rest.resource;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.IConverterLocator;
+import org.apache.wicket.util.convert.IConverter;
+import org.wicketstuff.rest.annotations.parameters.CookieParam;
+import org.wicketstuff.rest.annotations.parameters.HeaderParam;
+import org.wicketstuff.rest.annotations.parameters.MatrixParam;
+import org.wicketstuff.rest.annotations.parameters.PathParam;
+import org.wicketstuff.rest.annotations.parameters.RequestBody;
+import org.wicketstuff.rest.annotations.parameters.RequestParam;
+import org.wicketstuff.rest.utils.reflection.MethodParameter;
+import org.wicketstuff.rest.utils.reflection.ReflectionUtils;
+
+/**
+ * Invocation plan of a mapped method, built once with its {@link MethodMappingInfo}. The plan
+ * resolves in advance how the value of every method parameter is extracted from the request (see
+ * {@link ParameterSource}) and caches the converters of the parameter types, so that serving a
+ * request doesn't need to inspect annotations or look up converters again.<br/>
+ * The plan also keeps timing metrics of the invocations of the method.
+ *
+ */
+public class MethodInvocationPlan
+{
+	/**
+	 * The possible sources of the value of a method parameter.
+	 */
+	public enum ParameterSource
+	{
+		/** The request body (see {@link RequestBody}). */
+		REQUEST_BODY,
+		/** A named path parameter (see {@link PathParam}). */
+		PATH_PARAM,
+		/** A query string parameter (see {@link RequestParam}). */
+		REQUEST_PARAM,
+		/** A request header (see {@link HeaderParam}). */
+		HEADER_PARAM,
+		/** A cookie (see {@link CookieParam}). */
+		COOKIE_PARAM,
+		/** A matrix parameter (see {@link MatrixParam}). */
+		MATRIX_PARAM,
+		/** The next path parameter, used for parameters without annotations. */
+		URL_SEGMENT
+	}
+
+	/** The method to invoke. */
+	private final Method method;
+
+	/** The plans of method parameters, in declaration order. */
+	private final ParameterPlan[] parameters;
+
+	private final AtomicLong invocationsCount = new AtomicLong();
+
+	private final AtomicLong failuresCount = new AtomicLong();
+
+	private final AtomicLong totalNanos = new AtomicLong();
+
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * Builds the plan for a mapped method.
+	 *
+	 * @param mappingInfo
+	 *            the mapping info of the method.
+	 */
+	MethodInvocationPlan(MethodMappingInfo mappingInfo)
+	{
+		List<MethodParameter> methodParameters = mappingInfo.getMethodParameters();
+
+		this.method = mappingInfo.getMethod();
+		this.parameters = new ParameterPlan[methodParameters.size()];
+
+		for (int i = 0; i < parameters.length; i++)
+		{
+			parameters[i] = new ParameterPlan(methodParameters.get(i));
+		}
+
+		// public methods pass the access check anyway, skipping it makes the invocation faster.
+		if (Modifier.isPublic(method.getModifiers()))
+		{
+			try
+			{
+				method.setAccessible(true);
+			}
+			catch (SecurityException e)
+			{
+				// keep the access check
+			}
+		}
+	}
+
+	/**
+	 * Creates the array for the arguments of an invocation.
+	 *
+	 * @return a new array sized for the method parameters.
+	 */
+	public Object[] newArguments()
+	{
+		return new Object[parameters.length];
+	}
+
+	/**
+	 * Gets the plan of a method parameter.
+	 *
+	 * @param index
+	 *            the index of the parameter.
+	 * @return the plan of the parameter.
+	 */
+	public ParameterPlan getParameter(int index)
+	{
+		return parameters[index];
+	}
+
+	/**
+	 * Gets the number of method parameters.
+	 *
+	 * @return the number of parameters.
+	 */
+	public int getParametersCount()
+	{
+		return parameters.length;
+	}
+
+	/**
+	 * Invokes the method and records the time it took.
+	 *
+	 * @param target
+	 *            the resource instance.
+	 * @param arguments
+	 *            the arguments of the method.
+	 * @return the value returned by the method.
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 */
+	public Object invoke(Object target, Object[] arguments) throws IllegalAccessException,
+		InvocationTargetException
+	{
+		long start = System.nanoTime();
+		boolean failed = true;
+
+		try
+		{
+			Object result = method.invoke(target, arguments);
+			failed = false;
+			return result;
+		}
+		finally
+		{
+			recordInvocation(System.nanoTime() - start, failed);
+		}
+	}
+
+	private void recordInvocation(long nanos, boolean failed)
+	{
+		invocationsCount.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+
+		if (failed)
+			failuresCount.incrementAndGet();
+
+		long max = maxNanos.get();
+
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos))
+		{
+			max = maxNanos.get();
+		}
+	}
+
+	/**
+	 * Gets the number of invocations of the method.
+	 *
+	 * @return the number of invocations.
+	 */
+	public long getInvocationsCount()
+	{
+		return invocationsCount.get();
+	}
+
+	/**
+	 * Gets the number of invocations that threw an exception.
+	 *
+	 * @return the number of failed invocations.
+	 */
+	public long getFailuresCount()
+	{
+		return failuresCount.get();
+	}
+
+	/**
+	 * Gets the total time spent in the method.
+	 *
+	 * @return the total time in nanoseconds.
+	 */
+	public long getTotalNanos()
+	{
+		return totalNanos.get();
+	}
+
+	/**
+	 * Gets the longest invocation time of the method.
+	 *
+	 * @return the longest time in nanoseconds.
+	 */
+	public long getMaxNanos()
+	{
+		return maxNanos.get();
+	}
+
+	/**
+	 * Gets the average invocation time of the method.
+	 *
+	 * @return the average time in nanoseconds, 0 if the method has never been invoked.
+	 */
+	public long getAverageNanos()
+	{
+		long count = invocationsCount.get();
+
+		return count == 0 ? 0 : totalNanos.get() / count;
+	}
+
+	/**
+	 * Resets the timing metrics.
+	 */
+	public void resetMetrics()
+	{
+		invocationsCount.set(0);
+		failuresCount.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+	}
+
+	@Override
+	public String toString()
+	{
+		return method.getName() + ": " + getInvocationsCount() + " invocations, " +
+			getFailuresCount() + " failures, avg " + getAverageNanos() + "ns, max " +
+			getMaxNanos() + "ns";
+	}
+
+	/**
+	 * Plan to extract the value of a single method parameter.
+	 */
+	public static class ParameterPlan
+	{
+		private final MethodParameter<?> methodParameter;
+
+		private final ParameterSource source;
+
+		/** The name of the parameter in its source, null for the request body and URL segments. */
+		private final String name;
+
+		/** The index of the segment for matrix parameters. */
+		private final int segmentIndex;
+
+		/** The converter for the parameter type, with the locator it was obtained from. */
+		private volatile ConverterHolder converterHolder;
+
+		ParameterPlan(MethodParameter<?> methodParameter)
+		{
+			MethodMappingInfo ownerMethod = methodParameter.getOwnerMethod();
+			Annotation annotation = ReflectionUtils.getAnnotationParam(
+				methodParameter.getParamIndex(), ownerMethod.getMethod());
+
+			this.methodParameter = methodParameter;
+
+			if (annotation instanceof RequestBody)
+			{
+				source = ParameterSource.REQUEST_BODY;
+				name = null;
+			}
+			else if (annotation instanceof PathParam)
+			{
+				source = ParameterSource.PATH_PARAM;
+				name = ((PathParam)annotation).value();
+			}
+			else if (annotation instanceof RequestParam)
+			{
+				source = ParameterSource.REQUEST_PARAM;
+				name = ((RequestParam)annotation).value();
+			}
+			else if (annotation instanceof HeaderParam)
+			{
+				source = ParameterSource.HEADER_PARAM;
+				name = ((HeaderParam)annotation).value();
+			}
+			else if (annotation instanceof CookieParam)
+			{
+				source = ParameterSource.COOKIE_PARAM;
+				name = ((CookieParam)annotation).value();
+			}
+			else if (annotation instanceof MatrixParam)
+			{
+				source = ParameterSource.MATRIX_PARAM;
+				name = ((MatrixParam)annotation).parameterName();
+			}
+			else
+			{
+				source = ParameterSource.URL_SEGMENT;
+				name = null;
+			}
+
+			segmentIndex = annotation instanceof MatrixParam
+				? ((MatrixParam)annotation).segmentIndex() : -1;
+		}
+
+		/**
+		 * Gets the converter for the parameter type. The converter is looked up once and then
+		 * reused, as long as the converter locator doesn't change.
+		 *
+		 * @param converterLocator
+		 *            the current converter locator.
+		 * @return the converter for the parameter type.
+		 */
+		public IConverter<?> getConverter(IConverterLocator converterLocator)
+		{
+			ConverterHolder holder = converterHolder;
+
+			if (holder == null || holder.converterLocator != converterLocator)
+			{
+				holder = new ConverterHolder(converterLocator,
+					converterLocator.getConverter(methodParameter.getParameterClass()));
+				converterHolder = holder;
+			}
+
+			return holder.converter;
+		}
+
+		public MethodParameter<?> getMethodParameter()
+		{
+			return methodParameter;
+		}
+
+		public ParameterSource getSource()
+		{
+			return source;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		public int getSegmentIndex()
+		{
+			return segmentIndex;
+		}
+	}
+
+	private static class ConverterHolder
+	{
+		private final IConverterLocator converterLocator;
+
+		private final IConverter<?> converter;
+
+		ConverterHolder(IConverterLocator converterLocator, IConverter<?> converter)
+		{
+			this.converterLocator = converterLocator;
+			this.converter = converter;
+		}
+	}
+}
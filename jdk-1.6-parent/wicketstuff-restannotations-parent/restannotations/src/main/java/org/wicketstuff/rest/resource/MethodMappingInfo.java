@@ -24,8 +24,11 @@ import java.util.List;
 
 import org.apache.wicket.authroles.authorization.strategies.role.Roles;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.WicketRuntimeException;
 import org.wicketstuff.rest.annotations.AuthorizeInvocation;
+import org.wicketstuff.rest.annotations.Cacheable;
 import org.wicketstuff.rest.annotations.MethodMapping;
+import org.wicketstuff.rest.resource.cache.IETagGenerator;
 import org.wicketstuff.rest.resource.urlsegments.AbstractURLSegment;
 import org.wicketstuff.rest.utils.http.HttpMethod;
 import org.wicketstuff.rest.utils.reflection.MethodParameter;
@@ -54,6 +57,12 @@ public class MethodMappingInfo {
 	private final String outputFormat;
 	/** Method parameters list */
 	private final List<MethodParameter> methodParameters;
+	/** The precompiled invocation plan of the method. */
+	private final MethodInvocationPlan invocationPlan;
+	/** Optional caching of the responses (see {@link Cacheable}). */
+	private final Cacheable cacheable;
+	/** The ETag generator of the cached responses. */
+	private final IETagGenerator etagGenerator;
 	
 	/**
 	 * Class constructor.
@@ -70,6 +79,27 @@ public class MethodMappingInfo {
 		this.inputFormat = methodMapped.consumes();
 		this.outputFormat = methodMapped.produces();
 		this.methodParameters = loadMethodParameters(method);
+		this.invocationPlan = new MethodInvocationPlan(this);
+		this.cacheable = method.getAnnotation(Cacheable.class);
+		this.etagGenerator = loadETagGenerator();
+	}
+
+	/**
+	 * Instantiates the ETag generator declared with {@link Cacheable}.
+	 *
+	 * @return the ETag generator, or null if the method is not cacheable.
+	 */
+	private IETagGenerator loadETagGenerator() {
+		if (cacheable == null)
+			return null;
+
+		try {
+			return cacheable.etagGenerator().newInstance();
+		} catch (Exception e) {
+			throw new WicketRuntimeException("Could not instantiate ETag generator "
+					+ cacheable.etagGenerator().getName() + " for method '" + method.getName()
+					+ "'", e);
+		}
 	}
 
 	private List<MethodParameter> loadMethodParameters(Method method) {
@@ -217,4 +247,31 @@ public class MethodMappingInfo {
 	public List<MethodParameter> getMethodParameters() {
 		return methodParameters;
 	}
+
+	/**
+	 * Gets the invocation plan of the method, which also exposes its timing metrics.
+	 *
+	 * @return the invocation plan
+	 */
+	public MethodInvocationPlan getInvocationPlan() {
+		return invocationPlan;
+	}
+
+	/**
+	 * Gets the caching options of the method.
+	 *
+	 * @return the {@link Cacheable} annotation, or null if the responses are not cached.
+	 */
+	public Cacheable getCacheable() {
+		return cacheable;
+	}
+
+	/**
+	 * Gets the ETag generator for the cached responses.
+	 *
+	 * @return the ETag generator, or null if the responses are not cached.
+	 */
+	public IETagGenerator getETagGenerator() {
+		return etagGenerator;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,102 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wicketstuff.rest.resource.cache;
+
+/**
+ * A serialized response kept in the {@link ResponseCache}.
+ */
+public class CachedResponse {
+
+	/** The serialized response. */
+	private final byte[] body;
+
+	/** The MIME type of the response. */
+	private final String mimeType;
+
+	/** The character encoding of the response, or null. */
+	private final String characterEncoding;
+
+	/** The ETag of the response. */
+	private final String etag;
+
+	/** The time (as returned by System.currentTimeMillis()) the response expires at. */
+	private final long expirationTime;
+
+	public CachedResponse(byte[] body, String mimeType, String characterEncoding, String etag,
+			long expirationTime) {
+		this.body = body;
+		this.mimeType = mimeType;
+		this.characterEncoding = characterEncoding;
+		this.etag = etag;
+		this.expirationTime = expirationTime;
+	}
+
+	/**
+	 * Checks if the response is expired.
+	 * 
+	 * @param now
+	 *            the current time.
+	 * @return true if the response is expired.
+	 */
+	public boolean isExpired(long now) {
+		return now >= expirationTime;
+	}
+
+	/**
+	 * Checks if the value of an If-None-Match header matches the ETag of the response.
+	 * 
+	 * @param ifNoneMatch
+	 *            the value of the header, can be null.
+	 * @return true if the header contains the ETag of the response or '*'.
+	 */
+	public boolean matches(String ifNoneMatch) {
+		if (ifNoneMatch == null)
+			return false;
+
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+
+			if (candidate.startsWith("W/"))
+				candidate = candidate.substring(2);
+
+			if (candidate.equals("*") || candidate.equals(etag))
+				return true;
+		}
+
+		return false;
+	}
+
+	public byte[] getBody() {
+		return body;
+	}
+
+	public String getMimeType() {
+		return mimeType;
+	}
+
+	public String getCharacterEncoding() {
+		return characterEncoding;
+	}
+
+	public String getETag() {
+		return etag;
+	}
+
+	public long getExpirationTime() {
+		return expirationTime;
+	}
+}
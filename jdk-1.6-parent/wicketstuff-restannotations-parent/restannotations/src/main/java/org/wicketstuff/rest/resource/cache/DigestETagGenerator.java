@@ -0,0 +1,53 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wicketstuff.rest.resource.cache;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.wicket.WicketRuntimeException;
+
+/**
+ * ETag generator that uses the MD5 digest of the response body.
+ */
+public class DigestETagGenerator implements IETagGenerator {
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	@Override
+	public String generateETag(byte[] body, String mimeType) {
+		byte[] digest = newMessageDigest().digest(body);
+		StringBuilder etag = new StringBuilder(digest.length * 2 + 2);
+
+		etag.append('"');
+
+		for (int i = 0; i < digest.length; i++) {
+			etag.append(HEX_DIGITS[(digest[i] >> 4) & 0xf]);
+			etag.append(HEX_DIGITS[digest[i] & 0xf]);
+		}
+
+		return etag.append('"').toString();
+	}
+
+	private MessageDigest newMessageDigest() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new WicketRuntimeException("MD5 digest is not available.", e);
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wicketstuff.rest.resource.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * Bounded in-memory cache of serialized responses (see
+ * {@link org.wicketstuff.rest.annotations.Cacheable}). The cache holds at most a given number of
+ * responses and of bytes: when one of the limits is exceeded, the least recently used responses
+ * are evicted. Expired responses are removed when they are looked up.<br/>
+ * The cache keeps hit/miss statistics.
+ */
+public class ResponseCache {
+
+	/** The default maximum number of responses. */
+	public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+	/** The default maximum number of bytes (16 MB). */
+	public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+	private final int maxEntries;
+
+	private final long maxBytes;
+
+	/** The responses in access order. */
+	private final LinkedHashMap<Object, CachedResponse> responses = new LinkedHashMap<Object, CachedResponse>(
+			16, 0.75f, true);
+
+	private long bytes;
+
+	private long hitsCount;
+
+	private long missesCount;
+
+	private long notModifiedCount;
+
+	private long evictionsCount;
+
+	/**
+	 * Builds a cache with the default limits.
+	 */
+	public ResponseCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Builds a cache with the given limits.
+	 * 
+	 * @param maxEntries
+	 *            the maximum number of responses.
+	 * @param maxBytes
+	 *            the maximum number of bytes of all the responses.
+	 */
+	public ResponseCache(int maxEntries, long maxBytes) {
+		Args.withinRange(1, Integer.MAX_VALUE, maxEntries, "maxEntries");
+		Args.withinRange(1L, Long.MAX_VALUE, maxBytes, "maxBytes");
+
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Gets the response cached with the given key, counting a hit or a miss.
+	 * 
+	 * @param key
+	 *            the key of the response.
+	 * @return the response, or null if it is not cached or it is expired.
+	 */
+	public synchronized CachedResponse get(Object key) {
+		CachedResponse response = responses.get(key);
+
+		if (response != null && response.isExpired(System.currentTimeMillis())) {
+			remove(key);
+			response = null;
+		}
+
+		if (response == null)
+			missesCount++;
+		else
+			hitsCount++;
+
+		return response;
+	}
+
+	/**
+	 * Caches a response, evicting the least recently used ones if needed. Responses bigger than
+	 * the maximum number of bytes are not cached.
+	 * 
+	 * @param key
+	 *            the key of the response.
+	 * @param response
+	 *            the response.
+	 */
+	public synchronized void put(Object key, CachedResponse response) {
+		if (response.getBody().length > maxBytes)
+			return;
+
+		remove(key);
+		responses.put(key, response);
+		bytes += response.getBody().length;
+
+		Iterator<Map.Entry<Object, CachedResponse>> iterator = responses.entrySet().iterator();
+
+		while ((responses.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+			CachedResponse eldest = iterator.next().getValue();
+
+			iterator.remove();
+			bytes -= eldest.getBody().length;
+			evictionsCount++;
+		}
+	}
+
+	/**
+	 * Counts a 304 (not modified) response.
+	 */
+	public synchronized void countNotModified() {
+		notModifiedCount++;
+	}
+
+	/**
+	 * Removes all the cached responses. Statistics are kept.
+	 */
+	public synchronized void clear() {
+		responses.clear();
+		bytes = 0;
+	}
+
+	private void remove(Object key) {
+		CachedResponse removed = responses.remove(key);
+
+		if (removed != null)
+			bytes -= removed.getBody().length;
+	}
+
+	public synchronized int getSize() {
+		return responses.size();
+	}
+
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public synchronized long getHitsCount() {
+		return hitsCount;
+	}
+
+	public synchronized long getMissesCount() {
+		return missesCount;
+	}
+
+	public synchronized long getNotModifiedCount() {
+		return notModifiedCount;
+	}
+
+	public synchronized long getEvictionsCount() {
+		return evictionsCount;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ResponseCache [size=" + responses.size() + ", bytes=" + bytes + ", hits=" +
+				hitsCount + ", misses=" + missesCount + ", notModified=" + notModifiedCount +
+				", evictions=" + evictionsCount + "]";
+	}
+}
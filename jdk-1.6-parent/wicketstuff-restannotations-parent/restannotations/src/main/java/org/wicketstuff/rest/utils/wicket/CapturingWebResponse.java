@@ -0,0 +1,161 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wicketstuff.rest.utils.wicket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * WebResponse that keeps the written content in memory, while headers, cookies and status are
+ * set on the wrapped response.
+ */
+public class CapturingWebResponse extends WebResponse {
+
+	private final WebResponse delegate;
+
+	private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+	public CapturingWebResponse(WebResponse delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Gets the content written so far.
+	 * 
+	 * @return the content.
+	 */
+	public byte[] getContent() {
+		return content.toByteArray();
+	}
+
+	/**
+	 * Gets the character encoding set on the container response.
+	 * 
+	 * @return the character encoding, or null if the container response is not a
+	 *         ServletResponse.
+	 */
+	public String getCharacterEncoding() {
+		Object containerResponse = getContainerResponse();
+
+		if (containerResponse instanceof ServletResponse)
+			return ((ServletResponse) containerResponse).getCharacterEncoding();
+
+		return null;
+	}
+
+	@Override
+	public void write(CharSequence sequence) {
+		String encoding = getCharacterEncoding();
+
+		try {
+			write(sequence.toString().getBytes(encoding != null ? encoding : "UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public void write(byte[] array) {
+		content.write(array, 0, array.length);
+	}
+
+	@Override
+	public void write(byte[] array, int offset, int length) {
+		content.write(array, offset, length);
+	}
+
+	@Override
+	public String encodeURL(CharSequence url) {
+		return delegate.encodeURL(url);
+	}
+
+	@Override
+	public Object getContainerResponse() {
+		return delegate.getContainerResponse();
+	}
+
+	@Override
+	public void addCookie(Cookie cookie) {
+		delegate.addCookie(cookie);
+	}
+
+	@Override
+	public void clearCookie(Cookie cookie) {
+		delegate.clearCookie(cookie);
+	}
+
+	@Override
+	public void setHeader(String name, String value) {
+		delegate.setHeader(name, value);
+	}
+
+	@Override
+	public void addHeader(String name, String value) {
+		delegate.addHeader(name, value);
+	}
+
+	@Override
+	public void setDateHeader(String name, Time date) {
+		delegate.setDateHeader(name, date);
+	}
+
+	@Override
+	public void setContentLength(long length) {
+		// the length is set when the content is written to the wrapped response
+	}
+
+	@Override
+	public void setContentType(String mimeType) {
+		delegate.setContentType(mimeType);
+	}
+
+	@Override
+	public void setStatus(int sc) {
+		delegate.setStatus(sc);
+	}
+
+	@Override
+	public void sendError(int sc, String message) {
+		delegate.sendError(sc, message);
+	}
+
+	@Override
+	public String encodeRedirectURL(CharSequence url) {
+		return delegate.encodeRedirectURL(url);
+	}
+
+	@Override
+	public void sendRedirect(String url) {
+		delegate.sendRedirect(url);
+	}
+
+	@Override
+	public boolean isRedirect() {
+		return delegate.isRedirect();
+	}
+
+	@Override
+	public void flush() {
+		// content is kept in memory
+	}
+}
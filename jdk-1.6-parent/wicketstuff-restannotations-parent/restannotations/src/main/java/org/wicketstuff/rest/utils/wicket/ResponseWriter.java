@@ -0,0 +1,58 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wicketstuff.rest.utils.wicket;
+
+import java.io.Writer;
+
+import org.apache.wicket.request.Response;
+
+/**
+ * Writer that passes the written characters to {@link Response#write(CharSequence)}. Unlike
+ * {@link Response#getOutputStream()}, it uses the same channel as the other textual writes on
+ * the response, so they can be mixed.
+ */
+public class ResponseWriter extends Writer {
+
+	private final Response response;
+
+	public ResponseWriter(Response response) {
+		this.response = response;
+	}
+
+	@Override
+	public void write(char[] buffer, int offset, int length) {
+		response.write(new String(buffer, offset, length));
+	}
+
+	@Override
+	public void write(String string) {
+		response.write(string);
+	}
+
+	@Override
+	public void write(String string, int offset, int length) {
+		response.write(string.substring(offset, offset + length));
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+}
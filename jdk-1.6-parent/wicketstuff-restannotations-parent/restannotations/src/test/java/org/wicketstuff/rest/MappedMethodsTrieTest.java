@@ -0,0 +1,243 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wicketstuff.rest;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.junit.Assert;
+import org.junit.Test;
+import org.wicketstuff.rest.annotations.MethodMapping;
+import org.wicketstuff.rest.contenthandling.RestMimeTypes;
+import org.wicketstuff.rest.resource.MappedMethodsTrie;
+import org.wicketstuff.rest.resource.MethodMappingInfo;
+import org.wicketstuff.rest.utils.http.HttpMethod;
+
+public class MappedMethodsTrieTest extends Assert {
+
+	@Test
+	public void testFixedSegmentsWin() {
+		MappedMethodsTrie trie = new MappedMethodsTrie(loadMappedMethods(Mappings.class));
+
+		assertSelected(trie, HttpMethod.GET, "getById", "books", "123");
+		assertSelected(trie, HttpMethod.GET, "getLatest", "books", "latest");
+		assertSelected(trie, HttpMethod.GET, "getAll", "books");
+		assertSelected(trie, HttpMethod.GET, "getRoot");
+		assertSelected(trie, HttpMethod.POST, "create", "books");
+	}
+
+	@Test
+	public void testRegExpSegments() {
+		MappedMethodsTrie trie = new MappedMethodsTrie(loadMappedMethods(Mappings.class));
+
+		assertSelected(trie, HttpMethod.GET, "getByDate", "log", "01-02-2013");
+		assertSelected(trie, HttpMethod.GET, "getByName", "log", "today");
+	}
+
+	@Test
+	public void testNoMethodFound() {
+		MappedMethodsTrie trie = new MappedMethodsTrie(loadMappedMethods(Mappings.class));
+
+		assertTrue(trie.select(HttpMethod.GET, newParameters("unknown")).isEmpty());
+		assertTrue(trie.select(HttpMethod.GET, newParameters("books", "1", "2", "3")).isEmpty());
+		assertTrue(trie.select(HttpMethod.DELETE, newParameters("books")).isEmpty());
+	}
+
+	@Test
+	public void testMatrixParameters() {
+		MappedMethodsTrie trie = new MappedMethodsTrie(loadMappedMethods(Mappings.class));
+
+		assertSelected(trie, HttpMethod.GET, "getLatest", "books", "latest;limit=10");
+	}
+
+	@Test
+	public void testAmbiguousAtRequestTime() {
+		MappedMethodsTrie trie = new MappedMethodsTrie(loadMappedMethods(Mappings.class));
+		List<MethodMappingInfo> selected = trie.select(HttpMethod.GET,
+				newParameters("a", "b"));
+
+		assertEquals(2, selected.size());
+	}
+
+	@Test(expected = WicketRuntimeException.class)
+	public void testAmbiguousAtStartup() {
+		new MappedMethodsTrie(loadMappedMethods(AmbiguousMappings.class));
+	}
+
+	@Test
+	public void testManyMappedResources() throws Exception {
+		Method method = Mappings.class.getDeclaredMethod("getRoot");
+		List<MethodMappingInfo> mappedMethods = new ArrayList<MethodMappingInfo>();
+		int resources = 50;
+
+		for (int i = 0; i < resources; i++) {
+			String resource = "/resource" + i;
+
+			mappedMethods.add(newMappingInfo(resource, HttpMethod.GET, method));
+			mappedMethods.add(newMappingInfo(resource, HttpMethod.POST, method));
+			mappedMethods.add(newMappingInfo(resource + "/{id}", HttpMethod.GET, method));
+			mappedMethods.add(newMappingInfo(resource + "/{id}/items/{item}", HttpMethod.GET,
+					method));
+			mappedMethods.add(newMappingInfo(resource + "/search/{query:[a-z]+}",
+					HttpMethod.GET, method));
+		}
+
+		MappedMethodsTrie trie = new MappedMethodsTrie(mappedMethods);
+		Random random = new Random(42);
+
+		for (int i = 0; i < 1000; i++) {
+			int resource = random.nextInt(resources);
+			String name = "resource" + resource;
+			int first = resource * 5;
+
+			switch (random.nextInt(4)) {
+			case 0:
+				assertSelectedMapping(trie, mappedMethods.get(first), HttpMethod.GET, name);
+				assertSelectedMapping(trie, mappedMethods.get(first + 1), HttpMethod.POST, name);
+				break;
+			case 1:
+				assertSelectedMapping(trie, mappedMethods.get(first + 2), HttpMethod.GET, name,
+						String.valueOf(random.nextInt(1000)));
+				break;
+			case 2:
+				assertSelectedMapping(trie, mappedMethods.get(first + 3), HttpMethod.GET, name, "42",
+						"items", "7");
+				break;
+			default:
+				assertSelectedMapping(trie, mappedMethods.get(first + 4), HttpMethod.GET, name,
+						"search", "books");
+				break;
+			}
+		}
+	}
+
+	private void assertSelectedMapping(MappedMethodsTrie trie, MethodMappingInfo expected,
+			HttpMethod httpMethod, String... segments) {
+		List<MethodMappingInfo> selected = trie.select(httpMethod, newParameters(segments));
+
+		assertEquals(1, selected.size());
+		assertSame(expected, selected.get(0));
+	}
+
+	private MethodMappingInfo newMappingInfo(final String path, final HttpMethod httpMethod,
+			Method method) {
+		MethodMapping mapping = (MethodMapping) Proxy.newProxyInstance(
+				MethodMapping.class.getClassLoader(), new Class<?>[] { MethodMapping.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method annotationMethod, Object[] args) {
+						String name = annotationMethod.getName();
+
+						if ("value".equals(name))
+							return path;
+						if ("httpMethod".equals(name))
+							return httpMethod;
+						if ("annotationType".equals(name))
+							return MethodMapping.class;
+
+						return RestMimeTypes.APPLICATION_JSON;
+					}
+				});
+
+		return new MethodMappingInfo(mapping, method);
+	}
+
+	private void assertSelected(MappedMethodsTrie trie, HttpMethod httpMethod,
+			String methodName, String... segments) {
+		List<MethodMappingInfo> selected = trie.select(httpMethod, newParameters(segments));
+
+		assertEquals(1, selected.size());
+		assertEquals(methodName, selected.get(0).getMethod().getName());
+	}
+
+	private PageParameters newParameters(String... segments) {
+		PageParameters parameters = new PageParameters();
+
+		for (int i = 0; i < segments.length; i++) {
+			parameters.set(i, segments[i]);
+		}
+
+		return parameters;
+	}
+
+	private List<MethodMappingInfo> loadMappedMethods(Class<?> clazz) {
+		List<MethodMappingInfo> mappedMethods = new ArrayList<MethodMappingInfo>();
+
+		for (Method method : clazz.getDeclaredMethods()) {
+			MethodMapping methodMapping = method.getAnnotation(MethodMapping.class);
+
+			if (methodMapping != null)
+				mappedMethods.add(new MethodMappingInfo(methodMapping, method));
+		}
+
+		return mappedMethods;
+	}
+
+	static class Mappings {
+		@MethodMapping("/")
+		public void getRoot() {
+		}
+
+		@MethodMapping("/books")
+		public void getAll() {
+		}
+
+		@MethodMapping(value = "/books", httpMethod = HttpMethod.POST)
+		public void create() {
+		}
+
+		@MethodMapping("/books/{id}")
+		public void getById() {
+		}
+
+		@MethodMapping("/books/latest")
+		public void getLatest() {
+		}
+
+		@MethodMapping("/log/{day:\\d{2}}-{month:\\d{2}}-{year:\\d{4}}")
+		public void getByDate() {
+		}
+
+		@MethodMapping("/log/{name:[a-z]+}")
+		public void getByName() {
+		}
+
+		@MethodMapping("/a/{p}")
+		public void getA() {
+		}
+
+		@MethodMapping("/{p}/b")
+		public void getB() {
+		}
+	}
+
+	static class AmbiguousMappings {
+		@MethodMapping("/books/{id}")
+		public void getById() {
+		}
+
+		@MethodMapping("/books/{name}")
+		public void getByName() {
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wicketstuff.rest;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wicketstuff.rest.annotations.MethodMapping;
+import org.wicketstuff.rest.annotations.parameters.CookieParam;
+import org.wicketstuff.rest.annotations.parameters.HeaderParam;
+import org.wicketstuff.rest.annotations.parameters.MatrixParam;
+import org.wicketstuff.rest.annotations.parameters.RequestBody;
+import org.wicketstuff.rest.annotations.parameters.RequestParam;
+import org.wicketstuff.rest.resource.MethodInvocationPlan;
+import org.wicketstuff.rest.resource.MethodInvocationPlan.ParameterSource;
+import org.wicketstuff.rest.resource.MethodMappingInfo;
+
+public class MethodInvocationPlanTest extends Assert {
+
+	@Test
+	public void testParameterSources() throws Exception {
+		MethodInvocationPlan plan = loadPlan("annotatedParams");
+
+		assertEquals(6, plan.getParametersCount());
+		assertEquals(ParameterSource.URL_SEGMENT, plan.getParameter(0).getSource());
+		assertEquals(ParameterSource.REQUEST_PARAM, plan.getParameter(1).getSource());
+		assertEquals("query", plan.getParameter(1).getName());
+		assertEquals(ParameterSource.HEADER_PARAM, plan.getParameter(2).getSource());
+		assertEquals(ParameterSource.COOKIE_PARAM, plan.getParameter(3).getSource());
+		assertEquals(ParameterSource.MATRIX_PARAM, plan.getParameter(4).getSource());
+		assertEquals("m", plan.getParameter(4).getName());
+		assertEquals(1, plan.getParameter(4).getSegmentIndex());
+		assertEquals(ParameterSource.REQUEST_BODY, plan.getParameter(5).getSource());
+	}
+
+	@Test
+	public void testInvocationMetrics() throws Exception {
+		MethodInvocationPlan plan = loadPlan("sum");
+		Object[] arguments = plan.newArguments();
+
+		arguments[0] = 2;
+		arguments[1] = 3;
+
+		assertEquals(5, plan.invoke(new Mappings(), arguments));
+		assertEquals(5, plan.invoke(new Mappings(), arguments));
+		assertEquals(2, plan.getInvocationsCount());
+		assertEquals(0, plan.getFailuresCount());
+		assertTrue(plan.getMaxNanos() <= plan.getTotalNanos());
+
+		try {
+			plan.invoke(new Mappings(), new Object[] { 1, null });
+			fail();
+		} catch (IllegalArgumentException e) {
+			// null can't be unboxed
+		} catch (InvocationTargetException e) {
+			// null can't be unboxed
+		}
+
+		assertEquals(3, plan.getInvocationsCount());
+		assertEquals(1, plan.getFailuresCount());
+
+		plan.resetMetrics();
+		assertEquals(0, plan.getInvocationsCount());
+	}
+
+	private MethodInvocationPlan loadPlan(String methodName) {
+		for (Method method : Mappings.class.getDeclaredMethods()) {
+			if (method.getName().equals(methodName))
+				return new MethodMappingInfo(method.getAnnotation(MethodMapping.class), method)
+						.getInvocationPlan();
+		}
+
+		throw new IllegalArgumentException(methodName);
+	}
+
+	public static class Mappings {
+		@MethodMapping("/sum/{a}/{b}")
+		public int sum(int a, int b) {
+			return a + b;
+		}
+
+		@MethodMapping("/params/{id}")
+		public void annotatedParams(int id, @RequestParam("query") String query,
+				@HeaderParam("header") String header, @CookieParam("cookie") String cookie,
+				@MatrixParam(parameterName = "m", segmentIndex = 1) String matrix,
+				@RequestBody Person person) {
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wicketstuff.rest;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wicketstuff.rest.resource.cache.CachedResponse;
+import org.wicketstuff.rest.resource.cache.DigestETagGenerator;
+import org.wicketstuff.rest.resource.cache.ResponseCache;
+
+public class ResponseCacheTest extends Assert {
+
+	@Test
+	public void testEvictionByEntries() {
+		ResponseCache cache = new ResponseCache(2, 1000);
+
+		cache.put("a", newResponse(10, Long.MAX_VALUE));
+		cache.put("b", newResponse(10, Long.MAX_VALUE));
+		assertNotNull(cache.get("a"));
+		cache.put("c", newResponse(10, Long.MAX_VALUE));
+
+		// "b" is the least recently used
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("a"));
+		assertNotNull(cache.get("c"));
+		assertEquals(1, cache.getEvictionsCount());
+		assertEquals(3, cache.getHitsCount());
+		assertEquals(1, cache.getMissesCount());
+	}
+
+	@Test
+	public void testEvictionByBytes() {
+		ResponseCache cache = new ResponseCache(100, 25);
+
+		cache.put("a", newResponse(10, Long.MAX_VALUE));
+		cache.put("b", newResponse(10, Long.MAX_VALUE));
+		cache.put("c", newResponse(10, Long.MAX_VALUE));
+		assertEquals(2, cache.getSize());
+		assertEquals(20, cache.getBytes());
+
+		// too big to be cached
+		cache.put("d", newResponse(30, Long.MAX_VALUE));
+		assertNull(cache.get("d"));
+		assertEquals(20, cache.getBytes());
+	}
+
+	@Test
+	public void testExpiration() {
+		ResponseCache cache = new ResponseCache();
+
+		cache.put("a", newResponse(10, System.currentTimeMillis() - 1));
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.getBytes());
+	}
+
+	@Test
+	public void testETagMatching() {
+		byte[] body = "body".getBytes();
+		String etag = new DigestETagGenerator().generateETag(body, "text/plain");
+		CachedResponse response = new CachedResponse(body, "text/plain", null, etag,
+				Long.MAX_VALUE);
+
+		assertEquals(etag, new DigestETagGenerator().generateETag(body, "text/plain"));
+		assertTrue(response.matches(etag));
+		assertTrue(response.matches("\"other\", W/" + etag));
+		assertTrue(response.matches("*"));
+		assertFalse(response.matches("\"other\""));
+		assertFalse(response.matches(null));
+	}
+
+	private CachedResponse newResponse(int size, long expirationTime) {
+		return new CachedResponse(new byte[size], "text/plain", null, "\"etag\"", expirationTime);
+	}
+}
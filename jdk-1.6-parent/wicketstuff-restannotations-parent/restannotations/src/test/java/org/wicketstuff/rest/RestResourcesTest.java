@@ -39,6 +39,8 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.wicketstuff.rest.contenthandling.RestMimeTypes;
 import org.wicketstuff.rest.contenthandling.serialdeserial.TestJsonDesSer;
+import org.wicketstuff.rest.resource.CachedPostRestResource;
+import org.wicketstuff.rest.resource.CachedRestResource;
 import org.wicketstuff.rest.resource.RestResourceFullAnnotated;
 import org.wicketstuff.rest.utils.test.BufferedMockRequest;
 
@@ -219,6 +221,139 @@ public class RestResourcesTest {
 		assertEquals(writer.toString(), tester.getLastResponseAsString());
 	}
 
+	@Test
+	public void testCachedResponse() throws Exception {
+		WicketApplication application = (WicketApplication) tester.getApplication();
+		CachedRestResource resource = application.getCachedRestResource();
+
+		tester.getRequest().setMethod("GET");
+		tester.executeUrl("./api4/counter/7?lang=en");
+		testIfResponseStringIsEqual("7-en");
+
+		String etag = tester.getLastResponse().getHeader("ETag");
+		Assert.assertNotNull(etag);
+
+		// served from cache
+		tester.getRequest().setMethod("GET");
+		tester.executeUrl("./api4/counter/7?lang=en");
+		testIfResponseStringIsEqual("7-en");
+		Assert.assertEquals(1, resource.getInvocationsCount());
+
+		// different path or parameter
+		tester.getRequest().setMethod("GET");
+		tester.executeUrl("./api4/counter/7?lang=it");
+		testIfResponseStringIsEqual("7-it");
+		tester.getRequest().setMethod("GET");
+		tester.executeUrl("./api4/counter/8?lang=en");
+		testIfResponseStringIsEqual("8-en");
+		Assert.assertEquals(3, resource.getInvocationsCount());
+
+		// conditional GET
+		tester.getRequest().setMethod("GET");
+		tester.getRequest().setHeader("If-None-Match", etag);
+		tester.executeUrl("./api4/counter/7?lang=en");
+		Assert.assertEquals(304, tester.getLastResponse().getStatus());
+		Assert.assertEquals("", tester.getLastResponseAsString());
+		Assert.assertEquals(3, resource.getInvocationsCount());
+
+		Assert.assertEquals(2, resource.getResponseCache().getHitsCount());
+		Assert.assertEquals(3, resource.getResponseCache().getMissesCount());
+		Assert.assertEquals(1, resource.getResponseCache().getNotModifiedCount());
+
+		resource.getResponseCache().clear();
+		tester.getRequest().setMethod("GET");
+		tester.executeUrl("./api4/counter/7?lang=en");
+		Assert.assertEquals(4, resource.getInvocationsCount());
+	}
+
+	@Test
+	public void testCachedResponseByBoundParameters() throws Exception {
+		WicketApplication application = (WicketApplication) tester.getApplication();
+		CachedRestResource resource = application.getCachedRestResource();
+
+		tester.getRequest().setMethod("GET");
+		tester.getRequest().setHeader("Accept-Language", "en");
+		tester.getRequest().setCookies(new Cookie[] { new Cookie("name", "bob") });
+		tester.executeUrl("./api4/greeting");
+		testIfResponseStringIsEqual("en-bob");
+
+		// a different header or cookie bound to a method parameter
+		tester.getRequest().setMethod("GET");
+		tester.getRequest().setHeader("Accept-Language", "it");
+		tester.getRequest().setCookies(new Cookie[] { new Cookie("name", "bob") });
+		tester.executeUrl("./api4/greeting");
+		testIfResponseStringIsEqual("it-bob");
+		tester.getRequest().setMethod("GET");
+		tester.getRequest().setHeader("Accept-Language", "en");
+		tester.getRequest().setCookies(new Cookie[] { new Cookie("name", "alice") });
+		tester.executeUrl("./api4/greeting");
+		testIfResponseStringIsEqual("en-alice");
+		Assert.assertEquals(3, resource.getInvocationsCount());
+
+		// served from cache
+		tester.getRequest().setMethod("GET");
+		tester.getRequest().setHeader("Accept-Language", "it");
+		tester.getRequest().setCookies(new Cookie[] { new Cookie("name", "bob") });
+		tester.executeUrl("./api4/greeting");
+		testIfResponseStringIsEqual("it-bob");
+		Assert.assertEquals(3, resource.getInvocationsCount());
+	}
+
+	@Test
+	public void testCachedResponseByUndeclaredHeader() throws Exception {
+		WicketApplication application = (WicketApplication) tester.getApplication();
+		CachedRestResource resource = application.getCachedRestResource();
+
+		tester.getRequest().setMethod("GET");
+		tester.getRequest().setHeader("X-Tenant", "a");
+		tester.executeUrl("./api4/tenant");
+		testIfResponseStringIsEqual("tenant-a");
+
+		tester.getRequest().setMethod("GET");
+		tester.getRequest().setHeader("X-Tenant", "b");
+		tester.executeUrl("./api4/tenant");
+		testIfResponseStringIsEqual("tenant-b");
+
+		tester.getRequest().setMethod("GET");
+		tester.getRequest().setHeader("X-Tenant", "a");
+		tester.executeUrl("./api4/tenant");
+		testIfResponseStringIsEqual("tenant-a");
+		Assert.assertEquals(2, resource.getInvocationsCount());
+	}
+
+	@Test
+	public void testCacheableRequiresGet() {
+		exception.expect(WicketRuntimeException.class);
+		exception.expectMessage("Cacheable");
+		new CachedPostRestResource(new TestJsonDesSer());
+	}
+
+	@Test
+	public void testNotCachedErrorResponse() throws Exception {
+		WicketApplication application = (WicketApplication) tester.getApplication();
+		CachedRestResource resource = application.getCachedRestResource();
+
+		tester.getRequest().setMethod("GET");
+		tester.executeUrl("./api4/item/-1");
+		Assert.assertEquals(404, tester.getLastResponse().getStatus());
+		Assert.assertNull(tester.getLastResponse().getHeader("ETag"));
+
+		tester.getRequest().setMethod("GET");
+		tester.executeUrl("./api4/item/-1");
+		Assert.assertEquals(404, tester.getLastResponse().getStatus());
+		Assert.assertEquals(2, resource.getInvocationsCount());
+		Assert.assertEquals(0, resource.getResponseCache().getHitsCount());
+
+		// a successful response of the same method is still cached
+		tester.getRequest().setMethod("GET");
+		tester.executeUrl("./api4/item/1");
+		tester.getRequest().setMethod("GET");
+		tester.executeUrl("./api4/item/1");
+		Assert.assertEquals(200, tester.getLastResponse().getStatus());
+		testIfResponseStringIsEqual("item-1");
+		Assert.assertEquals(3, resource.getInvocationsCount());
+	}
+
 	protected void testIfResponseStringIsEqual(String value) {
 		Assert.assertEquals(value, tester.getLastResponseAsString());
 	}
@@ -31,6 +31,7 @@ import org.wicketstuff.rest.contenthandling.RestMimeTypes;
 import org.wicketstuff.rest.contenthandling.serialdeserial.MultiFormatSerialDeserial;
 import org.wicketstuff.rest.contenthandling.serialdeserial.TestJsonDesSer;
 import org.wicketstuff.rest.contenthandling.serialdeserial.XmlSerialDeser;
+import org.wicketstuff.rest.resource.CachedRestResource;
 import org.wicketstuff.rest.resource.MultiFormatRestResource;
 import org.wicketstuff.rest.resource.RegExpRestResource;
 import org.wicketstuff.rest.resource.RestResourceFullAnnotated;
@@ -46,6 +47,8 @@ public class WicketApplication extends WebApplication implements IRoleCheckingSt
 {    	
 	private final Roles roles;
 	
+	private CachedRestResource cachedRestResource;
+	
 	public WicketApplication(Roles roles) {
 		this.roles = roles;
 	}
@@ -99,6 +102,21 @@ public class WicketApplication extends WebApplication implements IRoleCheckingSt
 			}
 			
 		});
+		
+		cachedRestResource = new CachedRestResource(new TestJsonDesSer());
+		
+		mountResource("/api4", new ResourceReference("cachedRestResource"){
+
+			@Override
+			public IResource getResource() {
+				return cachedRestResource;
+			}
+			
+		});
+	}
+	
+	public CachedRestResource getCachedRestResource() {
+		return cachedRestResource;
 	}
 	
 	@Override
@@ -0,0 +1,74 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.wicketstuff.rest.resource;
+
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.http.WebRequest;
+import org.wicketstuff.rest.annotations.Cacheable;
+import org.wicketstuff.rest.annotations.MethodMapping;
+import org.wicketstuff.rest.annotations.parameters.CookieParam;
+import org.wicketstuff.rest.annotations.parameters.HeaderParam;
+import org.wicketstuff.rest.annotations.parameters.RequestParam;
+import org.wicketstuff.rest.contenthandling.RestMimeTypes;
+import org.wicketstuff.rest.contenthandling.serialdeserial.TestJsonDesSer;
+
+public class CachedRestResource extends AbstractRestResource<TestJsonDesSer> {
+
+	private int invocationsCount;
+
+	public CachedRestResource(TestJsonDesSer jsonSerialDeserial) {
+		super(jsonSerialDeserial);
+	}
+
+	@Cacheable
+	@MethodMapping(value = "/counter/{id}", produces = RestMimeTypes.TEXT_PLAIN)
+	public String counter(int id, @RequestParam(value = "lang", required = false) String lang) {
+		invocationsCount++;
+		return id + "-" + lang;
+	}
+
+	@Cacheable
+	@MethodMapping(value = "/item/{id}", produces = RestMimeTypes.TEXT_PLAIN)
+	public String item(int id) {
+		invocationsCount++;
+
+		if (id < 0)
+			setResponseStatusCode(404);
+
+		return "item-" + id;
+	}
+
+	@Cacheable
+	@MethodMapping(value = "/greeting", produces = RestMimeTypes.TEXT_PLAIN)
+	public String greeting(@HeaderParam("Accept-Language") String language,
+			@CookieParam(value = "name", required = false) String name) {
+		invocationsCount++;
+		return language + "-" + name;
+	}
+
+	@Cacheable(varyByHeaders = "X-Tenant")
+	@MethodMapping(value = "/tenant", produces = RestMimeTypes.TEXT_PLAIN)
+	public String tenant() {
+		invocationsCount++;
+		WebRequest request = (WebRequest) RequestCycle.get().getRequest();
+		return "tenant-" + request.getHeader("X-Tenant");
+	}
+
+	public int getInvocationsCount() {
+		return invocationsCount;
+	}
+}